@@ -15,9 +15,15 @@ package net.alureon.ircbutt;
  * along with this program.  If not, see <http://www.gnu.org/licenses/>
  **/
 
+import net.alureon.ircbutt.cluster.ClusterNode;
+import net.alureon.ircbutt.cluster.SqlLeaseStore;
+import net.alureon.ircbutt.file.ConfigurationManager;
+import net.alureon.ircbutt.file.NetworkConfig;
 import net.alureon.ircbutt.file.YAMLConfigurationFile;
 import net.alureon.ircbutt.game.GameManager;
+import net.alureon.ircbutt.game.GameSnapshot;
 import net.alureon.ircbutt.handler.*;
+import net.alureon.ircbutt.http.HttpManager;
 import net.alureon.ircbutt.command.CommandHandler;
 import net.alureon.ircbutt.command.commands.MoreCommand;
 import net.alureon.ircbutt.command.commands.karma.KarmaTable;
@@ -26,13 +32,31 @@ import net.alureon.ircbutt.listener.PrivateMessageListener;
 import net.alureon.ircbutt.command.commands.fact.FactTable;
 import net.alureon.ircbutt.command.commands.quotegrabs.QuoteGrabTable;
 import net.alureon.ircbutt.logging.LoggingHandler;
+import net.alureon.ircbutt.math.ExpressionCompiler;
+import net.alureon.ircbutt.network.BotNetwork;
+import net.alureon.ircbutt.network.NetworkManager;
+import net.alureon.ircbutt.outbound.LineSplitter;
+import net.alureon.ircbutt.outbound.OutboundPipeline;
+import net.alureon.ircbutt.regex.RegexService;
+import net.alureon.ircbutt.scrollback.ScrollbackManager;
+import net.alureon.ircbutt.search.Scraper;
+import net.alureon.ircbutt.search.SearchResultCache;
+import net.alureon.ircbutt.snapshot.SnapshotManager;
 import net.alureon.ircbutt.sql.SqlManager;
+import net.alureon.ircbutt.startup.StartupSequence;
+import net.alureon.ircbutt.trigger.TriggerScheduler;
+import net.alureon.ircbutt.util.RandomService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.pircbotx.Configuration;
-import org.pircbotx.PircBotX;
-import org.pircbotx.hooks.managers.ListenerManager;
-import org.pircbotx.hooks.managers.ThreadedListenerManager;
+import org.pircbotx.hooks.Listener;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The main class for IRCbutt.  This class instantiates the bot.
@@ -48,17 +72,41 @@ public final class IRCbutt {
      */
     private static final Logger log = LogManager.getLogger();
     /**
-     * Instantiate the ButtReplaceHandler object.
+     * The number of bytes in a kibibyte, for sizing caches.
+     */
+    private static final long KIBIBYTE = 1024;
+    /**
+     * The number of milliseconds in a second.
+     */
+    private static final long MILLIS_PER_SECOND = 1000;
+    /**
+     * The most startup tasks to run at once.
+     */
+    private static final int STARTUP_THREADS = 4;
+    /**
+     * Runs the bot's startup as a graph of tasks, and times them.
+     */
+    private final StartupSequence startupSequence = new StartupSequence(STARTUP_THREADS);
+    /**
+     * Provides random numbers to the whole bot.
+     */
+    private final RandomService randomService = new RandomService();
+    /**
+     * Field for the ButtReplaceHandler object.
+     */
+    private ButtReplaceHandler buttReplaceHandler;
+    /**
+     * Decides which chatter messages get randomly buttified.
      */
-    private ButtReplaceHandler buttReplaceHandler = new ButtReplaceHandler(this);
+    private TriggerScheduler randomResponseScheduler;
     /**
      * Field for the CommandHandler object.
      */
     private CommandHandler commandHandler;
     /**
-     * Instantiate the YAMLConfigurationFile object.
+     * Holds the settings from the config.yml, and reloads them when it changes.
      */
-    private YAMLConfigurationFile yamlConfigurationFile = new YAMLConfigurationFile();
+    private final ConfigurationManager configurationManager = new ConfigurationManager(Paths.get("config.yml"));
     /**
      * Field for the SqlManager object.
      */
@@ -75,18 +123,14 @@ public final class IRCbutt {
      * Instantiate the QuoteGrabTable object.
      */
     private QuoteGrabTable quoteGrabTable = new QuoteGrabTable(this);
-    /**
-     * Instantiates a ListenerManager object.
-     */
-    private ListenerManager listenerManager = new ThreadedListenerManager();
     /**
      * Instantiates a IrcMessageReceiver object.
      */
     private IrcMessageReceiver ircMessageReceiver = new IrcMessageReceiver(this);
     /**
-     * Instantiates a ChatStorage object for logging the chat.
+     * Field for the ChatStorage object for logging the chat.
      */
-    private ChatStorage chatStorage = new ChatStorage();
+    private ChatStorage chatStorage;
     /**
      * Instantiates a KarmaTable object for handling SQL-related Karma operations.
      */
@@ -96,56 +140,176 @@ public final class IRCbutt {
      */
     private MoreCommand moreCommand = new MoreCommand();
     /**
-     * Instantiates the PircBotX object, the API used for connecting to IRC.
+     * Field for the SearchResultCache, which holds recent results of web searches.
+     */
+    private SearchResultCache searchResultCache;
+    /**
+     * Field for the HttpManager, which all outbound web requests go through.
+     */
+    private HttpManager httpManager;
+    /**
+     * Field for the Scraper, which pulls search results out of websites.
+     */
+    private Scraper scraper;
+    /**
+     * Field for the ScrollbackManager, which keeps channel history on disk.
+     */
+    private ScrollbackManager scrollbackManager;
+    /**
+     * Field for the RegexService, which runs regexes given by users.
+     */
+    private RegexService regexService;
+    /**
+     * Field for the ExpressionCompiler, which compiles the math users type into !eval, !sqrt and !pow.
      */
-    private PircBotX pircBotX;
+    private final ExpressionCompiler expressionCompiler = new ExpressionCompiler();
+    /**
+     * Field for the NetworkManager, which keeps track of the IRC networks the bot is connected to.
+     */
+    private NetworkManager networkManager;
+    /**
+     * Field for the ClusterNode, which decides which channels this bot answers in when it shares them with others.
+     */
+    private ClusterNode clusterNode;
+    /**
+     * Field for the SnapshotManager, which keeps the bot's in-memory state over a restart.
+     */
+    private SnapshotManager snapshotManager;
 
 
     /**
      * The Class Constructor creates the configuration file for the bot if it doesn't exist.
-     * If it does, it parses it.  Then, it attempts to acquire an SQL connection.
+     * If it does, it parses it, and creates everything the bot is made of.  Nothing slow happens
+     * until the bot is started.
      * This is bot instantiation.
      */
     public IRCbutt() {
         /* Create / parse yaml configuration file */
-        yamlConfigurationFile.createConfigIfNotExists();
-        yamlConfigurationFile.parseConfig();
+        startupSequence.run("config", () -> {
+            configurationManager.createConfigIfNotExists();
+            configurationManager.load();
+        });
+        YAMLConfigurationFile yamlConfigurationFile = configurationManager.get();
 
-        /* Register commands */
-        commandHandler = new CommandHandler(this);
-        commandHandler.registerCommandClasses();
+        /* Create the buttify handler and decide how often it butts in */
+        buttReplaceHandler = new ButtReplaceHandler(this, yamlConfigurationFile.getButtifyStopwords(),
+                randomService);
+        randomResponseScheduler = new TriggerScheduler(yamlConfigurationFile.getRandomResponseFrequency(),
+                yamlConfigurationFile.getRandomResponseChannelFrequencies(), randomService);
 
-        /* Connect to SQL database */
+        /* Create caches sized from the configuration file */
+        searchResultCache = new SearchResultCache(yamlConfigurationFile.getSearchCacheMaxEntries(),
+                yamlConfigurationFile.getSearchCacheMaxKilobytes() * KIBIBYTE);
+        httpManager = new HttpManager(yamlConfigurationFile.getHttpHedgeRequests(),
+                yamlConfigurationFile.getHttpSlowCallMillis(), yamlConfigurationFile.getHttpFailureRatePercent(),
+                yamlConfigurationFile.getHttpOpenSeconds() * MILLIS_PER_SECOND);
+        scraper = new Scraper(httpManager);
+        chatStorage = new ChatStorage(yamlConfigurationFile.getChatLinesPerNick(),
+                (int) (yamlConfigurationFile.getChatMaxKilobytes() * KIBIBYTE),
+                TimeUnit.MINUTES.toMillis(yamlConfigurationFile.getChatIdleMinutes()));
+        scrollbackManager = new ScrollbackManager(yamlConfigurationFile.getScrollbackEnabled(),
+                Paths.get(yamlConfigurationFile.getScrollbackDirectory()),
+                TimeUnit.DAYS.toMillis(yamlConfigurationFile.getScrollbackRetentionDays()),
+                (int) (yamlConfigurationFile.getScrollbackSegmentKilobytes() * KIBIBYTE));
+        regexService = new RegexService(yamlConfigurationFile.getRegexCacheSize(),
+                yamlConfigurationFile.getRegexBudgetMillis(), yamlConfigurationFile.getRegexQuotaMillis());
+
+        /* Create a connection for each network, all sharing the same listeners */
+        List<Listener> listeners = Arrays.asList(new ChatListener(this), new PrivateMessageListener(this));
+        List<BotNetwork> networks = new ArrayList<>();
+        for (NetworkConfig network : yamlConfigurationFile.getNetworks()) {
+            networks.add(new BotNetwork(network, networks.isEmpty(), listeners, new OutboundPipeline(
+                    yamlConfigurationFile.getOutboundPackLength(),
+                    new LineSplitter(network.getBotName(), network.getLogin()),
+                    yamlConfigurationFile.getOutboundGlobalBurst(),
+                    yamlConfigurationFile.getOutboundGlobalMillisPerLine(),
+                    yamlConfigurationFile.getOutboundTargetBurst(),
+                    yamlConfigurationFile.getOutboundTargetMillisPerLine())));
+        }
+        networkManager = new NetworkManager(networks);
+        Runtime.getRuntime().addShutdownHook(new Thread(scrollbackManager::close, "scrollback-close"));
+        commandHandler = new CommandHandler(this);
         sqlManager = new SqlManager(this);
-        sqlManager.connectToDatabase();
-        sqlManager.createDatabaseIfNotExists();
-        sqlManager.createTablesIfNotExists();
+
+        /* Share the channels with the rest of the cluster, if there is one */
+        String nodeId = yamlConfigurationFile.getClusterNodeId();
+        if (nodeId == null) {
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        clusterNode = new ClusterNode(yamlConfigurationFile.getClusterEnabled(), nodeId,
+                new SqlLeaseStore(sqlManager, yamlConfigurationFile.getSqlTablePrefix()),
+                networkManager.getChannelKeys(), networkManager,
+                TimeUnit.SECONDS.toMillis(yamlConfigurationFile.getClusterLeaseSeconds()),
+                TimeUnit.SECONDS.toMillis(yamlConfigurationFile.getClusterHeartbeatSeconds()));
+
+        /* Keep what the bot remembers over a restart */
+        snapshotManager = new SnapshotManager(yamlConfigurationFile.getSnapshotEnabled(),
+                Paths.get(yamlConfigurationFile.getSnapshotFile()),
+                TimeUnit.SECONDS.toMillis(yamlConfigurationFile.getSnapshotIntervalSeconds()),
+                TimeUnit.MINUTES.toMillis(yamlConfigurationFile.getSnapshotMaxAgeMinutes()));
+        snapshotManager.register("chat", chatStorage);
+        snapshotManager.register("more", commandHandler.getMoreStore());
+        snapshotManager.register("games", new GameSnapshot(this));
+        snapshotManager.register("facts", factTable.getHotFacts());
+
+        /* Pick up changes to the configuration file without restarting */
+        configurationManager.addListener(this::configurationChanged);
+    }
+
+    /**
+     * Passes a reloaded configuration file on to everything that can change its settings live.
+     * @param old The settings before the reload.
+     * @param current The settings now in use.
+     */
+    private void configurationChanged(final YAMLConfigurationFile old, final YAMLConfigurationFile current) {
+        buttReplaceHandler.setStopwords(current.getButtifyStopwords());
+        randomResponseScheduler.setFrequencies(current.getRandomResponseFrequency(),
+                current.getRandomResponseChannelFrequencies());
+        searchResultCache.resize(current.getSearchCacheMaxEntries(), current.getSearchCacheMaxKilobytes() * KIBIBYTE);
+        regexService.reconfigure(current.getRegexCacheSize(), current.getRegexBudgetMillis(),
+                current.getRegexQuotaMillis());
+        for (BotNetwork network : networkManager.getNetworks()) {
+            network.getOutboundPipeline().reconfigure(current.getOutboundPackLength(),
+                    current.getOutboundGlobalBurst(), current.getOutboundGlobalMillisPerLine(),
+                    current.getOutboundTargetBurst(), current.getOutboundTargetMillisPerLine());
+        }
+        networkManager.reconfigure(current.getNetworks(), !clusterNode.isEnabled());
+        clusterNode.setChannels(networkManager.getChannelKeys());
     }
 
     /**
-     * This function actually starts the bot.
+     * This function actually starts the bot.  Startup runs as a graph of tasks: the bot connects to IRC as soon
+     * as its commands are registered and its scrollback is open, while the database warms up alongside.  Anything
+     * that needs the database waits for it to be ready rather than holding up the connection.  What the bot
+     * remembered before it was restarted is put back before it connects.
      */
     void start() {
         /* Log initiation and current logging level */
         log.info("Starting IRCButt version " + programVersion);
         LoggingHandler.logCurrentLogLevel();
 
-        /* Add event listeners */
-        listenerManager.addListener(new ChatListener(this));
-        listenerManager.addListener(new PrivateMessageListener(this));
+        /* Connect to every network, each on a thread of its own, once the bot can answer */
+        CompletableFuture<Void> scrollback = startupSequence.add("scrollback",
+                () -> scrollbackManager.open(networkManager.getChannelKeys()));
+        CompletableFuture<Void> commands = startupSequence.add("commands", commandHandler::registerCommandClasses);
+        CompletableFuture<Void> snapshot = startupSequence.add("snapshot", () -> {
+            snapshotManager.restore();
+            snapshotManager.start();
+        });
+        CompletableFuture<Void> irc = startupSequence.add("irc", () -> networkManager.start(this), scrollback,
+                commands, snapshot);
 
-        /* Set the bot's configuration variables */
-        Configuration configuration = new BotConfigurationHandler(this).getConfiguration();
-
-        /* Create the bot with our configuration */
-        this.pircBotX = new PircBotX(configuration);
-
-        /* Start the bot */
-        try {
-            pircBotX.startBot();
-        } catch (Exception ex) {  // several exceptions can be thrown here
-            log.error("Unable to start bot.  StackTrace: ", ex);
-        }
+        /* Connect to SQL database at the same time */
+        CompletableFuture<Void> sqlConnect = startupSequence.add("sql-connect", sqlManager::connectToDatabase);
+        CompletableFuture<Void> sqlSchema = startupSequence.add("sql-schema", () -> {
+            sqlManager.createDatabaseIfNotExists();
+            sqlManager.createTablesIfNotExists();
+            sqlManager.setReady();
+        }, sqlConnect);
+        startupSequence.add("karma", karmaTable::loadLeaderboard, sqlSchema);
+        startupSequence.add("cluster", clusterNode::start, sqlSchema, irc);
+        startupSequence.add("config-watcher", configurationManager::watch);
+        startupSequence.await();
     }
 
     /**
@@ -181,11 +345,28 @@ public final class IRCbutt {
     }
 
     /**
-     * Returns the YAMLConfigurationFile object.
+     * Returns the YAMLConfigurationFile object with the settings in use, which is replaced when the config.yml is
+     * reloaded.
      * @return YAMLConfigurationFile
      */
     public YAMLConfigurationFile getYamlConfigurationFile() {
-        return this.yamlConfigurationFile;
+        return configurationManager.get();
+    }
+
+    /**
+     * Returns the StartupSequence object.
+     * @return StartupSequence
+     */
+    public StartupSequence getStartupSequence() {
+        return this.startupSequence;
+    }
+
+    /**
+     * Returns the ConfigurationManager object.
+     * @return ConfigurationManager
+     */
+    public ConfigurationManager getConfigurationManager() {
+        return this.configurationManager;
     }
 
     /**
@@ -204,14 +385,6 @@ public final class IRCbutt {
         return this.factTable;
     }
 
-    /**
-     * Returns the ListenerManager object.
-     * @return ListenerManager
-     */
-    public ListenerManager getListenerManager() {
-        return this.listenerManager;
-    }
-
     /**
      * Returns the IrcMessageReceiver object.
      * @return IrcMessageReceiver
@@ -245,11 +418,19 @@ public final class IRCbutt {
     }
 
     /**
-     * Returns the PircBotX API object.
-     * @return PircBotX
+     * Returns the RandomService object.
+     * @return RandomService
+     */
+    public RandomService getRandomService() {
+        return this.randomService;
+    }
+
+    /**
+     * Returns the TriggerScheduler object for random buttify responses.
+     * @return TriggerScheduler
      */
-    public PircBotX getPircBotX() {
-        return this.pircBotX;
+    public TriggerScheduler getRandomResponseScheduler() {
+        return this.randomResponseScheduler;
     }
 
     /**
@@ -259,4 +440,76 @@ public final class IRCbutt {
     public KarmaTable getKarmaTable() {
         return this.karmaTable;
     }
+
+    /**
+     * Returns the SearchResultCache object.
+     * @return SearchResultCache
+     */
+    public SearchResultCache getSearchResultCache() {
+        return this.searchResultCache;
+    }
+
+    /**
+     * Returns the HttpManager object.
+     * @return HttpManager
+     */
+    public HttpManager getHttpManager() {
+        return this.httpManager;
+    }
+
+    /**
+     * Returns the Scraper object.
+     * @return Scraper
+     */
+    public Scraper getScraper() {
+        return this.scraper;
+    }
+
+    /**
+     * Returns the ScrollbackManager object.
+     * @return ScrollbackManager
+     */
+    public ScrollbackManager getScrollbackManager() {
+        return this.scrollbackManager;
+    }
+
+    /**
+     * Returns the RegexService object.
+     * @return RegexService
+     */
+    public RegexService getRegexService() {
+        return this.regexService;
+    }
+
+    /**
+     * Returns the ExpressionCompiler object.
+     * @return ExpressionCompiler
+     */
+    public ExpressionCompiler getExpressionCompiler() {
+        return this.expressionCompiler;
+    }
+
+    /**
+     * Returns the NetworkManager object.
+     * @return NetworkManager
+     */
+    public NetworkManager getNetworkManager() {
+        return this.networkManager;
+    }
+
+    /**
+     * Returns the ClusterNode object.
+     * @return ClusterNode
+     */
+    public ClusterNode getClusterNode() {
+        return this.clusterNode;
+    }
+
+    /**
+     * Returns the SnapshotManager object.
+     * @return SnapshotManager
+     */
+    public SnapshotManager getSnapshotManager() {
+        return this.snapshotManager;
+    }
 }
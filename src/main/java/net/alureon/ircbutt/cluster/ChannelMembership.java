@@ -0,0 +1,26 @@
+package net.alureon.ircbutt.cluster;
+
+/**
+ * Joins and leaves channels for a cluster node, as its leases come and go.
+ */
+public interface ChannelMembership {
+
+    /**
+     * Returns whether the bot is in a channel.
+     * @param channel The channel key.
+     * @return True if the bot is in the channel.
+     */
+    boolean isJoined(String channel);
+
+    /**
+     * Joins a channel, if the bot is connected to its network.
+     * @param channel The channel key.
+     */
+    void join(String channel);
+
+    /**
+     * Leaves a channel, if the bot is in it.
+     * @param channel The channel key.
+     */
+    void part(String channel);
+}
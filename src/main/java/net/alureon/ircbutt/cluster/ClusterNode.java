@@ -0,0 +1,292 @@
+package net.alureon.ircbutt.cluster;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * One bot in a cluster of bots that share the same database and split the channels between them.  Each node holds
+ * a lease on the channels it answers in, and only joins and answers in those.  On every heartbeat the node renews
+ * its leases, gives up any beyond its fair share of the channels (so a node that has just started gets some), and
+ * takes channels nobody holds, which includes the channels of a node that has stopped heartbeating.
+ * <p>
+ * A node stops answering in a channel as soon as its lease might have run out by its own clock, a little before
+ * the store would let another node take it, so two nodes never answer in the same channel.  When the cluster is
+ * disabled the node answers everywhere and never touches the store.
+ */
+public final class ClusterNode {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * How much sooner than the lease a node stops answering, to allow for clocks running at slightly different
+     * speeds.
+     */
+    private static final long CLOCK_MARGIN_MILLIS = 1000;
+    /**
+     * Whether the bot runs as part of a cluster.
+     */
+    private final boolean enabled;
+    /**
+     * The node's id, which must be different for every node.
+     */
+    private final String nodeId;
+    /**
+     * Where the leases are kept.
+     */
+    private final LeaseStore store;
+    /**
+     * The keys of every channel the cluster shares, swapped when the config is reloaded.
+     */
+    private volatile List<String> channels;
+    /**
+     * Joins and leaves channels as leases come and go.
+     */
+    private final ChannelMembership membership;
+    /**
+     * How long a lease or heartbeat lasts without being renewed.
+     */
+    private final long leaseMillis;
+    /**
+     * How often the node heartbeats and renews its leases.
+     */
+    private final long heartbeatMillis;
+    /**
+     * The node's clock, in milliseconds.
+     */
+    private final LongSupplier clock;
+    /**
+     * Until when, by the node's clock, the node may answer in each channel it holds, by channel key.
+     */
+    private final Map<String, Long> owned = new ConcurrentHashMap<>();
+    /**
+     * The number of live nodes at the last heartbeat.
+     */
+    private volatile int liveNodes;
+    /**
+     * The number of leases taken since starting.
+     */
+    private volatile long taken;
+    /**
+     * The number of leases lost to another node, or to the store being unreachable.
+     */
+    private volatile long lost;
+    /**
+     * Runs the heartbeats, once started.
+     */
+    private ScheduledExecutorService heartbeats;
+
+    /**
+     * Creates a node.  Nothing happens until it is started.
+     * @param enabled Whether the bot runs as part of a cluster.
+     * @param nodeId The node's id, which must be different for every node.
+     * @param store Where the leases are kept.
+     * @param channels The keys of every channel the cluster shares.
+     * @param membership Joins and leaves channels as leases come and go.
+     * @param leaseMillis How long a lease or heartbeat lasts without being renewed.
+     * @param heartbeatMillis How often the node heartbeats and renews its leases.
+     */
+    public ClusterNode(final boolean enabled, final String nodeId, final LeaseStore store,
+                       final List<String> channels, final ChannelMembership membership, final long leaseMillis,
+                       final long heartbeatMillis) {
+        this(enabled, nodeId, store, channels, membership, leaseMillis, heartbeatMillis,
+                () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    /**
+     * Creates a node with its own clock, for tests.
+     * @param enabled Whether the bot runs as part of a cluster.
+     * @param nodeId The node's id, which must be different for every node.
+     * @param store Where the leases are kept.
+     * @param channels The keys of every channel the cluster shares.
+     * @param membership Joins and leaves channels as leases come and go.
+     * @param leaseMillis How long a lease or heartbeat lasts without being renewed.
+     * @param heartbeatMillis How often the node heartbeats and renews its leases.
+     * @param clock The node's clock, in milliseconds.
+     */
+    ClusterNode(final boolean enabled, final String nodeId, final LeaseStore store, final List<String> channels,
+                final ChannelMembership membership, final long leaseMillis, final long heartbeatMillis,
+                final LongSupplier clock) {
+        this.enabled = enabled;
+        this.nodeId = nodeId;
+        this.store = store;
+        this.channels = Collections.unmodifiableList(new ArrayList<>(channels));
+        this.membership = membership;
+        this.leaseMillis = leaseMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts heartbeating, if the cluster is enabled.
+     */
+    public synchronized void start() {
+        if (!enabled || heartbeats != null) {
+            return;
+        }
+        log.info("Joining the cluster as " + nodeId);
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "cluster-stop"));
+    }
+
+    /**
+     * Stops heartbeating and gives up every lease, so other nodes can take the channels straight away.
+     */
+    public synchronized void stop() {
+        if (heartbeats == null) {
+            return;
+        }
+        heartbeats.shutdownNow();
+        heartbeats = null;
+        for (String channel : new ArrayList<>(owned.keySet())) {
+            owned.remove(channel);
+            store.release(channel, nodeId);
+        }
+    }
+
+    /**
+     * Changes the channels the cluster shares, when the config is reloaded.  The node gives up and leaves any
+     * removed channels it holds straight away, and takes its share of added ones at the next heartbeat.
+     * @param newChannels The keys of every channel the cluster shares.
+     */
+    public synchronized void setChannels(final List<String> newChannels) {
+        List<String> removed = new ArrayList<>(channels);
+        removed.removeAll(newChannels);
+        channels = Collections.unmodifiableList(new ArrayList<>(newChannels));
+        for (String channel : removed) {
+            if (owned.remove(channel) != null) {
+                store.release(channel, nodeId);
+                membership.part(channel);
+            }
+        }
+    }
+
+    /**
+     * Runs one heartbeat, logging anything that goes wrong so the schedule keeps going.
+     */
+    private void heartbeat() {
+        try {
+            tick();
+        } catch (RuntimeException ex) {
+            log.error("Cluster heartbeat failed: ", ex);
+        }
+    }
+
+    /**
+     * Heartbeats, renews the node's leases, evens out the channels between the live nodes, and joins or leaves
+     * channels to match.  If the store can't be reached, the node keeps the leases it has until they run out by its
+     * own clock, rather than leaving every channel over a short outage.  The scheduler does this every heartbeat;
+     * tests call it directly.
+     */
+    synchronized void tick() {
+        List<String> all = channels;
+        long start = clock.getAsLong();
+        long validUntil = start + leaseMillis - CLOCK_MARGIN_MILLIS;
+        store.heartbeat(nodeId, leaseMillis);
+        liveNodes = Math.max(1, store.getLiveNodes().size());
+        int share = (all.size() + liveNodes - 1) / liveNodes;
+
+        for (String channel : new ArrayList<>(owned.keySet())) {
+            LeaseResult result = store.acquire(channel, nodeId, leaseMillis);
+            if (result == LeaseResult.HELD) {
+                owned.put(channel, validUntil);
+            } else if (result == LeaseResult.REFUSED) {
+                owned.remove(channel);
+                lost++;
+                log.warn("Lost the lease on " + channel);
+            } else if (owned.get(channel) <= start) {
+                owned.remove(channel);
+                lost++;
+                log.warn("Lost the lease on " + channel + ", the lease store can't be reached");
+            } else {
+                log.warn("Couldn't renew the lease on " + channel + ", answering there until it runs out");
+            }
+        }
+        List<String> held = new ArrayList<>(owned.keySet());
+        Collections.sort(held);
+        while (held.size() > share) {
+            String channel = held.remove(held.size() - 1);
+            owned.remove(channel);
+            store.release(channel, nodeId);
+            log.info("Handing " + channel + " to another node");
+        }
+        Map<String, String> owners = store.getOwners();
+        for (String channel : all) {
+            if (owned.size() >= share) {
+                break;
+            }
+            if (!owners.containsKey(channel) && !owned.containsKey(channel)
+                    && store.acquire(channel, nodeId, leaseMillis) == LeaseResult.HELD) {
+                owned.put(channel, validUntil);
+                taken++;
+                log.info("Took the lease on " + channel);
+            }
+        }
+
+        for (String channel : all) {
+            boolean owns = owns(channel);
+            boolean joined = membership.isJoined(channel);
+            if (owns && !joined) {
+                membership.join(channel);
+            } else if (!owns && joined) {
+                membership.part(channel);
+            }
+        }
+    }
+
+    /**
+     * Returns whether this node should answer in a channel.
+     * @param channel The channel key (may be null, for private messages, which only this node receives).
+     * @return True if the cluster is disabled, or the node holds a lease on the channel that hasn't run out.
+     */
+    public boolean owns(final String channel) {
+        if (!enabled || channel == null) {
+            return true;
+        }
+        Long until = owned.get(channel);
+        return until != null && until > clock.getAsLong();
+    }
+
+    /**
+     * Returns whether the bot runs as part of a cluster, which joins and leaves channels as leases come and go.
+     * @return True if the cluster is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns a short summary of the node's leases, for the stats command.
+     * @return The summary.
+     */
+    public String getStats() {
+        if (!enabled) {
+            return "cluster: off";
+        }
+        List<String> all = channels;
+        int owning = 0;
+        for (String channel : all) {
+            if (owns(channel)) {
+                owning++;
+            }
+        }
+        return "cluster: node " + nodeId + " owns " + owning + "/" + all.size() + " channels, " + liveNodes
+                + " live nodes, " + taken + " leases taken, " + lost + " lost";
+    }
+}
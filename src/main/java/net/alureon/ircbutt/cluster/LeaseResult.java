@@ -0,0 +1,19 @@
+package net.alureon.ircbutt.cluster;
+
+/**
+ * What happened when a node asked the lease store for a lease.
+ */
+public enum LeaseResult {
+    /**
+     * The node now holds the lease.
+     */
+    HELD,
+    /**
+     * Another node holds the lease.
+     */
+    REFUSED,
+    /**
+     * The store couldn't be reached, so nobody knows who holds the lease.
+     */
+    UNAVAILABLE
+}
@@ -0,0 +1,50 @@
+package net.alureon.ircbutt.cluster;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Where the nodes of a cluster keep their heartbeats and their leases on channels.  Every change must be atomic
+ * against every other node, so two nodes can never both hold a lease on the same channel.  Expiry times are kept
+ * by the store's own clock, so the nodes' clocks don't need to agree.
+ */
+public interface LeaseStore {
+
+    /**
+     * Records that a node is alive.
+     * @param node The node's id.
+     * @param ttlMillis How long the node counts as alive without another heartbeat.
+     * @return True if the heartbeat was recorded.
+     */
+    boolean heartbeat(String node, long ttlMillis);
+
+    /**
+     * Returns the nodes whose heartbeats haven't expired.
+     * @return The ids of the live nodes.
+     */
+    Set<String> getLiveNodes();
+
+    /**
+     * Takes or renews the lease on a channel.  A node gets the lease if nobody holds it, its holder's lease has
+     * expired, or the node already holds it.
+     * @param channel The channel key.
+     * @param node The node's id.
+     * @param ttlMillis How long the lease lasts without being renewed.
+     * @return HELD if the node now holds the lease, REFUSED if another node does, or UNAVAILABLE if the store
+     * couldn't be reached.
+     */
+    LeaseResult acquire(String channel, String node, long ttlMillis);
+
+    /**
+     * Gives up the lease on a channel, if the node holds it.
+     * @param channel The channel key.
+     * @param node The node's id.
+     */
+    void release(String channel, String node);
+
+    /**
+     * Returns who holds each lease that hasn't expired.
+     * @return The id of the holder of each leased channel, by channel key.
+     */
+    Map<String, String> getOwners();
+}
@@ -0,0 +1,116 @@
+package net.alureon.ircbutt.cluster;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * A lease store kept in memory, for several nodes running in one process.  It stands in for the SQL store in tests,
+ * and lets a cluster be tried out without a database.
+ */
+public final class MemoryLeaseStore implements LeaseStore {
+
+    /**
+     * When each live node's heartbeat expires, by node id.  Guarded by this.
+     */
+    private final Map<String, Long> nodes = new HashMap<>();
+    /**
+     * The lease on each channel, by channel key.  Guarded by this.
+     */
+    private final Map<String, Lease> leases = new HashMap<>();
+    /**
+     * The store's clock, in milliseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Creates an empty store that keeps time by the system clock.
+     */
+    public MemoryLeaseStore() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * Creates an empty store with its own clock.
+     * @param clock The store's clock, in milliseconds.
+     */
+    public MemoryLeaseStore(final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized boolean heartbeat(final String node, final long ttlMillis) {
+        nodes.put(node, clock.getAsLong() + ttlMillis);
+        return true;
+    }
+
+    @Override
+    public synchronized Set<String> getLiveNodes() {
+        long now = clock.getAsLong();
+        Set<String> live = new HashSet<>();
+        for (Map.Entry<String, Long> entry : nodes.entrySet()) {
+            if (entry.getValue() > now) {
+                live.add(entry.getKey());
+            }
+        }
+        return live;
+    }
+
+    @Override
+    public synchronized LeaseResult acquire(final String channel, final String node, final long ttlMillis) {
+        long now = clock.getAsLong();
+        Lease lease = leases.get(channel);
+        if (lease != null && !lease.owner.equals(node) && lease.expires > now) {
+            return LeaseResult.REFUSED;
+        }
+        leases.put(channel, new Lease(node, now + ttlMillis));
+        return LeaseResult.HELD;
+    }
+
+    @Override
+    public synchronized void release(final String channel, final String node) {
+        Lease lease = leases.get(channel);
+        if (lease != null && lease.owner.equals(node)) {
+            leases.remove(channel);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, String> getOwners() {
+        long now = clock.getAsLong();
+        Map<String, String> owners = new HashMap<>();
+        for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+            if (entry.getValue().expires > now) {
+                owners.put(entry.getKey(), entry.getValue().owner);
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * A lease on one channel.
+     */
+    private static final class Lease {
+
+        /**
+         * The id of the node holding the lease.
+         */
+        private final String owner;
+        /**
+         * When the lease expires, by the store's clock.
+         */
+        private final long expires;
+
+        /**
+         * Creates a lease.
+         * @param owner The id of the node holding the lease.
+         * @param expires When the lease expires, by the store's clock.
+         */
+        Lease(final String owner, final long expires) {
+            this.owner = owner;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package net.alureon.ircbutt.cluster;
+
+import net.alureon.ircbutt.sql.SqlManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the cluster's heartbeats and leases in the bot's SQL database, in the _nodes and _leases tables.  Each
+ * change is a single conditional statement, so the database decides which node gets a lease, and all expiry times
+ * are by the database's clock.  If the database can't be reached, nothing is renewed, so the node stops answering
+ * once its leases run out and another node can take over.
+ */
+public final class SqlLeaseStore implements LeaseStore {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * The SqlManager to get statements from.
+     */
+    private final SqlManager sqlManager;
+    /**
+     * The name of the heartbeat table.
+     */
+    private final String nodesTable;
+    /**
+     * The name of the lease table.
+     */
+    private final String leasesTable;
+
+    /**
+     * Creates a store on the bot's database.  The tables are created by the SqlManager.
+     * @param sqlManager The SqlManager to get statements from.
+     * @param tablePrefix The prefix of the bot's tables.
+     */
+    public SqlLeaseStore(final SqlManager sqlManager, final String tablePrefix) {
+        this.sqlManager = sqlManager;
+        this.nodesTable = "`" + tablePrefix + "_nodes`";
+        this.leasesTable = "`" + tablePrefix + "_leases`";
+    }
+
+    @Override
+    public boolean heartbeat(final String node, final long ttlMillis) {
+        String update = "INSERT INTO " + nodesTable + " (node, expires) VALUES (?, TIMESTAMPADD(MICROSECOND, ?, "
+                + "NOW(3))) ON DUPLICATE KEY UPDATE expires = VALUES(expires)";
+        try (PreparedStatement ps = sqlManager.getPreparedStatement(update)) {
+            if (ps != null) {
+                ps.setString(1, node);
+                ps.setLong(2, TimeUnit.MILLISECONDS.toMicros(ttlMillis));
+                ps.executeUpdate();
+                return true;
+            } else {
+                log.error("Received null PreparedStatement in SqlLeaseStore.  Unable to record cluster heartbeat.");
+            }
+        } catch (SQLException ex) {
+            log.error("Failed to record cluster heartbeat: ", ex);
+        }
+        return false;
+    }
+
+    @Override
+    public Set<String> getLiveNodes() {
+        Set<String> nodes = new HashSet<>();
+        String query = "SELECT node FROM " + nodesTable + " WHERE expires > NOW(3)";
+        try (PreparedStatement ps = sqlManager.getPreparedStatement(query)) {
+            if (ps != null) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        nodes.add(rs.getString("node"));
+                    }
+                }
+            } else {
+                log.error("Received null PreparedStatement in SqlLeaseStore.  Unable to read cluster heartbeats.");
+            }
+        } catch (SQLException ex) {
+            log.error("Failed to read cluster heartbeats: ", ex);
+        }
+        return nodes;
+    }
+
+    @Override
+    public LeaseResult acquire(final String channel, final String node, final long ttlMillis) {
+        long micros = TimeUnit.MILLISECONDS.toMicros(ttlMillis);
+        String insert = "INSERT IGNORE INTO " + leasesTable + " (channel, owner, expires) VALUES (?, ?, "
+                + "TIMESTAMPADD(MICROSECOND, ?, NOW(3)))";
+        String update = "UPDATE " + leasesTable + " SET owner = ?, expires = TIMESTAMPADD(MICROSECOND, ?, NOW(3)) "
+                + "WHERE channel = ? AND (owner = ? OR expires <= NOW(3))";
+        try (PreparedStatement ps = sqlManager.getPreparedStatement(insert)) {
+            if (ps == null) {
+                log.error("Received null PreparedStatement in SqlLeaseStore.  Unable to take the lease on "
+                        + channel);
+                return LeaseResult.UNAVAILABLE;
+            }
+            ps.setString(1, channel);
+            ps.setString(2, node);
+            ps.setLong(3, micros);
+            if (ps.executeUpdate() > 0) {
+                return LeaseResult.HELD;
+            }
+        } catch (SQLException ex) {
+            log.error("Failed to take the lease on " + channel + ": ", ex);
+            return LeaseResult.UNAVAILABLE;
+        }
+        try (PreparedStatement ps = sqlManager.getPreparedStatement(update)) {
+            if (ps == null) {
+                log.error("Received null PreparedStatement in SqlLeaseStore.  Unable to renew the lease on "
+                        + channel);
+                return LeaseResult.UNAVAILABLE;
+            }
+            ps.setString(1, node);
+            ps.setLong(2, micros);
+            ps.setString(3, channel);
+            ps.setString(4, node);
+            if (ps.executeUpdate() > 0) {
+                return LeaseResult.HELD;
+            }
+            return LeaseResult.REFUSED;
+        } catch (SQLException ex) {
+            log.error("Failed to renew the lease on " + channel + ": ", ex);
+            return LeaseResult.UNAVAILABLE;
+        }
+    }
+
+    @Override
+    public void release(final String channel, final String node) {
+        String update = "DELETE FROM " + leasesTable + " WHERE channel = ? AND owner = ?";
+        try (PreparedStatement ps = sqlManager.getPreparedStatement(update)) {
+            if (ps != null) {
+                ps.setString(1, channel);
+                ps.setString(2, node);
+                ps.executeUpdate();
+            } else {
+                log.error("Received null PreparedStatement in SqlLeaseStore.  Unable to release the lease on "
+                        + channel);
+            }
+        } catch (SQLException ex) {
+            log.error("Failed to release the lease on " + channel + ": ", ex);
+        }
+    }
+
+    @Override
+    public Map<String, String> getOwners() {
+        Map<String, String> owners = new HashMap<>();
+        String query = "SELECT channel, owner FROM " + leasesTable + " WHERE expires > NOW(3)";
+        try (PreparedStatement ps = sqlManager.getPreparedStatement(query)) {
+            if (ps != null) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        owners.put(rs.getString("channel"), rs.getString("owner"));
+                    }
+                }
+            } else {
+                log.error("Received null PreparedStatement in SqlLeaseStore.  Unable to read cluster leases.");
+                return Collections.emptyMap();
+            }
+        } catch (SQLException ex) {
+            log.error("Failed to read cluster leases: ", ex);
+            return Collections.emptyMap();
+        }
+        return owners;
+    }
+}
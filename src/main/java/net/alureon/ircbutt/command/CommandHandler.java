@@ -3,8 +3,11 @@ package net.alureon.ircbutt.command;
 import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.commands.VimSearchReplaceCommand;
 import net.alureon.ircbutt.command.commands.fact.FactCommand;
+import net.alureon.ircbutt.game.GameSession;
 import net.alureon.ircbutt.game.GuessingGame;
 import net.alureon.ircbutt.game.RegexGame;
+import net.alureon.ircbutt.regex.RegexAbortedException;
+import net.alureon.ircbutt.regex.RegexBudget;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import net.alureon.ircbutt.util.StringUtils;
@@ -15,11 +18,12 @@ import org.reflections.Reflections;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * The main CommandHandler for the program.  Any and all commands are routed here and executed.
@@ -34,15 +38,19 @@ public final class CommandHandler {
      * The logger for this class.
      */
     private static final Logger log = LogManager.getLogger();
+    /**
+     * Recognizes a Vim search and replace command, such as s/foo/bar/g.
+     */
+    private static final Pattern VIM_SEARCH_REPLACE = Pattern.compile("s/.*/.*/g?");
     /**
      * A mapping of what command maps to what class.
      */
     private HashMap<String, Command> commandMap = new HashMap<>();
     /**
-     * This holds all the extra items that will populate More.  This cannot go into the MoreCommand
-     * class because it's re-instantiated every time the command executes.
+     * This holds the extra results of each conversation that will populate More.  This cannot go into the
+     * MoreCommand class because it's re-instantiated every time the command executes.
      */
-    private final ArrayList<String> more = new ArrayList<>();
+    private final MoreStore more = new MoreStore();
 
 
     /**
@@ -87,10 +95,9 @@ public final class CommandHandler {
      */
     public BotResponse handleCommand(final GenericMessageEvent event, final String commandString) {
         /* check for vim search and replace */
-        Pattern p = Pattern.compile("s/.*/.*/g?");
-        Matcher m = p.matcher(commandString.replaceFirst("!", ""));
-        if (m.find()) {
-            return new VimSearchReplaceCommand().executeCommand(butt, event, commandString.replaceFirst("!", ""));
+        if (VIM_SEARCH_REPLACE.matcher(commandString.replaceFirst("!", "")).find()) {
+            return new VimSearchReplaceCommand(butt.getRegexService()).executeCommand(butt, event,
+                    commandString.replaceFirst("!", ""));
         }
 
         /* Split the command on whitespace */
@@ -99,25 +106,32 @@ public final class CommandHandler {
         /* remove the '!' from the command */
         cmd[0] = cmd[0].replaceFirst("!", "");
 
+        /* games are only checked in channels that have one */
+        GameSession game = butt.getGameManager().getSession(butt.getNetworkManager().getChannelKey(event));
+
         /* guessing game */
-        if (butt.getGameManager().getGameActive() && (cmd[0].equals("fs") || cmd[0].equals("ff")
+        if (game != null && (cmd[0].equals("fs") || cmd[0].equals("ff")
                 || cmd[0].equals("factfind") || cmd[0].equals("factsearch"))) {
             return new BotResponse(BotIntention.CHAT, null,
                     "FactFind disabled while game is in session!  To search facts, end game with !endgame");
         }
 
         /* regex game */
-        if (butt.getGameManager().getGameActive() && butt.getGameManager().getActiveGame() instanceof RegexGame) {
-            RegexGame regexGame = (RegexGame) butt.getGameManager().getActiveGame();
+        if (game != null && game.getGame() instanceof RegexGame) {
+            RegexGame regexGame = (RegexGame) game.getGame();
             String regex = commandString.replaceFirst("!", "");
-            Pattern p2 = Pattern.compile(regex);
-            Matcher m2 = p2.matcher(regexGame.getShouldMatch());
-            if (m2.find()) {
-                Matcher m3 = p.matcher(regexGame.getShouldNotMatch());
-                if (!m3.find()) {
-                    butt.getGameManager().setActiveGame(null);
+            game.touch();
+            try (RegexBudget budget = butt.getRegexService().begin(event.getUser().getNick())) {
+                Pattern guess = butt.getRegexService().compile(regex);
+                if (budget.find(guess, regexGame.getShouldMatch())
+                        && !budget.find(guess, regexGame.getShouldNotMatch())
+                        && butt.getGameManager().end(game)) {
                     return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "Nice job!");
                 }
+            } catch (PatternSyntaxException ex) {
+                log.debug("Regex game guess isn't a regex: " + ex.getMessage());
+            } catch (RegexAbortedException ex) {  // out of quota or too slow: not a guess, so try it as a command
+                log.debug("Regex game guess from " + event.getUser().getNick() + " not tried: " + ex.getMessage());
             }
         }
 
@@ -133,10 +147,15 @@ public final class CommandHandler {
             return command.executeCommand(butt, event, cmd);
         } else {
             // check if the command is the answer to a game in session
-            if (butt.getGameManager().getGameActive() && butt.getGameManager().getActiveGame() instanceof GuessingGame) {
-                GuessingGame game = (GuessingGame) butt.getGameManager().getActiveGame();
-                if (cmd[0].equals("~" + game.getCurrentMysteryFactName())) {
-                    return game.givePlayerPoint(event.getUser().getNick());
+            if (game != null && game.getGame() instanceof GuessingGame && cmd[0].startsWith("~")) {
+                GuessingGame guessingGame = (GuessingGame) game.getGame();
+                game.touch();
+                BotResponse response = guessingGame.guess(event.getUser().getNick(), cmd[0].substring(1));
+                if (response != null) {
+                    if (guessingGame.isOver()) {
+                        butt.getGameManager().end(game);
+                    }
+                    return response;
                 }
             }
             return new FactCommand().executeCommand(butt, event, cmd);
@@ -167,29 +186,75 @@ public final class CommandHandler {
     }
 
     /**
-     * Returns the list of more, which is a list that contains all overflow items that won't fit
-     * in a single bot message.  For example, a Google search may have more results.  The user can
-     * then execute !more to get another result.  The results are stored in this list.
-     * @return the list loaded with extra results for any command
+     * Returns the key of the conversation an event belongs to: the channel (if any) and the nick, since every
+     * user in every channel gets their own !more results.
+     * @param event The event.
+     * @return The key.
      */
-    public ArrayList<String> getMoreList() {
-        return this.more;
+    private String moreKey(final GenericMessageEvent event) {
+        String channel = butt.getNetworkManager().getChannelKey(event);
+        if (channel == null) {
+            channel = "";
+        }
+        return channel + ' ' + event.getUser().getNick().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds the " [+N more]" hint to a line, if there are more results after it.
+     * @param line The line.
+     * @param remaining The number of results after it.
+     * @return The line with the hint.
+     */
+    private static String withMoreHint(final String line, final int remaining) {
+        if (remaining > 0) {
+            return line + " [+" + remaining + " more]";
+        }
+        return line;
     }
 
     /**
-     * Adds a String object to the More list.
-     * @param moreItem The string to add to the More list.
+     * Replaces the user's !more results with the rest of a command's results.  Only the lines the user asks for
+     * are taken from the cursor.
+     * @param event The event the command came from.
+     * @param first The first result, which the command is about to send.
+     * @param rest The rest of the results.
+     * @return The first result, with a hint of how many more there are.
      */
-    public void addMore(final String moreItem) {
-        this.more.add(moreItem);
+    public String setMore(final GenericMessageEvent event, final String first, final MoreCursor rest) {
+        String key = moreKey(event);
+        more.put(key, rest, System.currentTimeMillis());
+        return withMoreHint(first, more.remaining(key));
     }
 
     /**
-     * Clear the more list.  This is important to do before populating More, otherwise you will
-     * have elements from a different query in your list.
+     * Clear the user's !more results.  This is important to do when a command finds nothing, otherwise !more
+     * would keep giving results of an earlier query.
+     * @param event The event the command came from.
      */
-    public void clearMore() {
-        this.more.clear();
+    public void clearMore(final GenericMessageEvent event) {
+        more.put(moreKey(event), null, System.currentTimeMillis());
+    }
+
+    /**
+     * Takes the next of the user's !more results.
+     * @param event The event the !more came from.
+     * @return The result, with a hint of how many more there are, or null if there aren't any.
+     */
+    public String nextMore(final GenericMessageEvent event) {
+        String key = moreKey(event);
+        String line = more.next(key, System.currentTimeMillis());
+        if (line == null) {
+            return null;
+        }
+        return withMoreHint(line, more.remaining(key));
+    }
+
+    /**
+     * Returns the MoreStore object.
+     * @return MoreStore
+     */
+    public MoreStore getMoreStore() {
+        return this.more;
     }
 
 }
@@ -0,0 +1,66 @@
+package net.alureon.ircbutt.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A MoreCursor over a list of results that have already been found, which formats each result as it is asked for.
+ * @param <T> The type of the results.
+ */
+public final class ListCursor<T> implements MoreCursor {
+
+    /**
+     * The results.
+     */
+    private final List<T> items;
+    /**
+     * Turns a result into a line of chat.
+     */
+    private final Function<? super T, String> format;
+    /**
+     * The index of the next result.
+     */
+    private int position;
+
+    /**
+     * Creates a cursor over some results.
+     * @param items The results, in the order they should be shown.
+     * @param format Turns a result into a line of chat.
+     */
+    public ListCursor(final List<T> items, final Function<? super T, String> format) {
+        this.items = items;
+        this.format = format;
+    }
+
+    /**
+     * Creates a cursor over some lines that are already formatted.
+     * @param lines The lines, in the order they should be shown.
+     * @return The cursor.
+     */
+    public static ListCursor<String> of(final List<String> lines) {
+        return new ListCursor<>(lines, Function.identity());
+    }
+
+    @Override
+    public String next() {
+        if (position >= items.size()) {
+            return null;
+        }
+        return format.apply(items.get(position++));
+    }
+
+    @Override
+    public int remaining() {
+        return items.size() - position;
+    }
+
+    @Override
+    public List<String> getBufferedLines(final int limit) {
+        List<String> lines = new ArrayList<>();
+        for (int i = position; i < items.size() && lines.size() < limit; i++) {
+            lines.add(format.apply(items.get(i)));
+        }
+        return lines;
+    }
+}
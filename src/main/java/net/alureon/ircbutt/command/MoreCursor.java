@@ -0,0 +1,31 @@
+package net.alureon.ircbutt.command;
+
+import java.util.List;
+
+/**
+ * The rest of a command's results, waiting for someone to ask for them with !more.  A cursor only has to produce
+ * a line when it is asked for one, so results can be formatted (or fetched) a page at a time.
+ */
+public interface MoreCursor {
+
+    /**
+     * Returns the next line of results.
+     * @return The line, or null if there are no more.
+     */
+    String next();
+
+    /**
+     * Returns how many lines are left, for the "[+N more]" shown after each line.
+     * @return The number of lines left.
+     */
+    int remaining();
+
+    /**
+     * Returns the next lines without giving them out, as far as they can be had without fetching anything, for the
+     * snapshot.
+     * @param limit The most lines to return.
+     * @return The lines, which may be fewer than are left, or none.
+     */
+    List<String> getBufferedLines(int limit);
+
+}
@@ -0,0 +1,252 @@
+package net.alureon.ircbutt.command;
+
+import net.alureon.ircbutt.snapshot.SnapshotReader;
+import net.alureon.ircbutt.snapshot.SnapshotWriter;
+import net.alureon.ircbutt.snapshot.Snapshottable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the !more results of each conversation, keyed by channel and nick, so users searching at the same time
+ * don't get each other's results.  Only a bounded number of conversations are kept, the least recently used being
+ * dropped first, and a conversation nobody has asked for more of in a while is dropped too.  Each conversation
+ * gives out at most a fixed number of lines, however many its cursor could produce.
+ * <p>
+ * The conversations are kept over a restart by the snapshot, which writes out the lines each one already has in
+ * memory.  Results still waiting in the database aren't fetched for it, so a search kept over a restart only has
+ * the rest of the page it was on.
+ */
+public final class MoreStore implements Snapshottable {
+
+    /**
+     * The most conversations to keep.
+     */
+    static final int MAX_CONVERSATIONS = 256;
+    /**
+     * The most lines a conversation will give out.
+     */
+    static final int MAX_LINES = 50;
+    /**
+     * How long a conversation is kept after its results were last touched, in milliseconds.
+     */
+    static final long IDLE_MILLIS = 30 * 60 * 1000L;
+    /**
+     * How often idle conversations are swept, in milliseconds.
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 60 * 1000L;
+    /**
+     * The initial capacity of the backing map.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * The load factor of the backing map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * The conversations, in least-recently-used order.
+     */
+    private final LinkedHashMap<String, Conversation> conversations = new LinkedHashMap<>(INITIAL_CAPACITY,
+            LOAD_FACTOR, true);
+    /**
+     * When idle conversations were last swept.
+     */
+    private long lastSweep;
+
+    /**
+     * Replaces a conversation's results.
+     * @param key The conversation.
+     * @param cursor The rest of the results, or null to clear them.
+     * @param now The current time in epoch millis.
+     */
+    public synchronized void put(final String key, final MoreCursor cursor, final long now) {
+        sweep(now);
+        if (cursor == null || cursor.remaining() <= 0) {
+            conversations.remove(key);
+            return;
+        }
+        conversations.put(key, new Conversation(cursor, now));
+        trim();
+    }
+
+    /**
+     * Drops the least recently used conversations until there are no more than MAX_CONVERSATIONS.
+     */
+    private void trim() {
+        Iterator<Conversation> iterator = conversations.values().iterator();
+        while (conversations.size() > MAX_CONVERSATIONS && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the next line of a conversation's results.  The conversation is taken out of the store while its
+     * cursor makes the line, which may mean fetching a page from the database, so other conversations don't wait
+     * on it.  It is put back afterwards, unless new results have replaced it in the meantime.
+     * @param key The conversation.
+     * @param now The current time in epoch millis.
+     * @return The line, or null if there are no more.
+     */
+    public String next(final String key, final long now) {
+        Conversation conversation;
+        synchronized (this) {
+            sweep(now);
+            conversation = conversations.remove(key);
+            if (conversation == null || !conversation.take(now)) {
+                return null;
+            }
+        }
+        String line = conversation.cursor.next();
+        synchronized (this) {
+            if (line != null && conversation.remaining() > 0 && !conversations.containsKey(key)) {
+                conversations.put(key, conversation);
+                trim();
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Returns how many lines of a conversation's results are left.
+     * @param key The conversation.
+     * @return The number of lines left.
+     */
+    public synchronized int remaining(final String key) {
+        Conversation conversation = conversations.get(key);
+        if (conversation == null) {
+            return 0;
+        }
+        return conversation.remaining();
+    }
+
+    /**
+     * Returns the number of conversations with results waiting.
+     * @return The number of conversations.
+     */
+    public synchronized int size() {
+        return conversations.size();
+    }
+
+    @Override
+    public synchronized void writeSnapshot(final SnapshotWriter out) throws IOException {
+        Map<String, List<String>> saved = new LinkedHashMap<>();
+        for (Map.Entry<String, Conversation> entry : conversations.entrySet()) {
+            List<String> lines = entry.getValue().getBufferedLines();
+            if (!lines.isEmpty()) {
+                saved.put(entry.getKey(), lines);
+            }
+        }
+        out.writeInt(saved.size());
+        for (Map.Entry<String, Conversation> entry : conversations.entrySet()) {
+            List<String> lines = saved.get(entry.getKey());
+            if (lines == null) {
+                continue;
+            }
+            Conversation conversation = entry.getValue();
+            out.writeString(entry.getKey());
+            out.writeLong(conversation.lastUsed);
+            out.writeInt(conversation.served);
+            out.writeInt(lines.size());
+            for (String line : lines) {
+                out.writeString(line);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void readSnapshot(final SnapshotReader in, final long savedAt) {
+        long now = System.currentTimeMillis();
+        int count = in.readCount();
+        for (int i = 0; i < count; i++) {
+            String key = in.readString();
+            long lastUsed = in.readLong();
+            int served = in.readInt();
+            int lineCount = in.readCount();
+            List<String> lines = new ArrayList<>(lineCount);
+            for (int j = 0; j < lineCount; j++) {
+                lines.add(in.readString());
+            }
+            if (now - lastUsed < IDLE_MILLIS && !lines.isEmpty()) {
+                Conversation conversation = new Conversation(ListCursor.of(lines), lastUsed);
+                conversation.served = served;
+                conversations.put(key, conversation);
+            }
+        }
+    }
+
+    /**
+     * Drops every conversation that has gone idle, at most once per sweep interval.
+     * @param now The current time in epoch millis.
+     */
+    private void sweep(final long now) {
+        if (now - lastSweep < SWEEP_INTERVAL_MILLIS) {
+            return;
+        }
+        lastSweep = now;
+        conversations.values().removeIf(conversation -> now - conversation.lastUsed >= IDLE_MILLIS);
+    }
+
+    /**
+     * The results waiting in one conversation.
+     */
+    private static final class Conversation {
+
+        /**
+         * The rest of the results.
+         */
+        private final MoreCursor cursor;
+        /**
+         * The number of lines given out so far.
+         */
+        private int served;
+        /**
+         * When the results were last touched, in epoch millis.
+         */
+        private long lastUsed;
+
+        /**
+         * Creates a conversation.
+         * @param cursor The rest of the results.
+         * @param now The current time in epoch millis.
+         */
+        Conversation(final MoreCursor cursor, final long now) {
+            this.cursor = cursor;
+            this.lastUsed = now;
+        }
+
+        /**
+         * Counts a line as given out, before the cursor is asked for it.
+         * @param now The current time in epoch millis.
+         * @return True if the conversation may give out another line.
+         */
+        boolean take(final long now) {
+            lastUsed = now;
+            if (served >= MAX_LINES) {
+                return false;
+            }
+            served++;
+            return true;
+        }
+
+        /**
+         * Returns how many lines are left, counting no further than the most lines a conversation gives out.
+         * @return The number of lines left.
+         */
+        int remaining() {
+            return Math.min(cursor.remaining(), MAX_LINES - served);
+        }
+
+        /**
+         * Returns the lines left that the cursor already has in memory, without taking them from it.
+         * @return The lines.
+         */
+        List<String> getBufferedLines() {
+            return cursor.getBufferedLines(remaining());
+        }
+    }
+}
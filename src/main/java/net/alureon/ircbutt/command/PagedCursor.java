@@ -0,0 +1,82 @@
+package net.alureon.ircbutt.command;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A MoreCursor over results that are still in the database.  Only the keys of the results (such as their ids) are
+ * held; the results themselves are fetched and formatted a page at a time, when someone asks for a line the last
+ * page didn't have.  A result deleted in the meantime is just skipped.
+ * @param <K> The type of the keys.
+ */
+public final class PagedCursor<K> implements MoreCursor {
+
+    /**
+     * The keys of every result, in the order they should be shown.
+     */
+    private final List<K> keys;
+    /**
+     * The number of results to fetch at a time.
+     */
+    private final int pageSize;
+    /**
+     * Fetches a page of results by their keys, returning them as lines of chat in the same order.
+     */
+    private final Function<List<K>, List<String>> fetch;
+    /**
+     * The lines of the current page not yet given out.
+     */
+    private final Deque<String> page = new ArrayDeque<>();
+    /**
+     * The index of the first key not yet fetched.
+     */
+    private int position;
+
+    /**
+     * Creates a cursor.  Nothing is fetched until the first line is asked for.
+     * @param keys The keys of every result, in the order they should be shown.
+     * @param pageSize The number of results to fetch at a time.
+     * @param fetch Fetches a page of results by their keys, returning them as lines of chat in the same order.
+     */
+    public PagedCursor(final List<K> keys, final int pageSize, final Function<List<K>, List<String>> fetch) {
+        this.keys = new ArrayList<>(keys);
+        this.pageSize = Math.max(1, pageSize);
+        this.fetch = fetch;
+    }
+
+    @Override
+    public String next() {
+        while (page.isEmpty() && position < keys.size()) {
+            List<K> batch = keys.subList(position, Math.min(position + pageSize, keys.size()));
+            position += batch.size();
+            page.addAll(fetch.apply(batch));
+        }
+        return page.poll();
+    }
+
+    @Override
+    public int remaining() {
+        return page.size() + keys.size() - position;
+    }
+
+    /**
+     * Returns the lines of the current page not yet given out.  Results that haven't been fetched are left in the
+     * database.
+     * @param limit The most lines to return.
+     * @return The lines.
+     */
+    @Override
+    public List<String> getBufferedLines(final int limit) {
+        List<String> lines = new ArrayList<>();
+        for (String line : page) {
+            if (lines.size() >= limit) {
+                break;
+            }
+            lines.add(line);
+        }
+        return lines;
+    }
+}
@@ -2,21 +2,25 @@ package net.alureon.ircbutt.command.commands;
 
 import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.http.CircuitOpenException;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
+import net.alureon.ircbutt.search.Scraper;
+import net.alureon.ircbutt.search.ScraperSource;
+import net.alureon.ircbutt.search.SearchResult;
 import net.alureon.ircbutt.util.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -28,59 +32,109 @@ public final class AmazonSearchCommand implements Command {
      * The logger for the class.
      */
     private static final Logger log = LogManager.getLogger();
+    /**
+     * The URL used to search Amazon.
+     */
+    private static final String AMAZON =
+            "http://www.amazon.com/s/ref=nb_sb_noss_2?url=search-alias%3Daps&field-keywords=";
+    /**
+     * The user agent to use when searching Amazon.
+     */
+    private static final String USER_AGENT = "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) "
+            + "Chrome/58.0.3029.110 Safari/537.36";
+    /**
+     * The name this command's results are cached under.
+     */
+    private static final String CACHE_SOURCE = "a";
+    /**
+     * How long Amazon results stay in the search cache.
+     */
+    private static final long CACHE_TTL_MINUTES = 60;
+    /**
+     * The most products to keep from a search.
+     */
+    private static final int MAX_RESULTS = 10;
+    /**
+     * The most of a results page to download, in kibibytes.
+     */
+    private static final int MAX_BODY_KILOBYTES = 1024;
+    /**
+     * The element holding a product's ID, inside a result card.
+     */
+    private static final Evaluator PRODUCT_ID = ScraperSource.compile("[data-asin]");
+    /**
+     * The product's title, inside a result card.
+     */
+    private static final Evaluator PRODUCT_TITLE = ScraperSource.compile(".s-access-title");
+    /**
+     * Where the products are on a page of Amazon results.
+     */
+    private static final ScraperSource SOURCE = new ScraperSource(CACHE_SOURCE, USER_AGENT, ".s-result-item",
+            MAX_RESULTS, MAX_BODY_KILOBYTES, AmazonSearchCommand::extractProduct);
 
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        butt.getCommandHandler().clearMore();
-        BotResponse response = new BotResponse(BotIntention.CHAT, null,
-                butt.getYamlConfigurationFile().getBotNickName() + " found nothing bout that");
-
-        try {
-            String amazon = "http://www.amazon.com/s/ref=nb_sb_noss_2?url=search-alias%3Daps&field-keywords=";
-            String search = StringUtils.getArgs(cmd);
-            Connection.Response cResponse = Jsoup.connect(amazon + URLEncoder.encode(search, "UTF-8"))
-                    .userAgent("Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) "
-                            + "Chrome/58.0.3029.110 Safari/537.36")
-                    .referrer("http://www.google.com")
-                    .followRedirects(true)
-                    .execute();
-            Document doc = cResponse.parse();
-            Elements items = doc.getElementsByClass("s-result-item");
-            int results = items.size();
-            boolean first = true;
-            for (int i = 0; i < items.size(); i++) {
-                try {
-                    Elements ids = items.get(i).getElementsByAttribute("data-asin");
-                    if (ids.size() == 0) {
-                        continue;
-                    }
-                    String url = "http://amazon.com/dp/" + ids.get(0).attr("data-asin");
-                    Elements title = items.get(i).getElementsByClass("s-access-title");
-                    String titleString = title.get(0).text();
-                    //log.info(title + " " + url);
-                    if (title.size() > 0) {
-                        if (first) {
-                            response = new BotResponse(BotIntention.CHAT, null, titleString.replace("[Sponsored]", "")
-                                    + " [+" + results + " more]", url);
-                            first = false;
-                        } else {
-                            butt.getCommandHandler().addMore(titleString.replace("[Sponsored]", "") + " " + url);
-                        }
-                    } else {
-                        return new BotResponse(BotIntention.CHAT, null,
-                                butt.getYamlConfigurationFile().getBotNickName() + " didn't find nothin");
-                    }
-                } catch (IndexOutOfBoundsException ex) {
-                    log.warn("Index was out of bounds in AmazonSearchCommand.  Skipping...");
+        String search = StringUtils.getArgs(cmd);
+        SearchResult result = butt.getSearchResultCache().get(CACHE_SOURCE, search);
+        if (result == null) {
+            try {
+                result = search(butt.getScraper(), search);
+                if (!result.isEmpty()) {
+                    butt.getSearchResultCache().put(CACHE_SOURCE, search, result, CACHE_TTL_MINUTES,
+                            TimeUnit.MINUTES);
                 }
+            } catch (CircuitOpenException ex) {
+                butt.getCommandHandler().clearMore(event);
+                return new BotResponse(BotIntention.CHAT, null, ex.getMessage());
+            } catch (IOException e) {
+                log.error("Found no result");
             }
-        } catch (IOException e) {
-            log.error("Found no result");
         }
-        return response;
+        if (result == null || result.isEmpty()) {
+            butt.getCommandHandler().clearMore(event);
+            return new BotResponse(BotIntention.CHAT, null,
+                    butt.getYamlConfigurationFile().getBotNickName() + " found nothing bout that");
+        }
+        SearchResult.Item first = result.getFirst();
+        return new BotResponse(BotIntention.CHAT, null,
+                butt.getCommandHandler().setMore(event, first.getText(), result.moreCursor()), first.getUrl());
+    }
+
+    /**
+     * Searches Amazon and returns the products on the first page of results.
+     * @param scraper The Scraper to fetch the results with.
+     * @param search The query to search for.
+     * @return The ranked results of the search (may be empty).
+     * @throws IOException If Amazon couldn't be reached.
+     */
+    public static SearchResult search(final Scraper scraper, final String search) throws IOException {
+        return scraper.scrape(SOURCE, AMAZON + URLEncoder.encode(search, "UTF-8"), null);
     }
 
+    /**
+     * Pulls the products out of a page of Amazon results.
+     * @param doc The page of results.
+     * @return The ranked results (may be empty).
+     */
+    public static SearchResult parse(final Document doc) {
+        return Scraper.extract(SOURCE, doc, null);
+    }
+
+    /**
+     * Turns a search result card into a search result.
+     * @param card The card.
+     * @return The result, or null if the card isn't a product (such as related searches).
+     */
+    private static SearchResult.Item extractProduct(final Element card) {
+        Element id = ScraperSource.first(card, PRODUCT_ID);
+        Element title = ScraperSource.first(card, PRODUCT_TITLE);
+        if (id == null || title == null) {
+            return null;
+        }
+        return new SearchResult.Item(title.text().replace("[Sponsored]", ""),
+                "http://amazon.com/dp/" + id.attr("data-asin"));
+    }
 
     @Override
     public ArrayList<String> getCommandAliases() {
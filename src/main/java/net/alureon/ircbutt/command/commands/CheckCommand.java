@@ -4,8 +4,8 @@ import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
-import net.alureon.ircbutt.util.MathUtils;
 import net.alureon.ircbutt.util.StringUtils;
+import net.alureon.ircbutt.util.Weights;
 import org.pircbotx.Colors;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
@@ -18,29 +18,28 @@ import java.util.Collections;
 public final class CheckCommand implements Command {
 
     /**
-     * The number to get a random from.  This will return 0 - this number.
-     * If the result is anything above CHECK_MATH_FAIL, the result is PASS.
+     * The index of PANIC in CHECK_WEIGHTS.
      */
-    private static final int CHECK_MATH_MAX = 101;
+    private static final int CHECK_PANIC = 0;
     /**
-     * If the random number is LESS than this number, the result is FAIL.
+     * The index of FAIL in CHECK_WEIGHTS.
      */
-    private static final int CHECK_MATH_FAIL = 52;
+    private static final int CHECK_FAIL = 1;
     /**
-     * If the random number is LESS than this number, the result is PANIC.
+     * How often something panics, fails, or passes, out of 102.
      */
-    private static final int CHECK_MATH_PANIC = 2;
+    private static final Weights CHECK_WEIGHTS = Weights.of(2, 50, 50);
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
          StringBuilder sb = new StringBuilder("Testing ");
         sb.append(StringUtils.getArgs(cmd)).append(": ");
 
-        int random = MathUtils.getRandom(0, CHECK_MATH_MAX);
+        int outcome = butt.getRandomService().choose(CHECK_WEIGHTS);
         String result;
-        if (random < CHECK_MATH_PANIC) {
+        if (outcome == CHECK_PANIC) {
             result = Colors.WHITE + "[" + Colors.YELLOW + "PANIC" + Colors.WHITE + "]";
-        } else if (random < CHECK_MATH_FAIL) {
+        } else if (outcome == CHECK_FAIL) {
             result = Colors.WHITE + "[" + Colors.RED + "FAIL" + Colors.WHITE + "]";
         } else {
             result = Colors.WHITE + "[" + Colors.GREEN + "PASS" + Colors.WHITE + "]";
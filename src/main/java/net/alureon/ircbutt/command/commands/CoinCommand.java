@@ -4,7 +4,7 @@ import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
-import net.alureon.ircbutt.util.MathUtils;
+import net.alureon.ircbutt.util.Weights;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.util.ArrayList;
@@ -16,32 +16,18 @@ import java.util.Collections;
 public final class CoinCommand implements Command {
 
     /**
-     * The maximum number to use in random number generation.  Any number
-     * higher than the number defined for COIN_MATH_HEADS will be tails.
+     * The ways the coin can land.  How it lands on "penis", we're not quite sure.  Maybe it landed on its side
+     * or something.
      */
-    private static final int COIN_MATH_MAX = 102;
+    private static final String[] COIN_RESULTS = {"penis", "heads", "tails"};
     /**
-     * Any number between COIN_MATH_HEADS (this number) and COIN_MATH_PENIS
-     * will result in the coin flip being heads.
+     * How often the coin lands each way, out of 103.
      */
-    private static final int COIN_MATH_HEADS = 52;
-    /**
-     * Any number LESS THAN this will result in the coin landing on "penis".
-     * How, we're not quite sure.  Maybe it landed on its side or something.
-     */
-    private static final int COIN_MATH_PENIS = 2;
+    private static final Weights COIN_WEIGHTS = Weights.of(2, 50, 51);
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        int random = MathUtils.getRandom(0, COIN_MATH_MAX);
-        String result;
-        if (random < COIN_MATH_PENIS) {
-            result = "penis";
-        } else if (random < COIN_MATH_HEADS) {
-            result = "heads";
-        } else {
-            result = "tails";
-        }
+        String result = COIN_RESULTS[butt.getRandomService().choose(COIN_WEIGHTS)];
         return new BotResponse(BotIntention.CHAT, null, result);
     }
 
@@ -1,20 +1,22 @@
 package net.alureon.ircbutt.command.commands;
 
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.http.CircuitOpenException;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.search.Scraper;
+import net.alureon.ircbutt.search.ScraperSource;
+import net.alureon.ircbutt.search.SearchResult;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class retrieves definitions of words from MerriamWebster.com.
@@ -26,36 +28,85 @@ public final class DefineCommand implements Command {
      * The logger for the class.
      */
     private static final Logger log = LogManager.getLogger(DefineCommand.class);
+    /**
+     * The user agent to use when querying Merriam-Webster.
+     */
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 6.1; Win64; x64; rv:25.0) Gecko/20100101 Firefox/25.0";
+    /**
+     * The name this command's results are cached under.
+     */
+    private static final String CACHE_SOURCE = "define";
+    /**
+     * How long definitions stay in the search cache.  Dictionaries don't change much.
+     */
+    private static final long CACHE_TTL_HOURS = 24;
+    /**
+     * The most definitions to keep.
+     */
+    private static final int MAX_RESULTS = 10;
+    /**
+     * The most of a page to download, in kibibytes.
+     */
+    private static final int MAX_BODY_KILOBYTES = 512;
+    /**
+     * Where the definitions are on a Merriam-Webster page.
+     */
+    private static final ScraperSource SOURCE = new ScraperSource(CACHE_SOURCE, USER_AGENT, ".definition-inner-item",
+            MAX_RESULTS, MAX_BODY_KILOBYTES,
+            definition -> new SearchResult.Item(definition.text().replaceAll("\\s\\s", " "), null));
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        butt.getCommandHandler().clearMore();
-        BotResponse response = new BotResponse(BotIntention.CHAT, null, "this should never happen");
-        String userAgent = "Mozilla/5.0 (Windows NT 6.1; Win64; x64; rv:25.0) Gecko/20100101 Firefox/25.0";
-        try {
-            String link = "http://www.merriam-webster.com/dictionary/" + cmd[1];
-            Document doc = Jsoup.connect(link).userAgent(userAgent).get();
-            Elements definitions = doc.getElementsByClass("definition-inner-item");
-            int size = definitions.size();
-            if (size > 0) {
-                for (int i = 0; i < size; i++) {
-                    Element definition = definitions.get(i);
-                    String text = definition.text().replaceAll("\\s\\s", " ");
-                    if (i == 0) {
-                        response = new BotResponse(BotIntention.CHAT, null, text);
-                    } else {
-                        butt.getCommandHandler().addMore(text);
-                    }
+        if (cmd.length < 2) {
+            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "!define <word>");
+        }
+        String word = cmd[1];
+        SearchResult result = butt.getSearchResultCache().get(CACHE_SOURCE, word);
+        if (result == null) {
+            try {
+                result = search(butt.getScraper(), word);
+                if (!result.isEmpty()) {
+                    butt.getSearchResultCache().put(CACHE_SOURCE, word, result, CACHE_TTL_HOURS, TimeUnit.HOURS);
                 }
-                butt.getCommandHandler().addMore(link);
-            } else {
-                response = new BotResponse(BotIntention.CHAT, null,
-                        butt.getYamlConfigurationFile().getBotNickName() + " didnt find nothin for that");
+            } catch (CircuitOpenException ex) {
+                butt.getCommandHandler().clearMore(event);
+                return new BotResponse(BotIntention.CHAT, null, ex.getMessage());
+            } catch (IOException ex) {
+                log.error("DefineCommand Exception: " + ex.getMessage());
+                butt.getCommandHandler().clearMore(event);
+                return new BotResponse(BotIntention.CHAT, null, "this should never happen");
             }
-        } catch (IOException | NullPointerException ex) {
-            log.error("DefineCommand Exception: " + ex.getMessage());
         }
-        return response;
+        if (result.isEmpty()) {
+            butt.getCommandHandler().clearMore(event);
+            return new BotResponse(BotIntention.CHAT, null,
+                    butt.getYamlConfigurationFile().getBotNickName() + " didnt find nothin for that");
+        }
+        butt.getCommandHandler().setMore(event, result.getFirst().getText(), result.moreCursor());
+        return new BotResponse(BotIntention.CHAT, null, result.getFirst().getText());
+    }
+
+    /**
+     * Looks up the definitions of a word on Merriam-Webster.
+     * @param scraper The Scraper to fetch the definitions with.
+     * @param word The word to define.
+     * @return The definitions, with a link to the page.
+     * @throws IOException If Merriam-Webster couldn't be reached.
+     */
+    public static SearchResult search(final Scraper scraper, final String word) throws IOException {
+        String link = "http://www.merriam-webster.com/dictionary/" + word;
+        return scraper.scrape(SOURCE, link, link);
+    }
+
+    /**
+     * Pulls the definitions out of a Merriam-Webster page.
+     * @param doc The page.
+     * @param link The link to the page, shown after the definitions.
+     * @return The definitions.
+     */
+    public static SearchResult parse(final Document doc, final String link) {
+        return Scraper.extract(SOURCE, doc, link);
     }
 
     @Override
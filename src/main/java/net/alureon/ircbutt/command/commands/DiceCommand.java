@@ -5,7 +5,7 @@ import net.alureon.ircbutt.command.Command;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import net.alureon.ircbutt.IRCbutt;
-import net.alureon.ircbutt.util.MathUtils;
+import net.alureon.ircbutt.util.Weights;
 import org.pircbotx.Channel;
 import org.pircbotx.Colors;
 import org.pircbotx.User;
@@ -14,7 +14,6 @@ import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Random;
 
 /**
  * DiceCommand holds the functionality for the !dice command, which rolls a fictitious die
@@ -24,16 +23,13 @@ import java.util.Random;
 public final class DiceCommand implements Command {
 
     /**
-     * The !dice command uses Random() to roll the dice.  This is the number that
-     * is passed to new Random().  This will yield values from 1 - 100 (if I remember
-     * how Random() generates random numbers anyway)
+     * The index of "YOU LOSE" in DICE_WEIGHTS.
      */
-    private static final int DICE_MATH_MAX = 101;
+    private static final int DICE_LOSE = 0;
     /**
-     * If the rolled number is LESS than this number, the user will "lose" the dice roll.
-     * This is set to 50 to provide a completely fair roll.
+     * How often the die reads "YOU LOSE" and "YOU WIN", out of 102.
      */
-    private static final int DICE_MATH_MID = 50;
+    private static final Weights DICE_WEIGHTS = Weights.of(50, 52);
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
@@ -42,8 +38,7 @@ public final class DiceCommand implements Command {
             ImmutableSortedSet<User> users = channel.getUsers();
             String victimName = "";
             int totalUsers = users.size();
-            Random random = new Random();
-            int victimIndex = random.nextInt(totalUsers);
+            int victimIndex = butt.getRandomService().nextInt(totalUsers);
             int i = 0;
             for (User u : users) {
                 if (i < victimIndex) {
@@ -55,7 +50,7 @@ public final class DiceCommand implements Command {
             }
 
             String message;
-            if (MathUtils.getRandom(0, DICE_MATH_MAX) < DICE_MATH_MID) {
+            if (butt.getRandomService().choose(DICE_WEIGHTS) == DICE_LOSE) {
                 message = Colors.WHITE + "rolls a huge " + totalUsers + " sided die and it flattens "
                         + Colors.YELLOW + victimName + Colors.WHITE + " before coming to a halt on "
                         + Colors.RED + "YOU LOSE" + Colors.NORMAL;
@@ -2,11 +2,11 @@ package net.alureon.ircbutt.command.commands;
 
 import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.math.ExpressionCompiler;
+import net.alureon.ircbutt.math.ExpressionException;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import net.alureon.ircbutt.util.StringUtils;
-import net.sourceforge.jeval.EvaluationException;
-import net.sourceforge.jeval.Evaluator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.pircbotx.hooks.types.GenericMessageEvent;
@@ -15,7 +15,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 
 /**
- * Contains the methods necessary to work with JEval.
+ * Evaluates a math expression, optionally followed by values for its variables, as in "x^2 + y; x=3; y=1".
  */
 public final class EvalCommand implements Command {
 
@@ -23,38 +23,44 @@ public final class EvalCommand implements Command {
      * The logger for this class.
      */
     private static final Logger log = LogManager.getLogger();
-
-    /**
-     * Replaces any instance of the letter 'e' with the value of Math.E.
-     * @param x The string to perform replacement in.
-     * @return The string with 'e' replaced.
-     */
-    private static String replaceE(final String x) {
-        return x.replaceAll("e", String.valueOf(Math.E));
-    }
-
     /**
-     * Returns all occurrences of the word 'pi' or 'π' with the value of pi.
-     * @param x The string to perform replacement in.
-     * @return The string with pi replaced with the constant.
+     * Separates the expression from the variable assignments.
      */
-    private static String replacePi(final String x) {
-        return x.replaceAll("pi", String.valueOf(Math.PI)).replaceAll("π", String.valueOf(Math.PI));
-    }
+    private static final String ASSIGNMENT_SEPARATOR = ";";
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        BotResponse response;
-        Evaluator evaluator = new Evaluator();
-        String x = replacePi(StringUtils.getArgs(cmd));
-        String y = replaceE(x);
+        String args = StringUtils.getArgs(cmd);
         try {
-            response = new BotResponse(BotIntention.CHAT, null, evaluator.evaluate(y));
-        } catch (EvaluationException e) {
-            response = new BotResponse(BotIntention.CHAT, null, "error evaluating expression: " + e.getMessage());
-            log.warn("Error evaluating expression '" + y + "' -> ", e.getMessage());
+            return new BotResponse(BotIntention.CHAT, null, String.valueOf(evaluate(butt.getExpressionCompiler(),
+                    args)));
+        } catch (ExpressionException e) {
+            log.warn("Error evaluating expression '" + args + "' -> " + e.getMessage());
+            return new BotResponse(BotIntention.CHAT, null, "error evaluating expression: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Evaluates an expression and its variable assignments.
+     * @param compiler The compiler to compile the expression with.
+     * @param input The expression, followed by any number of "; name=value" assignments.  Each value may itself
+     *              be an expression, without variables.
+     * @return The result.
+     * @throws ExpressionException If the expression or an assignment is bad.
+     */
+    static double evaluate(final ExpressionCompiler compiler, final String input) {
+        String[] parts = input.split(ASSIGNMENT_SEPARATOR);
+        String[] names = new String[parts.length - 1];
+        double[] values = new double[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) {
+            int equals = parts[i].indexOf('=');
+            if (equals < 0) {
+                throw new ExpressionException("expected name=value but got '" + parts[i].trim() + "'");
+            }
+            names[i - 1] = parts[i].substring(0, equals).trim();
+            values[i - 1] = compiler.evaluate(parts[i].substring(equals + 1).trim());
         }
-        return response;
+        return compiler.compile(parts[0].trim(), names).evaluate(values);
     }
 
     @Override
@@ -0,0 +1,68 @@
+package net.alureon.ircbutt.command.commands;
+
+import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.command.ListCursor;
+import net.alureon.ircbutt.regex.RegexAbortedException;
+import net.alureon.ircbutt.regex.RegexBudget;
+import net.alureon.ircbutt.response.BotIntention;
+import net.alureon.ircbutt.response.BotResponse;
+import net.alureon.ircbutt.scrollback.ScrollbackRecord;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * This class handles the !grep command, which searches what has been said in the channel for a regex.  The newest
+ * match is sent straight away and the rest are loaded into !more.
+ */
+public final class GrepCommand implements Command {
+
+    /**
+     * The most matches to return.
+     */
+    private static final int MAX_RESULTS = 10;
+
+    @Override
+    public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
+        if (cmd.length != 2 && cmd.length != 3) {
+            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "!grep <regex> [nick]");
+        }
+        String nick = null;
+        if (cmd.length == 3) {
+            nick = cmd[2];
+        }
+        List<ScrollbackRecord> matches;
+        try (RegexBudget budget = butt.getRegexService().begin(event.getUser().getNick())) {
+            Pattern pattern = butt.getRegexService().compile(cmd[1]);
+            matches = butt.getScrollbackManager().grep(butt.getNetworkManager().getChannelKey(event), pattern, nick,
+                    MAX_RESULTS, line -> budget.find(pattern, line));
+        } catch (PatternSyntaxException ex) {
+            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "that regex is busted");
+        } catch (RegexAbortedException ex) {
+            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), ex.getMessage());
+        }
+        if (matches.isEmpty()) {
+            butt.getCommandHandler().clearMore(event);
+            return new BotResponse(BotIntention.CHAT, null,
+                    butt.getYamlConfigurationFile().getBotNickName() + " didnt find nothin");
+        }
+        return new BotResponse(BotIntention.CHAT, null, butt.getCommandHandler().setMore(event,
+                matches.get(0).toString(), new ListCursor<>(matches.subList(1, matches.size()),
+                        ScrollbackRecord::toString)));
+    }
+
+    @Override
+    public ArrayList<String> getCommandAliases() {
+        return new ArrayList<>(Collections.singletonList("grep"));
+    }
+
+    @Override
+    public boolean allowsCommandSubstitution() {
+        return false;
+    }
+}
@@ -2,6 +2,7 @@ package net.alureon.ircbutt.command.commands;
 
 import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.network.BotNetwork;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import org.apache.logging.log4j.LogManager;
@@ -25,11 +26,12 @@ public final class InviteCommand implements Command {
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-         for (String x : butt.getYamlConfigurationFile().getChannelList()) {
+         BotNetwork network = butt.getNetworkManager().getNetwork(event);
+         for (String x : network.getConfig().getChannels()) {
             for (String y : cmd) {
                 log.debug("Attempting to join channel: " + y);
                 if (x.equalsIgnoreCase(y)) {
-                    butt.getPircBotX().sendIRC().joinChannel(x);
+                    network.getPircBotX().sendIRC().joinChannel(x);
                 }
             }
         }
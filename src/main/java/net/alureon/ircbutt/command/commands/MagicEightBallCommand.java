@@ -4,7 +4,6 @@ import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
-import net.alureon.ircbutt.util.MathUtils;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.util.ArrayList;
@@ -27,8 +26,7 @@ public final class MagicEightBallCommand implements Command {
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        int random = MathUtils.getRandom(0, MAGIC_EIGHT_BALL_RESPONSES.size());
-        return new BotResponse(BotIntention.CHAT, null, MAGIC_EIGHT_BALL_RESPONSES.get(random));
+        return new BotResponse(BotIntention.CHAT, null, butt.getRandomService().pick(MAGIC_EIGHT_BALL_RESPONSES));
     }
 
     @Override
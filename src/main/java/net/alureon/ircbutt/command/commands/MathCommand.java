@@ -2,6 +2,8 @@ package net.alureon.ircbutt.command.commands;
 
 import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.math.ExpressionCompiler;
+import net.alureon.ircbutt.math.ExpressionException;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import org.pircbotx.hooks.types.GenericMessageEvent;
@@ -9,34 +11,43 @@ import org.pircbotx.hooks.types.GenericMessageEvent;
 import java.util.ArrayList;
 import java.util.Arrays;
 
-import static java.lang.Math.*;
-
 /**
- * MathCommand houses static methods for dealing with arithmetic operations.
+ * Takes the square root of a number, or raises one number to the power of another.  Each number may be an
+ * expression, such as "pi" or "2*3".
  */
 public final class MathCommand implements Command {
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        double x;
-        if (cmd[1].equals("pi")) {
-            x = PI;
-        } else {
-            x = Double.parseDouble(cmd[1]);
-        }
-        double f = 0;
-        switch (cmd[0]) {
-            case "sqrt":
-                f = sqrt(x);
-                break;
-            case "pow":
-                double y = Double.parseDouble(cmd[2]);
-                f = pow(x, y);
-                break;
-            default:
-                break;
+        ExpressionCompiler compiler = butt.getExpressionCompiler();
+        try {
+            switch (cmd[0]) {
+                case "sqrt":
+                    if (cmd.length < 2) {
+                        return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "!sqrt <number>");
+                    }
+                    return result(compiler.compile("sqrt(x)", "x").evaluate(compiler.evaluate(cmd[1])));
+                case "pow":
+                    if (cmd.length < 3) {
+                        return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "!pow <number> <power>");
+                    }
+                    return result(compiler.compile("pow(x, y)", "x", "y").evaluate(compiler.evaluate(cmd[1]),
+                            compiler.evaluate(cmd[2])));
+                default:
+                    return new BotResponse(BotIntention.NO_REPLY, null, null);
+            }
+        } catch (ExpressionException e) {
+            return new BotResponse(BotIntention.CHAT, null, "error evaluating expression: " + e.getMessage());
         }
-        return new BotResponse(BotIntention.CHAT, null, String.valueOf(f));
+    }
+
+    /**
+     * Creates the response for a result.
+     * @param value The result.
+     * @return The response.
+     */
+    private static BotResponse result(final double value) {
+        return new BotResponse(BotIntention.CHAT, null, String.valueOf(value));
     }
 
     @Override
@@ -49,4 +60,3 @@ public final class MathCommand implements Command {
         return true;
     }
 }
-
@@ -19,15 +19,9 @@ public final class MoreCommand implements Command {
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        if (!butt.getCommandHandler().getMoreList().isEmpty()) {
-            String moreItem = butt.getCommandHandler().getMoreList().get(0);
-            butt.getCommandHandler().getMoreList().remove(0);
-            if (butt.getCommandHandler().getMoreList().size() == 0) {
-                return new BotResponse(BotIntention.CHAT, null, moreItem);
-            } else {
-                return new BotResponse(BotIntention.CHAT, null, moreItem
-                        + " [+" + butt.getCommandHandler().getMoreList().size() + " more]");
-            }
+        String moreItem = butt.getCommandHandler().nextMore(event);
+        if (moreItem != null) {
+            return new BotResponse(BotIntention.CHAT, null, moreItem);
         } else {
             return new BotResponse(BotIntention.CHAT, null, butt.getYamlConfigurationFile().getBotNickName()
                     + " don't have any more");
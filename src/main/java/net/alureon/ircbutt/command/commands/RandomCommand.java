@@ -4,7 +4,6 @@ import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
-import net.alureon.ircbutt.util.MathUtils;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.util.ArrayList;
@@ -17,7 +16,7 @@ public final class RandomCommand implements Command {
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        int random = MathUtils.getRandom(Integer.MIN_VALUE, Integer.MAX_VALUE - 1);
+        int random = butt.getRandomService().nextInt();
         return new BotResponse(BotIntention.CHAT, null, String.valueOf(random));
     }
 
@@ -0,0 +1,45 @@
+package net.alureon.ircbutt.command.commands;
+
+import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.response.BotIntention;
+import net.alureon.ircbutt.response.BotResponse;
+import net.alureon.ircbutt.util.IRCUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Lets a channel op reload the config.yml without restarting the bot.  The bot also reloads it by itself when the
+ * file changes, so this is for when that can't be watched, or to see whether a change was turned away.
+ */
+public final class ReloadCommand implements Command {
+
+    /**
+     * The logger for the class.
+     */
+    private static final Logger log = LogManager.getLogger();
+
+    @Override
+    public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
+        if (!IRCUtils.isOpInBotChannel(butt, event.getUser())) {
+            log.trace(event.getUser().getNick() + " is not a channel op");
+            return new BotResponse(BotIntention.NO_REPLY, null, null);
+        }
+        return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(),
+                butt.getConfigurationManager().reload());
+    }
+
+    @Override
+    public ArrayList<String> getCommandAliases() {
+        return new ArrayList<>(Collections.singletonList("reload"));
+    }
+
+    @Override
+    public boolean allowsCommandSubstitution() {
+        return false;
+    }
+}
@@ -0,0 +1,48 @@
+package net.alureon.ircbutt.command.commands;
+
+import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.command.ListCursor;
+import net.alureon.ircbutt.response.BotIntention;
+import net.alureon.ircbutt.response.BotResponse;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reports how the bot's caches, chat history, scrollback, user regexes, math expressions, outbound web requests,
+ * scrapers, networks, outgoing messages, cluster leases, config reloads and snapshots are doing, and how long
+ * startup took.
+ * The first report is sent straight away and the rest are loaded into !more.
+ */
+public final class StatsCommand implements Command {
+
+    @Override
+    public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
+        List<String> stats = new ArrayList<>(Arrays.asList(butt.getSearchResultCache().getStats(),
+                butt.getChatStorage().getStats(), butt.getScrollbackManager().getStats(),
+                butt.getRegexService().getStats(), butt.getExpressionCompiler().getStats(),
+                butt.getHttpManager().getStats(), butt.getScraper().getStats()));
+        stats.addAll(butt.getNetworkManager().getStats());
+        stats.add(butt.getFactTable().getHotFacts().getStats());
+        stats.add(butt.getClusterNode().getStats());
+        stats.add(butt.getConfigurationManager().getStats());
+        stats.add(butt.getSnapshotManager().getStats());
+        stats.add(butt.getStartupSequence().getReport());
+        return new BotResponse(BotIntention.CHAT, null, butt.getCommandHandler().setMore(event, stats.get(0),
+                ListCursor.of(stats.subList(1, stats.size()))));
+    }
+
+    @Override
+    public ArrayList<String> getCommandAliases() {
+        return new ArrayList<>(Collections.singletonList("stats"));
+    }
+
+    @Override
+    public boolean allowsCommandSubstitution() {
+        return false;
+    }
+}
@@ -1,23 +1,24 @@
 package net.alureon.ircbutt.command.commands;
 
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.http.CircuitOpenException;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.search.Scraper;
+import net.alureon.ircbutt.search.ScraperSource;
+import net.alureon.ircbutt.search.SearchResult;
 import net.alureon.ircbutt.util.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  *  This command retrieves word definitions from UrbanDictionary.
@@ -28,41 +29,81 @@ public final class UrbanDictionaryCommand implements Command {
      * The logger for this class.
      */
     private static final Logger log = LogManager.getLogger();
+    /**
+     * The user agent to use when querying UrbanDictionary.
+     */
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 6.1; Win64; x64; rv:25.0) Gecko/20100101 Firefox/25.0";
+    /**
+     * The name this command's results are cached under.
+     */
+    private static final String CACHE_SOURCE = "ud";
+    /**
+     * How long UrbanDictionary definitions stay in the search cache.
+     */
+    private static final long CACHE_TTL_HOURS = 6;
+    /**
+     * The most definitions to keep.
+     */
+    private static final int MAX_RESULTS = 10;
+    /**
+     * The most of a page to download, in kibibytes.
+     */
+    private static final int MAX_BODY_KILOBYTES = 512;
+    /**
+     * Where the definitions are on an UrbanDictionary page.
+     */
+    private static final ScraperSource SOURCE = new ScraperSource(CACHE_SOURCE, USER_AGENT, ".meaning", MAX_RESULTS,
+            MAX_BODY_KILOBYTES, meaning -> new SearchResult.Item(meaning.text(), null));
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        butt.getCommandHandler().clearMore();
-        BotResponse response = new BotResponse(BotIntention.CHAT, null, "this should never happen");
-        try {
-            String link = "http://www.urbandictionary.com/define.php?term="
-                    + URLEncoder.encode(StringUtils.getArgs(cmd), "utf-8");
-            String userAgent = "Mozilla/5.0 (Windows NT 6.1; Win64; x64; rv:25.0) Gecko/20100101 Firefox/25.0";
+        String term = StringUtils.getArgs(cmd);
+        SearchResult result = butt.getSearchResultCache().get(CACHE_SOURCE, term);
+        if (result == null) {
             try {
-                Document doc = Jsoup.connect(link).userAgent(userAgent).get();
-                Elements meanings = doc.getElementsByClass("meaning");
-                try {
-                    int size = meanings.size();
-                    for (int i = 0; i < size; i++) {
-                        Element meaning = meanings.get(i);
-                        if (i == 0) {
-                            response = new BotResponse(BotIntention.CHAT, null, meaning.text());
-                        } else {
-                            butt.getCommandHandler().addMore(meaning.text());
-                        }
-                    }
-                    butt.getCommandHandler().addMore(link);
-                } catch (NullPointerException ex) {
-                    log.info("No more definitions to get");
+                result = search(butt.getScraper(), term);
+                if (!result.isEmpty()) {
+                    butt.getSearchResultCache().put(CACHE_SOURCE, term, result, CACHE_TTL_HOURS, TimeUnit.HOURS);
                 }
+            } catch (CircuitOpenException ex) {
+                butt.getCommandHandler().clearMore(event);
+                return new BotResponse(BotIntention.CHAT, null, ex.getMessage());
             } catch (IOException ex) {
                 log.error("Exception encountered", ex);
-                response = new BotResponse(BotIntention.CHAT, null,
+                butt.getCommandHandler().clearMore(event);
+                return new BotResponse(BotIntention.CHAT, null,
                         butt.getYamlConfigurationFile().getBotNickName() + " don't see that word nowhere");
             }
-        } catch (UnsupportedEncodingException ex) {
-            log.error("Failed to encode URL", ex);
         }
-        return response;
+        if (result.isEmpty()) {
+            butt.getCommandHandler().clearMore(event);
+            return new BotResponse(BotIntention.CHAT, null, "this should never happen");
+        }
+        butt.getCommandHandler().setMore(event, result.getFirst().getText(), result.moreCursor());
+        return new BotResponse(BotIntention.CHAT, null, result.getFirst().getText());
+    }
+
+    /**
+     * Looks up the definitions of a term on UrbanDictionary.
+     * @param scraper The Scraper to fetch the definitions with.
+     * @param term The term to define.
+     * @return The definitions, most popular first, with a link to the page.
+     * @throws IOException If UrbanDictionary couldn't be reached.
+     */
+    public static SearchResult search(final Scraper scraper, final String term) throws IOException {
+        String link = "http://www.urbandictionary.com/define.php?term=" + URLEncoder.encode(term, "utf-8");
+        return scraper.scrape(SOURCE, link, link);
+    }
+
+    /**
+     * Pulls the definitions out of an UrbanDictionary page.
+     * @param doc The page.
+     * @param link The link to the page, shown after the definitions.
+     * @return The definitions, most popular first.
+     */
+    public static SearchResult parse(final Document doc, final String link) {
+        return Scraper.extract(SOURCE, doc, link);
     }
 
     @Override
@@ -1,15 +1,46 @@
 package net.alureon.ircbutt.command.commands;
 
 import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.regex.RegexAbortedException;
+import net.alureon.ircbutt.regex.RegexBudget;
+import net.alureon.ircbutt.regex.RegexService;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
 /**
  * Allows use of Vim's search and replace command in IRC.
  */
 public final class VimSearchReplaceCommand {
 
+    /**
+     * The number of parts of a command that has flags, such as s/foo/bar/g.
+     */
+    private static final int PARTS_WITH_FLAGS = 4;
+    /**
+     * The service that runs the user's regex.
+     */
+    private final RegexService regexService;
+
+    /**
+     * Creates a VimSearchReplaceCommand with a RegexService of its own, for use without a bot.
+     */
+    public VimSearchReplaceCommand() {
+        this(new RegexService());
+    }
+
+    /**
+     * Creates a VimSearchReplaceCommand.
+     * @param regexService The service that runs the user's regex.
+     */
+    public VimSearchReplaceCommand(final RegexService regexService) {
+        this.regexService = regexService;
+    }
+
     /**
      * This is akin to the executeCommand function in the Command interface, although that
      * won't work with this because there is no actual command - it's all one string.
@@ -19,13 +50,52 @@ public final class VimSearchReplaceCommand {
      * @return The bot's response, which in this case is a string that has been searched and replaced.
      */
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String command) {
-        if (butt.getChatStorage().hasQuoteFrom(event.getUser().getNick())) {
-            String replaced = searchAndReplace(command,
-                    butt.getChatStorage().getLastQuoteFrom(event.getUser().getNick()));
-            return new BotResponse(BotIntention.CHAT, null, replaced);
-        } else {
+        List<String> lines = butt.getChatStorage().getQuotesFrom(butt.getNetworkManager().getChannelKey(event),
+                event.getUser().getNick());
+        if (lines.isEmpty()) {
             return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "butt dont see any message from you");
         }
+        try {
+            return new BotResponse(BotIntention.CHAT, null,
+                    searchAndReplace(event.getUser().getNick(), command, lines));
+        } catch (RegexAbortedException ex) {
+            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), ex.getMessage());
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "that regex is busted");
+        }
+    }
+
+    /**
+     * Performs search and replace like Vim, on the most recent line that has something to replace.
+     * @param command The command you'd give Vim.
+     * @param lines The messages to choose from, most recent first.
+     * @return The String with replacements made, or the most recent message if none of them match.
+     */
+    public String searchAndReplace(final String command, final List<String> lines) {
+        return searchAndReplace(null, command, lines);
+    }
+
+    /**
+     * Performs search and replace like Vim, on the most recent line that has something to replace.  The regex
+     * runs on the user's budget.
+     * @param user The nick of the user who gave the command, or null to not charge anyone.
+     * @param command The command you'd give Vim.
+     * @param lines The messages to choose from, most recent first.
+     * @return The String with replacements made, or the most recent message if none of them match.
+     * @throws RegexAbortedException If the regex ran too long, or the user is out of quota.
+     */
+    public String searchAndReplace(final String user, final String command, final List<String> lines) {
+        String[] split = command.split("/", -1);
+        Pattern search = regexService.compile(split[1]);
+        boolean global = split.length >= PARTS_WITH_FLAGS && split[PARTS_WITH_FLAGS - 1].equals("g");
+        try (RegexBudget budget = regexService.begin(user)) {
+            for (String line : lines) {
+                if (budget.find(search, line)) {
+                    return budget.replace(search, split[2], line, global);
+                }
+            }
+            return budget.replace(search, split[2], lines.get(0), global);
+        }
     }
 
     /**
@@ -35,14 +105,7 @@ public final class VimSearchReplaceCommand {
      * @return The String with replacements made.
      */
     public String searchAndReplace(final String command, final String lastMessage) {
-        String[] split = command.split("/");
-        String corrected;
-        if (split.length == 4 && split[3].equals("g")) {
-            corrected = lastMessage.replaceAll(split[1], split[2]);
-        } else {
-            corrected = lastMessage.replaceFirst(split[1], split[2]);
-        }
-        return corrected;
+        return searchAndReplace(command, Collections.singletonList(lastMessage));
     }
 
 }
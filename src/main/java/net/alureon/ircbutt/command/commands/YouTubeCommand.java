@@ -1,26 +1,26 @@
 package net.alureon.ircbutt.command.commands;
 
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.http.CircuitOpenException;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.search.Scraper;
+import net.alureon.ircbutt.search.ScraperSource;
+import net.alureon.ircbutt.search.SearchResult;
 import net.alureon.ircbutt.util.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Attributes;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The command implements the functionality to search for YouTube videos from the IRC channel.
@@ -32,49 +32,93 @@ public final class YouTubeCommand implements Command {
      */
     private static final Logger log = LogManager.getLogger();
     /**
-     * The timeout for making the web request to YouTube.
+     * The user agent to use when searching YouTube.
      */
-    private static final int REQUEST_TIMEOUT = 12000;
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 6.1; Win64; x64; rv:25.0) Gecko/20100101 Firefox/25.0";
+    /**
+     * The name this command's results are cached under.
+     */
+    private static final String CACHE_SOURCE = "yt";
+    /**
+     * How long YouTube results stay in the search cache.
+     */
+    private static final long CACHE_TTL_MINUTES = 30;
+    /**
+     * The most videos to keep from a search.
+     */
+    private static final int MAX_RESULTS = 10;
+    /**
+     * The most of a results page to download, in kibibytes.
+     */
+    private static final int MAX_BODY_KILOBYTES = 1024;
+    /**
+     * The link to the video inside a video's title.
+     */
+    private static final Evaluator VIDEO_LINK = ScraperSource.compile("a[href]");
+    /**
+     * Where the videos are on a page of YouTube results.
+     */
+    private static final ScraperSource SOURCE = new ScraperSource(CACHE_SOURCE, USER_AGENT,
+            "#results .yt-lockup-title", MAX_RESULTS, MAX_BODY_KILOBYTES, YouTubeCommand::extractVideo);
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        butt.getCommandHandler().clearMore();
-         BotResponse response = new BotResponse(BotIntention.CHAT, null, "found no videos bout that");
-        try {
-            String link = "http://www.youtube.com/results?search_query="
-                    + URLEncoder.encode(StringUtils.getArgs(cmd), "utf-8");
-            String userAgent = "Mozilla/5.0 (Windows NT 6.1; Win64; x64; rv:25.0) Gecko/20100101 Firefox/25.0";
+        String query = StringUtils.getArgs(cmd);
+        SearchResult result = butt.getSearchResultCache().get(CACHE_SOURCE, query);
+        if (result == null) {
             try {
-                Connection.Response cResponse = Jsoup.connect(link)
-                        .ignoreContentType(true)
-                        .userAgent(userAgent)
-                        .referrer("http://www.google.com")
-                        .timeout(REQUEST_TIMEOUT)
-                        .followRedirects(true)
-                        .execute();
-                Document doc = cResponse.parse();
-                Element result = doc.getElementById("results");
-                Elements videos = result.getElementsByClass("yt-lockup-title");
-                int size = videos.size();
-                for (int i = 0; i < size; i++) {
-                    Element video = videos.get(i);
-                    Attributes attributes = video.child(0).attributes();
-                    String url = attributes.get("href");
-                    if (i == 0) {
-                        String urlText = URLDecoder.decode(video.text(), "utf8") + " http://youtube.com" + url;
-                        response = new BotResponse(BotIntention.CHAT, null, urlText);
-                    } else {
-                        butt.getCommandHandler().addMore(URLDecoder.decode(video.text(), "utf-8")
-                                + " http://youtube.com" + url);
-                    }
+                result = search(butt.getScraper(), query);
+                if (!result.isEmpty()) {
+                    butt.getSearchResultCache().put(CACHE_SOURCE, query, result, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
                 }
-            } catch (IOException | NullPointerException ex) {
+            } catch (CircuitOpenException ex) {
+                butt.getCommandHandler().clearMore(event);
+                return new BotResponse(BotIntention.CHAT, null, ex.getMessage());
+            } catch (IOException ex) {
                 log.error("Found no video", ex);
             }
-        } catch (UnsupportedEncodingException e) {
-            log.error("Failed to query for YouTube videos ", e.getMessage());
         }
-        return response;
+        if (result == null || result.isEmpty()) {
+            butt.getCommandHandler().clearMore(event);
+            return new BotResponse(BotIntention.CHAT, null, "found no videos bout that");
+        }
+        butt.getCommandHandler().setMore(event, result.getFirst().toLine(), result.moreCursor());
+        return new BotResponse(BotIntention.CHAT, null, result.getFirst().toLine());
+    }
+
+    /**
+     * Searches YouTube and returns the videos on the first page of results.
+     * @param scraper The Scraper to fetch the results with.
+     * @param query The query to search for.
+     * @return The ranked results of the search (may be empty).
+     * @throws IOException If YouTube couldn't be reached.
+     */
+    public static SearchResult search(final Scraper scraper, final String query) throws IOException {
+        return scraper.scrape(SOURCE, "http://www.youtube.com/results?search_query="
+                + URLEncoder.encode(query, "utf-8"), null);
+    }
+
+    /**
+     * Pulls the videos out of a page of YouTube results.
+     * @param doc The page of results.
+     * @return The ranked results (may be empty).
+     */
+    public static SearchResult parse(final Document doc) {
+        return Scraper.extract(SOURCE, doc, null);
+    }
+
+    /**
+     * Turns a video's title into a search result.
+     * @param title The title element of the video.
+     * @return The result, or null if the title doesn't link to the video.
+     */
+    private static SearchResult.Item extractVideo(final Element title) {
+        Element link = ScraperSource.first(title, VIDEO_LINK);
+        if (link == null) {
+            return null;
+        }
+        return new SearchResult.Item(Scraper.urlDecode(title.text()), "http://youtube.com" + link.attr("href"));
     }
 
     @Override
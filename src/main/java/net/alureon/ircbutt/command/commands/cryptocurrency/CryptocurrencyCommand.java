@@ -1,12 +1,11 @@
 package net.alureon.ircbutt.command.commands.cryptocurrency;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.http.CircuitOpenException;
+import net.alureon.ircbutt.outbound.OutboundLane;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
-import net.alureon.ircbutt.util.IRCUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -14,14 +13,16 @@ import org.pircbotx.Colors;
 import org.pircbotx.hooks.events.MessageEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
-import java.io.*;
-import java.lang.reflect.Type;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
 import java.net.URL;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /**
  * Provides a way to get the current spot price of BTC.
@@ -41,17 +42,37 @@ public final class CryptocurrencyCommand implements Command {
      */
     private static final int MAX_OUTPUT_IN_TOP = 10;
     /**
-     * The number of extra static characters to pad name with for !top output.
+     * The number of columns in each line of !top output.
      */
-    private static final int TOP_NAME_FORMATTING_CHARS = 8;
+    private static final int TOP_COLUMNS = 7;
     /**
-     * The number of extra static characters to pad rank with in !top output.
+     * The column holding the coin's name in !top output.
      */
-    private static final int TOP_RANK_FORMATTING_CHARS = 12;
+    private static final int TOP_NAME = 0;
     /**
-     * The number of extra static characters to pad market cap with in !top output.
+     * The column holding the coin's price in !top output.
      */
-    private static final int TOP_MARKET_CAP_FORMATTING_CHARS = 21;
+    private static final int TOP_PRICE = 1;
+    /**
+     * The column holding the coin's rank in !top output.
+     */
+    private static final int TOP_RANK = 2;
+    /**
+     * The column holding the coin's market cap in !top output.
+     */
+    private static final int TOP_MARKET_CAP = 3;
+    /**
+     * The column holding the coin's hourly change in !top output.
+     */
+    private static final int TOP_HOUR = 4;
+    /**
+     * The column holding the coin's daily change in !top output.
+     */
+    private static final int TOP_DAY = 5;
+    /**
+     * The column holding the coin's weekly change in !top output.
+     */
+    private static final int TOP_WEEK = 6;
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
@@ -161,18 +182,17 @@ public final class CryptocurrencyCommand implements Command {
         } else if (cmd[0].startsWith("top") || (cmd[0].equals("party")) || (cmd[0].equals("dump"))) {
             url = "https://api.coinmarketcap.com/v1/ticker/";
         }
-        try (InputStream is = new URL(url).openStream()) {
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
-            String jsonText = readAll(bufferedReader);
-            Type currencyType = new TypeToken<List<CoinMarketCapResponse>>() {
-            }.getType();
-            List<CoinMarketCapResponse> currency = new Gson().fromJson(jsonText, currencyType);
+        try {
+            TickerTable currency = butt.getHttpManager().execute(url, true, CryptocurrencyCommand::fetchTicker);
+            if (currency.size() == 0) {
+                log.warn("CoinMarketCap returned no ticker data for " + cmd[0]);
+                return new BotResponse(BotIntention.NO_REPLY, null, null);
+            }
             NumberFormat nf = NumberFormat.getCurrencyInstance();
             if (cmd[0].equals("top")) {
                 if (event instanceof MessageEvent) {
-                    MessageEvent messageEvent = (MessageEvent) event;
                     if (cmd.length == 1) {
-                        handleTop(currency, nf, messageEvent, 0, TOP_COINS);
+                        return handleTop(currency, nf, 0, TOP_COINS);
                     } else if (cmd.length == 3) {
                         try {
                             int min = Integer.parseInt(cmd[1]);
@@ -181,13 +201,13 @@ public final class CryptocurrencyCommand implements Command {
                                 return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(),
                                         "you tryin to get butt kicked for spam!?!?!");
                             }
-                            handleTop(currency, nf, messageEvent, min, max);
+                            return handleTop(currency, nf, min, max);
                         } catch (NumberFormatException ex) {
                             return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "!top <min> <max>");
                         }
                     }
                 }
-                return null;
+                return new BotResponse(BotIntention.NO_REPLY, null, null);
             }
             if (cmd[0].equals("party") || cmd[0].equals("dump")) {
                 return handleParty(currency, nf, cmd[0]);
@@ -195,40 +215,56 @@ public final class CryptocurrencyCommand implements Command {
             if (!cmd[0].endsWith("v")) {
                 return formatCoinRequest(currency, nf);
             } else {
-                return new BotResponse(BotIntention.CHAT, null, currency.get(0).getPriceUsd());
+                return new BotResponse(BotIntention.CHAT, null, formatPlain(currency.getPriceUsd(0)));
             }
+        } catch (CircuitOpenException ex) {
+            return new BotResponse(BotIntention.CHAT, null, ex.getMessage());
         } catch (IOException ex) {
             log.error("Error handling CoinMarketCap request: " + ex.getMessage());
             return new BotResponse(BotIntention.NO_REPLY, null, null);
         }
     }
 
+    /**
+     * Downloads and decodes ticker data from the CoinMarketCap API.
+     *
+     * @param url The ticker URL to request.
+     * @return The decoded ticker table.
+     * @throws IOException If the API couldn't be reached or returned garbage.
+     */
+    public static TickerTable fetchTicker(final String url) throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(new URL(url).openStream(),
+                StandardCharsets.UTF_8))) {
+            return TickerTable.decode(reader);
+        }
+    }
+
     /**
      * Handles the formatting for the bot's coin request.
      *
-     * @param currency The list of currencies retrieved from the coinmarketcap API.
+     * @param currency The table of currencies retrieved from the coinmarketcap API.
      * @param nf       The NumberFormat instance for formatting currencies.
      * @return The bot's formatted response.
      */
-    private BotResponse formatCoinRequest(final List<CoinMarketCapResponse> currency, final NumberFormat nf) {
-        String dayChange = getColoredChangeText(currency.get(0).getPercentChange24h());
-        String hourChange = getColoredChangeText(currency.get(0).getPercentChange1h());
-        String weekChange = getColoredChangeText(currency.get(0).getPercentChange7d());
+    private BotResponse formatCoinRequest(final TickerTable currency, final NumberFormat nf) {
+        String dayChange = getColoredChangeText(currency.getPercentChange24h(0));
+        String hourChange = getColoredChangeText(currency.getPercentChange1h(0));
+        String weekChange = getColoredChangeText(currency.getPercentChange7d(0));
 
-        if (currency.get(0).getMarketCapUsd() != null) {
+        if (!Double.isNaN(currency.getMarketCapUsd(0))) {
 
             return new BotResponse(BotIntention.CHAT, null, Colors.CYAN + Colors.BOLD
-                    + currency.get(0).getName() + Colors.NORMAL + Colors.TEAL + ": "
-                    + nf.format(Double.valueOf(currency.get(0).getPriceUsd())) + " | Rank: "
-                    + currency.get(0).getRank() + Colors.TEAL + " | Market Cap: "
-                    + nf.format(Double.valueOf(currency.get(0).getMarketCapUsd())),
+                    + currency.getName(0) + Colors.NORMAL + Colors.TEAL + ": "
+                    + formatUsd(nf, currency.getPriceUsd(0)) + " | Rank: "
+                    + currency.getRank(0) + Colors.TEAL + " | Market Cap: "
+                    + nf.format(currency.getMarketCapUsd(0)),
                     Colors.TEAL
                             + "[Hour " + hourChange + "] | [Day " + dayChange + "] | [Week " + weekChange + "]");
         } else {
             return new BotResponse(BotIntention.CHAT, null, Colors.CYAN + Colors.BOLD
-                    + currency.get(0).getName() + Colors.NORMAL + Colors.TEAL + ": "
-                    + nf.format(Double.valueOf(currency.get(0).getPriceUsd()))
-                    + " | Rank: " + currency.get(0).getRank()
+                    + currency.getName(0) + Colors.NORMAL + Colors.TEAL + ": "
+                    + formatUsd(nf, currency.getPriceUsd(0))
+                    + " | Rank: " + currency.getRank(0)
                     + " | [" + dayChange + "] ",
                     "Market Cap: N/A");
         }
@@ -240,52 +276,83 @@ public final class CryptocurrencyCommand implements Command {
      * @param change The change for whatever duration of time, be it positive or negative.
      * @return The formatted string with colors.
      */
-    private String getColoredChangeText(final String change) {
-        if (change.startsWith("-")) {
-            return Colors.RED + change + "%" + Colors.NORMAL + Colors.TEAL;
+    private String getColoredChangeText(final double change) {
+        if (Double.isNaN(change)) {
+            return "N/A" + Colors.NORMAL + Colors.TEAL;
+        }
+        if (change < 0) {
+            return Colors.RED + formatPlain(change) + "%" + Colors.NORMAL + Colors.TEAL;
+        }
+        return Colors.GREEN + "+" + formatPlain(change) + "%" + Colors.NORMAL + Colors.TEAL;
+    }
+
+    /**
+     * Formats a decoded value the way the API sent it, without exponents or rounding.
+     *
+     * @param value The value to format.
+     * @return The plain String representation of the value.
+     */
+    private static String formatPlain(final double value) {
+        if (Double.isNaN(value)) {
+            return "N/A";
         }
-        return Colors.GREEN + "+" + change + "%" + Colors.NORMAL + Colors.TEAL;
+        return BigDecimal.valueOf(value).toPlainString();
+    }
+
+    /**
+     * Formats a decoded amount of dollars, showing N/A for a field the API left out rather than NaN.
+     *
+     * @param nf The NumberFormat instance for formatting currencies.
+     * @param value The amount.
+     * @return The formatted amount.
+     */
+    private static String formatUsd(final NumberFormat nf, final double value) {
+        if (Double.isNaN(value)) {
+            return "N/A";
+        }
+        return nf.format(value);
     }
 
     /**
      * Handles the partying coin command.
      *
-     * @param currencies The list of currencies from CoinMarketCap.
+     * @param currencies The table of currencies from CoinMarketCap.
      * @param nf The NumberFormat instance for formatting currencies.
      * @param cmd The command issued, either "party" or "dump".
      * @return the bot's response.
      */
-    private BotResponse handleParty(final List<CoinMarketCapResponse> currencies, final NumberFormat nf,
-                                    final String cmd) {
+    private BotResponse handleParty(final TickerTable currencies, final NumberFormat nf, final String cmd) {
+        boolean party = cmd.equals("party");
         double result = 0;
-        CoinMarketCapResponse partyCoin = null;
-        for (CoinMarketCapResponse x : currencies) {
-            try {
-                double change = Double.parseDouble(x.getPercentChange24h());
-                if (cmd.equals("party") && change > result) {
-                        partyCoin = x;
-                } else if (cmd.equals("dump") && change < result) {
-                        partyCoin = x;
-                }
-            } catch (NumberFormatException ex) {
-                log.warn("Failed to parse change data: " + x.getPercentChange24h());
+        int partyCoin = -1;
+        for (int i = 0; i < currencies.size(); i++) {
+            double change = currencies.getPercentChange24h(i);
+            if (Double.isNaN(change)) {
+                continue;
+            }
+            if (party && change > result) {
+                partyCoin = i;
+                result = change;
+            } else if (!party && change < result) {
+                partyCoin = i;
+                result = change;
             }
         }
         String color;
-        if (cmd.equals("party")) {
+        if (party) {
             color = Colors.MAGENTA;
         } else {
             color = Colors.BROWN;
         }
-        if (partyCoin != null) {
+        if (partyCoin != -1) {
             return new BotResponse(BotIntention.CHAT, null, color + Colors.BOLD
-                    + partyCoin.getName() + Colors.NORMAL + Colors.TEAL + ": "
-                    + nf.format(Double.valueOf(partyCoin.getPriceUsd())) + " | Rank: "
-                    + partyCoin.getRank() + Colors.TEAL + " | Market Cap: "
-                    + nf.format(Double.valueOf(partyCoin.getMarketCapUsd())),
+                    + currencies.getName(partyCoin) + Colors.NORMAL + Colors.TEAL + ": "
+                    + formatUsd(nf, currencies.getPriceUsd(partyCoin)) + " | Rank: "
+                    + currencies.getRank(partyCoin) + Colors.TEAL + " | Market Cap: "
+                    + formatUsd(nf, currencies.getMarketCapUsd(partyCoin)),
                     Colors.TEAL
-                            + "[Hour " + getColoredChangeText(partyCoin.getPercentChange1h()) + "] | "
-                            + "[Day " + getColoredChangeText(partyCoin.getPercentChange24h()) + "]");
+                            + "[Hour " + getColoredChangeText(currencies.getPercentChange1h(partyCoin)) + "] | "
+                            + "[Day " + getColoredChangeText(currencies.getPercentChange24h(partyCoin)) + "]");
         } else {
             log.error("Failed to find a partying coin!");
             return new BotResponse(BotIntention.NO_REPLY, null, null);
@@ -293,103 +360,62 @@ public final class CryptocurrencyCommand implements Command {
     }
 
     /**
-     * Handles the top coins command portion.
+     * Handles the top coins command portion.  Every cell is formatted exactly once, then the column
+     * widths are taken from the formatted cells so the output lines up.  The rows are only joined into
+     * lines as they are sent, in the bulk lane so other replies can go out in between.
      *
-     * @param currency the list of top currencies from coinmarketcap
+     * @param currency the table of top currencies from coinmarketcap
      * @param nf       The numberformat instance for formatting currency
-     * @param event    The MessageEvent (for sending channel several messages)
      * @param min      The point in the marketcap rank to start at.
      * @param max      The point in the marketcap rank to finish at.
+     * @return The response holding one line per coin.
      */
-    private void handleTop(final List<CoinMarketCapResponse> currency, final NumberFormat nf,
-                           final MessageEvent event, final int min, final int max) {
-        int paddingName = 0;
-        int paddingPrice = 0;
-        int paddingRank = 0;
-        int paddingMarketCap = 0;
-        int paddingHourChange = 0;
-        int paddingDayChange = 0;
-        int paddingWeekChange = 0;
-        for (int i = min; i < max; i++) {
-            if (currency.get(i).getName().length() > paddingName) {
-                paddingName = currency.get(i).getName().length();
-            }
-            if (nf.format(Double.valueOf(currency.get(i).getPriceUsd())).length() > paddingPrice) {
-                paddingPrice = nf.format(Double.valueOf(currency.get(i).getPriceUsd())).length();
-            }
-            if (currency.get(i).getRank().length() > paddingRank) {
-                paddingRank = currency.get(i).getRank().length();
-            }
-            if (currency.get(i).getMarketCapUsd().length() > paddingMarketCap) {
-                paddingMarketCap = currency.get(i).getMarketCapUsd().length();
-            }
-            if ((" | [Hour " + getColoredChangeText(currency.get(i).getPercentChange1h()) + "]").length()
-                    > paddingHourChange) {
-                paddingHourChange = (" | [Hour "
-                        + getColoredChangeText(currency.get(i).getPercentChange1h()) + "]").length();
-            }
-            if ((" | [Day " + getColoredChangeText(currency.get(i).getPercentChange24h()) + "]").length()
-                    > paddingDayChange) {
-                paddingDayChange = (" | [Day "
-                        + getColoredChangeText(currency.get(i).getPercentChange24h()) + "]").length();
-            }
-            if ((" | [Week " + getColoredChangeText(currency.get(i).getPercentChange7d()) + "]").length()
-                    > paddingWeekChange) {
-                paddingWeekChange = (" | [Week "
-                        + getColoredChangeText(currency.get(i).getPercentChange7d()) + "]").length();
+    private BotResponse handleTop(final TickerTable currency, final NumberFormat nf, final int min, final int max) {
+        int start = Math.max(0, min);
+        int end = Math.min(max, currency.size());
+        if (start >= end) {
+            return new BotResponse(BotIntention.NO_REPLY, null, null);
+        }
+        int rows = end - start;
+        String[][] cells = new String[rows][TOP_COLUMNS];
+        int[] padding = new int[TOP_COLUMNS];
+        for (int i = 0; i < rows; i++) {
+            int row = start + i;
+            String[] cell = cells[i];
+            cell[TOP_NAME] = Colors.CYAN + Colors.BOLD + currency.getName(row) + Colors.NORMAL + Colors.TEAL;
+            cell[TOP_PRICE] = formatUsd(nf, currency.getPriceUsd(row));
+            cell[TOP_RANK] = " | Rank: " + currency.getRank(row) + Colors.TEAL;
+            cell[TOP_MARKET_CAP] = " | Market Cap: " + formatUsd(nf, currency.getMarketCapUsd(row));
+            cell[TOP_HOUR] = " | [Hour " + getColoredChangeText(currency.getPercentChange1h(row)) + "]";
+            cell[TOP_DAY] = " | [Day " + getColoredChangeText(currency.getPercentChange24h(row)) + "]";
+            cell[TOP_WEEK] = " | [Week " + getColoredChangeText(currency.getPercentChange7d(row)) + "]";
+            for (int column = 0; column < TOP_COLUMNS; column++) {
+                padding[column] = Math.max(padding[column], cell[column].length());
             }
         }
-        paddingName += TOP_NAME_FORMATTING_CHARS;
-        paddingRank += TOP_RANK_FORMATTING_CHARS;
-        paddingMarketCap += TOP_MARKET_CAP_FORMATTING_CHARS;
-        log.debug("Name padding: " + paddingName);
-        log.debug("Value padding: " + paddingPrice);
-        log.debug("Rank padding: " + paddingRank);
-        log.debug("MarketCap padding: " + paddingMarketCap);
-        log.debug("1h padding: " + paddingHourChange);
-        log.debug("1d padding: " + paddingDayChange);
-        log.debug("1w padding: " + paddingWeekChange);
-        for (int i = min; i < max; i++) {
-            String hourChange = getColoredChangeText(currency.get(i).getPercentChange1h());
-            String dayChange = getColoredChangeText(currency.get(i).getPercentChange24h());
-            String weekChange = getColoredChangeText(currency.get(i).getPercentChange7d());
-            String message =
-                    // name
-                    StringUtils.rightPad(Colors.CYAN + Colors.BOLD + currency.get(i).getName() + Colors.NORMAL
-                            + Colors.TEAL, paddingName)
-                            // price
-                            + " | " // no need to be padded
-                            + StringUtils.leftPad(nf.format(Double.valueOf(currency.get(i).getPriceUsd())),
-                            paddingPrice)
-                            // rank
-                            + StringUtils.rightPad(" | Rank: " + currency.get(i).getRank() + Colors.TEAL, paddingRank)
-                            // market cap
-                            + StringUtils.rightPad(" | Market Cap: "
-                            + nf.format(Double.valueOf(currency.get(i).getMarketCapUsd())), paddingMarketCap)
-                            // hourly change
-                            + StringUtils.leftPad(" | [Hour " + hourChange + "]", paddingHourChange)
-                            // daily change
-                            + StringUtils.leftPad(" | [Day " + dayChange + "]", paddingDayChange)
-                            // weekly change
-                            + StringUtils.leftPad(" | [Week " + weekChange + "]", paddingWeekChange);
-            IRCUtils.sendChannelMessage(event.getChannel(), message);
+        if (log.isDebugEnabled()) {
+            log.debug("!top column padding: " + Arrays.toString(padding));
         }
+        return BotResponse.ofLines(BotIntention.CHAT, null, OutboundLane.BULK, false,
+                Arrays.stream(cells).map(cell -> formatTopRow(cell, padding)).iterator());
     }
 
     /**
-     * Returns all String data from provided Reader.
+     * Joins one row of the top coins table into a line.
      *
-     * @param rd - The reader to read from
-     * @return String - A concatenated String of all data
-     * @throws IOException Throws IOException if unable to read JSON
+     * @param cell    The formatted cells of the row.
+     * @param padding The width of each column.
+     * @return The line.
      */
-    private static String readAll(final Reader rd) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-            sb.append((char) cp);
-        }
-        return sb.toString();
+    private static String formatTopRow(final String[] cell, final int[] padding) {
+        return StringUtils.rightPad(cell[TOP_NAME], padding[TOP_NAME])
+                + " | " // no need to be padded
+                + StringUtils.leftPad(cell[TOP_PRICE], padding[TOP_PRICE])
+                + StringUtils.rightPad(cell[TOP_RANK], padding[TOP_RANK])
+                + StringUtils.rightPad(cell[TOP_MARKET_CAP], padding[TOP_MARKET_CAP])
+                + StringUtils.leftPad(cell[TOP_HOUR], padding[TOP_HOUR])
+                + StringUtils.leftPad(cell[TOP_DAY], padding[TOP_DAY])
+                + StringUtils.leftPad(cell[TOP_WEEK], padding[TOP_WEEK]);
     }
 
     @Override
@@ -0,0 +1,261 @@
+package net.alureon.ircbutt.command.commands.cryptocurrency;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A columnar table of ticker data from the CoinMarketCap API.  Rather than building one object full of
+ * Strings per coin and parsing them again every time they are used, the JSON is decoded in a single
+ * streaming pass straight into primitive arrays.  Missing or unparseable numbers are stored as NaN.
+ */
+public final class TickerTable {
+
+    /**
+     * The number of rows to allocate before the first resize.  The ticker endpoint returns 100 coins by
+     * default, so this is resized a few times at most.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * The name of each coin.
+     */
+    private String[] name = new String[INITIAL_CAPACITY];
+    /**
+     * The CoinMarketCap rank of each coin.
+     */
+    private int[] rank = new int[INITIAL_CAPACITY];
+    /**
+     * The current price of each coin in USD.
+     */
+    private double[] priceUsd = new double[INITIAL_CAPACITY];
+    /**
+     * The market cap of each coin in USD.
+     */
+    private double[] marketCapUsd = new double[INITIAL_CAPACITY];
+    /**
+     * The percent change of each coin over the last hour.
+     */
+    private double[] percentChange1h = new double[INITIAL_CAPACITY];
+    /**
+     * The percent change of each coin over the last day.
+     */
+    private double[] percentChange24h = new double[INITIAL_CAPACITY];
+    /**
+     * The percent change of each coin over the last week.
+     */
+    private double[] percentChange7d = new double[INITIAL_CAPACITY];
+    /**
+     * The number of rows currently in the table.
+     */
+    private int size;
+
+    /**
+     * Private constructor, tables are created by decoding.
+     */
+    private TickerTable() {
+
+    }
+
+    /**
+     * Decodes a CoinMarketCap ticker response into a new table in a single pass.  Fields the bot
+     * doesn't use are skipped without being materialized.  A JSON object at the top level (which is
+     * how the API reports errors) results in an empty table.
+     *
+     * @param reader The reader containing the JSON response.
+     * @return The decoded table.
+     * @throws IOException If the response couldn't be read or isn't valid JSON.
+     */
+    public static TickerTable decode(final Reader reader) throws IOException {
+        TickerTable table = new TickerTable();
+        JsonReader json = new JsonReader(reader);
+        try {
+            if (json.peek() != JsonToken.BEGIN_ARRAY) {
+                json.skipValue();
+                return table;
+            }
+            json.beginArray();
+            while (json.hasNext()) {
+                table.decodeRow(json);
+            }
+            json.endArray();
+        } catch (IllegalStateException ex) {
+            throw new IOException("Unexpected JSON structure from CoinMarketCap: " + ex.getMessage(), ex);
+        }
+        return table;
+    }
+
+    /**
+     * Decodes a single coin object into the next row of the table.
+     *
+     * @param json The reader, positioned at the start of a coin object.
+     * @throws IOException If the object couldn't be read.
+     */
+    private void decodeRow(final JsonReader json) throws IOException {
+        ensureCapacity();
+        int row = size;
+        name[row] = null;
+        rank[row] = 0;
+        priceUsd[row] = Double.NaN;
+        marketCapUsd[row] = Double.NaN;
+        percentChange1h[row] = Double.NaN;
+        percentChange24h[row] = Double.NaN;
+        percentChange7d[row] = Double.NaN;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name":
+                    name[row] = nextString(json);
+                    break;
+                case "rank":
+                    rank[row] = (int) nextDouble(json);
+                    break;
+                case "price_usd":
+                    priceUsd[row] = nextDouble(json);
+                    break;
+                case "market_cap_usd":
+                    marketCapUsd[row] = nextDouble(json);
+                    break;
+                case "percent_change_1h":
+                    percentChange1h[row] = nextDouble(json);
+                    break;
+                case "percent_change_24h":
+                    percentChange24h[row] = nextDouble(json);
+                    break;
+                case "percent_change_7d":
+                    percentChange7d[row] = nextDouble(json);
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        size++;
+    }
+
+    /**
+     * Reads the next value as a double.  The API quotes all of its numbers, which the JsonReader handles.
+     *
+     * @param json The reader.
+     * @return The value, or NaN if it was null or not a number.
+     * @throws IOException If the value couldn't be read.
+     */
+    private static double nextDouble(final JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return Double.NaN;
+        }
+        try {
+            return json.nextDouble();
+        } catch (NumberFormatException ex) {
+            json.skipValue();
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Reads the next value as a String.
+     *
+     * @param json The reader.
+     * @return The value, or null if it was null.
+     * @throws IOException If the value couldn't be read.
+     */
+    private static String nextString(final JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        return json.nextString();
+    }
+
+    /**
+     * Grows every column when the table is full.
+     */
+    private void ensureCapacity() {
+        if (size < name.length) {
+            return;
+        }
+        int capacity = name.length * 2;
+        name = Arrays.copyOf(name, capacity);
+        rank = Arrays.copyOf(rank, capacity);
+        priceUsd = Arrays.copyOf(priceUsd, capacity);
+        marketCapUsd = Arrays.copyOf(marketCapUsd, capacity);
+        percentChange1h = Arrays.copyOf(percentChange1h, capacity);
+        percentChange24h = Arrays.copyOf(percentChange24h, capacity);
+        percentChange7d = Arrays.copyOf(percentChange7d, capacity);
+    }
+
+    /**
+     * Returns the number of coins in the table.
+     * @return The number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the name of the coin in the given row.
+     * @param row The row.
+     * @return The coin's name.
+     */
+    public String getName(final int row) {
+        return name[row];
+    }
+
+    /**
+     * Returns the CoinMarketCap rank of the coin in the given row.
+     * @param row The row.
+     * @return The coin's rank.
+     */
+    public int getRank(final int row) {
+        return rank[row];
+    }
+
+    /**
+     * Returns the price in USD of the coin in the given row.
+     * @param row The row.
+     * @return The coin's price, or NaN if unknown.
+     */
+    public double getPriceUsd(final int row) {
+        return priceUsd[row];
+    }
+
+    /**
+     * Returns the market cap in USD of the coin in the given row.
+     * @param row The row.
+     * @return The coin's market cap, or NaN if unknown.
+     */
+    public double getMarketCapUsd(final int row) {
+        return marketCapUsd[row];
+    }
+
+    /**
+     * Returns the hourly percent change of the coin in the given row.
+     * @param row The row.
+     * @return The coin's change over the last hour, or NaN if unknown.
+     */
+    public double getPercentChange1h(final int row) {
+        return percentChange1h[row];
+    }
+
+    /**
+     * Returns the daily percent change of the coin in the given row.
+     * @param row The row.
+     * @return The coin's change over the last day, or NaN if unknown.
+     */
+    public double getPercentChange24h(final int row) {
+        return percentChange24h[row];
+    }
+
+    /**
+     * Returns the weekly percent change of the coin in the given row.
+     * @param row The row.
+     * @return The coin's change over the last week, or NaN if unknown.
+     */
+    public double getPercentChange7d(final int row) {
+        return percentChange7d[row];
+    }
+}
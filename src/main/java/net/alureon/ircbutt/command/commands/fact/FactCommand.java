@@ -222,7 +222,7 @@ public final class FactCommand implements Command {
         } else if (cmd[0].equalsIgnoreCase("factfind") || cmd[0].equalsIgnoreCase("factsearch")
                 || cmd[0].equalsIgnoreCase("fsearch") || cmd[0].equalsIgnoreCase("ffind")
                 || cmd[0].equals("ff") || cmd[0].equals("fs")) {
-            String info = butt.getFactTable().findFact(StringUtils.getArgs(cmd));
+            String info = butt.getFactTable().findFact(event, StringUtils.getArgs(cmd));
             return getBotResponseForQuery(butt, info);
         } else {
             String info = getFactParseArgs(butt, cmd);
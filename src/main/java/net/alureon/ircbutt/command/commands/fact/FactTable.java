@@ -1,17 +1,27 @@
 package net.alureon.ircbutt.command.commands.fact;
 
 import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.command.PagedCursor;
+import net.alureon.ircbutt.game.FactCard;
+import net.alureon.ircbutt.game.FactSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * This class contains functions for working with the bot's Fact table in SQL.
+ * This class contains functions for working with the bot's Fact table in SQL.  It is also where the guessing
+ * game gets its facts from.
  */
-public final class FactTable {
+public final class FactTable implements FactSource {
 
 
     /**
@@ -22,6 +32,18 @@ public final class FactTable {
      * The logger for this class.
      */
     private static final Logger log = LogManager.getLogger();
+    /**
+     * The most facts a search finds.
+     */
+    private static final int MAX_SEARCH_RESULTS = 24;
+    /**
+     * The number of search results fetched from the database at a time, as they are asked for with !more.
+     */
+    private static final int SEARCH_PAGE_SIZE = 5;
+    /**
+     * The facts read most often.
+     */
+    private final HotFacts hotFacts = new HotFacts();
 
     /**
      * Constructor for this object accepts a reference to the IRCbutt object.
@@ -46,6 +68,7 @@ public final class FactTable {
                 ps.setString(2, data);
                 ps.setString(3, creator);
                 ps.executeUpdate();
+                hotFacts.invalidate(item);
             } else {
                 log.error("Received null PreparedStatement in FactTable.  Cannot insert knowledge into database.");
             }
@@ -55,11 +78,17 @@ public final class FactTable {
     }
 
     /**
-     * Retrieves a fact from the database.
+     * Retrieves a fact, from the hot facts if it is there and from the database if not.
      * @param item The KEY we are searching the database for.
      * @return The VALUE the database holds for said key.
      */
     public String queryKnowledge(final String item) {
+        long now = System.currentTimeMillis();
+        String cached = hotFacts.get(item, now);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = hotFacts.generation();
         String query = "SELECT * FROM `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
                 + "_knowledge` WHERE item=?";
         try (PreparedStatement ps = butt.getSqlManager().getPreparedStatement(query)) {
@@ -68,7 +97,9 @@ public final class FactTable {
             ResultSet rs = butt.getSqlManager().getResultSet(ps);
             assert rs != null;
             if (rs.next()) {
-                return rs.getString("data");
+                String data = rs.getString("data");
+                hotFacts.put(item, data, now, generation);
+                return data;
             }
         } catch (SQLException ex) {
             log.error("Failed to query knowledge database. ", ex.getMessage());
@@ -89,6 +120,7 @@ public final class FactTable {
             if (ps != null) {
                 ps.setString(1, item);
                 int rows = ps.executeUpdate();
+                hotFacts.invalidate(item);
                 return rows > 0; // if no rows have been updated then we haven't actually deleted anything
             } else {
                 log.error("Received null PreparedStatement in FactTable.  Cannot delete knowledge.");
@@ -143,6 +175,46 @@ public final class FactTable {
         return null;
     }
 
+    @Override
+    public List<Integer> getFactIds() {
+        List<Integer> ids = new ArrayList<>();
+        String query = "SELECT id FROM `" + butt.getYamlConfigurationFile().getSqlTablePrefix() + "_knowledge`";
+        try (PreparedStatement ps = butt.getSqlManager().getPreparedStatement(query);
+             ResultSet rs = butt.getSqlManager().getResultSet(ps)) {
+            if (rs != null) {
+                while (rs.next()) {
+                    ids.add(rs.getInt("id"));
+                }
+            } else {
+                log.error("Received null ResultSet in FactTable.  Cannot retrieve fact ids.");
+            }
+        } catch (SQLException ex) {
+            log.error("SQL Exception has occurred. ", ex.getMessage());
+        }
+        return ids;
+    }
+
+    @Override
+    public FactCard getFact(final int id) {
+        String query = "SELECT item, data FROM `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
+                + "_knowledge` WHERE id = ?";
+        try (PreparedStatement ps = butt.getSqlManager().getPreparedStatement(query)) {
+            if (ps != null) {
+                ps.setInt(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return new FactCard(rs.getString("item"), rs.getString("data"));
+                    }
+                }
+            } else {
+                log.error("Received null PreparedStatement in FactTable.  Cannot lookup fact.");
+            }
+        } catch (SQLException ex) {
+            log.error("Encountered SQL Exception in getFact ", ex.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Retrieves the info for a fact from the database.  This information consists of the fact's ID number,
      * the name of the fact, the person who added the fact, and the date it was added on.
@@ -185,36 +257,74 @@ public final class FactTable {
 
     /**
      * Search the fact database for facts.  This search looks for fact DATA that is like the search term,
-     * not the fact's name itself.  If there are many, this will load into !more.
+     * not the fact's name itself.  Only the ids of the matches are read up front; the facts themselves are
+     * fetched a page at a time, as they are shown, and the rest wait in !more.
+     * @param event The event the search came from, whose !more the other results are loaded into.
      * @param search The string to search the fact database for.
      * @return returns the first result that matches the query.
      */
-    String findFact(final String search) {
-        butt.getCommandHandler().clearMore();
-        String firstResult = null;
-        String query = "SELECT * FROM `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
-                + "_knowledge` WHERE (data REGEXP ?) LIMIT 24";
+    String findFact(final GenericMessageEvent event, final String search) {
+        List<Integer> ids = new ArrayList<>();
+        String query = "SELECT id FROM `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
+                + "_knowledge` WHERE (data REGEXP ?) LIMIT " + MAX_SEARCH_RESULTS;
         try (PreparedStatement ps = butt.getSqlManager().getPreparedStatement(query)) {
             if (ps != null) {
                 ps.setString(1, search);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next()) {
-                    firstResult = getFormattedFact(rs);
+                try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        butt.getCommandHandler().addMore(getFormattedFact(rs));
+                        ids.add(rs.getInt("id"));
                     }
                 }
-                rs.close();
             } else {
                 log.error("Received null PreparedStatement in FactTable.  Unable to search for fact.");
             }
         } catch (SQLException ex) {
             log.error("SQL Exception ", ex.getMessage());
         }
-        if (butt.getCommandHandler().getMoreList().size() > 0) {
-            return firstResult + " [+" + butt.getCommandHandler().getMoreList().size() + " more]";
+        PagedCursor<Integer> cursor = new PagedCursor<>(ids, SEARCH_PAGE_SIZE, this::getFormattedFacts);
+        String firstResult = cursor.next();
+        if (firstResult == null) {
+            butt.getCommandHandler().clearMore(event);
+            return null;
+        }
+        return butt.getCommandHandler().setMore(event, firstResult, cursor);
+    }
+
+    /**
+     * Fetches some facts by id and formats them, for a page of search results.
+     * @param ids The ids of the facts.
+     * @return The formatted facts, in the order of the ids.  Facts deleted since the search are left out.
+     */
+    private List<String> getFormattedFacts(final List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String query = "SELECT * FROM `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
+                + "_knowledge` WHERE id IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+        Map<Integer, String> facts = new HashMap<>();
+        try (PreparedStatement ps = butt.getSqlManager().getPreparedStatement(query)) {
+            if (ps != null) {
+                for (int i = 0; i < ids.size(); i++) {
+                    ps.setInt(i + 1, ids.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        facts.put(rs.getInt("id"), getFormattedFact(rs));
+                    }
+                }
+            } else {
+                log.error("Received null PreparedStatement in FactTable.  Unable to fetch search results.");
+            }
+        } catch (SQLException ex) {
+            log.error("SQL Exception ", ex.getMessage());
+        }
+        List<String> lines = new ArrayList<>();
+        for (Integer id : ids) {
+            if (facts.containsKey(id)) {
+                lines.add(facts.get(id));
+            }
         }
-        return firstResult;
+        return lines;
     }
 
     /**
@@ -270,6 +380,7 @@ public final class FactTable {
                 ps.setString(1, data);
                 ps.setString(2, item);
                 ps.executeUpdate();
+                hotFacts.invalidate(item);
             } else {
                 log.error("Received null PreparedStatement in FactTable.  Knowledge not appended.");
             }
@@ -278,4 +389,11 @@ public final class FactTable {
         }
     }
 
+    /**
+     * Returns the HotFacts object.
+     * @return HotFacts
+     */
+    public HotFacts getHotFacts() {
+        return hotFacts;
+    }
 }
@@ -0,0 +1,252 @@
+package net.alureon.ircbutt.command.commands.fact;
+
+import net.alureon.ircbutt.snapshot.SnapshotReader;
+import net.alureon.ircbutt.snapshot.SnapshotWriter;
+import net.alureon.ircbutt.snapshot.Snapshottable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the facts people read most often in memory, so asking for a popular fact doesn't go to the database each
+ * time.  Fact names aren't case sensitive.  The least recently read fact is dropped first once the cache is full,
+ * and every fact is read from the database again after a while, in case another bot sharing the database changed
+ * it.  Facts changed through this bot are dropped from the cache straight away, and a read that was already under
+ * way when its fact was changed isn't kept, so it can't put the old fact back.
+ * <p>
+ * The cache is kept over a restart by the snapshot, so the bot doesn't start with a cold cache.
+ */
+public final class HotFacts implements Snapshottable {
+
+    /**
+     * The most facts to keep.
+     */
+    static final int MAX_ENTRIES = 128;
+    /**
+     * How long a fact is kept after it was read from the database, in milliseconds.
+     */
+    static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * The initial capacity of the backing map.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * The load factor of the backing map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * The most recently changed facts to remember the changes of.
+     */
+    static final int MAX_INVALIDATIONS = 256;
+    /**
+     * The facts, by lower-cased name, in least-recently-used order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    /**
+     * The generation each recently changed fact was dropped in, by lower-cased name, oldest first.
+     */
+    private final LinkedHashMap<String, Long> invalidated = new LinkedHashMap<>();
+    /**
+     * The number of facts dropped because they were changed, which is also the current generation.
+     */
+    private long generation;
+    /**
+     * The newest generation forgotten from the invalidated map to keep it small.  A read begun before it may have
+     * missed a change, so it isn't kept.
+     */
+    private long forgotten;
+    /**
+     * The number of lookups that found a fresh fact.
+     */
+    private long hits;
+    /**
+     * The number of lookups that had to go to the database.
+     */
+    private long misses;
+
+    /**
+     * Builds the key a fact is kept under.
+     * @param item The fact name.
+     * @return The key.
+     */
+    private static String key(final String item) {
+        return item.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns a fact, if it is in the cache and fresh.
+     * @param item The fact name.
+     * @param now The current time in epoch millis.
+     * @return The fact, or null if it has to be read from the database.
+     */
+    synchronized String get(final String item, final long now) {
+        String key = key(item);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.isExpired(now)) {
+            entries.remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.reads++;
+        return entry.data;
+    }
+
+    /**
+     * Returns the current generation, to take before reading a fact from the database and pass to put.
+     * @return The generation.
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Keeps a fact just read from the database, unless it was changed after the read began.
+     * @param item The fact name.
+     * @param data The fact.
+     * @param now The current time in epoch millis.
+     * @param readGeneration The generation taken before the fact was read.
+     */
+    synchronized void put(final String item, final String data, final long now, final long readGeneration) {
+        String key = key(item);
+        Long changed = invalidated.get(key);
+        if (readGeneration < forgotten || (changed != null && changed > readGeneration)) {
+            return;
+        }
+        put(key, new Entry(data, now, 1));
+    }
+
+    /**
+     * Adds an entry, dropping the least recently read once the cache is full.
+     * @param key The key.
+     * @param entry The entry.
+     */
+    private void put(final String key, final Entry entry) {
+        entries.put(key, entry);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > MAX_ENTRIES && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Drops a fact that has just been changed.
+     * @param item The fact name.
+     */
+    synchronized void invalidate(final String item) {
+        String key = key(item);
+        entries.remove(key);
+        generation++;
+        invalidated.remove(key);  // so it moves to the newest end
+        invalidated.put(key, generation);
+        Iterator<Long> iterator = invalidated.values().iterator();
+        while (invalidated.size() > MAX_INVALIDATIONS && iterator.hasNext()) {
+            forgotten = iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the number of facts in the cache.
+     * @return The number of facts.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the facts, least read first, so that restoring them in order leaves the most read as the last to be
+     * dropped.
+     * @param out Where to write the facts.
+     * @throws IOException If they can't be written.
+     */
+    @Override
+    public synchronized void writeSnapshot(final SnapshotWriter out) throws IOException {
+        List<Map.Entry<String, Entry>> sorted = new ArrayList<>(entries.entrySet());
+        sorted.sort(Comparator.comparingLong(entry -> entry.getValue().reads));
+        out.writeInt(sorted.size());
+        for (Map.Entry<String, Entry> entry : sorted) {
+            out.writeString(entry.getKey());
+            out.writeString(entry.getValue().data);
+            out.writeLong(entry.getValue().loadedAt);
+            out.writeLong(entry.getValue().reads);
+        }
+    }
+
+    @Override
+    public synchronized void readSnapshot(final SnapshotReader in, final long savedAt) {
+        long now = System.currentTimeMillis();
+        int count = in.readCount();
+        for (int i = 0; i < count; i++) {
+            String key = in.readString();
+            String data = in.readString();
+            long loadedAt = in.readLong();
+            long reads = in.readLong();
+            Entry entry = new Entry(data, loadedAt, reads);
+            if (key != null && data != null && !entry.isExpired(now)) {
+                put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Returns a short summary of the cache, for the stats command.
+     * @return The summary.
+     */
+    public synchronized String getStats() {
+        return "hot facts: " + entries.size() + "/" + MAX_ENTRIES + " facts, " + hits + " hits, " + misses
+                + " misses";
+    }
+
+    /**
+     * A fact, when it was read from the database, and how often it has been read since.
+     */
+    private static final class Entry {
+
+        /**
+         * The fact.
+         */
+        private final String data;
+        /**
+         * When the fact was read from the database, in epoch millis.
+         */
+        private final long loadedAt;
+        /**
+         * The number of times the fact has been read.
+         */
+        private long reads;
+
+        /**
+         * Creates an entry.
+         * @param data The fact.
+         * @param loadedAt When the fact was read from the database, in epoch millis.
+         * @param reads The number of times the fact has been read.
+         */
+        Entry(final String data, final long loadedAt, final long reads) {
+            this.data = data;
+            this.loadedAt = loadedAt;
+            this.reads = reads;
+        }
+
+        /**
+         * Returns whether or not the fact should be read from the database again.
+         * @param now The current time in epoch millis.
+         * @return True if the fact is too old.
+         */
+        boolean isExpired(final long now) {
+            return now - loadedAt >= TTL_MILLIS;
+        }
+    }
+}
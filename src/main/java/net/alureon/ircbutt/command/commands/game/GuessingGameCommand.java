@@ -2,6 +2,7 @@ package net.alureon.ircbutt.command.commands.game;
 
 import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.game.GameSession;
 import net.alureon.ircbutt.game.GuessingGame;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
@@ -17,30 +18,38 @@ import java.util.Arrays;
 public final class GuessingGameCommand implements Command {
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        if (butt.getGameManager().getGameActive() && butt.getGameManager().getActiveGame() instanceof GuessingGame) {
-            GuessingGame game = (GuessingGame) butt.getGameManager().getActiveGame();
+        String channel = butt.getNetworkManager().getChannelKey(event);
+        if (channel == null) {
+            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "games are played in channels!");
+        }
+        GameSession session = butt.getGameManager().getSession(channel);
+        if (session != null && session.getGame() instanceof GuessingGame) {
+            GuessingGame game = (GuessingGame) session.getGame();
+            session.touch();
             if (cmd[0].equals("guessinggame")) {
                 return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "a game is already active!",
                         "Current hint is: " + game.getCurrentHint());
             } else if (cmd[0].equals("endguessinggame")) {
                 String scores = game.getScores();
-                butt.getGameManager().setGameActive(false);
+                butt.getGameManager().end(session);
                 return new BotResponse(BotIntention.CHAT, null, "Game ended!", scores);
             } else if (cmd[0].equals("stumped")) {
-                return game.addStumpedPlayer(event.getUser().getNick());
+                BotResponse response = game.addStumpedPlayer(event.getUser().getNick());
+                if (game.isOver()) {
+                    butt.getGameManager().end(session);
+                }
+                return response;
             }
-        } else {
+        } else if (cmd[0].equals("guessinggame")) {
                 System.out.println("Starting new Guessing game with players: "
                         + StringUtils.arrayToString(StringUtils.getArgsArray(cmd)) + " "
                         + butt.getYamlConfigurationFile().getBotNickName());
                 GuessingGame guessingGame = new GuessingGame(butt);
-                butt.getGameManager().setActiveGame(guessingGame);
-                String fact = butt.getFactTable().getRandomFactName();
-                String hint = butt.getFactTable().queryKnowledge(fact);
-                guessingGame.setCurrentMysteryFactName(fact);
-                guessingGame.setCurrentHint(hint);
+                if (butt.getGameManager().start(channel, guessingGame) == null) {
+                    return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "a game is already active!");
+                }
                 return new BotResponse(BotIntention.CHAT, null,
-                        "Guessing Game Started!  The first mystery fact is...", hint);
+                        "Guessing Game Started!  The first mystery fact is...", guessingGame.getCurrentHint());
         }
         return new BotResponse(BotIntention.NO_REPLY, null, null);
     }
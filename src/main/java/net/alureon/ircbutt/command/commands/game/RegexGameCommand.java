@@ -2,6 +2,7 @@ package net.alureon.ircbutt.command.commands.game;
 
 import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.game.GameSession;
 import net.alureon.ircbutt.game.RegexGame;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
@@ -18,7 +19,11 @@ public final class RegexGameCommand implements Command {
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
         if (cmd[0].equals("regexgame")) {
-            return startNewRegexGame(butt);
+            String channel = butt.getNetworkManager().getChannelKey(event);
+            if (channel == null) {
+                return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "games are played in channels!");
+            }
+            return startNewRegexGame(butt, event, channel);
         }
         return null;
     }
@@ -26,13 +31,23 @@ public final class RegexGameCommand implements Command {
     /**
      * Starts a new regex game.
      * @param butt The IRCbutt instance for accessing the database
+     * @param event The event that asked for the game.
+     * @param channel The channel key of the channel to play in.
      * @return the bot's response
      */
-    private BotResponse startNewRegexGame(final IRCbutt butt) {
+    private BotResponse startNewRegexGame(final IRCbutt butt, final GenericMessageEvent event,
+                                          final String channel) {
         String match = butt.getFactTable().getRandomFactName();
         String cantMatch = butt.getFactTable().getRandomFactName();
         RegexGame regexGame = new RegexGame(match, cantMatch);
-        butt.getGameManager().setActiveGame(regexGame);
+        GameSession current = butt.getGameManager().getSession(channel);
+        if (current != null && current.getGame() instanceof RegexGame) {
+            // a new regex game replaces the old one, which has no other way to end
+            butt.getGameManager().end(current);
+        }
+        if (butt.getGameManager().start(channel, regexGame) == null) {
+            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "a game is already active!");
+        }
         return new BotResponse(BotIntention.CHAT, null, "Regex Game started!",
                 "Match: '" + match + "' Do not match: '" + cantMatch + "'");
     }
@@ -1,22 +1,25 @@
 package net.alureon.ircbutt.command.commands.google;
 
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.http.CircuitOpenException;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.search.Scraper;
+import net.alureon.ircbutt.search.ScraperSource;
+import net.alureon.ircbutt.search.SearchResult;
 import net.alureon.ircbutt.util.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jsoup.Jsoup;
-import org.jsoup.select.Elements;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides functionality for doing Google searches in an IRC channel.
@@ -28,56 +31,117 @@ public final class GoogleSearchCommand implements Command {
      * The logger for the class.
      */
     private static final Logger log = LogManager.getLogger(GoogleSearchCommand.class);
+    /**
+     * The name this command's results are cached under.
+     */
+    private static final String CACHE_SOURCE = "g";
+    /**
+     * How long Google results stay in the search cache.
+     */
+    private static final long CACHE_TTL_MINUTES = 10;
+    /**
+     * The URL used to search Google.
+     */
+    private static final String GOOGLE = "http://www.google.com/search?q=";
+    /**
+     * The character set used to encode queries and decode result URLs.
+     */
+    private static final String CHARSET = "UTF-8";
+    /**
+     * The user agent to identify the bot to Google.
+     */
+    private static final String USER_AGENT = "IRCButt (+https://github.com/proxa/IRCbutt)";
+    /**
+     * The most results to keep from a search.
+     */
+    private static final int MAX_RESULTS = 10;
+    /**
+     * The most of a results page to download, in kibibytes.
+     */
+    private static final int MAX_BODY_KILOBYTES = 512;
+    /**
+     * Where the results are on a page of Google results.
+     */
+    private static final ScraperSource SOURCE = new ScraperSource(CACHE_SOURCE, USER_AGENT, ".g>.r>a", MAX_RESULTS,
+            MAX_BODY_KILOBYTES, GoogleSearchCommand::extractResult);
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
-        // clear !more list
-        butt.getCommandHandler().clearMore();
-
-        String google = "http://www.google.com/search?q=";
         String search = StringUtils.getArgs(cmd);
-        String charset = "UTF-8";
-        String userAgent = "IRCButt (+https://github.com/proxa/IRCbutt)";
-        String response = "";
-        String additionalResponse = "";
         try {
-            Elements links = Jsoup.connect(google
-                    + URLEncoder.encode(search, charset)).userAgent(userAgent).get().select(".g>.r>a");
-            int size = links.size();
-            for (int i = 0; i < size; i++) {
-                String title = links.get(i).text();
-                String url = links.get(i).absUrl("href");
-                // Google returns URLs in format "http://www.google.com/url?q=<url>&sa=U&ei=<someKey>".
-                url = URLDecoder.decode(url.substring(url.indexOf('=') + 1, url.indexOf('&')), "UTF-8");
-
-                if (!url.startsWith("http")) {
-                    continue; // Ads/news/etc.
-                }
-
-                if (i == 0) {
-                    response = "Title: " + title;
-                    additionalResponse = url;
-                } else {
-                    butt.getCommandHandler().addMore("Title: " + title + " " + url);
+            SearchResult result = butt.getSearchResultCache().get(CACHE_SOURCE, search);
+            if (result == null) {
+                result = search(butt.getScraper(), search);
+                if (!result.isEmpty()) {
+                    butt.getSearchResultCache().put(CACHE_SOURCE, search, result, CACHE_TTL_MINUTES,
+                            TimeUnit.MINUTES);
                 }
             }
-            if (!response.isEmpty() && !additionalResponse.isEmpty()) {
-                if (butt.getCommandHandler().getMoreList().size() > 0) {
-                    return new BotResponse(BotIntention.CHAT, null, response + " [+"
-                            + butt.getCommandHandler().getMoreList().size() + " more]", additionalResponse);
-                } else {
-                    return new BotResponse(BotIntention.CHAT, null, response, additionalResponse);
-                }
+            if (!result.isEmpty()) {
+                SearchResult.Item first = result.getFirst();
+                return new BotResponse(BotIntention.CHAT, null,
+                        butt.getCommandHandler().setMore(event, first.getText(), result.moreCursor()), first.getUrl());
             }
-        } catch (UnsupportedEncodingException ex) {
-            log.error("UnsupportedEncodingException encountered ", ex.getMessage());
+        } catch (CircuitOpenException ex) {
+            butt.getCommandHandler().clearMore(event);
+            return new BotResponse(BotIntention.CHAT, null, ex.getMessage());
         } catch (IOException ex) {
             log.error("IOException encountered ", ex.getMessage());
         }
+        butt.getCommandHandler().clearMore(event);
         return new BotResponse(BotIntention.CHAT, null,
                 butt.getYamlConfigurationFile().getBotNickName() + " didnt find nothing");
     }
 
+    /**
+     * Searches Google and returns the organic results.  Ads, news and other results that don't link
+     * straight to a site are skipped.
+     * @param scraper The Scraper to fetch the results with.
+     * @param search The query to search for.
+     * @return The ranked results of the search (may be empty).
+     * @throws IOException If Google couldn't be reached.
+     */
+    public static SearchResult search(final Scraper scraper, final String search) throws IOException {
+        return scraper.scrape(SOURCE, GOOGLE + URLEncoder.encode(search, CHARSET), null);
+    }
+
+    /**
+     * Pulls the organic results out of a page of Google results.
+     * @param doc The page of results.
+     * @return The ranked results (may be empty).
+     */
+    public static SearchResult parse(final Document doc) {
+        return Scraper.extract(SOURCE, doc, null);
+    }
+
+    /**
+     * Turns a result link into a search result.
+     * @param link The result link.
+     * @return The result, or null if the link doesn't go straight to a site (ads, news, etc).
+     */
+    private static SearchResult.Item extractResult(final Element link) {
+        String url = decodeUrl(link.absUrl("href"));
+        if (!url.startsWith("http")) {
+            return null;
+        }
+        return new SearchResult.Item("Title: " + link.text(), url);
+    }
+
+    /**
+     * Google returns URLs in format "http://www.google.com/url?q=&lt;url&gt;&amp;sa=U&amp;ei=&lt;someKey&gt;".
+     * This pulls the real URL out of that.
+     * @param url The URL as Google returned it.
+     * @return The URL of the actual result.
+     */
+    private static String decodeUrl(final String url) {
+        int start = url.indexOf('=');
+        int end = url.indexOf('&');
+        if (start == -1 || end <= start) {
+            return url;
+        }
+        return Scraper.urlDecode(url.substring(start + 1, end));
+    }
+
     @Override
     public ArrayList<String> getCommandAliases() {
         return new ArrayList<>(Collections.singletonList("g"));
@@ -1,6 +1,7 @@
 package net.alureon.ircbutt.command.commands.karma;
 
 import net.alureon.ircbutt.command.Command;
+import net.alureon.ircbutt.command.ListCursor;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
 import net.alureon.ircbutt.IRCbutt;
@@ -11,9 +12,16 @@ import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
 
 /**
  * Provides Karma functionality to the bot, where users can check an item's karma, decrease it, or increase it.
+ * The top and bottom of the leaderboard, and an item's rank, come from the in-memory KarmaLeaderboard.
+ * <p>
+ * "top" and "bottom" on their own ask for the leaderboard, so the karma of items with those names is looked up
+ * with !karma rank instead, which also shows the item's karma level.
  */
 public final class KarmaCommand implements Command {
 
@@ -26,10 +34,29 @@ public final class KarmaCommand implements Command {
      * The logger for this class.
      */
     private static final Logger log = LogManager.getLogger();
+    /**
+     * The most items listed by !karma top and !karma bottom.
+     */
+    private static final int LEADERBOARD_SIZE = 25;
+    /**
+     * The number of items on each line of the leaderboard.
+     */
+    private static final int ITEMS_PER_LINE = 5;
 
 
     @Override
     public BotResponse executeCommand(final IRCbutt butt, final GenericMessageEvent event, final String[] cmd) {
+        KarmaLeaderboard board = butt.getKarmaTable().getLeaderboard();
+        if (cmd.length == 2 && cmd[1].equalsIgnoreCase("top")) {
+            return leaderboard(butt, event, leaderboardLines(board, "top karma: ", board::top));
+        }
+        if (cmd.length == 2 && cmd[1].equalsIgnoreCase("bottom")) {
+            return leaderboard(butt, event, leaderboardLines(board, "bottom karma: ", board::bottom));
+        }
+        if (cmd.length > 2 && cmd[1].equalsIgnoreCase("rank")) {
+            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(),
+                    describeRank(board, StringUtils.getArgsOverOne(cmd)));
+        }
         String message = StringUtils.getArgs(cmd);
         Integer karma = butt.getKarmaTable().getKarmaLevel(message);
         if (karma != null) {
@@ -39,6 +66,73 @@ public final class KarmaCommand implements Command {
         }
     }
 
+    /**
+     * Describes where an item ranks on the leaderboard.
+     * @param board The leaderboard.
+     * @param item The item.
+     * @return The item's rank and karma level, or that it has none.
+     */
+    static String describeRank(final KarmaLeaderboard board, final String item) {
+        synchronized (board) {  // so the rank and the karma level agree
+            int rank = board.rank(item);
+            if (rank == 0) {
+                return item + " has no karma level yet";
+            }
+            return item + " is ranked " + rank + " of " + board.size() + " with a karma level of "
+                    + board.getKarma(item);
+        }
+    }
+
+    /**
+     * Lists part of the leaderboard a few items to a line, each numbered with its rank, so items with the same
+     * karma share a number just as they do in !karma rank.
+     * @param board The leaderboard.
+     * @param heading The text in front of the first line.
+     * @param listing Picks out the items to list, given the most to return.
+     * @return The lines, or none if nothing has any karma.
+     */
+    static List<String> leaderboardLines(final KarmaLeaderboard board, final String heading,
+                                         final IntFunction<List<Map.Entry<String, Integer>>> listing) {
+        List<String> lines = new ArrayList<>();
+        synchronized (board) {  // so the ranks are of the karma levels listed
+            List<Map.Entry<String, Integer>> items = listing.apply(LEADERBOARD_SIZE);
+            if (items.isEmpty()) {
+                return lines;
+            }
+            StringBuilder line = new StringBuilder(heading);
+            for (int i = 0; i < items.size(); i++) {
+                if (i > 0 && i % ITEMS_PER_LINE == 0) {
+                    lines.add(line.toString());
+                    line.setLength(0);
+                } else if (i > 0) {
+                    line.append(", ");
+                }
+                Map.Entry<String, Integer> item = items.get(i);
+                line.append(board.rank(item.getKey())).append(". ").append(item.getKey()).append(" (")
+                        .append(item.getValue()).append(')');
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Sends the first line of the leaderboard and loads the rest into !more.
+     * @param butt The IRCbutt instance.
+     * @param event The event that asked for the leaderboard.
+     * @param lines The lines of the leaderboard.
+     * @return The first line.
+     */
+    private static BotResponse leaderboard(final IRCbutt butt, final GenericMessageEvent event,
+                                           final List<String> lines) {
+        if (lines.isEmpty()) {
+            butt.getCommandHandler().clearMore(event);
+            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "nothing has any karma yet");
+        }
+        return new BotResponse(BotIntention.CHAT, null, butt.getCommandHandler().setMore(event, lines.get(0),
+                ListCursor.of(lines.subList(1, lines.size()))));
+    }
+
     /**
      * Get the type of Karma operation we're doing.
      * @param x The Karma operation String
@@ -0,0 +1,176 @@
+package net.alureon.ircbutt.command.commands.karma;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An in-memory copy of every item's karma level, kept in order so that !karma top, bottom and rank never have to
+ * sort the karma table.  It is loaded once at startup and then adjusted on every increment and decrement.
+ * <p>
+ * Items are grouped by karma level in a sorted map, so the top or bottom n items take O(log n + n), and a Fenwick
+ * tree counts the items at each level, so an item's rank takes O(log n).  Items are matched ignoring case, the same
+ * way the database matches them.
+ */
+public final class KarmaLeaderboard {
+
+    /**
+     * The karma level of each item, by lower case item name.
+     */
+    private final Map<String, Integer> scores = new HashMap<>();
+    /**
+     * The name of each item as it was first seen, by lower case item name.
+     */
+    private final Map<String, String> names = new HashMap<>();
+    /**
+     * The lower case names of the items at each karma level.
+     */
+    private final NavigableMap<Integer, NavigableSet<String>> levels = new TreeMap<>();
+    /**
+     * The number of items at each karma level.
+     */
+    private final ScoreTree counts = new ScoreTree();
+
+    /**
+     * Returns the key an item is stored under.
+     * @param item The item.
+     * @return The lower case item name.
+     */
+    private static String key(final String item) {
+        return item.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Sets an item's karma level, as read from the database.
+     * @param item The item.
+     * @param karma The item's karma level.
+     */
+    public synchronized void put(final String item, final int karma) {
+        String key = key(item);
+        Integer old = scores.get(key);
+        if (old != null) {
+            remove(key, old);
+        }
+        names.putIfAbsent(key, item);
+        insert(key, karma);
+    }
+
+    /**
+     * Adjusts an item's karma level, adding the item at a level of 0 first if it has no karma yet.
+     * @param item The item.
+     * @param delta The change in karma level.
+     */
+    public synchronized void adjust(final String item, final int delta) {
+        String key = key(item);
+        int karma = 0;
+        Integer old = scores.get(key);
+        if (old != null) {
+            karma = old;
+            remove(key, old);
+        }
+        names.putIfAbsent(key, item);
+        insert(key, karma + delta);
+    }
+
+    /**
+     * Adds an item at a karma level.
+     * @param key The lower case item name.
+     * @param karma The karma level.
+     */
+    private void insert(final String key, final int karma) {
+        scores.put(key, karma);
+        levels.computeIfAbsent(karma, k -> new TreeSet<>()).add(key);
+        counts.add(karma, 1);
+    }
+
+    /**
+     * Removes an item from a karma level.
+     * @param key The lower case item name.
+     * @param karma The item's current karma level.
+     */
+    private void remove(final String key, final int karma) {
+        NavigableSet<String> level = levels.get(karma);
+        level.remove(key);
+        if (level.isEmpty()) {
+            levels.remove(karma);
+        }
+        counts.add(karma, -1);
+    }
+
+    /**
+     * Returns the items with the most karma, most first.  Items with the same karma are in alphabetical order.
+     * @param limit The most items to return.
+     * @return The item names and their karma levels.
+     */
+    public synchronized List<Map.Entry<String, Integer>> top(final int limit) {
+        return collect(levels.descendingMap(), limit);
+    }
+
+    /**
+     * Returns the items with the least karma, least first.  Items with the same karma are in alphabetical order.
+     * @param limit The most items to return.
+     * @return The item names and their karma levels.
+     */
+    public synchronized List<Map.Entry<String, Integer>> bottom(final int limit) {
+        return collect(levels, limit);
+    }
+
+    /**
+     * Walks the karma levels in order, collecting items until there are enough.
+     * @param ordered The karma levels, in the order to collect them.
+     * @param limit The most items to return.
+     * @return The item names and their karma levels.
+     */
+    private List<Map.Entry<String, Integer>> collect(final NavigableMap<Integer, NavigableSet<String>> ordered,
+                                                     final int limit) {
+        List<Map.Entry<String, Integer>> found = new ArrayList<>();
+        for (Map.Entry<Integer, NavigableSet<String>> level : ordered.entrySet()) {
+            Iterator<String> keys = level.getValue().iterator();
+            while (keys.hasNext() && found.size() < limit) {
+                found.add(new AbstractMap.SimpleImmutableEntry<>(names.get(keys.next()), level.getKey()));
+            }
+            if (found.size() >= limit) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns an item's rank, where 1 is the most karma.  Items with the same karma share a rank.
+     * @param item The item.
+     * @return The rank, or 0 if the item has no karma yet.
+     */
+    public synchronized int rank(final String item) {
+        Integer karma = scores.get(key(item));
+        if (karma == null) {
+            return 0;
+        }
+        return counts.countAbove(karma) + 1;
+    }
+
+    /**
+     * Returns an item's karma level.
+     * @param item The item.
+     * @return The karma level, or null if the item has no karma yet.
+     */
+    public synchronized Integer getKarma(final String item) {
+        return scores.get(key(item));
+    }
+
+    /**
+     * Returns the number of items with karma.
+     * @return The number of items.
+     */
+    public synchronized int size() {
+        return counts.getTotal();
+    }
+}
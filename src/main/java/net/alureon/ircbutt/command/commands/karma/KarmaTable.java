@@ -18,6 +18,10 @@ public final class KarmaTable {
      * The instance of IRCbutt for accessing the database.
      */
     private IRCbutt butt;
+    /**
+     * Every item's karma level, kept in order for the top, bottom and rank queries.
+     */
+    private final KarmaLeaderboard leaderboard = new KarmaLeaderboard();
     /**
      * The logger for this class.
      */
@@ -32,6 +36,28 @@ public final class KarmaTable {
         this.butt = butt;
     }
 
+    /**
+     * Loads every item's karma level into the leaderboard.  Called once at startup, after the tables exist, while
+     * the bot may already be taking karma.  Loading and changing karma lock each other out, so every change lands
+     * either before the table is read, or on top of what was read, and none is overwritten.
+     */
+    public synchronized void loadLeaderboard() {
+        String query = "SELECT item, karma FROM `" + butt.getYamlConfigurationFile().getSqlTablePrefix() + "_karma`";
+        try (PreparedStatement ps = butt.getSqlManager().getPreparedStatement(query);
+             ResultSet rs = butt.getSqlManager().getResultSet(ps)) {
+            if (rs != null) {
+                while (rs.next()) {
+                    leaderboard.put(rs.getString("item"), rs.getInt("karma"));
+                }
+                log.info("Loaded karma for " + leaderboard.size() + " items");
+            } else {
+                log.error("Received null ResultSet in KarmaTable.  Cannot load the karma leaderboard.");
+            }
+        } catch (SQLException ex) {
+            log.error("Failed to load the karma leaderboard: ", ex.getMessage());
+        }
+    }
+
     /**
      * Checks to see whether we have Karma for an item.
      * @param item The item to check for existing Karma level.
@@ -57,11 +83,13 @@ public final class KarmaTable {
      * Decrements an item's Karma level.
      * @param karma The Karma object to decrement in the database.
      */
-    void decrementKarma(final Karma karma) {
+    synchronized void decrementKarma(final Karma karma) {
         if (itemExists(karma.getItem())) {
             String update = "UPDATE `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
                     + "_karma` SET karma = karma -1 WHERE item=?";
-            updateKarma(update, karma);
+            if (updateKarma(update, karma)) {
+                leaderboard.adjust(karma.getItem(), -1);
+            }
         } else {
             String update = "INSERT INTO `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
                     + "_karma` (item,karma) VALUES(?,?)";
@@ -69,6 +97,7 @@ public final class KarmaTable {
                 ps.setString(1, karma.getItem());
                 ps.setInt(2, -1);
                 ps.execute();
+                leaderboard.adjust(karma.getItem(), -1);
             } catch (SQLException ex) {
                 log.error("Failed to update Karma: ", ex.getMessage());
             }
@@ -101,11 +130,13 @@ public final class KarmaTable {
      * Increments a Karma object's Karma level in the database.
      * @param karma The Karma object we'd like to increment Karma level for.
      */
-    void incrementKarma(final Karma karma) {
+    synchronized void incrementKarma(final Karma karma) {
         if (itemExists(karma.getItem())) {
             String update = "UPDATE `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
                     + "_karma` SET karma = karma +1 WHERE item=?";
-            updateKarma(update, karma);
+            if (updateKarma(update, karma)) {
+                leaderboard.adjust(karma.getItem(), 1);
+            }
         } else {
             String update = "INSERT INTO `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
                     + "_karma` (item,karma) VALUES(?,?)";
@@ -113,6 +144,7 @@ public final class KarmaTable {
                 ps.setString(1, karma.getItem());
                 ps.setInt(2, 1);
                 ps.execute();
+                leaderboard.adjust(karma.getItem(), 1);
             } catch (SQLException ex) {
                 log.error("Failed to increment Karma: ", ex.getMessage());
             }
@@ -123,13 +155,24 @@ public final class KarmaTable {
      * Convenience function for updating an object's Karma in the database.
      * @param update The SQL string to execute.
      * @param karma The Karma object pertaining to the update operation.
+     * @return True if the update succeeded.
      */
-    private void updateKarma(final String update, final Karma karma) {
+    private boolean updateKarma(final String update, final Karma karma) {
         try (PreparedStatement ps = butt.getSqlManager().getPreparedStatement(update)) {
             ps.setString(1, karma.getItem());
             ps.executeUpdate();
+            return true;
         } catch (SQLException ex) {
             log.error("Failed to update Karma: ", ex.getMessage());
+            return false;
         }
     }
+
+    /**
+     * Returns the in-memory leaderboard of every item's karma level.
+     * @return KarmaLeaderboard
+     */
+    KarmaLeaderboard getLeaderboard() {
+        return leaderboard;
+    }
 }
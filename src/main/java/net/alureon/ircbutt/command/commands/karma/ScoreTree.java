@@ -0,0 +1,77 @@
+package net.alureon.ircbutt.command.commands.karma;
+
+/**
+ * A Fenwick tree counting how many items have each karma level, so the number of items above a level can be
+ * found in O(log n).  Karma is stored in a SMALLINT column, so the tree covers every value a SMALLINT can hold;
+ * levels outside that range are counted at the nearest end of it.
+ */
+final class ScoreTree {
+
+    /**
+     * The lowest karma level the tree covers.
+     */
+    static final int MIN_SCORE = Short.MIN_VALUE;
+    /**
+     * The highest karma level the tree covers.
+     */
+    static final int MAX_SCORE = Short.MAX_VALUE;
+    /**
+     * The tree, indexed from 1.  Slot i holds the count of the levels in (i - lowbit(i), i].
+     */
+    private final int[] tree = new int[MAX_SCORE - MIN_SCORE + 2];
+    /**
+     * The number of items counted.
+     */
+    private int total;
+
+    /**
+     * Returns the index in the tree of a karma level.
+     * @param score The karma level.
+     * @return The index, from 1.
+     */
+    private static int index(final int score) {
+        return Math.max(MIN_SCORE, Math.min(MAX_SCORE, score)) - MIN_SCORE + 1;
+    }
+
+    /**
+     * Adds to the number of items with a karma level.
+     * @param score The karma level.
+     * @param delta The number of items to add (negative to remove).
+     */
+    void add(final int score, final int delta) {
+        for (int i = index(score); i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+        total += delta;
+    }
+
+    /**
+     * Returns the number of items with a karma level at or below the given one.
+     * @param score The karma level.
+     * @return The number of items.
+     */
+    int countAtOrBelow(final int score) {
+        int count = 0;
+        for (int i = index(score); i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of items with a karma level above the given one.
+     * @param score The karma level.
+     * @return The number of items.
+     */
+    int countAbove(final int score) {
+        return total - countAtOrBelow(score);
+    }
+
+    /**
+     * Returns the number of items counted.
+     * @return The number of items.
+     */
+    int getTotal() {
+        return total;
+    }
+}
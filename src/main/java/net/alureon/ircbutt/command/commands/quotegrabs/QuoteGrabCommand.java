@@ -29,7 +29,7 @@ public final class QuoteGrabCommand implements Command {
         log.trace("QuoteGrabCommand received the following: " + StringUtils.arrayToString(cmd));
         switch (cmd[0]) {
             case "grab":
-                if (cmd.length == 2) {
+                if (cmd.length == 2 || cmd.length == 3) {
                     if (cmd[1].equalsIgnoreCase(event.getUser().getNick())) {
                         return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(),
                                 "You like grabbing yourself " + event.getUser().getNick() + "?");
@@ -38,8 +38,26 @@ public final class QuoteGrabCommand implements Command {
                                 "get your hands off me, creep!");
                     } else {
                         String nickname = IRCUtils.getActualNickname(cmd[1], event);
-                        if (butt.getChatStorage().hasQuoteFrom(nickname)) {
-                            String quote = butt.getChatStorage().getLastQuoteFrom(nickname);
+                        int depth = butt.getYamlConfigurationFile().getChatLinesPerNick();
+                        int n = 1;
+                        if (cmd.length == 3) {
+                            try {
+                                n = Integer.parseInt(cmd[2]);
+                            } catch (NumberFormatException ex) {
+                                n = 0;
+                            }
+                        }
+                        if (n < 1 || n > depth) {
+                            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(),
+                                    "!grab <nick> [n], where n is 1 to " + depth);
+                        }
+                        int back = n - 1;
+                        String channel = butt.getNetworkManager().getChannelKey(event);
+                        String quote = butt.getChatStorage().getQuoteFrom(channel, nickname, back);
+                        if (quote == null) {
+                            quote = butt.getScrollbackManager().getQuoteFrom(channel, nickname, back);
+                        }
+                        if (quote != null) {
                             log.trace("Quote grabbed: " + quote);
                                 if (!butt.getQuoteGrabTable().quoteAlreadyExists(nickname, quote)) {
                                     butt.getQuoteGrabTable().addQuote(nickname, quote, event.getUser().getNick());
@@ -48,13 +66,17 @@ public final class QuoteGrabCommand implements Command {
                                     log.debug("User tried to add duplicate quote - not adding duplicate.");
                                     return new BotResponse(BotIntention.NO_REPLY, null, null);
                                 }
+                        } else if (back > 0 && (butt.getChatStorage().hasQuoteFrom(channel, nickname)
+                                || butt.getScrollbackManager().getQuoteFrom(channel, nickname, 0) != null)) {
+                            return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(),
+                                    butt.getYamlConfigurationFile().getBotNickName() + " don't remember that far back");
                         } else {
                             return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(),
                                     "who's " + cmd[1] + "?");
                         }
                     }
                 } else {
-                    return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "!grab <nick>");
+                    return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "!grab <nick> [n]");
                 }
             case "rq":
                 if (cmd.length == 1) {
@@ -115,7 +137,7 @@ public final class QuoteGrabCommand implements Command {
                 if (cmd.length == 1) {
                     return new BotResponse(BotIntention.HIGHLIGHT, event.getUser(), "!qfind <string>");
                 } else {
-                    String quote = butt.getQuoteGrabTable().findQuote(StringUtils.getArgs(cmd));
+                    String quote = butt.getQuoteGrabTable().findQuote(event, StringUtils.getArgs(cmd));
                     return getQuoteResponse(quote, butt.getYamlConfigurationFile().getBotNickName()
                                     + " didnt find nothin", event.getUser(),
                             "Found no quotes matching the search string: " + StringUtils.arrayToString(cmd));
@@ -1,12 +1,19 @@
 package net.alureon.ircbutt.command.commands.quotegrabs;
 
 import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.command.PagedCursor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.pircbotx.hooks.types.GenericMessageEvent;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Provides an interface for working with SQL-related Quotegrab functionality.
@@ -22,6 +29,14 @@ public final class QuoteGrabTable {
      * The logger for this class.
      */
     private static final Logger log = LogManager.getLogger();
+    /**
+     * The most quotes a search finds.
+     */
+    private static final int MAX_SEARCH_RESULTS = 24;
+    /**
+     * The number of search results fetched from the database at a time, as they are asked for with !more.
+     */
+    private static final int SEARCH_PAGE_SIZE = 5;
 
     /**
      * The class constructor.
@@ -183,43 +198,75 @@ public final class QuoteGrabTable {
     }
 
     /**
-     * Searches the database for a quote containing the specified String.
+     * Searches the database for a quote containing the specified String.  Only the ids of the matches are read up
+     * front; the quotes themselves are fetched a page at a time, as they are shown, and the rest wait in !more.
+     * @param event The event the search came from, whose !more the other quotes are loaded into.
      * @param search The string to search the database for.
      * @return Any quote found matching the search.
      */
-    String findQuote(final String search) {
-        butt.getCommandHandler().getMoreList().clear();
-        String firstResult = null;
-        String query = "SELECT * FROM `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
-                + "_quotes` WHERE (quote REGEXP ?) LIMIT 24";
+    String findQuote(final GenericMessageEvent event, final String search) {
+        List<Integer> ids = new ArrayList<>();
+        String query = "SELECT id FROM `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
+                + "_quotes` WHERE (quote REGEXP ?) LIMIT " + MAX_SEARCH_RESULTS;
         try (PreparedStatement ps = butt.getSqlManager().getPreparedStatement(query)) {
             if (ps != null) {
                 ps.setString(1, search);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next()) {
-                    int id = rs.getInt("id");
-                    String user = rs.getString("user");
-                    String quote = rs.getString("quote");
-                    firstResult = restructureQuote(id, user, quote);
+                try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        id = rs.getInt("id");
-                        user = rs.getString("user");
-                        quote = rs.getString("quote");
-                        butt.getCommandHandler().addMore(restructureQuote(id, user, quote));
+                        ids.add(rs.getInt("id"));
                     }
-                    rs.close();
                 }
-                rs.close();
             } else {
                 log.error("Received null PreparedStatement in QuoteGrabTable. Cannot retrieve quote from database.");
             }
         } catch (SQLException ex) {
             log.error("Encountered SQL Exception in QuoteGrabTable: " + ex.getMessage());
         }
-        if (butt.getCommandHandler().getMoreList().size() > 0) {
-            return firstResult + " [+" + butt.getCommandHandler().getMoreList().size() + " more]";
+        PagedCursor<Integer> cursor = new PagedCursor<>(ids, SEARCH_PAGE_SIZE, this::getQuotesById);
+        String firstResult = cursor.next();
+        if (firstResult == null) {
+            butt.getCommandHandler().clearMore(event);
+            return null;
+        }
+        return butt.getCommandHandler().setMore(event, firstResult, cursor);
+    }
+
+    /**
+     * Fetches some quotes by id and formats them, for a page of search results.
+     * @param ids The ids of the quotes.
+     * @return The formatted quotes, in the order of the ids.  Quotes removed since the search are left out.
+     */
+    private List<String> getQuotesById(final List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String query = "SELECT * FROM `" + butt.getYamlConfigurationFile().getSqlTablePrefix()
+                + "_quotes` WHERE id IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+        Map<Integer, String> quotes = new HashMap<>();
+        try (PreparedStatement ps = butt.getSqlManager().getPreparedStatement(query)) {
+            if (ps != null) {
+                for (int i = 0; i < ids.size(); i++) {
+                    ps.setInt(i + 1, ids.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt("id");
+                        quotes.put(id, restructureQuote(id, rs.getString("user"), rs.getString("quote")));
+                    }
+                }
+            } else {
+                log.error("Received null PreparedStatement in QuoteGrabTable. Cannot retrieve quotes from database.");
+            }
+        } catch (SQLException ex) {
+            log.error("Encountered SQL Exception in QuoteGrabTable: " + ex.getMessage());
+        }
+        List<String> lines = new ArrayList<>();
+        for (Integer id : ids) {
+            if (quotes.containsKey(id)) {
+                lines.add(quotes.get(id));
+            }
         }
-        return firstResult;
+        return lines;
     }
 
     /**
@@ -0,0 +1,15 @@
+package net.alureon.ircbutt.file;
+
+/**
+ * Told when the config.yml has been reloaded, so a part of the bot can pick up its new settings without a restart.
+ */
+@FunctionalInterface
+public interface ConfigurationListener {
+
+    /**
+     * Called after a new config has been checked and swapped in.
+     * @param old The settings before the reload.
+     * @param current The settings now in use.
+     */
+    void configurationChanged(YAMLConfigurationFile old, YAMLConfigurationFile current);
+}
@@ -0,0 +1,276 @@
+package net.alureon.ircbutt.file;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the bot's current settings, and reloads them when the config.yml changes or an op asks.  The settings are
+ * an immutable snapshot behind an atomic reference, so reading them is a single volatile load, and a reload swaps
+ * in a whole new snapshot only after it has been checked.  A config.yml with a mistake in it is turned away and
+ * the bot carries on with the settings it had.
+ * <p>
+ * Once a new snapshot is in, every listener is told, so the parts of the bot that can change their settings live
+ * (rate limits, caches, channels and so on) pick them up.  Settings that only change on a restart (SQL, servers
+ * and so on) are kept as they were when the bot started, so nothing reads a value the bot isn't using.
+ */
+public final class ConfigurationManager {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * The size of buffer to use when we copy the config.yml from the jar.
+     */
+    private static final int RESOURCE_BUFFER_SIZE = 4096;
+    /**
+     * How long to wait after the config.yml changes before reloading it, so an editor has finished writing it.
+     */
+    private static final long SETTLE_MILLIS = 500;
+    /**
+     * The config.yml file itself.
+     */
+    private final Path path;
+    /**
+     * The settings in use.
+     */
+    private final AtomicReference<YAMLConfigurationFile> current = new AtomicReference<>();
+    /**
+     * The settings the bot started with, which the ones that only change on a restart are kept from.
+     */
+    private volatile YAMLConfigurationFile startup;
+    /**
+     * Told whenever the settings are reloaded.
+     */
+    private final List<ConfigurationListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * The number of reloads that were swapped in.
+     */
+    private final AtomicLong reloads = new AtomicLong();
+    /**
+     * The number of reloads turned away because the config.yml had a mistake in it.
+     */
+    private final AtomicLong rejected = new AtomicLong();
+    /**
+     * The thread that watches the config.yml, once started.
+     */
+    private Thread watcher;
+
+    /**
+     * Creates a manager for a config.yml.  Nothing is read until it is loaded.
+     * @param path The config.yml file.
+     */
+    public ConfigurationManager(final Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Creates a configuration file if one doesn't already exist, then shuts down gracefully.
+     */
+    public void createConfigIfNotExists() {
+        if (!Files.exists(path)) {
+            exportResource();
+            log.info("Created new config.yml file in the current directory.");
+            log.info("Please edit the configuration file and fill in the appropriate details");
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Parses the user's config.yml configuration file and loads all the values into memory, shutting down if it
+     * can't be read.
+     */
+    public void load() {
+        try {
+            startup = read();
+            current.set(startup);
+        } catch (IOException | IllegalArgumentException ex) {
+            log.fatal("Failed to parse config.yml: " + ex.getMessage());
+            System.exit(1);
+        }
+        log.info("[Configuration file loaded]");
+    }
+
+    /**
+     * Reads and checks the config.yml.
+     * @return The settings.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If the file has a mistake in it.
+     */
+    private YAMLConfigurationFile read() throws IOException {
+        try (InputStream stream = Files.newInputStream(path)) {
+            return YAMLConfigurationFile.parse(stream);
+        }
+    }
+
+    /**
+     * Reads the config.yml again and, if it is fine, swaps it in and tells every listener.  A config.yml that moves
+     * the bot to other SQL tables is turned away, as the tables are only created on a restart.  Other settings that
+     * only change on a restart are kept as they were, and the op is told which sections are waiting for one.
+     * @return What happened, to show the op who asked.
+     */
+    public synchronized String reload() {
+        YAMLConfigurationFile next;
+        try {
+            next = read();
+        } catch (IOException | IllegalArgumentException ex) {
+            rejected.incrementAndGet();
+            log.warn("Not reloading config.yml: " + ex.getMessage());
+            return "config.yml not reloaded, see the log for why";  // the message can quote passwords from the file
+        }
+        if (!Objects.equals(next.getSqlTablePrefix(), current.get().getSqlTablePrefix())) {
+            rejected.incrementAndGet();
+            log.warn("Not reloading config.yml: the SQL Table-Prefix can only change on a restart");
+            return "config.yml not reloaded: the SQL Table-Prefix can only change on a restart";
+        }
+        List<String> waiting = next.getRestartOnlyChanges(startup);
+        YAMLConfigurationFile kept = next.keepRestartOnly(startup);
+        YAMLConfigurationFile old = current.getAndSet(kept);
+        reloads.incrementAndGet();
+        for (ConfigurationListener listener : listeners) {
+            try {
+                listener.configurationChanged(old, kept);
+            } catch (RuntimeException ex) {  // one part failing shouldn't stop the others picking up the change
+                log.error("Failed to apply the reloaded config: ", ex);
+            }
+        }
+        log.info("[Configuration file reloaded]");
+        if (!waiting.isEmpty()) {
+            String sections = String.join(", ", waiting);
+            log.warn("The " + sections + " settings in config.yml changed, but only change on a restart");
+            return "config.yml reloaded, restart the bot for the " + sections + " settings";
+        }
+        return "config.yml reloaded";
+    }
+
+    /**
+     * Starts watching the config.yml, reloading it whenever it changes.
+     */
+    public synchronized void watch() {
+        if (watcher != null) {
+            return;
+        }
+        Path directory = path.toAbsolutePath().getParent();
+        WatchService service;
+        try {
+            service = directory.getFileSystem().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException ex) {
+            log.warn("Can't watch config.yml for changes, so it will only be reloaded on request: "
+                    + ex.getMessage());
+            return;
+        }
+        watcher = new Thread(() -> watch(service), "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Waits for the config.yml to change and reloads it, until the thread is interrupted.
+     * @param service The watch service for the config.yml's directory.
+     */
+    private void watch(final WatchService service) {
+        Path name = path.getFileName();
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (name.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("Stopped watching config.yml, as its directory can no longer be watched");
+                    return;
+                }
+                if (changed) {
+                    Thread.sleep(SETTLE_MILLIS);
+                    WatchKey more;
+                    while ((more = service.poll()) != null) {  // the rest of the editor's writes
+                        more.pollEvents();
+                        more.reset();
+                    }
+                    reload();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            log.debug("Stopped watching config.yml");
+        }
+    }
+
+    /**
+     * Exports the config.yml from the jar into the user's bot directory so they can configure the bot.
+     */
+    private void exportResource() {
+        String resourceName = "/config.yml";
+        InputStream stream;
+        OutputStream resStreamOut;
+        String jarFolder;
+        try {
+            stream = ConfigurationManager.class.getResourceAsStream(resourceName);
+            if (stream == null) {
+                throw new IOException("Cannot get resource \"" + resourceName + "\" from Jar file.");
+            }
+            int readBytes;
+            byte[] buffer = new byte[RESOURCE_BUFFER_SIZE];
+            jarFolder = new File(ConfigurationManager.class.getProtectionDomain().getCodeSource().getLocation()
+                    .toURI().getPath()).getParentFile().getPath().replace('\\', '/');
+            resStreamOut = new FileOutputStream(jarFolder + resourceName);
+            while ((readBytes = stream.read(buffer)) > 0) {
+                resStreamOut.write(buffer, 0, readBytes);
+            }
+            stream.close();
+            resStreamOut.close();
+        } catch (IOException | URISyntaxException ex) {
+            log.fatal("Failed to export config.yml from jar!");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the settings in use.  Hold on to the result for no longer than one piece of work, so a reload is
+     * picked up by the next.
+     * @return YAMLConfigurationFile
+     */
+    public YAMLConfigurationFile get() {
+        return current.get();
+    }
+
+    /**
+     * Adds a listener to tell whenever the settings are reloaded.
+     * @param listener The listener.
+     */
+    public void addListener(final ConfigurationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns a short summary of the reloads, for the stats command.
+     * @return The summary.
+     */
+    public String getStats() {
+        return "config: " + reloads.get() + " reloads, " + rejected.get() + " rejected";
+    }
+}
@@ -0,0 +1,185 @@
+package net.alureon.ircbutt.file;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The settings for one IRC network the bot connects to: the server, the channels to join there, and who the bot
+ * is on that network.  The first network comes from the Bot, Server and Channels sections of the config.yml, and
+ * any others from the Networks section, falling back to the Bot section for anything they don't set.
+ */
+public final class NetworkConfig {
+
+    /**
+     * The name of the network, used in logs, thread names and stats.
+     */
+    private final String name;
+    /**
+     * The hostname of the IRC server.
+     */
+    private final String hostname;
+    /**
+     * The port of the IRC server.
+     */
+    private final int port;
+    /**
+     * Whether to connect with SSL.
+     */
+    private final boolean ssl;
+    /**
+     * Whether to reconnect when the connection is lost.
+     */
+    private final boolean autoReconnect;
+    /**
+     * The bot's nick on the network.
+     */
+    private final String botName;
+    /**
+     * The bot's login on the network.
+     */
+    private final String login;
+    /**
+     * The bot's real name on the network.
+     */
+    private final String realName;
+    /**
+     * The bot's NickServ password on the network (may be null).
+     */
+    private final String password;
+    /**
+     * The channels to join.
+     */
+    private final List<String> channels;
+
+    /**
+     * Creates the settings for a network.
+     * @param name The name of the network.
+     * @param hostname The hostname of the IRC server.
+     * @param port The port of the IRC server.
+     * @param ssl Whether to connect with SSL.
+     * @param autoReconnect Whether to reconnect when the connection is lost.
+     * @param botName The bot's nick on the network.
+     * @param login The bot's login on the network.
+     * @param realName The bot's real name on the network.
+     * @param password The bot's NickServ password on the network (may be null).
+     * @param channels The channels to join.
+     */
+    public NetworkConfig(final String name, final String hostname, final int port, final boolean ssl,
+                         final boolean autoReconnect, final String botName, final String login,
+                         final String realName, final String password, final List<String> channels) {
+        this.name = name;
+        this.hostname = hostname;
+        this.port = port;
+        this.ssl = ssl;
+        this.autoReconnect = autoReconnect;
+        this.botName = botName;
+        this.login = login;
+        this.realName = realName;
+        this.password = password;
+        this.channels = Collections.unmodifiableList(channels);
+    }
+
+    /**
+     * Returns these settings with other channels to join.
+     * @param newChannels The channels to join.
+     * @return The new settings.
+     */
+    public NetworkConfig withChannels(final List<String> newChannels) {
+        return new NetworkConfig(name, hostname, port, ssl, autoReconnect, botName, login, realName, password,
+                newChannels);
+    }
+
+    /**
+     * Returns whether another network's settings connect to the same server as the same bot, which is all that
+     * can't change without a restart.
+     * @param other The other settings.
+     * @return True if only the channels differ.
+     */
+    public boolean hasSameConnection(final NetworkConfig other) {
+        return Objects.equals(hostname, other.hostname) && port == other.port && ssl == other.ssl
+                && autoReconnect == other.autoReconnect && Objects.equals(botName, other.botName)
+                && Objects.equals(login, other.login) && Objects.equals(realName, other.realName)
+                && Objects.equals(password, other.password);
+    }
+
+    /**
+     * Returns the name of the network.
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the hostname of the IRC server.
+     * @return The hostname.
+     */
+    public String getHostname() {
+        return hostname;
+    }
+
+    /**
+     * Returns the port of the IRC server.
+     * @return The port.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Returns whether to connect with SSL.
+     * @return True to use SSL.
+     */
+    public boolean getSSLEnabled() {
+        return ssl;
+    }
+
+    /**
+     * Returns whether to reconnect when the connection is lost.
+     * @return True to reconnect.
+     */
+    public boolean getAutoReconnect() {
+        return autoReconnect;
+    }
+
+    /**
+     * Returns the bot's nick on the network.
+     * @return The nick.
+     */
+    public String getBotName() {
+        return botName;
+    }
+
+    /**
+     * Returns the bot's login on the network.
+     * @return The login.
+     */
+    public String getLogin() {
+        return login;
+    }
+
+    /**
+     * Returns the bot's real name on the network.
+     * @return The real name.
+     */
+    public String getRealName() {
+        return realName;
+    }
+
+    /**
+     * Returns the bot's NickServ password on the network.
+     * @return The password, or null for none.
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Returns the channels to join.
+     * @return The channel names.
+     */
+    public List<String> getChannels() {
+        return channels;
+    }
+}
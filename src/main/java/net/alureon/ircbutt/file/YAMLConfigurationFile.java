@@ -1,192 +1,758 @@
 package net.alureon.ircbutt.file;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
 
-import java.io.*;
-import java.net.URISyntaxException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * Represents a user's YAML configuration file, and all the values they have set.
+ * Represents a user's YAML configuration file, and all the values they have set.  Each instance is an immutable
+ * snapshot of the file; the ConfigurationManager swaps in a new one when the file is reloaded.
  */
 public final class YAMLConfigurationFile {
 
 
     /**
-     * The CONFIG.yml file itself.
+     * The default maximum number of entries in the search result cache.
      */
-    private static final File CONFIG = new File("config.yml");
+    private static final int DEFAULT_SEARCH_CACHE_ENTRIES = 256;
     /**
-     * The size of buffer to use when we copy the config.yml from the jar.
+     * The default maximum size of the search result cache, in kibibytes.
      */
-    private static final int RESOURCE_BUFFER_SIZE = 4096;
+    private static final int DEFAULT_SEARCH_CACHE_KILOBYTES = 2048;
     /**
-     * The logger for this class.
+     * The default number of milliseconds after which a web request counts as failed.
      */
-    private static final Logger log = LogManager.getLogger();
+    private static final int DEFAULT_HTTP_SLOW_CALL_MILLIS = 5000;
+    /**
+     * The default percentage of failed web requests that opens a host's circuit breaker.
+     */
+    private static final int DEFAULT_HTTP_FAILURE_RATE_PERCENT = 50;
+    /**
+     * The default number of seconds a host's circuit breaker stays open.
+     */
+    private static final int DEFAULT_HTTP_OPEN_SECONDS = 60;
+    /**
+     * The default number of lines of chat history kept for each nick in each channel.
+     */
+    private static final int DEFAULT_CHAT_LINES_PER_NICK = 10;
+    /**
+     * The default size of the chat history, in kibibytes.
+     */
+    private static final int DEFAULT_CHAT_MAX_KILOBYTES = 1024;
+    /**
+     * The default number of minutes a nick can go without speaking before its chat history is forgotten.
+     */
+    private static final int DEFAULT_CHAT_IDLE_MINUTES = 1440;
+    /**
+     * The most memory the chat history may have, in kibibytes, so its size in bytes fits in an int.
+     */
+    private static final int MAX_CHAT_KILOBYTES = Integer.MAX_VALUE / 1024;
+    /**
+     * The default number of days channel scrollback is kept on disk.
+     */
+    private static final int DEFAULT_SCROLLBACK_RETENTION_DAYS = 7;
+    /**
+     * The default size of each scrollback segment file, in kibibytes.
+     */
+    private static final int DEFAULT_SCROLLBACK_SEGMENT_KILOBYTES = 1024;
+    /**
+     * The default time between snapshots of the bot's in-memory state, in seconds.
+     */
+    private static final int DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300;
+    /**
+     * The default age past which a snapshot isn't restored, in minutes.
+     */
+    private static final int DEFAULT_SNAPSHOT_MAX_AGE_MINUTES = 60;
+    /**
+     * The default number of compiled user regexes to keep.
+     */
+    private static final int DEFAULT_REGEX_CACHE_SIZE = 256;
+    /**
+     * The default time a single command's regexes may run for, in milliseconds.
+     */
+    private static final int DEFAULT_REGEX_BUDGET_MILLIS = 250;
+    /**
+     * The default time each user's regexes may run for in a minute, in milliseconds.
+     */
+    private static final int DEFAULT_REGEX_QUOTA_MILLIS = 2000;
+    /**
+     * The default longest message short outbound lines are packed into, in characters.
+     */
+    private static final int DEFAULT_OUTBOUND_PACK_LENGTH = 400;
+    /**
+     * The default time a cluster node's leases last without being renewed, in seconds.
+     */
+    private static final int DEFAULT_CLUSTER_LEASE_SECONDS = 30;
+    /**
+     * The default time between a cluster node's heartbeats, in seconds.
+     */
+    private static final int DEFAULT_CLUSTER_HEARTBEAT_SECONDS = 10;
+    /**
+     * The name of the network in the Server section, if it doesn't have one.
+     */
+    private static final String DEFAULT_NETWORK_NAME = "main";
+    /**
+     * The default port of the servers in the Networks section.
+     */
+    private static final int DEFAULT_NETWORK_PORT = 6667;
+    /**
+     * The highest TCP port.
+     */
+    private static final int MAX_PORT = 65535;
+    /**
+     * The default most lines the bot may send at once.
+     */
+    private static final int DEFAULT_OUTBOUND_GLOBAL_BURST = 8;
+    /**
+     * The default time between lines once the bot's burst is used up, in milliseconds.
+     */
+    private static final int DEFAULT_OUTBOUND_GLOBAL_MILLIS_PER_LINE = 500;
+    /**
+     * The default most lines the bot may send to one channel or nick at once.
+     */
+    private static final int DEFAULT_OUTBOUND_TARGET_BURST = 4;
+    /**
+     * The default time between lines to one channel or nick once its burst is used up, in milliseconds.
+     */
+    private static final int DEFAULT_OUTBOUND_TARGET_MILLIS_PER_LINE = 1000;
+    /**
+     * The words buttify never replaces, if the config doesn't list its own.
+     */
+    public static final List<String> DEFAULT_BUTTIFY_STOPWORDS = Collections.unmodifiableList(Arrays.asList(
+            "is", "a", "the", "i", "my", "to", "in", "of", "butt", "and", "or", "your", "her", "his", "was", "lol",
+            "wtf", "tbh", "haha", "it's", "for", "has", "if", "are"));
     /**
      * The bot's IRC nickname.
      */
-    private String botName;
+    private final String botName;
     /**
      * The bot's IRC nickname (not a real IRC value, but the bot will refer to itself as this).
      */
-    private String botNickName;
+    private final String botNickName;
     /**
      * The bot's IRC 'login' value.
      */
-    private String botLogin;
+    private final String botLogin;
     /**
      * The bot's IRC password.
      */
-    private String botPassword;
+    private final String botPassword;
     /**
      * The bot's IRC 'real name' value.
      */
-    private String botRealName;
-    /**
-     * How long to delay before sending messages.
-     */
-    private long botMessageDelay;
+    private final String botRealName;
     /**
      * True if the bot should require uses to be registered to add commands to the database.
      */
-    private boolean noVerify;
+    private final boolean noVerify;
     /**
      * A list of IRC channels that the bot should join.
      */
-    private List<String> channelList;
+    private final List<String> channelList;
     /**
      * The hostname of the IRC server to connect to.
      */
-    private String serverHostname;
+    private final String serverHostname;
     /**
      * The port to connect to the IRC server on.
      */
-    private int serverPort;
+    private final int serverPort;
     /**
      * If the bot should try to reconnect automatically.
      */
-    private boolean serverAutoReconnect;
+    private final boolean serverAutoReconnect;
     /**
      * The username to use to connect to the SQL database.
      */
-    private String sqlUsername;
+    private final String sqlUsername;
     /**
      * The password to be used to connect to the SQL database.
      */
-    private String sqlPassword;
+    private final String sqlPassword;
     /**
      * The IP address of the SQL database.
      */
-    private String sqlIp;
+    private final String sqlIp;
     /**
      * The port to use to connect to the SQL database.
      */
-    private int sqlPort;
+    private final int sqlPort;
     /**
      * The name of the SQL database to create/use.
      */
-    private String sqlDatabase;
+    private final String sqlDatabase;
     /**
      * The table prefix to use when creating tables in the SQL database.
      */
-    private String sqlTablePrefix;
+    private final String sqlTablePrefix;
     /**
      * If the bot should connect to the IRC server using a secure connection.
      */
-    private boolean sslEnabled;
+    private final boolean sslEnabled;
     /**
      * The random response frequency of the bot.  1 in this many chances of buttifying a sentence.
      */
-    private int randomResponseFrequency;
+    private final int randomResponseFrequency;
+    /**
+     * The maximum number of search results to keep in the search result cache.
+     */
+    private final int searchCacheMaxEntries;
+    /**
+     * The maximum size of the search result cache, in kibibytes.
+     */
+    private final int searchCacheMaxKilobytes;
+    /**
+     * True if slow idempotent web requests should be sent a second time.
+     */
+    private final boolean httpHedgeRequests;
+    /**
+     * Web requests slower than this many milliseconds count as failed.
+     */
+    private final int httpSlowCallMillis;
+    /**
+     * The percentage of failed web requests that opens a host's circuit breaker.
+     */
+    private final int httpFailureRatePercent;
+    /**
+     * How many seconds a host's circuit breaker stays open before it is tried again.
+     */
+    private final int httpOpenSeconds;
+    /**
+     * The number of lines of chat history kept for each nick in each channel.
+     */
+    private final int chatLinesPerNick;
+    /**
+     * The size of the chat history, in kibibytes.
+     */
+    private final int chatMaxKilobytes;
+    /**
+     * How many minutes a nick can go without speaking before its chat history is forgotten.
+     */
+    private final int chatIdleMinutes;
+    /**
+     * True if channel scrollback should be kept on disk.
+     */
+    private final boolean scrollbackEnabled;
+    /**
+     * The directory channel scrollback is kept in.
+     */
+    private final String scrollbackDirectory;
+    /**
+     * How many days channel scrollback is kept on disk.
+     */
+    private final int scrollbackRetentionDays;
+    /**
+     * The size of each scrollback segment file, in kibibytes.
+     */
+    private final int scrollbackSegmentKilobytes;
+    /**
+     * True if the bot's in-memory state should be kept over a restart.
+     */
+    private final boolean snapshotEnabled;
+    /**
+     * The file the bot's in-memory state is kept in.
+     */
+    private final String snapshotFile;
+    /**
+     * How often the bot's in-memory state is written out, in seconds, or 0 for only at shutdown.
+     */
+    private final int snapshotIntervalSeconds;
+    /**
+     * How old a snapshot can be and still be restored, in minutes.
+     */
+    private final int snapshotMaxAgeMinutes;
+    /**
+     * The number of compiled user regexes to keep.
+     */
+    private final int regexCacheSize;
+    /**
+     * How long a single command's regexes may run for, in milliseconds.
+     */
+    private final int regexBudgetMillis;
+    /**
+     * How long each user's regexes may run for in a minute, in milliseconds.
+     */
+    private final int regexQuotaMillis;
+    /**
+     * The longest message short outbound lines are packed into, in characters, or 0 to never pack lines.
+     */
+    private final int outboundPackLength;
+    /**
+     * True if the bot shares its channels with other bots on the same database.
+     */
+    private final boolean clusterEnabled;
+    /**
+     * The bot's id in the cluster, or null to make one up from the host and process.
+     */
+    private final String clusterNodeId;
+    /**
+     * How long the bot's cluster leases last without being renewed, in seconds.
+     */
+    private final int clusterLeaseSeconds;
+    /**
+     * How often the bot heartbeats and renews its cluster leases, in seconds.
+     */
+    private final int clusterHeartbeatSeconds;
+    /**
+     * The networks to connect to, the one in the Server section first.
+     */
+    private final List<NetworkConfig> networks;
+    /**
+     * The most lines the bot may send at once.
+     */
+    private final int outboundGlobalBurst;
+    /**
+     * The time between lines once the bot's burst is used up, in milliseconds.
+     */
+    private final int outboundGlobalMillisPerLine;
+    /**
+     * The most lines the bot may send to one channel or nick at once.
+     */
+    private final int outboundTargetBurst;
+    /**
+     * The time between lines to one channel or nick once its burst is used up, in milliseconds.
+     */
+    private final int outboundTargetMillisPerLine;
+    /**
+     * The words buttify never replaces.
+     */
+    private final List<String> buttifyStopwords;
+    /**
+     * The random response frequency of each channel that has its own, by channel name.
+     */
+    private final Map<String, Integer> randomResponseChannelFrequencies;
 
 
     /**
-     * Creates a configuration file if one doesn't already exist, then shuts down gracefully.
+     * Reads a config.yml that has been parsed into maps.  A snapshot never changes once created; a reload creates
+     * a new one.
+     * @param map The config.yml's top level settings.
+     * @throws IllegalArgumentException If a setting is missing or out of range.
      */
-    public void createConfigIfNotExists() {
-        if (!CONFIG.exists()) {
-            exportResource();
-            log.info("Created new config.yml file in the current directory.");
-            log.info("Please edit the configuration file and fill in the appropriate details");
-            System.exit(0);
+    @SuppressWarnings("unchecked")  // if the user fucks the config up, that's their problem.
+    public YAMLConfigurationFile(final Map<String, Object> map) {
+        Map<String, Object> botSettings = (Map<String, Object>) map.get("Bot");
+        Map<String, Object> serverSettings = (Map<String, Object>) map.get("Server");
+        Map<String, Object> sqlSettings = (Map<String, Object>) map.get("SQL");
+        Map<String, Object> cacheSettings = (Map<String, Object>) map.get("Cache");
+        Map<String, Object> httpSettings = (Map<String, Object>) map.get("Http");
+        Map<String, Object> chatSettings = (Map<String, Object>) map.get("Chat-History");
+        Map<String, Object> scrollbackSettings = (Map<String, Object>) map.get("Scrollback");
+        Map<String, Object> snapshotSettings = (Map<String, Object>) map.get("Snapshot");
+        Map<String, Object> regexSettings = (Map<String, Object>) map.get("Regex");
+        Map<String, Object> outboundSettings = (Map<String, Object>) map.get("Outbound");
+        Map<String, Object> buttifySettings = (Map<String, Object>) map.get("Buttify");
+        Map<String, Object> clusterSettings = (Map<String, Object>) map.get("Cluster");
+        Map<String, Object> randomResponseSettings = (Map<String, Object>) map.get("Random-Response");
+        this.channelList = (List<String>) map.get("Channels");
+        this.botName = (String) botSettings.get("Name");
+        this.botLogin = (String) botSettings.get("Login");
+        this.botNickName = (String) botSettings.get("Nickname");
+        this.botRealName = (String) botSettings.get("Realname");
+        this.botPassword = (String) botSettings.get("Password");
+        this.noVerify = Boolean.parseBoolean(String.valueOf(botSettings.get("No-Verify")));
+        this.randomResponseFrequency =
+                Integer.parseInt(String.valueOf(botSettings.get("Random-Response-Frequency")));
+        this.serverHostname = (String) serverSettings.get("Hostname");
+        this.serverPort = Integer.parseInt(String.valueOf(serverSettings.get("Port")));
+        this.serverAutoReconnect = Boolean.parseBoolean(String.valueOf(serverSettings.get("Auto-Reconnect")));
+        this.sslEnabled = Boolean.parseBoolean(String.valueOf(serverSettings.get("SSL")));
+        this.sqlUsername = (String) sqlSettings.get("Username");
+        this.sqlPassword = (String) sqlSettings.get("Password");
+        this.sqlIp = (String) sqlSettings.get("IP");
+        this.sqlPort = Integer.parseInt(String.valueOf(sqlSettings.get("Port")));
+        this.sqlDatabase = (String) sqlSettings.get("Database");
+        this.sqlTablePrefix = (String) sqlSettings.get("Table-Prefix");
+        this.searchCacheMaxEntries = getInt(cacheSettings, "Search-Max-Entries", DEFAULT_SEARCH_CACHE_ENTRIES);
+        this.searchCacheMaxKilobytes = getInt(cacheSettings, "Search-Max-Kilobytes",
+                DEFAULT_SEARCH_CACHE_KILOBYTES);
+        this.httpHedgeRequests = getBoolean(httpSettings, "Hedge-Requests", false);
+        this.httpSlowCallMillis = getInt(httpSettings, "Slow-Call-Millis", DEFAULT_HTTP_SLOW_CALL_MILLIS);
+        this.httpFailureRatePercent = getInt(httpSettings, "Failure-Rate-Percent",
+                DEFAULT_HTTP_FAILURE_RATE_PERCENT);
+        this.httpOpenSeconds = getInt(httpSettings, "Open-Seconds", DEFAULT_HTTP_OPEN_SECONDS);
+        this.chatLinesPerNick = getInt(chatSettings, "Lines-Per-Nick", DEFAULT_CHAT_LINES_PER_NICK);
+        this.chatMaxKilobytes = getInt(chatSettings, "Max-Kilobytes", DEFAULT_CHAT_MAX_KILOBYTES);
+        this.chatIdleMinutes = getInt(chatSettings, "Idle-Minutes", DEFAULT_CHAT_IDLE_MINUTES);
+        this.scrollbackEnabled = getBoolean(scrollbackSettings, "Enabled", true);
+        this.scrollbackDirectory = getString(scrollbackSettings, "Directory", "scrollback");
+        this.scrollbackRetentionDays = getInt(scrollbackSettings, "Retention-Days",
+                DEFAULT_SCROLLBACK_RETENTION_DAYS);
+        this.scrollbackSegmentKilobytes = getInt(scrollbackSettings, "Segment-Kilobytes",
+                DEFAULT_SCROLLBACK_SEGMENT_KILOBYTES);
+        this.snapshotEnabled = getBoolean(snapshotSettings, "Enabled", true);
+        this.snapshotFile = getString(snapshotSettings, "File", "snapshot.bin");
+        this.snapshotIntervalSeconds = getInt(snapshotSettings, "Interval-Seconds",
+                DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+        this.snapshotMaxAgeMinutes = getInt(snapshotSettings, "Max-Age-Minutes", DEFAULT_SNAPSHOT_MAX_AGE_MINUTES);
+        this.regexCacheSize = getInt(regexSettings, "Cache-Size", DEFAULT_REGEX_CACHE_SIZE);
+        this.regexBudgetMillis = getInt(regexSettings, "Budget-Millis", DEFAULT_REGEX_BUDGET_MILLIS);
+        this.regexQuotaMillis = getInt(regexSettings, "Quota-Millis-Per-Minute", DEFAULT_REGEX_QUOTA_MILLIS);
+        this.outboundPackLength = getInt(outboundSettings, "Pack-Length", DEFAULT_OUTBOUND_PACK_LENGTH);
+        this.outboundGlobalBurst = getInt(outboundSettings, "Global-Burst", DEFAULT_OUTBOUND_GLOBAL_BURST);
+        this.outboundGlobalMillisPerLine = getInt(outboundSettings, "Global-Millis-Per-Line",
+                DEFAULT_OUTBOUND_GLOBAL_MILLIS_PER_LINE);
+        this.outboundTargetBurst = getInt(outboundSettings, "Target-Burst", DEFAULT_OUTBOUND_TARGET_BURST);
+        this.outboundTargetMillisPerLine = getInt(outboundSettings, "Target-Millis-Per-Line",
+                DEFAULT_OUTBOUND_TARGET_MILLIS_PER_LINE);
+        this.buttifyStopwords = getStringList(buttifySettings, "Stopwords", DEFAULT_BUTTIFY_STOPWORDS);
+        this.randomResponseChannelFrequencies = getIntMap(randomResponseSettings, "Channels");
+        this.clusterEnabled = getBoolean(clusterSettings, "Enabled", false);
+        this.clusterNodeId = getString(clusterSettings, "Node-Id", null);
+        this.clusterLeaseSeconds = getInt(clusterSettings, "Lease-Seconds", DEFAULT_CLUSTER_LEASE_SECONDS);
+        this.clusterHeartbeatSeconds = getInt(clusterSettings, "Heartbeat-Seconds",
+                DEFAULT_CLUSTER_HEARTBEAT_SECONDS);
+        List<NetworkConfig> networkList = new ArrayList<>();
+        networkList.add(new NetworkConfig(getString(serverSettings, "Name", DEFAULT_NETWORK_NAME), serverHostname,
+                serverPort, sslEnabled, serverAutoReconnect, botName, botLogin, botRealName, botPassword,
+                channelList));
+        if (map.get("Networks") instanceof List) {
+            for (Map<String, Object> networkSettings : (List<Map<String, Object>>) map.get("Networks")) {
+                networkList.add(parseNetwork(networkSettings));
+            }
         }
+        this.networks = Collections.unmodifiableList(networkList);
+        validate();
     }
 
     /**
-     * Parses the user's config.yml configuration file and loads all the values into memory.
+     * Reads a config.yml.
+     * @param stream The config.yml's contents.
+     * @return The settings.
+     * @throws IllegalArgumentException If the file isn't YAML, or a setting is missing or out of range.
      */
-    @SuppressWarnings("unchecked")  // if the user fucks the config up, that's their problem.
-    public void parseConfig() {
-        Yaml yaml = new Yaml();
-        try (InputStream is = new FileInputStream(CONFIG)) {
-            Map<String, Object> map = (Map<String, Object>) yaml.load(is);
-            Map<String, Object> botSettings = (Map<String, Object>) map.get("Bot");
-            Map<String, Object> serverSettings = (Map<String, Object>) map.get("Server");
-            Map<String, Object> sqlSettings = (Map<String, Object>) map.get("SQL");
-            this.channelList = (List<String>) map.get("Channels");
-            this.botName = (String) botSettings.get("Name");
-            this.botLogin = (String) botSettings.get("Login");
-            this.botNickName = (String) botSettings.get("Nickname");
-            this.botRealName = (String) botSettings.get("Realname");
-            this.botPassword = (String) botSettings.get("Password");
-            this.botMessageDelay = Long.parseLong(String.valueOf(botSettings.get("Message-Delay")));
-            this.noVerify = Boolean.parseBoolean(String.valueOf(botSettings.get("No-Verify")));
-            this.randomResponseFrequency =
-                    Integer.parseInt(String.valueOf(botSettings.get("Random-Response-Frequency")));
-            this.serverHostname = (String) serverSettings.get("Hostname");
-            this.serverPort = Integer.parseInt(String.valueOf(serverSettings.get("Port")));
-            this.serverAutoReconnect = Boolean.parseBoolean(String.valueOf(serverSettings.get("Auto-Reconnect")));
-            this.sslEnabled = Boolean.parseBoolean(String.valueOf(serverSettings.get("SSL")));
-            this.sqlUsername = (String) sqlSettings.get("Username");
-            this.sqlPassword = (String) sqlSettings.get("Password");
-            this.sqlIp = (String) sqlSettings.get("IP");
-            this.sqlPort = Integer.parseInt(String.valueOf(sqlSettings.get("Port")));
-            this.sqlDatabase = (String) sqlSettings.get("Database");
-            this.sqlTablePrefix = (String) sqlSettings.get("Table-Prefix");
-        } catch (FileNotFoundException ex) {
-            log.error("config.yml not found: ", ex.getMessage());
-            System.exit(1);
-        } catch (IOException ex) {
-            log.error("Failed to parse config.yml: ", ex.getMessage());
-            System.exit(1);
+    @SuppressWarnings("unchecked")
+    public static YAMLConfigurationFile parse(final InputStream stream) {
+        Object map;
+        try {
+            map = new Yaml().load(stream);
+        } catch (YAMLException ex) {
+            throw new IllegalArgumentException("config.yml isn't valid YAML: " + ex.getMessage(), ex);
+        }
+        if (!(map instanceof Map)) {
+            throw new IllegalArgumentException("config.yml is empty");
+        }
+        try {
+            return new YAMLConfigurationFile((Map<String, Object>) map);
+        } catch (NullPointerException | ClassCastException ex) {  // a section is missing or the wrong shape
+            throw new IllegalArgumentException("config.yml is missing a section or has one in the wrong shape", ex);
         }
-        log.info("[Configuration file loaded]");
     }
 
     /**
-     * Exports the config.yml from the jar into the user's bot directory so they can configure the bot.
+     * Copies reloaded settings, keeping the ones that only change on a restart as they were when the bot started.
+     * @param reloaded The reloaded settings.
+     * @param startup The settings the bot started with.
      */
-    private void exportResource() {
-        String resourceName = "/config.yml";
-        InputStream stream;
-        OutputStream resStreamOut;
-        String jarFolder;
-        try {
-            stream = YAMLConfigurationFile.class.getResourceAsStream(resourceName);
-            if (stream == null) {
-                throw new IOException("Cannot get resource \"" + resourceName + "\" from Jar file.");
+    private YAMLConfigurationFile(final YAMLConfigurationFile reloaded, final YAMLConfigurationFile startup) {
+        List<NetworkConfig> networkList = new ArrayList<>();
+        for (NetworkConfig network : reloaded.networks) {
+            NetworkConfig started = findNetwork(startup.networks, network.getName());
+            if (started == null) {
+                networkList.add(network);
+            } else {
+                networkList.add(started.withChannels(network.getChannels()));
+            }
+        }
+        this.botName = startup.botName;
+        this.botNickName = startup.botNickName;
+        this.botLogin = startup.botLogin;
+        this.botPassword = startup.botPassword;
+        this.botRealName = startup.botRealName;
+        this.noVerify = reloaded.noVerify;
+        this.channelList = reloaded.channelList;
+        this.serverHostname = startup.serverHostname;
+        this.serverPort = startup.serverPort;
+        this.serverAutoReconnect = startup.serverAutoReconnect;
+        this.sqlUsername = startup.sqlUsername;
+        this.sqlPassword = startup.sqlPassword;
+        this.sqlIp = startup.sqlIp;
+        this.sqlPort = startup.sqlPort;
+        this.sqlDatabase = startup.sqlDatabase;
+        this.sqlTablePrefix = startup.sqlTablePrefix;
+        this.sslEnabled = startup.sslEnabled;
+        this.randomResponseFrequency = reloaded.randomResponseFrequency;
+        this.searchCacheMaxEntries = reloaded.searchCacheMaxEntries;
+        this.searchCacheMaxKilobytes = reloaded.searchCacheMaxKilobytes;
+        this.httpHedgeRequests = startup.httpHedgeRequests;
+        this.httpSlowCallMillis = startup.httpSlowCallMillis;
+        this.httpFailureRatePercent = startup.httpFailureRatePercent;
+        this.httpOpenSeconds = startup.httpOpenSeconds;
+        this.chatLinesPerNick = startup.chatLinesPerNick;
+        this.chatMaxKilobytes = startup.chatMaxKilobytes;
+        this.chatIdleMinutes = startup.chatIdleMinutes;
+        this.scrollbackEnabled = startup.scrollbackEnabled;
+        this.scrollbackDirectory = startup.scrollbackDirectory;
+        this.scrollbackRetentionDays = startup.scrollbackRetentionDays;
+        this.scrollbackSegmentKilobytes = startup.scrollbackSegmentKilobytes;
+        this.snapshotEnabled = startup.snapshotEnabled;
+        this.snapshotFile = startup.snapshotFile;
+        this.snapshotIntervalSeconds = startup.snapshotIntervalSeconds;
+        this.snapshotMaxAgeMinutes = startup.snapshotMaxAgeMinutes;
+        this.regexCacheSize = reloaded.regexCacheSize;
+        this.regexBudgetMillis = reloaded.regexBudgetMillis;
+        this.regexQuotaMillis = reloaded.regexQuotaMillis;
+        this.outboundPackLength = reloaded.outboundPackLength;
+        this.clusterEnabled = startup.clusterEnabled;
+        this.clusterNodeId = startup.clusterNodeId;
+        this.clusterLeaseSeconds = startup.clusterLeaseSeconds;
+        this.clusterHeartbeatSeconds = startup.clusterHeartbeatSeconds;
+        this.networks = Collections.unmodifiableList(networkList);
+        this.outboundGlobalBurst = reloaded.outboundGlobalBurst;
+        this.outboundGlobalMillisPerLine = reloaded.outboundGlobalMillisPerLine;
+        this.outboundTargetBurst = reloaded.outboundTargetBurst;
+        this.outboundTargetMillisPerLine = reloaded.outboundTargetMillisPerLine;
+        this.buttifyStopwords = reloaded.buttifyStopwords;
+        this.randomResponseChannelFrequencies = reloaded.randomResponseChannelFrequencies;
+    }
+
+    /**
+     * Returns these settings with the ones that only change on a restart kept as they were when the bot started,
+     * so nothing reads a value the bot isn't using.  Everything but the channels, the random responses, the
+     * search cache, the regex limits, the outbound limits and buttify's stopwords only changes on a restart.
+     * @param startup The settings the bot started with.
+     * @return The settings to swap in.
+     */
+    public YAMLConfigurationFile keepRestartOnly(final YAMLConfigurationFile startup) {
+        return new YAMLConfigurationFile(this, startup);
+    }
+
+    /**
+     * Returns the sections of the config.yml that have settings which differ from the ones the bot started with,
+     * but which only change on a restart.
+     * @param startup The settings the bot started with.
+     * @return The names of the sections, empty if there are none.
+     */
+    public List<String> getRestartOnlyChanges(final YAMLConfigurationFile startup) {
+        List<String> changed = new ArrayList<>();
+        if (!Arrays.asList(botName, botNickName, botLogin, botPassword, botRealName).equals(Arrays.asList(
+                startup.botName, startup.botNickName, startup.botLogin, startup.botPassword, startup.botRealName))) {
+            changed.add("Bot");
+        }
+        if (!Arrays.asList(serverHostname, serverPort, serverAutoReconnect, sslEnabled).equals(Arrays.asList(
+                startup.serverHostname, startup.serverPort, startup.serverAutoReconnect, startup.sslEnabled))) {
+            changed.add("Server");
+        }
+        for (NetworkConfig network : networks.subList(1, networks.size())) {  // the first is the Server section
+            NetworkConfig started = findNetwork(startup.networks, network.getName());
+            if (started != null && !started.hasSameConnection(network)) {
+                changed.add("Networks");
+                break;
             }
-            int readBytes;
-            byte[] buffer = new byte[RESOURCE_BUFFER_SIZE];
-            jarFolder = new File(YAMLConfigurationFile.class.getProtectionDomain().getCodeSource().getLocation()
-                    .toURI().getPath()).getParentFile().getPath().replace('\\', '/');
-            resStreamOut = new FileOutputStream(jarFolder + resourceName);
-            while ((readBytes = stream.read(buffer)) > 0) {
-                resStreamOut.write(buffer, 0, readBytes);
+        }
+        if (!Arrays.asList(sqlUsername, sqlPassword, sqlIp, sqlPort, sqlDatabase, sqlTablePrefix).equals(
+                Arrays.asList(startup.sqlUsername, startup.sqlPassword, startup.sqlIp, startup.sqlPort,
+                        startup.sqlDatabase, startup.sqlTablePrefix))) {
+            changed.add("SQL");
+        }
+        if (!Arrays.asList(httpHedgeRequests, httpSlowCallMillis, httpFailureRatePercent, httpOpenSeconds).equals(
+                Arrays.asList(startup.httpHedgeRequests, startup.httpSlowCallMillis, startup.httpFailureRatePercent,
+                        startup.httpOpenSeconds))) {
+            changed.add("Http");
+        }
+        if (!Arrays.asList(chatLinesPerNick, chatMaxKilobytes, chatIdleMinutes).equals(Arrays.asList(
+                startup.chatLinesPerNick, startup.chatMaxKilobytes, startup.chatIdleMinutes))) {
+            changed.add("Chat-History");
+        }
+        if (!Arrays.asList(scrollbackEnabled, scrollbackDirectory, scrollbackRetentionDays,
+                scrollbackSegmentKilobytes).equals(Arrays.asList(startup.scrollbackEnabled,
+                startup.scrollbackDirectory, startup.scrollbackRetentionDays, startup.scrollbackSegmentKilobytes))) {
+            changed.add("Scrollback");
+        }
+        if (!Arrays.asList(snapshotEnabled, snapshotFile, snapshotIntervalSeconds, snapshotMaxAgeMinutes).equals(
+                Arrays.asList(startup.snapshotEnabled, startup.snapshotFile, startup.snapshotIntervalSeconds,
+                        startup.snapshotMaxAgeMinutes))) {
+            changed.add("Snapshot");
+        }
+        if (!Arrays.asList(clusterEnabled, clusterNodeId, clusterLeaseSeconds, clusterHeartbeatSeconds).equals(
+                Arrays.asList(startup.clusterEnabled, startup.clusterNodeId, startup.clusterLeaseSeconds,
+                        startup.clusterHeartbeatSeconds))) {
+            changed.add("Cluster");
+        }
+        return changed;
+    }
+
+    /**
+     * Returns a network by name.
+     * @param list The networks to look in.
+     * @param name The name of the network, in any case.
+     * @return The network, or null if there isn't one by that name.
+     */
+    private static NetworkConfig findNetwork(final List<NetworkConfig> list, final String name) {
+        for (NetworkConfig network : list) {
+            if (network.getName().equalsIgnoreCase(name)) {
+                return network;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks that the settings make sense, so a bad edit is turned away before any of it is used.
+     * @throws IllegalArgumentException If a setting is missing or out of range.
+     */
+    private void validate() {
+        Set<String> names = new HashSet<>();
+        for (NetworkConfig network : networks) {
+            if (network.getHostname() == null || network.getBotName() == null) {
+                throw new IllegalArgumentException("Network " + network.getName() + " needs a Hostname and Name");
+            }
+            if (network.getPort() < 1 || network.getPort() > MAX_PORT) {
+                throw new IllegalArgumentException("Network " + network.getName() + " has a bad port");
             }
-            stream.close();
-            resStreamOut.close();
-        } catch (IOException | URISyntaxException ex) {
-            log.fatal("Failed to export config.yml from jar!");
-            System.exit(1);
+            if (!names.add(network.getName().toLowerCase(Locale.ROOT))) {
+                throw new IllegalArgumentException("Two networks are called " + network.getName());
+            }
+        }
+        if (channelList == null) {
+            throw new IllegalArgumentException("The Channels section is missing");
+        }
+        requirePositive("Search-Max-Entries", searchCacheMaxEntries);
+        requirePositive("Search-Max-Kilobytes", searchCacheMaxKilobytes);
+        requirePositive("Lines-Per-Nick", chatLinesPerNick);
+        requirePositive("Chat-History Max-Kilobytes", chatMaxKilobytes);
+        requirePositive("Chat-History Idle-Minutes", chatIdleMinutes);
+        if (chatMaxKilobytes > MAX_CHAT_KILOBYTES) {
+            throw new IllegalArgumentException("Chat-History Max-Kilobytes can't be more than " + MAX_CHAT_KILOBYTES);
+        }
+        requirePositive("Regex Cache-Size", regexCacheSize);
+        if (outboundPackLength < 0) {
+            throw new IllegalArgumentException("Pack-Length can't be negative");
+        }
+        requirePositive("Global-Burst", outboundGlobalBurst);
+        requirePositive("Target-Burst", outboundTargetBurst);
+        if (outboundGlobalMillisPerLine < 0 || outboundTargetMillisPerLine < 0) {
+            throw new IllegalArgumentException("The outbound Millis-Per-Line settings can't be negative");
+        }
+        if (snapshotIntervalSeconds < 0) {
+            throw new IllegalArgumentException("The snapshot's Interval-Seconds can't be negative");
+        }
+        if (clusterEnabled && clusterHeartbeatSeconds >= clusterLeaseSeconds) {
+            throw new IllegalArgumentException("The cluster's Heartbeat-Seconds must be less than its Lease-Seconds");
+        }
+    }
+
+    /**
+     * Checks that a setting is above zero.
+     * @param name The name of the setting, for the error.
+     * @param value The setting.
+     * @throws IllegalArgumentException If it isn't.
+     */
+    private static void requirePositive(final String name, final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1");
         }
     }
 
+    /**
+     * Reads one entry of the Networks section, falling back to the Bot section for who the bot is.
+     * @param section The entry.
+     * @return The network's settings.
+     */
+    private NetworkConfig parseNetwork(final Map<String, Object> section) {
+        String hostname = getString(section, "Hostname", null);
+        if (hostname == null) {
+            throw new IllegalArgumentException("Every network in the Networks section needs a Hostname");
+        }
+        return new NetworkConfig(getString(section, "Name", hostname), hostname,
+                getInt(section, "Port", DEFAULT_NETWORK_PORT), getBoolean(section, "SSL", false),
+                getBoolean(section, "Auto-Reconnect", true), getString(section, "Bot-Name", botName),
+                getString(section, "Login", botLogin), getString(section, "Realname", botRealName),
+                getString(section, "Password", botPassword),
+                getStringList(section, "Channels", Collections.emptyList()));
+    }
+
+    /**
+     * Reads an optional integer setting.  Settings added after a user's config.yml was created won't be
+     * in their file, so these fall back to a default rather than failing to start.
+     * @param section The section of the config the setting is in (may be null if the section is missing).
+     * @param key The name of the setting.
+     * @param defaultValue The value to use if the setting isn't present.
+     * @return The value of the setting, or the default.
+     */
+    private static int getInt(final Map<String, Object> section, final String key, final int defaultValue) {
+        if (section == null || section.get(key) == null) {
+            return defaultValue;
+        }
+        return Integer.parseInt(String.valueOf(section.get(key)));
+    }
+
+    /**
+     * Reads an optional boolean setting, falling back to a default if it isn't present.
+     * @param section The section of the config the setting is in (may be null if the section is missing).
+     * @param key The name of the setting.
+     * @param defaultValue The value to use if the setting isn't present.
+     * @return The value of the setting, or the default.
+     */
+    private static boolean getBoolean(final Map<String, Object> section, final String key,
+                                      final boolean defaultValue) {
+        if (section == null || section.get(key) == null) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(String.valueOf(section.get(key)));
+    }
+
+    /**
+     * Reads an optional string setting, falling back to a default if it isn't present.
+     * @param section The section of the config the setting is in (may be null if the section is missing).
+     * @param key The name of the setting.
+     * @param defaultValue The value to use if the setting isn't present.
+     * @return The value of the setting, or the default.
+     */
+    private static String getString(final Map<String, Object> section, final String key,
+                                    final String defaultValue) {
+        if (section == null || section.get(key) == null) {
+            return defaultValue;
+        }
+        return String.valueOf(section.get(key));
+    }
+
+    /**
+     * Reads an optional list of strings, falling back to a default if it isn't present.
+     * @param section The section of the config the setting is in (may be null if the section is missing).
+     * @param key The name of the setting.
+     * @param defaultValue The value to use if the setting isn't present.
+     * @return The value of the setting, or the default.
+     */
+    private static List<String> getStringList(final Map<String, Object> section, final String key,
+                                              final List<String> defaultValue) {
+        if (section == null || !(section.get(key) instanceof List)) {
+            return defaultValue;
+        }
+        List<String> values = new ArrayList<>();
+        for (Object value : (List<?>) section.get(key)) {
+            values.add(String.valueOf(value));
+        }
+        return values;
+    }
+
+    /**
+     * Reads an optional map of integers, such as a setting for each channel.
+     * @param section The section of the config the setting is in (may be null if the section is missing).
+     * @param key The name of the setting.
+     * @return The values of the setting, or an empty map if it isn't present.
+     */
+    private static Map<String, Integer> getIntMap(final Map<String, Object> section, final String key) {
+        Map<String, Integer> values = new HashMap<>();
+        if (section == null || !(section.get(key) instanceof Map)) {
+            return values;
+        }
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) section.get(key)).entrySet()) {
+            values.put(String.valueOf(entry.getKey()), Integer.parseInt(String.valueOf(entry.getValue())));
+        }
+        return values;
+    }
+
     /**
      * Returns the bot's nickname from the config.yml.
      * @return The bot's nickname
@@ -228,14 +794,6 @@ public final class YAMLConfigurationFile {
         return botPassword;
     }
 
-    /**
-     * Returns any message delay the bot should use when sending IRC messages.
-     * @return The message delay defined in the config.yml.
-     */
-    public long getBotMessageDelay() {
-        return botMessageDelay;
-    }
-
     /**
      * Returns whether or not users need to be verified to add to the bot's database.
      * @return True if users are required to be verified to add to the bot's database.
@@ -244,6 +802,46 @@ public final class YAMLConfigurationFile {
         return noVerify;
     }
 
+    /**
+     * Returns whether the bot shares its channels with other bots on the same database.
+     * @return True if the bot is part of a cluster.
+     */
+    public boolean getClusterEnabled() {
+        return clusterEnabled;
+    }
+
+    /**
+     * Returns the bot's id in the cluster.
+     * @return The id, or null to make one up from the host and process.
+     */
+    public String getClusterNodeId() {
+        return clusterNodeId;
+    }
+
+    /**
+     * Returns how long the bot's cluster leases last without being renewed.
+     * @return The time in seconds.
+     */
+    public int getClusterLeaseSeconds() {
+        return clusterLeaseSeconds;
+    }
+
+    /**
+     * Returns how often the bot heartbeats and renews its cluster leases.
+     * @return The time in seconds.
+     */
+    public int getClusterHeartbeatSeconds() {
+        return clusterHeartbeatSeconds;
+    }
+
+    /**
+     * Returns the networks the bot connects to.
+     * @return The settings of each network, the one in the Server section first.
+     */
+    public List<NetworkConfig> getNetworks() {
+        return networks;
+    }
+
     /**
      * Returns the list of channels defined in the config.yml.
      * @return A list of Strings being IRC channels the bot should join.
@@ -340,4 +938,220 @@ public final class YAMLConfigurationFile {
     public int getRandomResponseFrequency() {
         return randomResponseFrequency;
     }
+
+    /**
+     * Returns the random response frequency of each channel that has its own.
+     * @return The frequencies, by channel name.
+     */
+    public Map<String, Integer> getRandomResponseChannelFrequencies() {
+        return randomResponseChannelFrequencies;
+    }
+
+    /**
+     * Returns the maximum number of search results to keep in the search result cache.
+     * @return The maximum number of cached searches.
+     */
+    public int getSearchCacheMaxEntries() {
+        return searchCacheMaxEntries;
+    }
+
+    /**
+     * Returns the maximum size of the search result cache, in kibibytes.
+     * @return The maximum size of the search result cache.
+     */
+    public int getSearchCacheMaxKilobytes() {
+        return searchCacheMaxKilobytes;
+    }
+
+    /**
+     * Returns whether or not slow idempotent web requests should be hedged with a second request.
+     * @return True if requests should be hedged.
+     */
+    public boolean getHttpHedgeRequests() {
+        return httpHedgeRequests;
+    }
+
+    /**
+     * Returns how long a web request can take before it counts as failed.
+     * @return The slow call threshold in milliseconds.
+     */
+    public int getHttpSlowCallMillis() {
+        return httpSlowCallMillis;
+    }
+
+    /**
+     * Returns the percentage of failed web requests that opens a host's circuit breaker.
+     * @return The failure rate threshold, as a percentage.
+     */
+    public int getHttpFailureRatePercent() {
+        return httpFailureRatePercent;
+    }
+
+    /**
+     * Returns how long a host's circuit breaker stays open before the host is tried again.
+     * @return The open duration in seconds.
+     */
+    public int getHttpOpenSeconds() {
+        return httpOpenSeconds;
+    }
+
+    /**
+     * Returns the number of lines of chat history kept for each nick in each channel.
+     * @return The number of lines per nick.
+     */
+    public int getChatLinesPerNick() {
+        return chatLinesPerNick;
+    }
+
+    /**
+     * Returns the size of the chat history, in kibibytes.
+     * @return The maximum size of the chat history.
+     */
+    public int getChatMaxKilobytes() {
+        return chatMaxKilobytes;
+    }
+
+    /**
+     * Returns how long a nick can go without speaking before its chat history is forgotten.
+     * @return The idle time in minutes.
+     */
+    public int getChatIdleMinutes() {
+        return chatIdleMinutes;
+    }
+
+    /**
+     * Returns whether or not channel scrollback should be kept on disk.
+     * @return True if scrollback is enabled.
+     */
+    public boolean getScrollbackEnabled() {
+        return scrollbackEnabled;
+    }
+
+    /**
+     * Returns the directory channel scrollback is kept in.
+     * @return The scrollback directory.
+     */
+    public String getScrollbackDirectory() {
+        return scrollbackDirectory;
+    }
+
+    /**
+     * Returns how long channel scrollback is kept on disk.
+     * @return The retention period in days.
+     */
+    public int getScrollbackRetentionDays() {
+        return scrollbackRetentionDays;
+    }
+
+    /**
+     * Returns the size of each scrollback segment file, in kibibytes.
+     * @return The segment size.
+     */
+    public int getScrollbackSegmentKilobytes() {
+        return scrollbackSegmentKilobytes;
+    }
+
+    /**
+     * Returns whether or not the bot's in-memory state should be kept over a restart.
+     * @return True if snapshots are enabled.
+     */
+    public boolean getSnapshotEnabled() {
+        return snapshotEnabled;
+    }
+
+    /**
+     * Returns the file the bot's in-memory state is kept in.
+     * @return The snapshot file.
+     */
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Returns how often the bot's in-memory state is written out.
+     * @return The interval in seconds, or 0 for only at shutdown.
+     */
+    public int getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    /**
+     * Returns how old a snapshot can be and still be restored.
+     * @return The max age in minutes.
+     */
+    public int getSnapshotMaxAgeMinutes() {
+        return snapshotMaxAgeMinutes;
+    }
+
+    /**
+     * Returns the number of compiled user regexes to keep.
+     * @return The cache size.
+     */
+    public int getRegexCacheSize() {
+        return regexCacheSize;
+    }
+
+    /**
+     * Returns how long a single command's regexes may run for.
+     * @return The budget in milliseconds.
+     */
+    public int getRegexBudgetMillis() {
+        return regexBudgetMillis;
+    }
+
+    /**
+     * Returns how long each user's regexes may run for in a minute.
+     * @return The quota in milliseconds.
+     */
+    public int getRegexQuotaMillis() {
+        return regexQuotaMillis;
+    }
+
+    /**
+     * Returns the longest message short outbound lines are packed into.
+     * @return The pack length in characters, or 0 to never pack lines.
+     */
+    public int getOutboundPackLength() {
+        return outboundPackLength;
+    }
+
+    /**
+     * Returns the most lines the bot may send at once.
+     * @return The burst in lines.
+     */
+    public int getOutboundGlobalBurst() {
+        return outboundGlobalBurst;
+    }
+
+    /**
+     * Returns the time between lines once the bot's burst is used up.
+     * @return The time in milliseconds.
+     */
+    public int getOutboundGlobalMillisPerLine() {
+        return outboundGlobalMillisPerLine;
+    }
+
+    /**
+     * Returns the most lines the bot may send to one channel or nick at once.
+     * @return The burst in lines.
+     */
+    public int getOutboundTargetBurst() {
+        return outboundTargetBurst;
+    }
+
+    /**
+     * Returns the time between lines to one channel or nick once its burst is used up.
+     * @return The time in milliseconds.
+     */
+    public int getOutboundTargetMillisPerLine() {
+        return outboundTargetMillisPerLine;
+    }
+
+    /**
+     * Returns the words buttify never replaces.
+     * @return The stopwords.
+     */
+    public List<String> getButtifyStopwords() {
+        return buttifyStopwords;
+    }
 }
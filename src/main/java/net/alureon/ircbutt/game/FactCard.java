@@ -0,0 +1,42 @@
+package net.alureon.ircbutt.game;
+
+/**
+ * One round of the guessing game: the name of a fact, which players guess, and its data, which is the hint.
+ */
+public final class FactCard {
+
+    /**
+     * The name of the fact.
+     */
+    private final String name;
+    /**
+     * The data of the fact, shown as the hint.
+     */
+    private final String hint;
+
+    /**
+     * Creates a new card.
+     * @param name The name of the fact.
+     * @param hint The data of the fact, shown as the hint.
+     */
+    public FactCard(final String name, final String hint) {
+        this.name = name;
+        this.hint = hint;
+    }
+
+    /**
+     * Returns the name of the fact.
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the data of the fact, shown as the hint.
+     * @return The hint.
+     */
+    public String getHint() {
+        return hint;
+    }
+}
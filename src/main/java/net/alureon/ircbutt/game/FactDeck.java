@@ -0,0 +1,159 @@
+package net.alureon.ircbutt.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import net.alureon.ircbutt.util.RandomService;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * A shuffled deck of facts for the guessing game.  The ids of every fact are read and shuffled once, when the game
+ * starts, so no fact comes up twice until every fact has; and the next few rounds are looked up in the background,
+ * so a round can start as soon as the last one is won instead of waiting on the database.  What is left of the deck
+ * can be saved and dealt on from after a restart, so the facts don't start over.
+ */
+public final class FactDeck {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * The source of the facts.
+     */
+    private final FactSource source;
+    /**
+     * Runs the lookups of upcoming rounds.
+     */
+    private final Executor executor;
+    /**
+     * The number of rounds to look up ahead of time.
+     */
+    private final int prefetch;
+    /**
+     * Shuffles the deck.
+     */
+    private final RandomService random;
+    /**
+     * The ids of the facts not yet dealt or looked up, in the order they'll be dealt.
+     */
+    private final Deque<Integer> ids = new ArrayDeque<>();
+    /**
+     * The upcoming rounds, being looked up in the order they'll be dealt.
+     */
+    private final Deque<CompletableFuture<FactCard>> upcoming = new ArrayDeque<>();
+    /**
+     * The ids of the upcoming rounds, in the same order.
+     */
+    private final Deque<Integer> upcomingIds = new ArrayDeque<>();
+
+    /**
+     * Builds a shuffled deck of every fact, and starts looking up the first rounds.
+     * @param source The source of the facts.
+     * @param executor Runs the lookups of upcoming rounds.
+     * @param prefetch The number of rounds to look up ahead of time.
+     * @param random Shuffles the deck.
+     */
+    public FactDeck(final FactSource source, final Executor executor, final int prefetch,
+                    final RandomService random) {
+        this(source, executor, prefetch, random, Collections.emptyList());
+    }
+
+    /**
+     * Builds a deck of the facts another deck had left, dealt in the same order, and starts looking up the first
+     * rounds.  If there are none left, every fact is shuffled into the deck.
+     * @param source The source of the facts.
+     * @param executor Runs the lookups of upcoming rounds.
+     * @param prefetch The number of rounds to look up ahead of time.
+     * @param random Shuffles the deck.
+     * @param remaining The ids of the facts left, from getRemainingIds.
+     */
+    public FactDeck(final FactSource source, final Executor executor, final int prefetch,
+                    final RandomService random, final List<Integer> remaining) {
+        this.source = source;
+        this.executor = executor;
+        this.prefetch = Math.max(1, prefetch);
+        this.random = random;
+        ids.addAll(remaining);
+        if (ids.isEmpty()) {
+            shuffle();
+        }
+        fill();
+    }
+
+    /**
+     * Reads the ids of every fact and shuffles them into the deck.
+     */
+    private void shuffle() {
+        List<Integer> all = new ArrayList<>(source.getFactIds());
+        random.shuffle(all);
+        ids.addAll(all);
+    }
+
+    /**
+     * Starts looking up rounds until enough are on the way.
+     */
+    private void fill() {
+        while (upcoming.size() < prefetch && !ids.isEmpty()) {
+            int id = ids.poll();
+            upcoming.add(CompletableFuture.supplyAsync(() -> source.getFact(id), executor));
+            upcomingIds.add(id);
+        }
+    }
+
+    /**
+     * Deals the next round.  Usually it has already been looked up, so this doesn't wait.  Once every fact has
+     * been dealt the deck is shuffled again.
+     * @return The next round, or null if there are no facts at all.
+     */
+    public synchronized FactCard next() {
+        boolean reshuffled = false;
+        while (true) {
+            if (upcoming.isEmpty()) {
+                if (reshuffled) {
+                    return null;
+                }
+                shuffle();
+                reshuffled = true;
+                fill();
+                continue;
+            }
+            CompletableFuture<FactCard> round = upcoming.poll();
+            upcomingIds.poll();
+            fill();
+            try {
+                FactCard card = round.join();
+                if (card != null) {
+                    return card;
+                }
+            } catch (CompletionException ex) {
+                log.error("Couldn't look up the next guessing game fact: " + ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of facts left before the deck is shuffled again.
+     * @return The number of facts left.
+     */
+    public synchronized int remaining() {
+        return ids.size() + upcoming.size();
+    }
+
+    /**
+     * Returns the ids of the facts left before the deck is shuffled again, in the order they'll be dealt.
+     * @return The ids.
+     */
+    public synchronized List<Integer> getRemainingIds() {
+        List<Integer> remaining = new ArrayList<>(upcomingIds);
+        remaining.addAll(ids);
+        return remaining;
+    }
+}
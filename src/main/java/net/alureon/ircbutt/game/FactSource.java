@@ -0,0 +1,23 @@
+package net.alureon.ircbutt.game;
+
+import java.util.List;
+
+/**
+ * Where the guessing game gets its facts from.
+ */
+public interface FactSource {
+
+    /**
+     * Returns the id of every fact.
+     * @return The ids (may be empty).
+     */
+    List<Integer> getFactIds();
+
+    /**
+     * Looks up a fact by id.
+     * @param id The id of the fact.
+     * @return The fact, or null if it has been deleted.
+     */
+    FactCard getFact(int id);
+
+}
@@ -1,57 +1,171 @@
 package net.alureon.ircbutt.game;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 /**
- * Provides a way to check the status of any games currently in progress.
+ * Keeps track of the games being played, one per channel, so a game in one channel doesn't stop anyone playing
+ * in another.  A game nobody has played for a while is timed out and forgotten.
  */
 public final class GameManager {
 
     /**
-     * Stores whether or not a game is currently active.
+     * The default time a game may go without being played.
+     */
+    private static final long DEFAULT_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    /**
+     * How often every channel's game is checked for timing out, in milliseconds.
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    /**
+     * The number of threads looking up upcoming rounds of games.
+     */
+    private static final int PREFETCH_THREADS = 2;
+    /**
+     * The game being played in each channel, by channel key.
+     */
+    private final ConcurrentMap<String, GameSession> sessions = new ConcurrentHashMap<>();
+    /**
+     * How long a game may go without being played, in milliseconds.
+     */
+    private final long idleMillis;
+    /**
+     * When every channel's game was last checked for timing out.
+     */
+    private volatile long lastSweep;
+    /**
+     * Looks up upcoming rounds of games in the background.
+     */
+    private final ExecutorService prefetchExecutor = Executors.newFixedThreadPool(PREFETCH_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "game-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a new GameManager with the default timeout.
+     */
+    public GameManager() {
+        this(DEFAULT_IDLE_MILLIS);
+    }
+
+    /**
+     * Creates a new GameManager.
+     * @param idleMillis How long a game may go without being played, in milliseconds.
      */
-    private boolean gameActive = false;
+    public GameManager(final long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
     /**
-     * The currently active game.
+     * Starts a game in a channel, unless one is already being played there.
+     * @param channel The channel key, from NetworkManager.getChannelKey().
+     * @param game The game.
+     * @return The new session, or null if the channel already has a game.
      */
-    private Game game;
+    public GameSession start(final String channel, final Game game) {
+        long now = System.currentTimeMillis();
+        GameSession session = new GameSession(channel, game, now);
+        GameSession existing = sessions.putIfAbsent(channel, session);
+        if (existing == null) {
+            return session;
+        }
+        if (existing.expire(now, idleMillis) && sessions.replace(channel, existing, session)) {
+            return session;
+        }
+        return null;
+    }
 
     /**
-     * Provides a way to set the game as active or not.
-     * @param bool true if a game is active, otherwise false.
+     * Puts back a game that was being played before a restart, unless it has timed out since or the channel
+     * already has a game.
+     * @param channel The channel key, from NetworkManager.getChannelKey().
+     * @param game The game.
+     * @param lastPlayed When the game was last played, in epoch millis.
+     * @return True if the game was put back.
      */
-    public void setGameActive(final boolean bool) {
-        if (!bool) {
-            this.game = null;
+    public boolean restore(final String channel, final Game game, final long lastPlayed) {
+        if (System.currentTimeMillis() - lastPlayed >= idleMillis) {
+            return false;
         }
-        this.gameActive = bool;
+        return sessions.putIfAbsent(channel, new GameSession(channel, game, lastPlayed)) == null;
     }
 
     /**
-     * Get the currently active game (if one is active).
-     * @return The currently active game (or null)
+     * Returns every game still being played.
+     * @return The sessions.
      */
-    public Game getActiveGame() {
-        return this.game;
+    public List<GameSession> getActiveSessions() {
+        List<GameSession> active = new ArrayList<>();
+        for (GameSession session : sessions.values()) {
+            if (session.isActive()) {
+                active.add(session);
+            }
+        }
+        return active;
     }
 
     /**
-     * Set the currently active game to the provided game.
-     * @param gameparam the game to set active
+     * Returns the game being played in a channel.  Costs next to nothing when no channel has a game.
+     * @param channel The channel key, from NetworkManager.getChannelKey() (may be null, for private messages).
+     * @return The session, or null if the channel has no game.
      */
-    public void setActiveGame(final Game gameparam) {
-        if (gameparam == null) {
-            this.gameActive = false;
-            this.game = null;
-        } else {
-            this.game = gameparam;
-            this.gameActive = true;
+    public GameSession getSession(final String channel) {
+        if (sessions.isEmpty() || channel == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        sweep(now);
+        GameSession session = sessions.get(channel);
+        if (session != null && session.expire(now, idleMillis)) {
+            sessions.remove(channel, session);
+            return null;
         }
+        return session;
+    }
+
+    /**
+     * Ends a game, if it hasn't ended already.
+     * @param session The game's session.
+     * @return True if this call ended the game, false if someone else already had.
+     */
+    public boolean end(final GameSession session) {
+        boolean ended = session.finish();
+        sessions.remove(session.getChannel(), session);
+        return ended;
+    }
+
+    /**
+     * Returns the executor games should look up their upcoming rounds on.
+     * @return The executor.
+     */
+    public Executor getPrefetchExecutor() {
+        return prefetchExecutor;
     }
 
     /**
-     * Provides a way to check whether or not a game is currently active.
-     * @return true if a game is active
+     * Returns the number of channels with a game.
+     * @return The number of sessions.
      */
-    public boolean getGameActive() {
-        return this.gameActive;
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Times out and forgets every game nobody has played for too long, at most once per sweep interval.
+     * @param now The current time in epoch millis.
+     */
+    void sweep(final long now) {
+        if (now - lastSweep < SWEEP_INTERVAL_MILLIS) {
+            return;
+        }
+        lastSweep = now;
+        sessions.values().removeIf(session -> session.expire(now, idleMillis));
     }
 }
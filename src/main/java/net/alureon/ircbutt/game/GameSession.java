@@ -0,0 +1,108 @@
+package net.alureon.ircbutt.game;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A game being played in a channel.  The session's state only ever moves from ACTIVE to FINISHED or EXPIRED, and
+ * moves atomically, so when two players win at the same moment (or a win races the idle timeout) exactly one of
+ * them gets to end the game.
+ */
+public final class GameSession {
+
+    /**
+     * The channel the game is being played in.
+     */
+    private final String channel;
+    /**
+     * The game.
+     */
+    private final Game game;
+    /**
+     * The state of the session.
+     */
+    private final AtomicReference<GameState> state = new AtomicReference<>(GameState.ACTIVE);
+    /**
+     * When the game was last played, in epoch millis.
+     */
+    private volatile long lastPlayed;
+
+    /**
+     * Creates a new, active, session.
+     * @param channel The channel the game is being played in.
+     * @param game The game.
+     * @param now The current time in epoch millis.
+     */
+    GameSession(final String channel, final Game game, final long now) {
+        this.channel = channel;
+        this.game = game;
+        this.lastPlayed = now;
+    }
+
+    /**
+     * Returns the channel the game is being played in.
+     * @return The channel key.
+     */
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the game.
+     * @return The game.
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Returns the state of the session.
+     * @return The state.
+     */
+    public GameState getState() {
+        return state.get();
+    }
+
+    /**
+     * Returns whether the game is still being played.
+     * @return True if the session is active.
+     */
+    public boolean isActive() {
+        return state.get() == GameState.ACTIVE;
+    }
+
+    /**
+     * Returns when the game was last played.
+     * @return The time in epoch millis.
+     */
+    public long getLastPlayed() {
+        return lastPlayed;
+    }
+
+    /**
+     * Records that the game has just been played, so it doesn't time out.
+     */
+    public void touch() {
+        lastPlayed = System.currentTimeMillis();
+    }
+
+    /**
+     * Ends the game, if it is still active.
+     * @return True if this call ended the game, false if it had already ended.
+     */
+    boolean finish() {
+        return state.compareAndSet(GameState.ACTIVE, GameState.FINISHED);
+    }
+
+    /**
+     * Times the game out, if it is still active and hasn't been played for too long.
+     * @param now The current time in epoch millis.
+     * @param idleMillis How long a game may go without being played.
+     * @return True if the game is over, either now or earlier.
+     */
+    boolean expire(final long now, final long idleMillis) {
+        if (now - lastPlayed >= idleMillis) {
+            state.compareAndSet(GameState.ACTIVE, GameState.EXPIRED);
+        }
+        return !isActive();
+    }
+}
@@ -0,0 +1,90 @@
+package net.alureon.ircbutt.game;
+
+import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.snapshot.SnapshotReader;
+import net.alureon.ircbutt.snapshot.SnapshotWriter;
+import net.alureon.ircbutt.snapshot.Snapshottable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the games being played over a restart, so a channel in the middle of a game can carry on where it left
+ * off.  Games that time out while the bot is down are not put back.
+ */
+public final class GameSnapshot implements Snapshottable {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * Marks a regex golf game in the snapshot.
+     */
+    private static final int REGEX_GAME = 1;
+    /**
+     * Marks a guessing game in the snapshot.
+     */
+    private static final int GUESSING_GAME = 2;
+    /**
+     * The IRCbutt instance, for the game manager and the guessing game's facts.
+     */
+    private final IRCbutt butt;
+
+    /**
+     * Creates the snapshot of the games.
+     * @param butt The IRCbutt instance.
+     */
+    public GameSnapshot(final IRCbutt butt) {
+        this.butt = butt;
+    }
+
+    @Override
+    public void writeSnapshot(final SnapshotWriter out) throws IOException {
+        List<GameSession> sessions = new ArrayList<>();
+        for (GameSession session : butt.getGameManager().getActiveSessions()) {
+            Game game = session.getGame();
+            if (game instanceof RegexGame || (game instanceof GuessingGame && !((GuessingGame) game).isOver())) {
+                sessions.add(session);
+            }
+        }
+        out.writeInt(sessions.size());
+        for (GameSession session : sessions) {
+            out.writeString(session.getChannel());
+            out.writeLong(session.getLastPlayed());
+            if (session.getGame() instanceof RegexGame) {
+                out.writeInt(REGEX_GAME);
+                ((RegexGame) session.getGame()).writeSnapshot(out);
+            } else {
+                out.writeInt(GUESSING_GAME);
+                ((GuessingGame) session.getGame()).writeSnapshot(out);
+            }
+        }
+    }
+
+    @Override
+    public void readSnapshot(final SnapshotReader in, final long savedAt) {
+        int count = in.readCount();
+        int restored = 0;
+        for (int i = 0; i < count; i++) {
+            String channel = in.readString();
+            long lastPlayed = in.readLong();
+            int type = in.readInt();
+            Game game;
+            if (type == REGEX_GAME) {
+                game = RegexGame.readSnapshot(in);
+            } else if (type == GUESSING_GAME) {
+                game = GuessingGame.readSnapshot(butt, in);
+            } else {
+                throw new IllegalArgumentException("Unknown game type " + type + " in snapshot");
+            }
+            if (channel != null && butt.getGameManager().restore(channel, game, lastPlayed)) {
+                restored++;
+            }
+        }
+        log.debug("Restored " + restored + " of " + count + " games");
+    }
+}
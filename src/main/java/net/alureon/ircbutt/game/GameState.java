@@ -0,0 +1,19 @@
+package net.alureon.ircbutt.game;
+
+/**
+ * The states a GameSession moves through.  A session starts ACTIVE and moves exactly once, to FINISHED or EXPIRED.
+ */
+public enum GameState {
+    /**
+     * The game is being played.
+     */
+    ACTIVE,
+    /**
+     * The game was won or ended by a player.
+     */
+    FINISHED,
+    /**
+     * Nobody played the game for too long, so it was dropped.
+     */
+    EXPIRED
+}
@@ -3,12 +3,18 @@ package net.alureon.ircbutt.game;
 import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
+import net.alureon.ircbutt.snapshot.SnapshotReader;
+import net.alureon.ircbutt.snapshot.SnapshotWriter;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Provides the score keeping, players, and facts of a GuessingGame.
+ * Provides the score keeping, players, and facts of a GuessingGame.  Players in the game's channel can guess and
+ * give up at the same time, so everything that reads or changes the round is synchronized.
  */
 public final class GuessingGame implements Game {
 
@@ -36,9 +42,25 @@ public final class GuessingGame implements Game {
      * The number of points required to win the game.
      */
     private static final int WINNING_SCORE = 10;
+    /**
+     * The number of rounds to look up ahead of time.
+     */
+    private static final int PREFETCH_ROUNDS = 3;
+    /**
+     * The facts still to be guessed, shuffled when the first round is dealt.
+     */
+    private FactDeck deck;
+    /**
+     * The ids of the facts a restored game had left in its deck, until the deck is built from them.
+     */
+    private List<Integer> restoredIds;
+    /**
+     * True once someone has won the game.
+     */
+    private boolean over;
 
     /**
-     * Creates a new Guessing Game.
+     * Creates a new Guessing Game, shuffles its deck of facts and deals the first round.
      *
      * @param butt the ircbutt instance needed for sql table access.
      */
@@ -48,6 +70,51 @@ public final class GuessingGame implements Game {
         this.stumpedPlayers = new ArrayList<>();
         // if everyone gives up, the bot gets a point
         this.scoreboard.put(butt.getYamlConfigurationFile().getBotNickName(), 0);
+        deal();
+    }
+
+    /**
+     * Puts back a game that was being played before a restart.  The deck isn't built from the facts it had left
+     * until the next round is dealt, so this doesn't touch the database.
+     *
+     * @param butt the ircbutt instance needed for sql table access.
+     * @param mysteryFactName The fact name to guess.
+     * @param hint The hint.
+     * @param scoreboard The scoreboard.
+     * @param stumpedPlayers The players who have given up on the current round.
+     * @param remainingIds The ids of the facts left in the deck, in the order they were to be dealt.
+     */
+    private GuessingGame(final IRCbutt butt, final String mysteryFactName, final String hint,
+                         final HashMap<String, Integer> scoreboard, final ArrayList<String> stumpedPlayers,
+                         final List<Integer> remainingIds) {
+        this.butt = butt;
+        this.restoredIds = remainingIds;
+        this.currentMysteryFactName = mysteryFactName;
+        this.currentHint = hint;
+        this.scoreboard = scoreboard;
+        this.stumpedPlayers = stumpedPlayers;
+    }
+
+    /**
+     * Deals the next fact from the deck as the current round.
+     */
+    private void deal() {
+        if (deck == null && restoredIds != null) {
+            deck = new FactDeck(butt.getFactTable(), butt.getGameManager().getPrefetchExecutor(), PREFETCH_ROUNDS,
+                    butt.getRandomService(), restoredIds);
+            restoredIds = null;
+        } else if (deck == null) {
+            deck = new FactDeck(butt.getFactTable(), butt.getGameManager().getPrefetchExecutor(), PREFETCH_ROUNDS,
+                    butt.getRandomService());
+        }
+        FactCard card = deck.next();
+        if (card == null) {
+            this.currentMysteryFactName = null;
+            this.currentHint = null;
+        } else {
+            this.currentMysteryFactName = card.getName();
+            this.currentHint = card.getHint();
+        }
     }
 
     /**
@@ -64,7 +131,7 @@ public final class GuessingGame implements Game {
      *
      * @param mysteryFactName The fact name to guess.
      */
-    public void setCurrentMysteryFactName(final String mysteryFactName) {
+    public synchronized void setCurrentMysteryFactName(final String mysteryFactName) {
         this.currentMysteryFactName = mysteryFactName;
     }
 
@@ -73,7 +140,7 @@ public final class GuessingGame implements Game {
      *
      * @return String - the current hint
      */
-    public String getCurrentHint() {
+    public synchronized String getCurrentHint() {
         return this.currentHint;
     }
 
@@ -82,7 +149,7 @@ public final class GuessingGame implements Game {
      *
      * @param hint The hint
      */
-    public void setCurrentHint(final String hint) {
+    public synchronized void setCurrentHint(final String hint) {
         this.currentHint = hint;
     }
 
@@ -91,7 +158,7 @@ public final class GuessingGame implements Game {
      *
      * @return the current name players are guessing.
      */
-    public String getCurrentMysteryFactName() {
+    public synchronized String getCurrentMysteryFactName() {
         return this.currentMysteryFactName;
     }
 
@@ -101,20 +168,42 @@ public final class GuessingGame implements Game {
      * @param player the player to give one point to.
      * @return The bot's response to a correct guess.
      */
-    public BotResponse givePlayerPoint(final String player) {
+    public synchronized BotResponse givePlayerPoint(final String player) {
         // if the player hasn't answered a question yet, just add them to the game
         if (!this.scoreboard.containsKey(player)) {
             scoreboard.put(player, 0);
         }
         this.scoreboard.put(player, this.scoreboard.get(player) + 1);
         if (scoreboard.get(player) >= WINNING_SCORE) {
-            BotResponse response = announceVictory(player);
-            this.butt.getGameManager().setGameActive(false);
-            return response;
+            over = true;
+            return announceVictory(player);
         }
         return startNewRound(player);
     }
 
+    /**
+     * Checks a guess at the current mystery fact, and gives the player a point if it's right.
+     *
+     * @param player The player who guessed.
+     * @param factName The fact name they guessed.
+     * @return The bot's response to a correct guess, or null if the guess was wrong.
+     */
+    public synchronized BotResponse guess(final String player, final String factName) {
+        if (over || currentMysteryFactName == null || !currentMysteryFactName.equals(factName)) {
+            return null;
+        }
+        return givePlayerPoint(player);
+    }
+
+    /**
+     * Returns whether or not someone has won the game.
+     *
+     * @return true once the game has a winner
+     */
+    public synchronized boolean isOver() {
+        return this.over;
+    }
+
     /**
      * Announces the winner of the latest game.
      *
@@ -131,7 +220,7 @@ public final class GuessingGame implements Game {
      *
      * @return A string containing all player scores
      */
-    public String getScores() {
+    public synchronized String getScores() {
         StringBuilder sb = new StringBuilder();
         sb.append("Final Scores: ");
         // append all players
@@ -151,13 +240,10 @@ public final class GuessingGame implements Game {
      * @return The Bot's Response
      */
     private BotResponse startNewRound(final String player) {
-        String newItem = butt.getFactTable().getRandomFactName();
-        String newHint = butt.getFactTable().queryKnowledge(newItem);
         this.getStumpedPlayers().clear();
-        this.currentMysteryFactName = newItem;
-        this.currentHint = newHint;
+        deal();
         return new BotResponse(BotIntention.CHAT, null, player + " got it!  The next fact is...",
-                newHint);
+                currentHint);
     }
 
     /**
@@ -165,7 +251,7 @@ public final class GuessingGame implements Game {
      *
      * @return (hashmap) the scoreboard.
      */
-    public HashMap<String, Integer> getScoreboard() {
+    public synchronized HashMap<String, Integer> getScoreboard() {
         return this.scoreboard;
     }
 
@@ -175,26 +261,81 @@ public final class GuessingGame implements Game {
      * @param nick The nick to add to the stumped players list.
      * @return the bot's response
      */
-    public BotResponse addStumpedPlayer(final String nick) {
+    public synchronized BotResponse addStumpedPlayer(final String nick) {
         this.stumpedPlayers.add(nick);
         boolean allStumped = checkAllPlayersStumped();
         if (allStumped) {
             String oldFact = this.currentMysteryFactName;
-            givePlayerPoint(butt.getYamlConfigurationFile().getBotNickName());
-            String newItem = butt.getFactTable().getRandomFactName();
-            String newHint = butt.getFactTable().queryKnowledge(newItem);
-            this.currentMysteryFactName = newItem;
-            this.currentHint = newHint;
-            this.getStumpedPlayers().clear();
+            BotResponse botPoint = givePlayerPoint(butt.getYamlConfigurationFile().getBotNickName());
+            if (over) {
+                return botPoint;
+            }
             return new BotResponse(BotIntention.CHAT, null,
                     "All players are stumped!  The fact was: " + oldFact
-                            + ".  The next fact is...", newHint);
+                            + ".  The next fact is...", currentHint);
         } else {
             return new BotResponse(BotIntention.CHAT, null, nick + " is stumped on this one!",
                     this.scoreboard.size() - this.getStumpedPlayers().size() + " players remain");
         }
     }
 
+    /**
+     * Writes the round, the scoreboard, the stumped players and the facts left in the deck to a snapshot.
+     *
+     * @param out Where to write the game.
+     * @throws IOException If it can't be written.
+     */
+    synchronized void writeSnapshot(final SnapshotWriter out) throws IOException {
+        out.writeString(currentMysteryFactName);
+        out.writeString(currentHint);
+        out.writeInt(scoreboard.size());
+        for (Map.Entry<String, Integer> entry : scoreboard.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+        out.writeInt(stumpedPlayers.size());
+        for (String player : stumpedPlayers) {
+            out.writeString(player);
+        }
+        List<Integer> remaining = restoredIds;
+        if (deck != null) {
+            remaining = deck.getRemainingIds();
+        }
+        out.writeInt(remaining.size());
+        for (int id : remaining) {
+            out.writeInt(id);
+        }
+    }
+
+    /**
+     * Reads back a game written by writeSnapshot.
+     *
+     * @param butt the ircbutt instance needed for sql table access.
+     * @param in Where to read the game from.
+     * @return The game.
+     */
+    static GuessingGame readSnapshot(final IRCbutt butt, final SnapshotReader in) {
+        String mysteryFactName = in.readString();
+        String hint = in.readString();
+        HashMap<String, Integer> scores = new HashMap<>();
+        int players = in.readCount();
+        for (int i = 0; i < players; i++) {
+            String player = in.readString();
+            scores.put(player, in.readInt());
+        }
+        ArrayList<String> stumped = new ArrayList<>();
+        int stumpedCount = in.readCount();
+        for (int i = 0; i < stumpedCount; i++) {
+            stumped.add(in.readString());
+        }
+        List<Integer> remaining = new ArrayList<>();
+        int remainingCount = in.readCount();
+        for (int i = 0; i < remainingCount; i++) {
+            remaining.add(in.readInt());
+        }
+        return new GuessingGame(butt, mysteryFactName, hint, scores, stumped, remaining);
+    }
+
     /**
      * Checks to see if all players have been stumped.
      *
@@ -1,5 +1,9 @@
 package net.alureon.ircbutt.game;
 
+import net.alureon.ircbutt.snapshot.SnapshotReader;
+import net.alureon.ircbutt.snapshot.SnapshotWriter;
+
+import java.io.IOException;
 import java.util.HashMap;
 
 /**
@@ -50,4 +54,25 @@ public final class RegexGame implements Game {
     public String getShouldNotMatch() {
         return shouldNotMatch;
     }
+
+    /**
+     * Writes the game to a snapshot.
+     * @param out Where to write the game.
+     * @throws IOException If it can't be written.
+     */
+    void writeSnapshot(final SnapshotWriter out) throws IOException {
+        out.writeString(shouldMatch);
+        out.writeString(shouldNotMatch);
+    }
+
+    /**
+     * Reads back a game written by writeSnapshot.
+     * @param in Where to read the game from.
+     * @return The game.
+     */
+    static RegexGame readSnapshot(final SnapshotReader in) {
+        String match = in.readString();
+        String cantMatch = in.readString();
+        return new RegexGame(match, cantMatch);
+    }
 }
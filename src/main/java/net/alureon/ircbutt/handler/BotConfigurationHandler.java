@@ -1,12 +1,15 @@
 package net.alureon.ircbutt.handler;
 
 import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.file.NetworkConfig;
+import net.alureon.ircbutt.network.BotNetwork;
 import org.pircbotx.Configuration;
 
 import javax.net.ssl.SSLSocketFactory;
 
 /**
- * Class that represents the Bot's configuration, and instantiates a Configuration object for PircBotX.
+ * Class that represents the Bot's configuration on one network, and instantiates a Configuration object for
+ * PircBotX.
  */
 public final class BotConfigurationHandler {
 
@@ -14,38 +17,47 @@ public final class BotConfigurationHandler {
      * The instance of IRCbutt for retrieving YAML configuration file values.
      */
     private IRCbutt butt;
+    /**
+     * The network to connect to.
+     */
+    private BotNetwork network;
 
     /**
      * Constructor sets the IRCbutt field to the IRCbutt object.
      * @param butt The IRCbutt instance.
+     * @param network The network to connect to.
      */
-    public BotConfigurationHandler(final IRCbutt butt) {
+    public BotConfigurationHandler(final IRCbutt butt, final BotNetwork network) {
         this.butt = butt;
+        this.network = network;
     }
 
     /**
-     * Loads all values from the configuration file and returns them as a PircBotX Configuration object.
+     * Loads all values for the network from the configuration file and returns them as a PircBotX Configuration
+     * object.
      * @return the PircBotX Configuration object.
      */
     public Configuration getConfiguration() {
+        NetworkConfig config = network.getConfig();
         Configuration.Builder configBuilder = new Configuration.Builder();
-        configBuilder.setName(butt.getYamlConfigurationFile().getBotName())
-                .setLogin(butt.getYamlConfigurationFile().getBotLogin())
-                .setRealName(butt.getYamlConfigurationFile().getBotRealName())
-                .setAutoReconnect(butt.getYamlConfigurationFile().getServerAutoReconnect())
-                .setMessageDelay(butt.getYamlConfigurationFile().getBotMessageDelay())
-                .setNickservPassword(butt.getYamlConfigurationFile().getBotPassword())
-                .setListenerManager(butt.getListenerManager())
-                .addServer(butt.getYamlConfigurationFile().getServerHostname(),
-                        butt.getYamlConfigurationFile().getServerPort())
+        configBuilder.setName(config.getBotName())
+                .setLogin(config.getLogin())
+                .setRealName(config.getRealName())
+                .setAutoReconnect(config.getAutoReconnect())
+                .setMessageDelay(0) // the outbound pipeline paces messages itself
+                .setNickservPassword(config.getPassword())
+                .setListenerManager(network.getListenerManager())
+                .addServer(config.getHostname(), config.getPort())
                 .setVersion(butt.getProgramVersion());
-        if (butt.getYamlConfigurationFile().getSSLEnabled()) {
+        if (config.getSSLEnabled()) {
             // TODO this doesn't work at all
             configBuilder.setSocketFactory(SSLSocketFactory.getDefault());
         }
-        for (String x : butt.getYamlConfigurationFile().getChannelList()) {
-            configBuilder.addAutoJoinChannel(x);
-        }  // TODO this doesn't authenticate before joining channels.  Anything we can do?
+        if (!butt.getYamlConfigurationFile().getClusterEnabled()) {  // in a cluster, channels are joined by lease
+            for (String x : config.getChannels()) {
+                configBuilder.addAutoJoinChannel(x);
+            }  // TODO this doesn't authenticate before joining channels.  Anything we can do?
+        }
         return configBuilder.buildConfiguration();
     }
 }
@@ -1,11 +1,14 @@
 package net.alureon.ircbutt.handler;
 
 import net.alureon.ircbutt.IRCbutt;
-import net.alureon.ircbutt.util.MathUtils;
-import net.alureon.ircbutt.util.StringUtils;
+import net.alureon.ircbutt.file.YAMLConfigurationFile;
+import net.alureon.ircbutt.util.RandomService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 /**
  * Provides the functionality for randomly 'buttifying' sentences in the IRC channel.
  */
@@ -33,96 +36,183 @@ public final class ButtReplaceHandler {
      * Per every (this) many words, replace one with butt (roughly).
      * With this at 8, expect two butts for a 16 word sentence.
      */
-    private static final double WORDS_PER_BUTT = 8.0;
+    private static final int WORDS_PER_BUTT = 8;
+    /**
+     * Extra room to leave in the result for each replacement, which may be longer than the word it replaces.
+     */
+    private static final int REPLACEMENT_SLACK = 8;
+    /**
+     * The words that are never replaced.
+     */
+    private volatile Stopwords stopwords;
+    /**
+     * Picks the words to replace and what to replace them with.
+     */
+    private final RandomService random;
 
 
     /**
-     * The constructor for the class.
+     * Creates a handler that leaves the default stopwords alone.
      * @param butt The instance of IRCbutt for getting configuration file values.
      */
     public ButtReplaceHandler(final IRCbutt butt) {
+        this(butt, YAMLConfigurationFile.DEFAULT_BUTTIFY_STOPWORDS, new RandomService());
+    }
+
+    /**
+     * The constructor for the class.
+     * @param butt The instance of IRCbutt for getting configuration file values.
+     * @param stopwords The words that are never replaced, in any case.
+     * @param random Picks the words to replace and what to replace them with.
+     */
+    public ButtReplaceHandler(final IRCbutt butt, final Collection<String> stopwords, final RandomService random) {
         this.butt = butt;
+        this.stopwords = new Stopwords(stopwords);
+        this.random = random;
     }
 
     /**
-     * Attempts to buttify the passed message.
+     * Changes the words that are never replaced, when the config is reloaded.
+     * @param newStopwords The words, in any case.
+     */
+    public void setStopwords(final Collection<String> newStopwords) {
+        this.stopwords = new Stopwords(newStopwords);
+    }
+
+    /**
+     * Attempts to buttify the passed message.  Words are the runs between single spaces, found by index so the
+     * message is only copied once, into the result.
      * @param message The message to buttify.
      * @return The buttified message.
      */
     public String buttifyMessage(final String message) {
-        log.debug("Butting sentence: " + message);
-        // split the message on whitespace
-        String[] split = message.split(" ");
+        if (log.isDebugEnabled()) {
+            log.debug("Butting sentence: " + message);
+        }
+        // find where each word starts; word i ends one before word i + 1 starts
+        int words = 1;
+        for (int i = 0; i < message.length(); i++) {
+            if (message.charAt(i) == ' ') {
+                words++;
+            }
+        }
+        int[] starts = new int[words + 1];
+        int word = 1;
+        for (int i = 0; i < message.length(); i++) {
+            if (message.charAt(i) == ' ') {
+                starts[word++] = i + 1;
+            }
+        }
+        starts[words] = message.length() + 1;
+        // trailing spaces don't count as words
+        while (words > 0 && starts[words] - starts[words - 1] == 1) {
+            words--;
+        }
 
         // butt several times for longer messages
-        int timesToButt = (int) Math.ceil(split.length / WORDS_PER_BUTT);
-        log.debug("Butting " + timesToButt + " times");
+        int timesToButt = (words + WORDS_PER_BUTT - 1) / WORDS_PER_BUTT;
+        int[] targets = new int[timesToButt];
+        int found = 0;
         for (int i = 0; i < timesToButt; i++) {
             // get the index of the word to replace
-            int replaceIndex = (int) (Math.random() * split.length);
+            int target = random.nextInt(words);
+            // check for an empty word and try again
+            if (starts[target + 1] - 1 == starts[target]) {
+                target = random.nextInt(words);
+            }
+            if (isReplaceable(message, starts[target], starts[target + 1] - 1)) {
+                targets[found++] = target;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Butting " + found + " of " + timesToButt + " times");
+        }
+        if (found == 0) {
+            return message.trim();
+        }
+        Arrays.sort(targets, 0, found);
 
-            // check for empty string and try again
-            if (split[replaceIndex].isEmpty()) {
-                replaceIndex = (int) (Math.random() * split.length);
+        StringBuilder sb = new StringBuilder(message.length() + found * REPLACEMENT_SLACK);
+        int next = 0;
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            int start = starts[i];
+            int end = starts[i + 1] - 1;
+            if (next < found && targets[next] == i) {
+                appendReplacement(sb, message, start, end);
+                while (next < found && targets[next] == i) {
+                    next++;
+                }
+            } else {
+                sb.append(message, start, end);
             }
-            // replace the word with the 'butt' equivalent
-            log.debug("Replacing " + split[replaceIndex] + " with butt.");
-            split[replaceIndex] = getReplacementWord(split[replaceIndex]);
         }
-        return StringUtils.arrayToString(split);
+        return sb.toString().trim();
     }
 
     /**
-     * Attempts to randomly replace a word in the array with 'butt' or 'butts'.
-     * @param word The word that we are attempting to replace.
-     * @return True if it was able to make a replacement, otherwise false.
+     * Returns whether a word can be replaced with butt: it isn't empty, and isn't a word we don't replace.
+     * @param message The message the word is in.
+     * @param start The index of the word's first character.
+     * @param end The index after the word's last character.
+     * @return True if the word can be replaced.
      */
-    private String getReplacementWord(final String word) {
-        // check for words we don't want to replace
-        if (!isAWordWeDontReplace(word)) {
-            // randomize the replacement word
-            StringBuilder sb = new StringBuilder(randomize());
-
-            // see if the word has a weird suffix and mimic that
-            char suffix = word.charAt(word.length() - 1);
-            if (!isAlphaNumeric(suffix)) {
-                sb.append(suffix);
-            }
-
-            // get the prefix of the word.
-            char prefix = word.charAt(0);
-            // if it's totally uppercase, uppercase it.
-            if (isUppercase(word)) {
-                return sb.toString().toUpperCase();
-            // if it starts with something weird, mimic that.
-            } else if (!isAlphaNumeric(prefix)) {
-                sb.insert(0, prefix);
-            // if it's capitalized, mimic that.
-            } else if (isCapitalized(word)) {
-                sb.replace(0, 1, "B");
-            }
-            return sb.toString();
-        }
-        return word;
+    private boolean isReplaceable(final String message, final int start, final int end) {
+        return end > start && !stopwords.contains(message, start, end);
     }
 
     /**
-     * Returns true if the word is capitalized.
-     * @param word The word to check.
-     * @return True if the word is capitalized.
+     * Appends 'butt' or 'butts' in place of a word, mimicking the word's case and any odd first or last character.
+     * @param sb The result being built.
+     * @param message The message the word is in.
+     * @param start The index of the word's first character.
+     * @param end The index after the word's last character.
      */
-    private boolean isCapitalized(final String word) {
-        return Character.isUpperCase(word.charAt(0));
+    private void appendReplacement(final StringBuilder sb, final String message, final int start, final int end) {
+        boolean plural = random.nextInt(BUTT_MATH_MAX + 1) >= BUTT_MATH_TRIGGER;
+        char prefix = message.charAt(start);
+        char suffix = message.charAt(end - 1);
+        // if it's totally uppercase, uppercase it.
+        if (isUppercase(message, start, end)) {
+            sb.append("BUTT");
+            if (plural) {
+                sb.append('S');
+            }
+            if (!isAlphaNumeric(suffix)) {
+                sb.append(Character.toUpperCase(suffix));
+            }
+            return;
+        }
+        // if it starts with something weird, mimic that.
+        if (!isAlphaNumeric(prefix)) {
+            sb.append(prefix).append("butt");
+        // if it's capitalized, mimic that.
+        } else if (Character.isUpperCase(prefix)) {
+            sb.append("Butt");
+        } else {
+            sb.append("butt");
+        }
+        if (plural) {
+            sb.append('s');
+        }
+        // see if the word has a weird suffix and mimic that
+        if (!isAlphaNumeric(suffix)) {
+            sb.append(suffix);
+        }
     }
 
     /**
-     * Returns true if every character in the word is uppercase.
-     * @param word The word to check.
-     * @return True if every character is uppercase.
+     * Returns true if no character in a word is lowercase.
+     * @param message The message the word is in.
+     * @param start The index of the word's first character.
+     * @param end The index after the word's last character.
+     * @return True if every character is uppercase (or not a letter).
      */
-    private boolean isUppercase(final String word) {
-        for (Character c : word.toCharArray()) {
-            if (Character.isLowerCase(c)) {
+    private static boolean isUppercase(final String message, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (Character.isLowerCase(message.charAt(i))) {
                 return false;
             }
         }
@@ -134,50 +224,18 @@ public final class ButtReplaceHandler {
      * @param c The character to check.
      * @return True if the character is a digit or letter, otherwise false.
      */
-    private boolean isAlphaNumeric(final char c) {
+    private static boolean isAlphaNumeric(final char c) {
         return Character.isAlphabetic(c) || Character.isDigit(c);
     }
 
     /**
-     * Returns either 'butt' or 'butts' based on a random number generator.
-     * @return A String containing either 'butt' or 'butts' depending on random number generation.
-     */
-    private String randomize() {
-        int random = MathUtils.getRandom(0, BUTT_MATH_MAX);
-        if (random < BUTT_MATH_TRIGGER) {
-            return "butt";
-        }
-        return "butts";
-    }
-
-    /**
-     * Attempts to avoid replacing words using the most god awful method imaginable.
-     * @param replace The word we wish to check for being blacklisted for replacement.
-     * @return True if the word has been blacklisted for replacement.
-     */
-    private boolean isAWordWeDontReplace(final String replace) {
-        return replace.equalsIgnoreCase("is") || replace.equalsIgnoreCase("a")
-                || replace.equalsIgnoreCase("the") || replace.equalsIgnoreCase("i")
-                || replace.equalsIgnoreCase("my") || replace.equalsIgnoreCase("to")
-                || replace.equalsIgnoreCase("in") || replace.equalsIgnoreCase("of")
-                || replace.equalsIgnoreCase("butt") || replace.equalsIgnoreCase("and")
-                || replace.equalsIgnoreCase("or") || replace.equalsIgnoreCase("your")
-                || replace.equalsIgnoreCase("her") || replace.equalsIgnoreCase("his")
-                || replace.equalsIgnoreCase("was") || replace.equalsIgnoreCase("lol")
-                || replace.equalsIgnoreCase("wtf") || replace.equalsIgnoreCase("tbh")
-                || replace.equalsIgnoreCase("haha") || replace.equalsIgnoreCase("it's")
-                || replace.equalsIgnoreCase("for") || replace.equalsIgnoreCase("has")
-                || replace.equalsIgnoreCase("if") || replace.equalsIgnoreCase("are");
-    }
-
-    /**
-     * Returns whether or not the bot should randomly buttify a user's message in chat or not, based on a number
-     * defined in the bot's configuration file.
+     * Returns whether or not the bot should randomly buttify a user's message in chat or not, based on the
+     * channel's random response frequency from the bot's configuration file.
+     * @param channel The channel key of the message.
      * @return True if it is time for the bot to randomly buttify a message in the IRC channel.
      */
-    boolean isRandomResponseTime() {
-        int random = MathUtils.getRandom(0, butt.getYamlConfigurationFile().getRandomResponseFrequency());
-        return random == 0;
+    boolean isRandomResponseTime(final String channel) {
+        return butt.getRandomResponseScheduler().shouldTrigger(channel);
     }
 
 }
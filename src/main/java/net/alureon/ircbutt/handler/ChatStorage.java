@@ -1,45 +1,245 @@
 package net.alureon.ircbutt.handler;
 
-import java.util.HashMap;
+import net.alureon.ircbutt.snapshot.SnapshotReader;
+import net.alureon.ircbutt.snapshot.SnapshotWriter;
+import net.alureon.ircbutt.snapshot.Snapshottable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * This class stores messages from chat, just like an IRC buffer would
  * in an IRC client.  The reason for this copy, is so that we can reference
  * what a user said earlier.
+ * <p>
+ * The last few lines of every nick are kept separately for each channel.  Nicks are spread over a fixed number of
+ * ChatStripes by the hash of their channel and nick, and each stripe has its own lock and its own preallocated
+ * share of the memory, so the listener threads storing chatter only ever contend when two nicks share a stripe.
+ * Once a stripe's share is full its oldest lines are overwritten first, and nicks that haven't spoken for a while
+ * are forgotten entirely.
+ * <p>
+ * The histories are kept over a restart by the snapshot.  They are stored again one line at a time as they are
+ * restored, so the number of stripes and the memory can change between restarts.
  */
-public final class ChatStorage {
+public final class ChatStorage implements Snapshottable {
 
     /**
-     * A HashMap mapping a user to their recent chat messages.
+     * The default number of stripes.  A power of two comfortably above the number of listener threads that are
+     * busy at once.
+     */
+    static final int DEFAULT_STRIPES = 16;
+    /**
+     * The smallest share of the memory a stripe may have, so that a single long line can't fill a stripe.
+     */
+    private static final int MIN_STRIPE_BYTES = 16384;
+    /**
+     * Separates the channel from the nick in history keys.  Neither can contain a space.
+     */
+    private static final char KEY_SEPARATOR = ' ';
+    /**
+     * The approximate heap used by each nick's history, besides its lines, for reporting.
+     */
+    private static final int HISTORY_OVERHEAD_BYTES = 96;
+    /**
+     * The heap used by each slot of a nick's history (a position and a length), for reporting.
+     */
+    private static final int SLOT_BYTES = Long.BYTES + Integer.BYTES;
+    /**
+     * The number of bytes in a kibibyte, for reporting.
+     */
+    private static final int KIBIBYTE = 1024;
+    /**
+     * The stripes, a power of two of them.
+     */
+    private final ChatStripe[] stripes;
+    /**
+     * The number of lines kept for each nick in each channel.
      */
-    private HashMap<String, String> messageStore = new HashMap<>();
+    private final int linesPerNick;
+
+    /**
+     * Creates a new ChatStorage with the default number of stripes, or fewer if the memory is too small to share.
+     * @param linesPerNick The number of lines to keep for each nick in each channel.
+     * @param maxBytes The memory for the text of every line, shared evenly between the stripes.
+     * @param idleMillis How long a nick can go without speaking before its history is forgotten.
+     */
+    public ChatStorage(final int linesPerNick, final int maxBytes, final long idleMillis) {
+        this(linesPerNick, maxBytes, idleMillis, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates a new ChatStorage.
+     * @param linesPerNick The number of lines to keep for each nick in each channel.
+     * @param maxBytes The memory for the text of every line, shared evenly between the stripes.
+     * @param idleMillis How long a nick can go without speaking before its history is forgotten.
+     * @param maxStripes The most stripes to use.  Rounded down to a power of two, and lowered if each stripe's
+     *                   share of the memory would be too small.
+     */
+    public ChatStorage(final int linesPerNick, final int maxBytes, final long idleMillis, final int maxStripes) {
+        int count = Integer.highestOneBit(Math.max(1, Math.min(maxStripes, maxBytes / MIN_STRIPE_BYTES)));
+        this.stripes = new ChatStripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ChatStripe(linesPerNick, maxBytes / count, idleMillis);
+        }
+        this.linesPerNick = linesPerNick;
+    }
+
+    /**
+     * Builds the key a nick's history is stored under.  IRC nicks and channels aren't case sensitive.
+     * @param channel The channel key, from NetworkManager.getChannelKey().
+     * @param nick The nickname.
+     * @return The history key.
+     */
+    private static String key(final String channel, final String nick) {
+        return channel + KEY_SEPARATOR + nick.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the stripe a history key belongs to.
+     * @param key The history key.
+     * @return The stripe.
+     */
+    private ChatStripe stripeFor(final String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> (Integer.SIZE / 2))) & (stripes.length - 1)];
+    }
 
     /**
-     * This function stores a message in the ChatStorage's hashmap.
-     * The key is the user's nickname, the value being the message.
+     * This function stores a message in the ChatStorage.
+     * @param channel The channel key, from NetworkManager.getChannelKey().
      * @param nick The nickname of the user who chatted.
      * @param message The message that was chatted.
      */
-    void storeMessage(final String nick, final String message) {
-        messageStore.put(nick, message);
+    public void storeMessage(final String channel, final String nick, final String message) {
+        storeMessage(channel, nick, message, System.currentTimeMillis());
     }
 
     /**
-     * Returns true if the ChatStorage map contains a quote from the supplied nick.
+     * Stores a message, as of the given time.
+     * @param channel The channel key.
+     * @param nick The nickname of the user who chatted.
+     * @param message The message that was chatted.
+     * @param now The current time in epoch millis.
+     */
+    void storeMessage(final String channel, final String nick, final String message, final long now) {
+        String key = key(channel, nick);
+        stripeFor(key).store(key, message, now);
+    }
+
+    /**
+     * Forgets the history of every nick that has gone idle, or whose lines have all been overwritten.
+     * @param now The current time in epoch millis.
+     */
+    void evictIdle(final long now) {
+        for (ChatStripe stripe : stripes) {
+            stripe.evictIdle(now);
+        }
+    }
+
+    @Override
+    public void writeSnapshot(final SnapshotWriter out) throws IOException {
+        out.writeInt(stripes.length);
+        for (ChatStripe stripe : stripes) {
+            stripe.writeSnapshot(out);
+        }
+    }
+
+    @Override
+    public void readSnapshot(final SnapshotReader in, final long savedAt) {
+        int stripeCount = in.readCount();
+        for (int i = 0; i < stripeCount; i++) {
+            int historyCount = in.readCount();
+            for (int j = 0; j < historyCount; j++) {
+                String key = in.readString();
+                long lastSeen = in.readLong();
+                int lineCount = in.readCount();
+                for (int k = 0; k < lineCount; k++) {
+                    String line = in.readString();
+                    stripeFor(key).store(key, line, lastSeen);
+                }
+            }
+        }
+        evictIdle(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns true if the ChatStorage contains a quote from the supplied nick in a channel.
+     * @param channel The channel key, from NetworkManager.getChannelKey() (may be null for private messages).
      * @param nick The nickname to query the message store for.
      * @return True if the message store has a quote from the supplied nickname.
      */
-    public boolean hasQuoteFrom(final String nick) {
-        return messageStore.containsKey(nick);
+    public boolean hasQuoteFrom(final String channel, final String nick) {
+        return getQuoteFrom(channel, nick, 0) != null;
     }
 
     /**
      * Retrieves the last quote from the user with the passed nickname.
+     * @param channel The channel key, from NetworkManager.getChannelKey() (may be null for private messages).
+     * @param nick The nickname to get a quote from.
+     * @return The last message the user chatted in the channel, or null if there isn't one.
+     */
+    public String getLastQuoteFrom(final String channel, final String nick) {
+        return getQuoteFrom(channel, nick, 0);
+    }
+
+    /**
+     * Retrieves an older quote from the user with the passed nickname.
+     * @param channel The channel key, from NetworkManager.getChannelKey() (may be null for private messages).
      * @param nick The nickname to get a quote from.
-     * @return The last message the user chatted in the channel.
+     * @param back How many lines back to go, 0 being the most recent.
+     * @return The message, or null if it isn't remembered.
+     */
+    public String getQuoteFrom(final String channel, final String nick, final int back) {
+        if (channel == null || nick == null) {
+            return null;
+        }
+        String key = key(channel, nick);
+        return stripeFor(key).get(key, back);
+    }
+
+    /**
+     * Retrieves every remembered quote from the user with the passed nickname.
+     * @param channel The channel key, from NetworkManager.getChannelKey() (may be null for private messages).
+     * @param nick The nickname to get quotes from.
+     * @return The messages, most recent first (may be empty).
      */
-    public String getLastQuoteFrom(final String nick) {
-        return messageStore.get(nick);
+    public List<String> getQuotesFrom(final String channel, final String nick) {
+        if (channel == null || nick == null) {
+            return Collections.emptyList();
+        }
+        String key = key(channel, nick);
+        return stripeFor(key).getAll(key);
     }
 
+    /**
+     * Returns the number of stripes.
+     * @return The number of stripes.
+     */
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Returns a short summary of the chat history's size, for the stats command.  Each stripe is read on its
+     * own, so the totals may be slightly out of step with each other while chatter is being stored.
+     * @return The summary.
+     */
+    public String getStats() {
+        long nicks = 0;
+        long used = 0;
+        long capacity = 0;
+        long evicted = 0;
+        for (ChatStripe stripe : stripes) {
+            nicks += stripe.size();
+            used += stripe.getUsedBytes();
+            capacity += stripe.getArenaBytes();
+            evicted += stripe.getEvicted();
+        }
+        long overhead = nicks * (HISTORY_OVERHEAD_BYTES + (long) linesPerNick * SLOT_BYTES);
+        return "chat history: " + nicks + " nicks in " + stripes.length + " stripes, " + used / KIBIBYTE + "/"
+                + capacity / KIBIBYTE + " KiB of lines, " + overhead / KIBIBYTE + " KiB of index, " + evicted
+                + " evicted";
+    }
 }
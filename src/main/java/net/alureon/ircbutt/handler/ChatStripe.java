@@ -0,0 +1,320 @@
+package net.alureon.ircbutt.handler;
+
+import net.alureon.ircbutt.snapshot.SnapshotWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One stripe of the ChatStorage: the histories of the nicks whose keys hash to it, and an arena holding the text
+ * of their lines.  The arena is a preallocated array of UTF-8 bytes that is written to in a circle, so once it is
+ * full the stripe's oldest lines are overwritten first.
+ * <p>
+ * Every stripe has its own lock, so chatter from nicks in different stripes never waits on each other.
+ */
+final class ChatStripe {
+
+    /**
+     * How often to look for idle nicks, in milliseconds.
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 60000;
+    /**
+     * The bits that tell a UTF-8 continuation byte apart from the first byte of a character.
+     */
+    private static final int CONTINUATION_MASK = 0xC0;
+    /**
+     * The value of a UTF-8 continuation byte's top two bits.
+     */
+    private static final int CONTINUATION_BITS = 0x80;
+    /**
+     * The text of every stored line, written to in a circle.
+     */
+    private final byte[] arena;
+    /**
+     * The total number of bytes ever written to the arena.  A line is still in the arena if it was written
+     * less than arena.length bytes ago.
+     */
+    private long writePosition;
+    /**
+     * The history of each nick, keyed by channel and nick.
+     */
+    private final Map<String, History> histories = new HashMap<>();
+    /**
+     * The number of lines kept for each nick in each channel.
+     */
+    private final int linesPerNick;
+    /**
+     * How long a nick can go without speaking before its history is forgotten, in milliseconds.
+     */
+    private final long idleMillis;
+    /**
+     * The time (in epoch millis) idle nicks were last looked for.
+     */
+    private long lastSweep;
+    /**
+     * The number of histories forgotten because their nick went idle or their lines were overwritten.
+     */
+    private long evicted;
+
+    /**
+     * Creates a new, empty, stripe.
+     * @param linesPerNick The number of lines to keep for each nick in each channel.
+     * @param arenaBytes The size of the arena holding the text of the stripe's lines.
+     * @param idleMillis How long a nick can go without speaking before its history is forgotten.
+     */
+    ChatStripe(final int linesPerNick, final int arenaBytes, final long idleMillis) {
+        this.arena = new byte[arenaBytes];
+        this.linesPerNick = linesPerNick;
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Stores a line.
+     * @param key The history key of the nick who chatted.
+     * @param message The message that was chatted.
+     * @param now The current time in epoch millis.
+     */
+    synchronized void store(final String key, final String message, final long now) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        int length = fit(bytes, arena.length);
+        long position = writePosition;
+        int offset = (int) (position % arena.length);
+        int firstPart = Math.min(length, arena.length - offset);
+        System.arraycopy(bytes, 0, arena, offset, firstPart);
+        System.arraycopy(bytes, firstPart, arena, 0, length - firstPart);
+        writePosition += length;
+        histories.computeIfAbsent(key, k -> new History(linesPerNick)).add(position, length, now);
+        if (now - lastSweep >= SWEEP_INTERVAL_MILLIS) {
+            evictIdle(now);
+        }
+    }
+
+    /**
+     * Works out how much of a line fits in a number of bytes, cutting it between characters if it is too long.
+     * @param bytes The line in UTF-8.
+     * @param limit The most bytes to keep.
+     * @return The number of bytes to keep.
+     */
+    private static int fit(final byte[] bytes, final int limit) {
+        if (bytes.length <= limit) {
+            return bytes.length;
+        }
+        int length = limit;
+        while (length > 0 && (bytes[length] & CONTINUATION_MASK) == CONTINUATION_BITS) {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Forgets the history of every nick that has gone idle, or whose lines have all been overwritten.
+     * @param now The current time in epoch millis.
+     */
+    synchronized void evictIdle(final long now) {
+        lastSweep = now;
+        Iterator<History> iterator = histories.values().iterator();
+        while (iterator.hasNext()) {
+            History history = iterator.next();
+            if (now - history.lastSeen >= idleMillis || !isInArena(history.position(0))) {
+                iterator.remove();
+                evicted++;
+            }
+        }
+    }
+
+    /**
+     * Returns whether or not a line written at a position is still in the arena.
+     * @param position The position the line was written at.
+     * @return True if the line hasn't been overwritten.
+     */
+    private boolean isInArena(final long position) {
+        return position >= 0 && writePosition - position <= arena.length;
+    }
+
+    /**
+     * Reads a line back out of the arena.
+     * @param history The history the line belongs to.
+     * @param back How many lines back to go, 0 being the most recent.
+     * @return The line, or null if there's no such line or it has been overwritten.
+     */
+    private String read(final History history, final int back) {
+        long position = history.position(back);
+        if (!isInArena(position)) {
+            return null;
+        }
+        int length = history.length(back);
+        byte[] bytes = new byte[length];
+        int offset = (int) (position % arena.length);
+        int firstPart = Math.min(length, arena.length - offset);
+        System.arraycopy(arena, offset, bytes, 0, firstPart);
+        System.arraycopy(arena, 0, bytes, firstPart, length - firstPart);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Retrieves a line.
+     * @param key The history key of the nick.
+     * @param back How many lines back to go, 0 being the most recent.
+     * @return The line, or null if it isn't remembered.
+     */
+    synchronized String get(final String key, final int back) {
+        History history = histories.get(key);
+        if (history == null || back < 0) {
+            return null;
+        }
+        return read(history, back);
+    }
+
+    /**
+     * Retrieves every remembered line of a nick, all under the lock so that they are consistent.
+     * @param key The history key of the nick.
+     * @return The lines, most recent first (may be empty).
+     */
+    synchronized List<String> getAll(final String key) {
+        List<String> lines = new ArrayList<>();
+        History history = histories.get(key);
+        if (history == null) {
+            return lines;
+        }
+        for (String line = read(history, 0); line != null; line = read(history, lines.size())) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Writes every history in the stripe to a snapshot: its key, when the nick last spoke, and its lines oldest
+     * first, so that storing them again in that order rebuilds it.
+     * @param out Where to write the histories.
+     * @throws IOException If they can't be written.
+     */
+    synchronized void writeSnapshot(final SnapshotWriter out) throws IOException {
+        out.writeInt(histories.size());
+        for (Map.Entry<String, History> entry : histories.entrySet()) {
+            List<String> lines = getAll(entry.getKey());
+            out.writeString(entry.getKey());
+            out.writeLong(entry.getValue().lastSeen);
+            out.writeInt(lines.size());
+            for (int i = lines.size() - 1; i >= 0; i--) {
+                out.writeString(lines.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of nicks the stripe holds a history for.
+     * @return The number of histories.
+     */
+    synchronized int size() {
+        return histories.size();
+    }
+
+    /**
+     * Returns the number of arena bytes holding lines.
+     * @return The bytes in use.
+     */
+    synchronized long getUsedBytes() {
+        return Math.min(writePosition, arena.length);
+    }
+
+    /**
+     * Returns the size of the arena.
+     * @return The arena size in bytes.
+     */
+    int getArenaBytes() {
+        return arena.length;
+    }
+
+    /**
+     * Returns the number of histories that have been forgotten.
+     * @return The number of evictions.
+     */
+    synchronized long getEvicted() {
+        return evicted;
+    }
+
+    /**
+     * The last few lines of a single nick in a single channel, as positions in the arena.
+     */
+    private static final class History {
+
+        /**
+         * The arena position of each line.
+         */
+        private final long[] positions;
+        /**
+         * The length in bytes of each line.
+         */
+        private final int[] lengths;
+        /**
+         * The number of lines held, up to the size of the ring.
+         */
+        private int count;
+        /**
+         * The index the next line will be written to.
+         */
+        private int next;
+        /**
+         * The time (in epoch millis) the nick last spoke.
+         */
+        private long lastSeen;
+
+        /**
+         * Creates a new, empty, history.
+         * @param size The number of lines to keep.
+         */
+        History(final int size) {
+            this.positions = new long[size];
+            this.lengths = new int[size];
+        }
+
+        /**
+         * Records a new line, replacing the oldest if the ring is full.
+         * @param position The arena position of the line.
+         * @param length The length of the line in bytes.
+         * @param now The current time in epoch millis.
+         */
+        void add(final long position, final int length, final long now) {
+            positions[next] = position;
+            lengths[next] = length;
+            next = (next + 1) % positions.length;
+            count = Math.min(count + 1, positions.length);
+            lastSeen = now;
+        }
+
+        /**
+         * Returns the ring index of a line.
+         * @param back How many lines back to go, 0 being the most recent.
+         * @return The index.
+         */
+        private int index(final int back) {
+            return (next - 1 - back + 2 * positions.length) % positions.length;
+        }
+
+        /**
+         * Returns the arena position of a line.
+         * @param back How many lines back to go, 0 being the most recent.
+         * @return The position, or -1 if there's no such line.
+         */
+        long position(final int back) {
+            if (back >= count) {
+                return -1;
+            }
+            return positions[index(back)];
+        }
+
+        /**
+         * Returns the length of a line.
+         * @param back How many lines back to go, 0 being the most recent.
+         * @return The length in bytes.
+         */
+        int length(final int back) {
+            return lengths[index(back)];
+        }
+    }
+}
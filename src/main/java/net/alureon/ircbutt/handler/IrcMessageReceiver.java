@@ -3,8 +3,9 @@ package net.alureon.ircbutt.handler;
 import com.google.common.base.Preconditions;
 import net.alureon.ircbutt.IRCbutt;
 import net.alureon.ircbutt.command.commands.karma.KarmaCommand;
+import net.alureon.ircbutt.outbound.OutboundPipeline;
+import net.alureon.ircbutt.response.BotIntention;
 import net.alureon.ircbutt.response.BotResponse;
-import net.alureon.ircbutt.util.IRCUtils;
 import org.pircbotx.hooks.events.MessageEvent;
 import org.pircbotx.hooks.events.PrivateMessageEvent;
 
@@ -37,10 +38,17 @@ public final class IrcMessageReceiver {
      * @param event The MessageEvent object coming from PircBotX listener.
      */
     public void handleMessage(final MessageEvent event) {
+        /* In a cluster, only the node holding the channel's lease answers */
+        String channel = butt.getNetworkManager().getChannelKey(event);
+        if (!butt.getClusterNode().owns(channel)) {
+            return;
+        }
+        OutboundPipeline outbound = butt.getNetworkManager().getNetwork(event).getOutboundPipeline();
+
         /* Handle a command */
         if (event.getMessage().startsWith("!") || event.getMessage().startsWith("~")) {
             BotResponse response = butt.getCommandHandler().handleCommand(event, event.getMessage());
-            ResponseHandler.handleResponse(response, event);
+            ResponseHandler.handleResponse(outbound, response, event);
 
         /* Handle karma */
         } else if (event.getMessage().endsWith("++") || event.getMessage().endsWith("++;")
@@ -49,18 +57,22 @@ public final class IrcMessageReceiver {
         } else {
             /* Check for URL or troll them */
             Preconditions.checkNotNull(event.getUser(), "Attempted to store message of null user.");
-            butt.getChatStorage().storeMessage(event.getUser().getNick(), event.getMessage());
+            butt.getChatStorage().storeMessage(channel, event.getUser().getNick(), event.getMessage());
+            butt.getScrollbackManager().append(channel, event.getUser().getNick(), event.getMessage());
 
             // don't troll URL's
-            if (UrlTitleHandler.handleUrl(event.getChannel(), event.getMessage())) {
+            String title = UrlTitleHandler.handleUrl(butt.getHttpManager(), event.getMessage());
+            if (title != null) {
+                ResponseHandler.handleResponse(outbound, new BotResponse(BotIntention.CHAT, null, title), event);
                 return;
             }
 
             // buttify sentence
-            if (butt.getButtReplaceHandler().isRandomResponseTime()) {
+            if (butt.getButtReplaceHandler().isRandomResponseTime(channel)) {
                 final String buttFormat = butt.getButtReplaceHandler().buttifyMessage(event.getMessage()).trim();
                 if (!buttFormat.equals(event.getMessage()) && buttFormat.contains(" ")) {
-                    IRCUtils.sendChannelMessage(event.getChannel(), buttFormat);
+                    ResponseHandler.handleResponse(outbound, new BotResponse(BotIntention.CHAT, null, buttFormat),
+                            event);
                 }
             }
         }
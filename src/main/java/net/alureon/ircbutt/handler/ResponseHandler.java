@@ -1,15 +1,21 @@
 package net.alureon.ircbutt.handler;
 
+import net.alureon.ircbutt.outbound.OutboundPipeline;
+import net.alureon.ircbutt.outbound.OutboundTarget;
 import net.alureon.ircbutt.response.BotResponse;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.pircbotx.hooks.events.MessageEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
+import java.util.Collections;
+import java.util.Iterator;
+
 
 /**
  * Handles outgoing message from the bot back into IRC - be it a channel
- * message, a private message, a /me command, or nothing at all.
+ * message, a private message, a /me command, or nothing at all.  The
+ * lines are queued on the OutboundPipeline, which sends them.
  */
 final class ResponseHandler {
 
@@ -27,45 +33,62 @@ final class ResponseHandler {
     /**
      * Handles the BotResponse object, and routes it to the correct method
      * based upon the bot's intention.
-     * @param response The BotResponse object to handle.
+     * @param pipeline The pipeline that sends the lines.
+     * @param response The BotResponse object to handle (may be null if the command already replied).
      * @param event The GenericMessageEvent associated with the response.
      */
-    static void handleResponse(final BotResponse response, final GenericMessageEvent event) {
+    static void handleResponse(final OutboundPipeline pipeline, final BotResponse response,
+                               final GenericMessageEvent event) {
+        if (response == null) {
+            return;
+        }
         switch (response.getIntention()) {
             case PRIVATE_MESSAGE_NO_OVERRIDE: // TODO use cases for this?
-                handlePrivateMessage(response);
+                handlePrivateMessage(pipeline, response);
                 break;
             case PRIVATE_MESSAGE:
-                handlePrivateMessage(response);
+                handlePrivateMessage(pipeline, response);
                 break;
             case HIGHLIGHT:
-                handleHighlight(response, event);
+                handleHighlight(pipeline, response, event);
                 break;
             case ME:
-                handleMe(response, event);
+                handleMe(pipeline, response, event);
                 break;
             case NO_REPLY:
                 break;
             case CHAT:
-                handleChat(response, event);
+                handleChat(pipeline, response, event);
                 break;
             default:
                 break;
         }
     }
 
+    /**
+     * Queues a response's lines on the pipeline.
+     * @param pipeline The pipeline that sends the lines.
+     * @param response The response, which decides the lane and packing.
+     * @param lines The lines to send.
+     * @param target Where the response is going.
+     */
+    private static void send(final OutboundPipeline pipeline, final BotResponse response,
+                             final Iterator<String> lines, final OutboundTarget target) {
+        pipeline.enqueue(response.getLane(), target, lines, response.isPackable());
+    }
+
     /**
      * Handles a BotResponse object's CHAT intention.
+     * @param pipeline The pipeline that sends the lines.
      * @param response The BotResponse object to handle.
      * @param event The GenericMessageEvent associated with the response.
      */
-    private static void handleChat(final BotResponse response, final GenericMessageEvent event) {
+    private static void handleChat(final OutboundPipeline pipeline, final BotResponse response,
+                                   final GenericMessageEvent event) {
         if (event instanceof MessageEvent) {
             MessageEvent messageEvent = (MessageEvent) event;
-            messageEvent.getChannel().send().message(response.getMessage());
-            if (response.getAdditionalMessage() != null) {
-                messageEvent.getChannel().send().message(response.getAdditionalMessage());
-            }
+            send(pipeline, response, response.getLines(), OutboundTarget.message(
+                    messageEvent.getChannel().getName(), "", messageEvent.getChannel().send()::message));
         } else {
             log.error("BotIntention was Chat but message was not instance of MessageEvent:");
             log.error(response.getMessage());
@@ -73,51 +96,55 @@ final class ResponseHandler {
     }
 
     /**
-     * Handles a BotResponse object's HIGHLIGHT intention.
+     * Handles a BotResponse object's HIGHLIGHT intention.  In a channel, PircBotX puts the user's nick in
+     * front of each message.
+     * @param pipeline The pipeline that sends the lines.
      * @param response The BotResponse object to handle.
      * @param event The GenericMessageEvent associated with the response.
      */
-    private static void handleHighlight(final BotResponse response, final GenericMessageEvent event) {
-        event.respond(response.getMessage());
-        if (response.getAdditionalMessage() != null) {
-            event.respond(response.getAdditionalMessage());
+    private static void handleHighlight(final OutboundPipeline pipeline, final BotResponse response,
+                                        final GenericMessageEvent event) {
+        OutboundTarget target;
+        if (event instanceof MessageEvent) {
+            target = OutboundTarget.message(((MessageEvent) event).getChannel().getName(),
+                    event.getUser().getNick() + ": ", event::respond);
+        } else {
+            target = OutboundTarget.message(event.getUser().getNick(), "", event::respond);
         }
+        send(pipeline, response, response.getLines(), target);
     }
 
     /**
      * Handles a BotResponse object's PRIVATE_MESSAGE intention.
+     * @param pipeline The pipeline that sends the lines.
      * @param response The BotResponse object to handle.
      */
-    private static void handlePrivateMessage(final BotResponse response) {
-        if (response.getMessage() != null) {
-            response.getRecipient().send().message(response.getMessage());
-            if (response.getAdditionalMessage() != null) {
-                response.getRecipient().send().message(response.getMessage());
-            }
-        } else {
+    private static void handlePrivateMessage(final OutboundPipeline pipeline, final BotResponse response) {
+        Iterator<String> lines = response.getLines();
+        if (!lines.hasNext()) {
             //TODO why does this happen?
-            System.out.println("Recieved null message");
-            response.getRecipient().send().message("butt have nothin to say on the matter");
+            log.warn("Received null message");
+            lines = Collections.singletonList("butt have nothin to say on the matter").iterator();
         }
+        send(pipeline, response, lines, OutboundTarget.message(response.getRecipient().getNick(), "",
+                response.getRecipient().send()::message));
     }
 
     /**
      * Handles a BotResponse object's ME intention.
+     * @param pipeline The pipeline that sends the lines.
      * @param response The BotResponse object to handle.
      * @param event The GenericMessageEvent associated with the response.
      */
-    private static void handleMe(final BotResponse response, final GenericMessageEvent event) {
+    private static void handleMe(final OutboundPipeline pipeline, final BotResponse response,
+                                 final GenericMessageEvent event) {
         if (event instanceof MessageEvent) {
             MessageEvent messageEvent = (MessageEvent) event;
-            messageEvent.getChannel().send().action(response.getMessage());
-            if (response.getAdditionalMessage() != null) {
-                messageEvent.getChannel().send().action(response.getAdditionalMessage());
-            }
+            send(pipeline, response, response.getLines(), OutboundTarget.action(
+                    messageEvent.getChannel().getName(), messageEvent.getChannel().send()::action));
         } else {
-            event.respondPrivateMessage(response.getMessage());
-            if (response.getAdditionalMessage() != null) {
-                event.respondPrivateMessage(response.getAdditionalMessage());
-            }
+            send(pipeline, response, response.getLines(), OutboundTarget.message(event.getUser().getNick(), "",
+                    event::respondPrivateMessage));
         }
     }
 
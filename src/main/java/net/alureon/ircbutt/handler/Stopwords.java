@@ -0,0 +1,85 @@
+package net.alureon.ircbutt.handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The words buttify never replaces, case folded once and bucketed by length, so a word can be looked up straight
+ * out of the message it is in without copying it out first.
+ */
+final class Stopwords {
+
+    /**
+     * The stopwords, indexed by length.  Each bucket is empty if there are no stopwords of that length.
+     */
+    private final String[][] byLength;
+
+    /**
+     * Builds the stopword set.
+     * @param words The stopwords, in any case.  Blank entries are ignored.
+     */
+    Stopwords(final Collection<String> words) {
+        Set<String> folded = new LinkedHashSet<>();
+        int longest = 0;
+        for (String word : words) {
+            String trimmed = word.trim().toLowerCase(Locale.ROOT);
+            if (!trimmed.isEmpty()) {
+                folded.add(trimmed);
+                longest = Math.max(longest, trimmed.length());
+            }
+        }
+        List<List<String>> buckets = new ArrayList<>();
+        for (int i = 0; i <= longest; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (String word : folded) {
+            buckets.get(word.length()).add(word);
+        }
+        byLength = new String[longest + 1][];
+        for (int i = 0; i <= longest; i++) {
+            byLength[i] = buckets.get(i).toArray(new String[0]);
+        }
+    }
+
+    /**
+     * Returns whether the word in a region of some text is a stopword, ignoring case.
+     * @param text The text the word is in.
+     * @param start The index of the word's first character.
+     * @param end The index after the word's last character.
+     * @return True if the word is a stopword.
+     */
+    boolean contains(final CharSequence text, final int start, final int end) {
+        int length = end - start;
+        if (length >= byLength.length) {
+            return false;
+        }
+        for (String word : byLength[length]) {
+            if (regionMatches(text, start, word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares a region of some text to a case folded stopword.
+     * @param text The text.
+     * @param start The index of the region's first character.
+     * @param word The stopword, in lower case, the same length as the region.
+     * @return True if the region matches the stopword, ignoring case.
+     */
+    private static boolean regionMatches(final CharSequence text, final int start, final String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = text.charAt(start + i);
+            char w = word.charAt(i);
+            if (c != w && Character.toLowerCase(c) != w) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
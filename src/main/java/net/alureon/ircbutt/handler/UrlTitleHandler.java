@@ -1,11 +1,13 @@
 package net.alureon.ircbutt.handler;
 
+import net.alureon.ircbutt.http.CircuitOpenException;
+import net.alureon.ircbutt.http.HttpCall;
+import net.alureon.ircbutt.http.HttpManager;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
-import org.pircbotx.Channel;
 
 import java.io.IOException;
 import java.util.regex.Matcher;
@@ -37,31 +39,50 @@ final class UrlTitleHandler {
     }
 
     /**
-     * Handles URL's for the bot.  If the message was found to contain a URL, the title is retrieved and
+     * Handles URL's for the bot.  If the message was found to contain a URL, the title is retrieved to be
      * sent to the chat.
-     * @param channel The channel to send the URL title to.
+     * @param http The HttpManager to fetch the URL through.
      * @param message The message in chat that may or may not contain a URL.
-     * @return True if the chat message contained a URL, false if not.
+     * @return The line to send to the chat, or null if the chat message didn't contain a URL with a title.
      */
-    static boolean handleUrl(final Channel channel, final String message) {
+    static String handleUrl(final HttpManager http, final String message) {
         Pattern p = Pattern.compile(URL_REGEX);
         Matcher m = p.matcher(message);
         if (m.find()) {
-            String title = getTitle(m.group());
+            String title = getTitle(http, m.group());
             if (title != null) {
-                channel.send().message("Title: " + title);
-                return true;
+                return "Title: " + title;
             }
         }
-        return false;
+        return null;
     }
 
     /**
-     * Attempts to get the title for a given URL.
+     * Attempts to get the title for a given URL, fetching it directly.
      * @param url The URL to attempt to get a title for.
      * @return The title of the URL, or null if an error was encountered.
      */
     public static String getTitle(final String url) {
+        return getTitle(url, u -> Jsoup.connect(u).get());
+    }
+
+    /**
+     * Attempts to get the title for a given URL, fetching it through the host's circuit breaker.
+     * @param http The HttpManager to fetch the URL through.
+     * @param url The URL to attempt to get a title for.
+     * @return The title of the URL, or null if an error was encountered.
+     */
+    static String getTitle(final HttpManager http, final String url) {
+        return getTitle(url, u -> http.execute(u, true, v -> Jsoup.connect(v).get()));
+    }
+
+    /**
+     * Attempts to get the title for a given URL.
+     * @param url The URL to attempt to get a title for.
+     * @param fetch Fetches the page at the URL.
+     * @return The title of the URL, or null if an error was encountered.
+     */
+    private static String getTitle(final String url, final HttpCall<Document> fetch) {
         try {
             System.out.println(url);
             if (url.startsWith("https://youtube") || url.startsWith("http://youtube")
@@ -70,7 +91,7 @@ final class UrlTitleHandler {
                     || url.startsWith("http://youtu.be") || url.startsWith("https://youtu.be")
                     || url.startsWith("http://m.youtube") || url.startsWith("https://m.youtube")) {
                 log.debug("Handling youtube url...");
-                Document doc = Jsoup.connect(url).get();
+                Document doc = fetch.call(url);
                 Elements script = doc.select("script");  //to get the script content
                 Pattern p = Pattern.compile("\"title\":\"(.+?)\"");
                 Matcher m = p.matcher(script.html());
@@ -78,9 +99,11 @@ final class UrlTitleHandler {
                     return m.group().substring(YOUTUBE_MAGIC_NUMBER).replaceAll("\"", "");
                 }
             } else {
-                Document doc = Jsoup.connect(url).get();
+                Document doc = fetch.call(url);
                 return doc.title();
             }
+        } catch (CircuitOpenException e) {
+            log.debug("Skipped title for URL: " + url + ", " + e.getMessage());
         } catch (IOException e) {
             log.warn("Failed to get title for URL: " + url + " this may be expected.\n  Reason: " + e.getMessage());
         }
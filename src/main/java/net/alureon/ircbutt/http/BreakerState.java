@@ -0,0 +1,19 @@
+package net.alureon.ircbutt.http;
+
+/**
+ * The states a CircuitBreaker can be in.
+ */
+public enum BreakerState {
+    /**
+     * Requests flow normally, and their outcomes are recorded.
+     */
+    CLOSED,
+    /**
+     * The host has been failing, so requests are rejected without being sent.
+     */
+    OPEN,
+    /**
+     * The host has been given a rest, and a single probe request is allowed through to see if it has recovered.
+     */
+    HALF_OPEN
+}
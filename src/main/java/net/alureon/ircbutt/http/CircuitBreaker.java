@@ -0,0 +1,328 @@
+package net.alureon.ircbutt.http;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A circuit breaker for a single host.  The outcome of the last few requests is kept in a rolling window, and
+ * a request counts as failed if it errored or took longer than the slow call threshold.  Once enough of the
+ * window has failed the breaker opens and requests are rejected straight away.  After a rest a single probe
+ * is let through; if it succeeds the breaker closes again, otherwise it stays open for another rest.
+ * <p>
+ * Each request is given a permit, which it hands back with its outcome.  The permit changes whenever the breaker
+ * does, so the outcome of a request made before the breaker opened, or of anything but the current probe, is
+ * ignored rather than judging the host on stale news.
+ * <p>
+ * The breaker also keeps the latency of recent successful requests so that the p95 can be used to decide
+ * when to hedge a request.
+ */
+public final class CircuitBreaker {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * The permit returned when a request isn't allowed.
+     */
+    public static final long NO_PERMIT = -1;
+    /**
+     * The number of outcomes kept in the rolling window.
+     */
+    static final int WINDOW_SIZE = 20;
+    /**
+     * The number of outcomes needed before the breaker will open, so one early failure can't trip it.
+     */
+    static final int MINIMUM_CALLS = 5;
+    /**
+     * The number of latencies kept for working out the p95.
+     */
+    private static final int LATENCY_SAMPLES = 64;
+    /**
+     * The percentile used for hedging.
+     */
+    private static final double PERCENTILE = 0.95;
+    /**
+     * The number of milliseconds in a second.
+     */
+    private static final long MILLIS_PER_SECOND = 1000;
+    /**
+     * One hundred percent.
+     */
+    private static final int PERCENT = 100;
+    /**
+     * The host this breaker guards.
+     */
+    private final String host;
+    /**
+     * Requests slower than this many milliseconds count as failures.
+     */
+    private final long slowCallMillis;
+    /**
+     * The percentage of failed requests in the window that opens the breaker.
+     */
+    private final int failureRatePercent;
+    /**
+     * How long the breaker stays open before letting a probe through, in milliseconds.
+     */
+    private final long openMillis;
+    /**
+     * The rolling window of outcomes, true meaning the request failed.
+     */
+    private final boolean[] outcomes = new boolean[WINDOW_SIZE];
+    /**
+     * The number of outcomes in the window.
+     */
+    private int outcomeCount;
+    /**
+     * The index the next outcome will be written to.
+     */
+    private int outcomeIndex;
+    /**
+     * The number of failed outcomes in the window.
+     */
+    private int failures;
+    /**
+     * The latencies of recent successful requests, in milliseconds.
+     */
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    /**
+     * The number of latencies recorded, up to LATENCY_SAMPLES.
+     */
+    private int latencyCount;
+    /**
+     * The index the next latency will be written to.
+     */
+    private int latencyIndex;
+    /**
+     * The current state of the breaker.
+     */
+    private BreakerState state = BreakerState.CLOSED;
+    /**
+     * The time (in epoch millis) the breaker last opened.
+     */
+    private long openedAt;
+    /**
+     * True if the half-open probe has been let through and hasn't finished yet.
+     */
+    private boolean probeInFlight;
+    /**
+     * The permit of the requests whose outcomes count, moved on whenever the breaker changes state or lets a probe
+     * through.
+     */
+    private long generation;
+    /**
+     * The number of requests rejected because the breaker was open.
+     */
+    private long rejected;
+
+    /**
+     * Creates a new, closed, circuit breaker.
+     * @param host The host this breaker guards.
+     * @param slowCallMillis Requests slower than this many milliseconds count as failures.
+     * @param failureRatePercent The percentage of failed requests in the window that opens the breaker.
+     * @param openMillis How long the breaker stays open before letting a probe through, in milliseconds.
+     */
+    public CircuitBreaker(final String host, final long slowCallMillis, final int failureRatePercent,
+                          final long openMillis) {
+        this.host = host;
+        this.slowCallMillis = slowCallMillis;
+        this.failureRatePercent = failureRatePercent;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Asks the breaker for permission to make a request.  An open breaker that has rested long enough moves to
+     * half-open and lets this one request through as a probe.  The request must hand the permit back to
+     * {@link #release(long)} when it is done, whatever happened to it.
+     * @param now The current time in epoch millis.
+     * @return The permit to report the request's outcome with, or NO_PERMIT if the request may not be made.
+     */
+    public synchronized long tryAcquire(final long now) {
+        switch (state) {
+            case CLOSED:
+                return generation;
+            case OPEN:
+                if (now - openedAt >= openMillis) {
+                    state = BreakerState.HALF_OPEN;
+                    log.info("Circuit breaker for " + host + " is half-open, sending a probe");
+                    return startProbe();
+                }
+                break;
+            case HALF_OPEN:
+                if (!probeInFlight) {
+                    return startProbe();
+                }
+                break;
+            default:
+                break;
+        }
+        rejected++;
+        return NO_PERMIT;
+    }
+
+    /**
+     * Lets a probe through, giving it a permit of its own.
+     * @return The probe's permit.
+     */
+    private long startProbe() {
+        probeInFlight = true;
+        generation++;
+        return generation;
+    }
+
+    /**
+     * Hands back a request's permit.  If the request was the probe and never reported an outcome, the next
+     * request becomes the probe instead.
+     * @param permit The request's permit.
+     */
+    public synchronized void release(final long permit) {
+        if (state == BreakerState.HALF_OPEN && permit == generation) {
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * Records a request that got an answer from the host.
+     * @param permit The request's permit.
+     * @param latencyMillis How long the request took.
+     * @param now The current time in epoch millis.
+     */
+    public synchronized void onSuccess(final long permit, final long latencyMillis, final long now) {
+        latencies[latencyIndex] = latencyMillis;
+        latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+        recordOutcome(permit, latencyMillis >= slowCallMillis, now);
+    }
+
+    /**
+     * Records a request that failed because of the host (an error, a timeout, or a server error).
+     * @param permit The request's permit.
+     * @param now The current time in epoch millis.
+     */
+    public synchronized void onFailure(final long permit, final long now) {
+        recordOutcome(permit, true, now);
+    }
+
+    /**
+     * Records the outcome of a request, and opens or closes the breaker if needed.  Outcomes with an old permit
+     * are ignored.
+     * @param permit The request's permit.
+     * @param failed True if the request failed or was too slow.
+     * @param now The current time in epoch millis.
+     */
+    private void recordOutcome(final long permit, final boolean failed, final long now) {
+        if (permit != generation) {
+            return;  // a request from before the breaker last changed, it's already been judged
+        }
+        if (state == BreakerState.HALF_OPEN) {
+            probeInFlight = false;
+            if (failed) {
+                open(now);
+            } else {
+                state = BreakerState.CLOSED;
+                generation++;
+                resetWindow();
+                log.info("Circuit breaker for " + host + " closed, the host has recovered");
+            }
+            return;
+        }
+        if (outcomeCount == WINDOW_SIZE && outcomes[outcomeIndex]) {
+            failures--;
+        }
+        outcomes[outcomeIndex] = failed;
+        outcomeIndex = (outcomeIndex + 1) % WINDOW_SIZE;
+        outcomeCount = Math.min(outcomeCount + 1, WINDOW_SIZE);
+        if (failed) {
+            failures++;
+        }
+        if (outcomeCount >= MINIMUM_CALLS && failures * PERCENT >= failureRatePercent * outcomeCount) {
+            open(now);
+        }
+    }
+
+    /**
+     * Opens the breaker.
+     * @param now The current time in epoch millis.
+     */
+    private void open(final long now) {
+        state = BreakerState.OPEN;
+        generation++;
+        openedAt = now;
+        resetWindow();
+        log.warn("Circuit breaker for " + host + " opened, failing fast for " + openMillis / MILLIS_PER_SECOND + "s");
+    }
+
+    /**
+     * Clears the rolling window of outcomes.
+     */
+    private void resetWindow() {
+        Arrays.fill(outcomes, false);
+        outcomeCount = 0;
+        outcomeIndex = 0;
+        failures = 0;
+    }
+
+    /**
+     * Returns the 95th percentile latency of recent successful requests.
+     * @return The p95 in milliseconds, or -1 if there aren't enough samples yet.
+     */
+    public synchronized long getP95Millis() {
+        if (latencyCount < MINIMUM_CALLS) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(PERCENTILE * latencyCount) - 1];
+    }
+
+    /**
+     * Returns how long until an open breaker will let a probe through.
+     * @param now The current time in epoch millis.
+     * @return The time in milliseconds, or 0 if the breaker isn't open.
+     */
+    public synchronized long getRetryAfterMillis(final long now) {
+        if (state != BreakerState.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openedAt + openMillis - now);
+    }
+
+    /**
+     * Returns the current state of the breaker.
+     * @return The state.
+     */
+    public synchronized BreakerState getState() {
+        return state;
+    }
+
+    /**
+     * Returns the host this breaker guards.
+     * @return The host.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Returns a short summary of the breaker, for the stats command.
+     * @return The summary.
+     */
+    public synchronized String getStats() {
+        StringBuilder sb = new StringBuilder(host).append(' ').append(state.name().toLowerCase(Locale.ROOT));
+        if (state == BreakerState.CLOSED) {
+            sb.append(' ').append(failures).append('/').append(outcomeCount).append(" failed");
+        }
+        long p95 = getP95Millis();
+        if (p95 >= 0) {
+            sb.append(" p95 ").append(p95).append("ms");
+        }
+        if (rejected > 0) {
+            sb.append(' ').append(rejected).append(" rejected");
+        }
+        return sb.toString();
+    }
+}
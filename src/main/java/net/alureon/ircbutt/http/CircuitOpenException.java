@@ -0,0 +1,41 @@
+package net.alureon.ircbutt.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of making a request when the circuit breaker for a host is open.  The message is meant to be
+ * shown to users as is.
+ */
+public final class CircuitOpenException extends IOException {
+
+    /**
+     * The version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * The number of milliseconds in a second.
+     */
+    private static final long MILLIS_PER_SECOND = 1000;
+    /**
+     * The host the request was going to.
+     */
+    private final String host;
+
+    /**
+     * Creates a new exception for the given host.
+     * @param host The host the request was going to.
+     * @param retryAfterMillis Roughly how long until the host will be tried again.
+     */
+    public CircuitOpenException(final String host, final long retryAfterMillis) {
+        super(host + " ain't answering, try again in " + (retryAfterMillis / MILLIS_PER_SECOND + 1) + "s");
+        this.host = host;
+    }
+
+    /**
+     * Returns the host the request was going to.
+     * @return The host.
+     */
+    public String getHost() {
+        return host;
+    }
+}
@@ -0,0 +1,21 @@
+package net.alureon.ircbutt.http;
+
+import java.io.IOException;
+
+/**
+ * A single outbound HTTP request.  Hedged requests may run the same call more than once, so calls that are
+ * marked idempotent must be safe to repeat.  Calls must request the URL they are given rather than one they
+ * built themselves, as the HttpManager may have rewritten it.
+ * @param <T> The type of the response.
+ */
+@FunctionalInterface
+public interface HttpCall<T> {
+
+    /**
+     * Performs the request.
+     * @param url The URL to request.
+     * @return The response.
+     * @throws IOException If the request failed.
+     */
+    T call(String url) throws IOException;
+}
@@ -0,0 +1,295 @@
+package net.alureon.ircbutt.http;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Every outbound HTTP request the bot makes goes through here.  Each host gets its own CircuitBreaker so a
+ * site that is slow or blocking us fails fast instead of tying up a listener thread for the full timeout.
+ * <p>
+ * If hedging is enabled, idempotent requests that haven't answered by the host's p95 latency are sent a
+ * second time, and whichever answer comes back first is used.
+ */
+public final class HttpManager {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * The HTTP status for too many requests, which means we're being rate limited.
+     */
+    private static final int TOO_MANY_REQUESTS = 429;
+    /**
+     * The lowest HTTP status that is a server error.
+     */
+    private static final int SERVER_ERROR = 500;
+    /**
+     * The prefix stripped from hosts so that www.example.com and example.com share a breaker.
+     */
+    private static final String WWW = "www.";
+    /**
+     * The shortest time to wait before hedging, so a host that usually answers instantly isn't sent everything
+     * twice.
+     */
+    private static final long MIN_HEDGE_DELAY_MILLIS = 50;
+    /**
+     * The circuit breakers, by host.
+     */
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    /**
+     * Runs hedged requests, or null if hedging is disabled.
+     */
+    private final ExecutorService hedgeExecutor;
+    /**
+     * Requests slower than this many milliseconds count as failures.
+     */
+    private final long slowCallMillis;
+    /**
+     * The percentage of failed requests that opens a breaker.
+     */
+    private final int failureRatePercent;
+    /**
+     * How long a breaker stays open before letting a probe through, in milliseconds.
+     */
+    private final long openMillis;
+    /**
+     * The number of requests that were sent a second time.
+     */
+    private final AtomicLong hedgedRequests = new AtomicLong();
+    /**
+     * Rewrites every URL before it is requested.  This is the identity unless requests are being sent to a
+     * fixture server for testing or benchmarking.
+     */
+    private volatile UnaryOperator<String> urlRewriter = UnaryOperator.identity();
+
+    /**
+     * Creates a new HttpManager.
+     * @param hedgeRequests True if slow idempotent requests should be hedged.
+     * @param slowCallMillis Requests slower than this many milliseconds count as failures.
+     * @param failureRatePercent The percentage of failed requests that opens a breaker.
+     * @param openMillis How long a breaker stays open before letting a probe through, in milliseconds.
+     */
+    public HttpManager(final boolean hedgeRequests, final long slowCallMillis, final int failureRatePercent,
+                       final long openMillis) {
+        this.slowCallMillis = slowCallMillis;
+        this.failureRatePercent = failureRatePercent;
+        this.openMillis = openMillis;
+        if (hedgeRequests) {
+            this.hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "http-hedge");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.hedgeExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the host a URL points to, which is what breakers are keyed on.
+     * @param url The URL.
+     * @return The lower case host without any leading www., or the URL itself if it couldn't be parsed.
+     */
+    static String hostOf(final String url) {
+        String host;
+        try {
+            host = new URL(url).getHost().toLowerCase(Locale.ROOT);
+        } catch (MalformedURLException ex) {
+            return url;
+        }
+        if (host.startsWith(WWW)) {
+            return host.substring(WWW.length());
+        }
+        return host;
+    }
+
+    /**
+     * Returns the circuit breaker for a host, creating it if this is the first request to that host.
+     * @param host The host.
+     * @return The host's breaker.
+     */
+    public CircuitBreaker getBreaker(final String host) {
+        return breakers.computeIfAbsent(host,
+                h -> new CircuitBreaker(h, slowCallMillis, failureRatePercent, openMillis));
+    }
+
+    /**
+     * Makes a request through the breaker for the URL's host.
+     * @param url The URL being requested, used to pick the breaker.
+     * @param idempotent True if the call is safe to make twice, which allows it to be hedged.
+     * @param call The request itself.
+     * @param <T> The type of the response.
+     * @return The response.
+     * @throws CircuitOpenException If the host's breaker is open.
+     * @throws IOException If the request failed.
+     */
+    public <T> T execute(final String url, final boolean idempotent, final HttpCall<T> call) throws IOException {
+        CircuitBreaker breaker = getBreaker(hostOf(url));
+        long permit = breaker.tryAcquire(System.currentTimeMillis());
+        if (permit == CircuitBreaker.NO_PERMIT) {
+            throw new CircuitOpenException(breaker.getHost(), breaker.getRetryAfterMillis(System.currentTimeMillis()));
+        }
+        try {
+            String target = urlRewriter.apply(url);
+            long p95 = breaker.getP95Millis();
+            if (hedgeExecutor != null && idempotent && p95 >= 0) {
+                return executeHedged(breaker, permit, call, target, Math.max(p95, MIN_HEDGE_DELAY_MILLIS));
+            }
+            long start = System.nanoTime();
+            try {
+                T result = call.call(target);
+                breaker.onSuccess(permit, elapsedMillis(start), System.currentTimeMillis());
+                return result;
+            } catch (IOException ex) {
+                recordFailure(breaker, permit, ex, start);
+                throw ex;
+            } catch (RuntimeException ex) {
+                breaker.onFailure(permit, System.currentTimeMillis());
+                throw ex;
+            }
+        } finally {
+            breaker.release(permit);  // a half-open probe must always give its place back
+        }
+    }
+
+    /**
+     * Makes a request, and makes it again if the first attempt hasn't answered within the hedge delay.
+     * @param breaker The breaker for the request's host.
+     * @param permit The request's permit from the breaker.
+     * @param call The request itself.
+     * @param target The URL to request.
+     * @param hedgeDelayMillis How long to wait for the first attempt before sending the second.
+     * @param <T> The type of the response.
+     * @return The first successful response.
+     * @throws IOException If every attempt failed.
+     */
+    private <T> T executeHedged(final CircuitBreaker breaker, final long permit, final HttpCall<T> call,
+                                final String target, final long hedgeDelayMillis) throws IOException {
+        CompletionService<T> completionService = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Future<T>> attempts = new ArrayList<>();
+        long start = System.nanoTime();
+        IOException failure = null;
+        try {
+            attempts.add(completionService.submit(() -> call.call(target)));
+            Future<T> done = completionService.poll(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+            if (done == null) {
+                hedgedRequests.incrementAndGet();
+                log.debug("Hedging request to " + breaker.getHost() + " after " + hedgeDelayMillis + "ms");
+                attempts.add(completionService.submit(() -> call.call(target)));
+            }
+            for (int pending = attempts.size(); pending > 0; pending--) {
+                if (done == null) {
+                    done = completionService.take();
+                }
+                try {
+                    T result = done.get();
+                    breaker.onSuccess(permit, elapsedMillis(start), System.currentTimeMillis());
+                    return result;
+                } catch (ExecutionException ex) {
+                    failure = toIOException(ex.getCause());
+                }
+                done = null;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure = new InterruptedIOException("Interrupted waiting for " + breaker.getHost());
+        } finally {
+            for (Future<T> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+        recordFailure(breaker, permit, failure, start);
+        throw failure;
+    }
+
+    /**
+     * Records a failed request against its breaker.  HTTP errors that mean the host is up and answering (such as
+     * a 404 for a word the dictionary doesn't have) aren't held against the host.
+     * @param breaker The breaker for the request's host.
+     * @param permit The request's permit from the breaker.
+     * @param ex The exception the request failed with.
+     * @param start The System.nanoTime() the request started at.
+     */
+    private static void recordFailure(final CircuitBreaker breaker, final long permit, final IOException ex,
+                                      final long start) {
+        if (ex instanceof HttpStatusException) {
+            int status = ((HttpStatusException) ex).getStatusCode();
+            if (status < SERVER_ERROR && status != TOO_MANY_REQUESTS) {
+                breaker.onSuccess(permit, elapsedMillis(start), System.currentTimeMillis());
+                return;
+            }
+        }
+        breaker.onFailure(permit, System.currentTimeMillis());
+    }
+
+    /**
+     * Converts the cause of a failed attempt into an IOException.
+     * @param cause The cause.
+     * @return The cause, or an IOException wrapping it.
+     */
+    private static IOException toIOException(final Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * Returns the milliseconds that have passed since a point in time.
+     * @param start The System.nanoTime() to measure from.
+     * @return The elapsed time in milliseconds.
+     */
+    private static long elapsedMillis(final long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Sets the function used to rewrite URLs before they are requested.  Breakers are still keyed on the
+     * original host.
+     * @param rewriter The rewriter, or null to request URLs as they are.
+     */
+    public void setUrlRewriter(final UnaryOperator<String> rewriter) {
+        if (rewriter == null) {
+            this.urlRewriter = UnaryOperator.identity();
+        } else {
+            this.urlRewriter = rewriter;
+        }
+    }
+
+    /**
+     * Returns a short summary of every breaker, for the stats command.
+     * @return The summary.
+     */
+    public String getStats() {
+        if (breakers.isEmpty()) {
+            return "http: no requests yet";
+        }
+        StringBuilder sb = new StringBuilder("http:");
+        for (CircuitBreaker breaker : breakers.values()) {
+            sb.append(' ').append(breaker.getStats()).append(',');
+        }
+        sb.append(' ').append(hedgedRequests.get()).append(" hedged");
+        return sb.toString();
+    }
+}
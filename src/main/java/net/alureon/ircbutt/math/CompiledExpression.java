@@ -0,0 +1,205 @@
+package net.alureon.ircbutt.math;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * An expression compiled to a small stack program.  Evaluating it runs the program over an array of doubles, so
+ * nothing is parsed or boxed however many times it is evaluated.  Compiled expressions are immutable and can be
+ * evaluated by any number of threads at once.
+ */
+public final class CompiledExpression {
+
+    /**
+     * Pushes a number from the constant pool.  Followed by the index of the number.
+     */
+    static final int PUSH = 0;
+    /**
+     * Pushes the value of a variable.  Followed by the index of the variable.
+     */
+    static final int LOAD = 1;
+    /**
+     * Pops b and a, pushes a + b.
+     */
+    static final int ADD = 2;
+    /**
+     * Pops b and a, pushes a - b.
+     */
+    static final int SUB = 3;
+    /**
+     * Pops b and a, pushes a * b.
+     */
+    static final int MUL = 4;
+    /**
+     * Pops b and a, pushes a / b.
+     */
+    static final int DIV = 5;
+    /**
+     * Pops b and a, pushes a % b.
+     */
+    static final int MOD = 6;
+    /**
+     * Pops b and a, pushes a to the power of b.
+     */
+    static final int POW = 7;
+    /**
+     * Pops a, pushes -a.
+     */
+    static final int NEG = 8;
+    /**
+     * Pops a, pushes f(a).  Followed by the index of the function.
+     */
+    static final int CALL1 = 9;
+    /**
+     * Pops b and a, pushes f(a, b).  Followed by the index of the function.
+     */
+    static final int CALL2 = 10;
+    /**
+     * The expression as it was written.
+     */
+    private final String source;
+    /**
+     * The names of the variables, in the order their values are passed to evaluate().
+     */
+    private final List<String> variables;
+    /**
+     * The program: opcodes, each followed by its operand if it has one.
+     */
+    private final int[] code;
+    /**
+     * The numbers the program pushes.
+     */
+    private final double[] numbers;
+    /**
+     * The one-argument functions the program calls.
+     */
+    private final DoubleUnaryOperator[] unary;
+    /**
+     * The two-argument functions the program calls.
+     */
+    private final DoubleBinaryOperator[] binary;
+    /**
+     * The most values the program ever has on its stack.
+     */
+    private final int maxStack;
+
+    /**
+     * Creates a compiled expression.  Called by the ExpressionCompiler.
+     * @param source The expression as it was written.
+     * @param variables The names of the variables.
+     * @param code The program.
+     * @param numbers The numbers the program pushes.
+     * @param unary The one-argument functions the program calls.
+     * @param binary The two-argument functions the program calls.
+     * @param maxStack The most values the program ever has on its stack.
+     */
+    CompiledExpression(final String source, final List<String> variables, final int[] code, final double[] numbers,
+                       final DoubleUnaryOperator[] unary, final DoubleBinaryOperator[] binary, final int maxStack) {
+        this.source = source;
+        this.variables = Collections.unmodifiableList(variables);
+        this.code = code;
+        this.numbers = numbers;
+        this.unary = unary;
+        this.binary = binary;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * Evaluates the expression.  The program has no jumps, so it runs each instruction once and takes time in
+     * proportion to the size of the expression, which the compiler already limits.
+     * @param values The value of each variable, in the order they were named when the expression was compiled.
+     * @return The result.
+     * @throws ExpressionException If the wrong number of values is given.
+     */
+    public double evaluate(final double... values) {
+        if (values.length != variables.size()) {
+            throw new ExpressionException("expected " + variables.size() + " values but got " + values.length);
+        }
+        double[] stack = new double[maxStack];
+        int top = -1;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case PUSH:
+                    stack[++top] = numbers[code[pc++]];
+                    break;
+                case LOAD:
+                    stack[++top] = values[code[pc++]];
+                    break;
+                case ADD:
+                    top--;
+                    stack[top] += stack[top + 1];
+                    break;
+                case SUB:
+                    top--;
+                    stack[top] -= stack[top + 1];
+                    break;
+                case MUL:
+                    top--;
+                    stack[top] *= stack[top + 1];
+                    break;
+                case DIV:
+                    top--;
+                    stack[top] /= stack[top + 1];
+                    break;
+                case MOD:
+                    top--;
+                    stack[top] %= stack[top + 1];
+                    break;
+                case POW:
+                    top--;
+                    stack[top] = Math.pow(stack[top], stack[top + 1]);
+                    break;
+                case NEG:
+                    stack[top] = -stack[top];
+                    break;
+                case CALL1:
+                    stack[top] = unary[code[pc++]].applyAsDouble(stack[top]);
+                    break;
+                case CALL2:
+                    top--;
+                    stack[top] = binary[code[pc++]].applyAsDouble(stack[top], stack[top + 1]);
+                    break;
+                default:
+                    throw new IllegalStateException("Bad opcode at " + (pc - 1) + " in " + Arrays.toString(code));
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Returns the expression as it was written.
+     * @return The source.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the names of the variables, in the order their values are passed to evaluate().
+     * @return The variable names.
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Returns the number of instructions in the program, which is the number of nodes in the expression.
+     * @return The size of the program.
+     */
+    public int getNodeCount() {
+        int nodes = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc++];
+            if (op == PUSH || op == LOAD || op == CALL1 || op == CALL2) {
+                pc++;
+            }
+            nodes++;
+        }
+        return nodes;
+    }
+}
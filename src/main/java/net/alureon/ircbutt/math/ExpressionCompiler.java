@@ -0,0 +1,237 @@
+package net.alureon.ircbutt.math;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compiles the math expressions users type into !eval, !sqrt and !pow.  Each expression is parsed once into a
+ * {@link CompiledExpression}, which is kept in a small least-recently-used cache since the same expressions tend to
+ * be typed over and over.  Expressions may use the usual operators, the constants and functions defined here, and
+ * any variables named when compiling.  Every expression is limited in size and nesting, so a user can't tie the
+ * bot up with a huge one; evaluating runs each instruction once, so that limits evaluation too.
+ */
+public final class ExpressionCompiler {
+
+    /**
+     * The default number of compiled expressions to keep.
+     */
+    private static final int DEFAULT_CACHE_SIZE = 256;
+    /**
+     * The default most nodes an expression may have.
+     */
+    private static final int DEFAULT_MAX_NODES = 512;
+    /**
+     * The longest expression that will be compiled.
+     */
+    private static final int MAX_SOURCE_LENGTH = 1024;
+    /**
+     * Separates the variable names from the expression in a cache key.
+     */
+    private static final char KEY_SEPARATOR = '\u0000';
+    /**
+     * The initial capacity of the expression cache.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * The load factor of the expression cache.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * The compiled expressions, keyed by their variables and source, in least-recently-used order.
+     */
+    private final LinkedHashMap<String, CompiledExpression> expressions = new LinkedHashMap<>(INITIAL_CAPACITY,
+            LOAD_FACTOR, true);
+    /**
+     * The named constants.  Guarded by the expression cache.
+     */
+    private final Map<String, Double> constants = new HashMap<>();
+    /**
+     * The one-argument functions.  Guarded by the expression cache.
+     */
+    private final Map<String, DoubleUnaryOperator> unaryFunctions = new HashMap<>();
+    /**
+     * The two-argument functions.  Guarded by the expression cache.
+     */
+    private final Map<String, DoubleBinaryOperator> binaryFunctions = new HashMap<>();
+    /**
+     * The most compiled expressions to keep.
+     */
+    private final int cacheSize;
+    /**
+     * The most nodes an expression may have.
+     */
+    private final int maxNodes;
+    /**
+     * The number of compiles answered from the cache.
+     */
+    private long hits;
+    /**
+     * The number of compiles that had to parse the expression.
+     */
+    private long misses;
+
+    /**
+     * Creates a new ExpressionCompiler with the default limits.
+     */
+    public ExpressionCompiler() {
+        this(DEFAULT_CACHE_SIZE, DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Creates a new ExpressionCompiler, knowing the usual constants and java.lang.Math functions.
+     * @param cacheSize The most compiled expressions to keep.
+     * @param maxNodes The most nodes an expression may have.
+     */
+    public ExpressionCompiler(final int cacheSize, final int maxNodes) {
+        this.cacheSize = Math.max(1, cacheSize);
+        this.maxNodes = maxNodes;
+        defineConstant("pi", Math.PI);
+        defineConstant("π", Math.PI);
+        defineConstant("e", Math.E);
+        defineConstant("tau", 2 * Math.PI);
+        defineUnary("sin", Math::sin);
+        defineUnary("cos", Math::cos);
+        defineUnary("tan", Math::tan);
+        defineUnary("asin", Math::asin);
+        defineUnary("acos", Math::acos);
+        defineUnary("atan", Math::atan);
+        defineUnary("sinh", Math::sinh);
+        defineUnary("cosh", Math::cosh);
+        defineUnary("tanh", Math::tanh);
+        defineUnary("sqrt", Math::sqrt);
+        defineUnary("cbrt", Math::cbrt);
+        defineUnary("abs", Math::abs);
+        defineUnary("ceil", Math::ceil);
+        defineUnary("floor", Math::floor);
+        defineUnary("round", x -> (double) Math.round(x));
+        defineUnary("rint", Math::rint);
+        defineUnary("exp", Math::exp);
+        defineUnary("log", Math::log);
+        defineUnary("ln", Math::log);
+        defineUnary("log10", Math::log10);
+        defineUnary("toDegrees", Math::toDegrees);
+        defineUnary("toRadians", Math::toRadians);
+        defineUnary("signum", Math::signum);
+        defineBinary("pow", Math::pow);
+        defineBinary("atan2", Math::atan2);
+        defineBinary("max", Math::max);
+        defineBinary("min", Math::min);
+        defineBinary("hypot", Math::hypot);
+        defineBinary("IEEEremainder", Math::IEEEremainder);
+    }
+
+    /**
+     * Defines a named constant, replacing any constant of the same name.
+     * @param name The name.
+     * @param value The value.
+     */
+    public void defineConstant(final String name, final double value) {
+        synchronized (expressions) {
+            constants.put(name, value);
+            expressions.clear();
+        }
+    }
+
+    /**
+     * Defines a one-argument function, replacing any one-argument function of the same name.
+     * @param name The name.
+     * @param function The function.
+     */
+    public void defineUnary(final String name, final DoubleUnaryOperator function) {
+        synchronized (expressions) {
+            unaryFunctions.put(name, function);
+            expressions.clear();
+        }
+    }
+
+    /**
+     * Defines a two-argument function, replacing any two-argument function of the same name.
+     * @param name The name.
+     * @param function The function.
+     */
+    public void defineBinary(final String name, final DoubleBinaryOperator function) {
+        synchronized (expressions) {
+            binaryFunctions.put(name, function);
+            expressions.clear();
+        }
+    }
+
+    /**
+     * Compiles an expression, or returns it from the cache if it was compiled recently.
+     * @param source The expression.
+     * @param variables The names of the variables the expression may use, in the order their values will be
+     *                  passed to {@link CompiledExpression#evaluate}.
+     * @return The compiled expression.
+     * @throws ExpressionException If the expression is malformed or too big.
+     */
+    public CompiledExpression compile(final String source, final String... variables) {
+        String key = key(source, variables);
+        synchronized (expressions) {
+            CompiledExpression expression = expressions.get(key);
+            if (expression != null) {
+                hits++;
+                return expression;
+            }
+            misses++;
+            if (source.length() > MAX_SOURCE_LENGTH) {
+                throw new ExpressionException("expression is longer than " + MAX_SOURCE_LENGTH + " characters");
+            }
+            List<String> names = Arrays.asList(variables);
+            expression = new ExpressionParser(source, names, Collections.unmodifiableMap(constants),
+                    Collections.unmodifiableMap(unaryFunctions), Collections.unmodifiableMap(binaryFunctions),
+                    maxNodes).parse();
+            expressions.put(key, expression);
+            Iterator<CompiledExpression> iterator = expressions.values().iterator();
+            while (expressions.size() > cacheSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+            return expression;
+        }
+    }
+
+    /**
+     * Compiles and evaluates an expression that has no variables.
+     * @param source The expression.
+     * @return The result.
+     * @throws ExpressionException If the expression is malformed, too big or runs too long.
+     */
+    public double evaluate(final String source) {
+        return compile(source).evaluate();
+    }
+
+    /**
+     * Returns the cache key of an expression.
+     * @param source The expression.
+     * @param variables The names of its variables.
+     * @return The key.
+     */
+    private static String key(final String source, final String[] variables) {
+        if (variables.length == 0) {
+            return source;
+        }
+        StringBuilder key = new StringBuilder();
+        for (String variable : variables) {
+            key.append(variable).append(KEY_SEPARATOR);
+        }
+        return key.append(KEY_SEPARATOR).append(source).toString();
+    }
+
+    /**
+     * Returns a short summary of the cache, for the stats command.
+     * @return The summary.
+     */
+    public String getStats() {
+        synchronized (expressions) {
+            return "math: " + expressions.size() + "/" + cacheSize + " expressions, " + hits + " hits, " + misses
+                    + " misses";
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package net.alureon.ircbutt.math;
+
+/**
+ * Thrown when an expression can't be compiled or evaluated: it is malformed, uses a name that isn't defined, or is
+ * too big.  The message is meant to be shown to users as is.
+ */
+public final class ExpressionException extends RuntimeException {
+
+    /**
+     * The version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new exception.
+     * @param message What is wrong with the expression, for the user.
+     */
+    public ExpressionException(final String message) {
+        super(message);
+    }
+}
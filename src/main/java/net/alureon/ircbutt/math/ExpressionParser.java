@@ -0,0 +1,444 @@
+package net.alureon.ircbutt.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Parses one expression and emits its stack program as it goes.  The grammar, loosest binding first:
+ * <pre>
+ *     expression := term (('+' | '-') term)*
+ *     term       := unary (('*' | '/' | '%') unary)*
+ *     unary      := ('-' | '+') unary | power
+ *     power      := primary (('^' | '**') unary)?
+ *     primary    := number | name | name '(' expression (',' expression)? ')' | '(' expression ')'
+ * </pre>
+ * So powers bind tighter than a leading minus (-2^2 is -4) and group to the right (2^3^2 is 2^9).  Names are
+ * looked up as variables first, then constants, so a variable can shadow a constant.
+ */
+final class ExpressionParser {
+
+    /**
+     * The deepest parentheses and function calls can be nested, so a long run of '(' can't overflow the stack.
+     */
+    private static final int MAX_DEPTH = 64;
+    /**
+     * The initial size of the program buffer.
+     */
+    private static final int INITIAL_CODE = 16;
+    /**
+     * The expression.
+     */
+    private final String source;
+    /**
+     * The names of the variables.
+     */
+    private final List<String> variables;
+    /**
+     * The constants that may be used.
+     */
+    private final Map<String, Double> constants;
+    /**
+     * The one-argument functions that may be called.
+     */
+    private final Map<String, DoubleUnaryOperator> unaryFunctions;
+    /**
+     * The two-argument functions that may be called.
+     */
+    private final Map<String, DoubleBinaryOperator> binaryFunctions;
+    /**
+     * The most nodes the expression may have.
+     */
+    private final int maxNodes;
+    /**
+     * The index of the next character to read.
+     */
+    private int pos;
+    /**
+     * The program emitted so far.
+     */
+    private int[] code = new int[INITIAL_CODE];
+    /**
+     * The length of the program emitted so far.
+     */
+    private int length;
+    /**
+     * The number of nodes emitted so far.
+     */
+    private int nodes;
+    /**
+     * The numbers the program pushes.
+     */
+    private final List<Double> numbers = new ArrayList<>();
+    /**
+     * The one-argument functions the program calls.
+     */
+    private final List<DoubleUnaryOperator> unary = new ArrayList<>();
+    /**
+     * The two-argument functions the program calls.
+     */
+    private final List<DoubleBinaryOperator> binary = new ArrayList<>();
+    /**
+     * The number of values on the stack at this point in the program.
+     */
+    private int stack;
+    /**
+     * The most values on the stack at any point in the program.
+     */
+    private int maxStack;
+    /**
+     * The current nesting of parentheses and function calls.
+     */
+    private int depth;
+
+    /**
+     * Creates a parser for one expression.
+     * @param source The expression.
+     * @param variables The names of the variables.
+     * @param constants The constants that may be used.
+     * @param unaryFunctions The one-argument functions that may be called.
+     * @param binaryFunctions The two-argument functions that may be called.
+     * @param maxNodes The most nodes the expression may have.
+     */
+    ExpressionParser(final String source, final List<String> variables, final Map<String, Double> constants,
+                     final Map<String, DoubleUnaryOperator> unaryFunctions,
+                     final Map<String, DoubleBinaryOperator> binaryFunctions, final int maxNodes) {
+        this.source = source;
+        this.variables = variables;
+        this.constants = constants;
+        this.unaryFunctions = unaryFunctions;
+        this.binaryFunctions = binaryFunctions;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Parses the whole expression.
+     * @return The compiled expression.
+     * @throws ExpressionException If the expression is malformed or too big.
+     */
+    CompiledExpression parse() {
+        expression();
+        skipSpaces();
+        if (pos < source.length()) {
+            throw error("unexpected '" + source.charAt(pos) + "'");
+        }
+        double[] pool = new double[numbers.size()];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = numbers.get(i);
+        }
+        return new CompiledExpression(source, new ArrayList<>(variables), Arrays.copyOf(code, length), pool,
+                unary.toArray(new DoubleUnaryOperator[0]), binary.toArray(new DoubleBinaryOperator[0]), maxStack);
+    }
+
+    /**
+     * Parses a sum or difference of terms.
+     */
+    private void expression() {
+        term();
+        while (true) {
+            if (accept('+')) {
+                term();
+                emit(CompiledExpression.ADD, -1);
+            } else if (accept('-')) {
+                term();
+                emit(CompiledExpression.SUB, -1);
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses a product, quotient or remainder of unary expressions.
+     */
+    private void term() {
+        unary();
+        while (true) {
+            if (peek('*') && !peek("**")) {
+                pos++;
+                unary();
+                emit(CompiledExpression.MUL, -1);
+            } else if (accept('/')) {
+                unary();
+                emit(CompiledExpression.DIV, -1);
+            } else if (accept('%')) {
+                unary();
+                emit(CompiledExpression.MOD, -1);
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses a negated power, or a power.
+     */
+    private void unary() {
+        if (accept('-')) {
+            enter();
+            unary();
+            depth--;
+            emit(CompiledExpression.NEG, 0);
+        } else if (accept('+')) {
+            enter();
+            unary();
+            depth--;
+        } else {
+            power();
+        }
+    }
+
+    /**
+     * Parses a number, name, call or parenthesized expression, raised to a power if one follows.
+     */
+    private void power() {
+        primary();
+        if (accept('^')) {
+            enter();
+            unary();
+            depth--;
+            emit(CompiledExpression.POW, -1);
+        } else if (peek("**")) {
+            pos += 2;
+            enter();
+            unary();
+            depth--;
+            emit(CompiledExpression.POW, -1);
+        }
+    }
+
+    /**
+     * Parses a number, name, call or parenthesized expression.
+     */
+    private void primary() {
+        skipSpaces();
+        if (pos >= source.length()) {
+            throw error("expression ends too soon");
+        }
+        char c = source.charAt(pos);
+        if (accept('(')) {
+            enter();
+            expression();
+            depth--;
+            expect(')');
+        } else if (Character.isDigit(c) || c == '.') {
+            number();
+        } else if (isNameStart(c)) {
+            name();
+        } else {
+            throw error("unexpected '" + c + "'");
+        }
+    }
+
+    /**
+     * Parses a number, such as 12, 0.5, .5 or 6.02e23.
+     */
+    private void number() {
+        int start = pos;
+        while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        if (pos < source.length() && (source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+            int mark = pos;
+            pos++;
+            if (pos < source.length() && (source.charAt(pos) == '+' || source.charAt(pos) == '-')) {
+                pos++;
+            }
+            if (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                    pos++;
+                }
+            } else {
+                // not an exponent, such as the constant e in "2e"; leave it for the caller to reject
+                pos = mark;
+            }
+        }
+        try {
+            pushNumber(Double.parseDouble(source.substring(start, pos)));
+        } catch (NumberFormatException ex) {
+            throw error("bad number '" + source.substring(start, pos) + "'");
+        }
+    }
+
+    /**
+     * Parses a variable, constant or function call.
+     */
+    private void name() {
+        int start = pos;
+        while (pos < source.length() && isNamePart(source.charAt(pos))) {
+            pos++;
+        }
+        String name = source.substring(start, pos);
+        if (accept('(')) {
+            call(name);
+            return;
+        }
+        int variable = variables.indexOf(name);
+        if (variable >= 0) {
+            emit(CompiledExpression.LOAD, 1);
+            operand(variable);
+            return;
+        }
+        Double constant = constants.get(name);
+        if (constant == null) {
+            throw error("don't know what '" + name + "' is");
+        }
+        pushNumber(constant);
+    }
+
+    /**
+     * Parses the arguments of a function call, after the opening parenthesis.
+     * @param name The name of the function.
+     */
+    private void call(final String name) {
+        enter();
+        expression();
+        if (accept(',')) {
+            DoubleBinaryOperator function = binaryFunctions.get(name);
+            if (function == null) {
+                throw error(name + "() doesn't take two arguments");
+            }
+            expression();
+            expect(')');
+            emit(CompiledExpression.CALL2, -1);
+            operand(binary.size());
+            binary.add(function);
+        } else {
+            DoubleUnaryOperator function = unaryFunctions.get(name);
+            if (function == null) {
+                throw error(name + "() doesn't take one argument");
+            }
+            expect(')');
+            emit(CompiledExpression.CALL1, 0);
+            operand(unary.size());
+            unary.add(function);
+        }
+        depth--;
+    }
+
+    /**
+     * Emits an instruction that pushes a number.
+     * @param value The number.
+     */
+    private void pushNumber(final double value) {
+        emit(CompiledExpression.PUSH, 1);
+        operand(numbers.size());
+        numbers.add(value);
+    }
+
+    /**
+     * Emits an instruction, counting it against the node cap.
+     * @param op The opcode.
+     * @param stackChange The number of values the instruction adds to the stack (negative if it removes them).
+     */
+    private void emit(final int op, final int stackChange) {
+        if (++nodes > maxNodes) {
+            throw new ExpressionException("expression is too big (more than " + maxNodes + " nodes)");
+        }
+        operand(op);
+        stack += stackChange;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    /**
+     * Appends a word to the program.
+     * @param word The opcode or operand.
+     */
+    private void operand(final int word) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, length * 2);
+        }
+        code[length++] = word;
+    }
+
+    /**
+     * Goes one level deeper into parentheses or a function call.
+     */
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw new ExpressionException("expression is nested too deeply");
+        }
+    }
+
+    /**
+     * Skips any whitespace.
+     */
+    private void skipSpaces() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    /**
+     * Returns whether the next character, after any whitespace, is the given one.
+     * @param c The character.
+     * @return True if it is next.
+     */
+    private boolean peek(final char c) {
+        skipSpaces();
+        return pos < source.length() && source.charAt(pos) == c;
+    }
+
+    /**
+     * Returns whether the next characters, after any whitespace, are the given ones.
+     * @param s The characters.
+     * @return True if they are next.
+     */
+    private boolean peek(final String s) {
+        skipSpaces();
+        return source.startsWith(s, pos);
+    }
+
+    /**
+     * Reads the next character if it is the given one.
+     * @param c The character.
+     * @return True if it was read.
+     */
+    private boolean accept(final char c) {
+        if (peek(c)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the next character, which must be the given one.
+     * @param c The character.
+     */
+    private void expect(final char c) {
+        if (!accept(c)) {
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    /**
+     * Creates an exception pointing at the current position.
+     * @param message What is wrong.
+     * @return The exception.
+     */
+    private ExpressionException error(final String message) {
+        return new ExpressionException(message + " at position " + (pos + 1));
+    }
+
+    /**
+     * Returns whether a character can start a name.
+     * @param c The character.
+     * @return True for letters and underscores.
+     */
+    private static boolean isNameStart(final char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    /**
+     * Returns whether a character can be part of a name.
+     * @param c The character.
+     * @return True for letters, digits and underscores.
+     */
+    private static boolean isNamePart(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
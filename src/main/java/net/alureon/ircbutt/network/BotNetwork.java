@@ -0,0 +1,302 @@
+package net.alureon.ircbutt.network;
+
+import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.file.NetworkConfig;
+import net.alureon.ircbutt.handler.BotConfigurationHandler;
+import net.alureon.ircbutt.outbound.OutboundPipeline;
+import net.alureon.ircbutt.util.IRCUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.pircbotx.Channel;
+import org.pircbotx.PircBotX;
+import org.pircbotx.hooks.Listener;
+import org.pircbotx.hooks.events.MessageEvent;
+import org.pircbotx.hooks.managers.ListenerManager;
+import org.pircbotx.hooks.managers.ThreadedListenerManager;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One IRC network the bot is connected to: its PircBotX connection, the listener threads that handle its events,
+ * and the outbound pipeline that sends to it.  Everything else (commands, storage, web requests and caches) is
+ * shared by all the networks.
+ * <p>
+ * Every thread the network starts is named after it and put in a thread group of its own, which the threads
+ * PircBotX starts from them join too, so the threads it is using, and the memory they have allocated, can be
+ * reported for each network.
+ */
+public final class BotNetwork {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * Separates the network name from the channel name in the channel keys of every network but the first.
+     */
+    private static final char KEY_SEPARATOR = '/';
+    /**
+     * The number of bytes in a mebibyte.
+     */
+    private static final double MEBIBYTE = 1024 * 1024;
+    /**
+     * The extra room left when listing the network's threads, for any started in the meantime.
+     */
+    private static final int SPARE_THREADS = 8;
+    /**
+     * The settings of the network, swapped when the config is reloaded.
+     */
+    private volatile NetworkConfig config;
+    /**
+     * What the channel keys of the network start with, so channels of the same name on two networks are kept
+     * apart.  Empty for the first network, so its history from before there were networks still lines up.
+     */
+    private final String keyPrefix;
+    /**
+     * What the names of the network's threads start with.
+     */
+    private final String threadPrefix;
+    /**
+     * The group every thread of the network is started in.
+     */
+    private final ThreadGroup threadGroup;
+    /**
+     * Handles the network's events on its own threads.
+     */
+    private final ListenerManager listenerManager;
+    /**
+     * Sends everything the bot says on the network.
+     */
+    private final OutboundPipeline outboundPipeline;
+    /**
+     * The connection to the network, once started.
+     */
+    private volatile PircBotX pircBotX;
+
+    /**
+     * Creates a network.  Nothing connects until it is started.
+     * @param config The settings of the network.
+     * @param primary Whether this is the first network, whose channel keys aren't prefixed.
+     * @param listeners The listeners that handle the network's events.
+     * @param outboundPipeline Sends everything the bot says on the network.
+     */
+    public BotNetwork(final NetworkConfig config, final boolean primary, final List<Listener> listeners,
+                      final OutboundPipeline outboundPipeline) {
+        this.config = config;
+        this.threadPrefix = config.getName() + "-";
+        this.threadGroup = new ThreadGroup(config.getName());
+        if (primary) {
+            this.keyPrefix = "";
+        } else {
+            this.keyPrefix = config.getName().toLowerCase(Locale.ROOT) + KEY_SEPARATOR;
+        }
+        this.listenerManager = new ThreadedListenerManager(Executors.newCachedThreadPool(
+                namedThreads(threadPrefix + "listener-")));
+        for (Listener listener : listeners) {
+            listenerManager.addListener(listener);
+        }
+        this.outboundPipeline = outboundPipeline;
+    }
+
+    /**
+     * Returns a factory for daemon threads in the network's group, named with a prefix and a number.
+     * @param prefix The prefix.
+     * @return The factory.
+     */
+    private ThreadFactory namedThreads(final String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(threadGroup, runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Connects to the network on a thread of its own, and starts sending.  Returns straight away.
+     * @param butt The IRCbutt instance, for the rest of the bot's configuration.
+     */
+    public void start(final IRCbutt butt) {
+        pircBotX = new PircBotX(new BotConfigurationHandler(butt, this).getConfiguration());
+        outboundPipeline.start(threadGroup, threadPrefix + "outbound");
+        Thread input = new Thread(threadGroup, () -> {
+            try {
+                pircBotX.startBot();
+            } catch (Exception ex) {  // several exceptions can be thrown here
+                log.error("Unable to start bot on " + config.getName() + ".  StackTrace: ", ex);
+            }
+        }, threadPrefix + "input");
+        input.start();
+    }
+
+    /**
+     * Swaps in the network's settings from a reloaded config, leaving channels that have been removed and joining
+     * ones that have been added.  The server and who the bot is on it only change when the bot is restarted,
+     * and so does the list of channels PircBotX joins when it reconnects.
+     * @param newConfig The new settings.
+     * @param joinChannels Whether to join added channels, which the cluster does itself when it is enabled.
+     */
+    public void reconfigure(final NetworkConfig newConfig, final boolean joinChannels) {
+        Set<String> oldKeys = new HashSet<>(getChannelKeys());
+        config = newConfig;
+        Set<String> newKeys = new HashSet<>(getChannelKeys());
+        PircBotX bot = pircBotX;
+        if (bot == null || !bot.isConnected()) {
+            return;
+        }
+        for (Channel channel : bot.getUserChannelDao().getAllChannels()) {
+            String key = getChannelKey(channel.getName());
+            if (oldKeys.contains(key) && !newKeys.contains(key)) {
+                log.info("Leaving " + channel.getName() + " on " + newConfig.getName());
+                channel.send().part();
+            }
+        }
+        if (!joinChannels) {
+            return;
+        }
+        for (String channel : newConfig.getChannels()) {
+            if (!oldKeys.contains(getChannelKey(channel))) {
+                log.info("Joining " + channel + " on " + newConfig.getName());
+                bot.sendIRC().joinChannel(channel);
+            }
+        }
+    }
+
+    /**
+     * Returns the key used to keep per-channel state (such as chat history) apart.
+     * @param event The event from PircBotX.
+     * @return The channel key, or null if the event didn't happen in a channel (such as a private message).
+     */
+    public String getChannelKey(final GenericMessageEvent event) {
+        if (event instanceof MessageEvent) {
+            return getChannelKey(((MessageEvent) event).getChannel().getName());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the key used to keep per-channel state apart, for a channel on this network.
+     * @param channelName The name of the channel, in any case.
+     * @return The channel key.
+     */
+    public String getChannelKey(final String channelName) {
+        return keyPrefix + IRCUtils.getChannelKey(channelName);
+    }
+
+    /**
+     * Returns the name of one of the network's channels from its key.
+     * @param channelKey The channel key.
+     * @return The channel's name as it is in the config, or null if it isn't one of the network's channels.
+     */
+    public String getChannelName(final String channelKey) {
+        for (String channel : config.getChannels()) {
+            if (getChannelKey(channel).equals(channelKey)) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the keys of the channels the network joins.
+     * @return The channel keys.
+     */
+    public List<String> getChannelKeys() {
+        List<String> keys = new ArrayList<>();
+        for (String channel : config.getChannels()) {
+            keys.add(getChannelKey(channel));
+        }
+        return keys;
+    }
+
+    /**
+     * Returns a short summary of the network's connection, threads and the memory they have allocated, for the
+     * stats command.
+     * @return The summary.
+     */
+    public String getStats() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocated = 0;
+        long cpu = 0;
+        Thread[] live = new Thread[threadGroup.activeCount() + SPARE_THREADS];
+        int listed = threadGroup.enumerate(live);
+        for (int i = 0; i < listed; i++) {
+            Thread thread = live[i];
+            allocated += Math.max(0, allocatedBytes(threads, thread.getId()));
+            if (threads.isThreadCpuTimeSupported()) {
+                cpu += Math.max(0, threads.getThreadCpuTime(thread.getId()));
+            }
+        }
+        PircBotX bot = pircBotX;
+        String state = "not started";
+        int joined = 0;
+        if (bot != null && bot.isConnected()) {
+            state = "connected";
+            joined = bot.getUserChannelDao().getAllChannels().size();
+        } else if (bot != null) {
+            state = "disconnected";
+        }
+        return "network " + config.getName() + ": " + state + ", " + joined + "/" + config.getChannels().size()
+                + " channels, " + listed + " threads, " + String.format("%.1f", allocated / MEBIBYTE)
+                + "MB allocated, " + TimeUnit.NANOSECONDS.toMillis(cpu) + "ms cpu";
+    }
+
+    /**
+     * Returns the bytes a live thread has allocated, if the JVM keeps count.
+     * @param threads The JVM's thread bean.
+     * @param id The thread's id.
+     * @return The bytes allocated, or -1 if not known.
+     */
+    private static long allocatedBytes(final ThreadMXBean threads, final long id) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+            if (counting.isThreadAllocatedMemorySupported() && counting.isThreadAllocatedMemoryEnabled()) {
+                return counting.getThreadAllocatedBytes(id);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the settings of the network.
+     * @return NetworkConfig
+     */
+    public NetworkConfig getConfig() {
+        return this.config;
+    }
+
+    /**
+     * Returns the ListenerManager object that handles the network's events.
+     * @return ListenerManager
+     */
+    public ListenerManager getListenerManager() {
+        return this.listenerManager;
+    }
+
+    /**
+     * Returns the OutboundPipeline object that sends to the network.
+     * @return OutboundPipeline
+     */
+    public OutboundPipeline getOutboundPipeline() {
+        return this.outboundPipeline;
+    }
+
+    /**
+     * Returns the PircBotX connection to the network.
+     * @return PircBotX, or null if the network hasn't been started.
+     */
+    public PircBotX getPircBotX() {
+        return this.pircBotX;
+    }
+}
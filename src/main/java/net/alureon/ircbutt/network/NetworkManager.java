@@ -0,0 +1,183 @@
+package net.alureon.ircbutt.network;
+
+import net.alureon.ircbutt.IRCbutt;
+import net.alureon.ircbutt.cluster.ChannelMembership;
+import net.alureon.ircbutt.file.NetworkConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.pircbotx.PircBotX;
+import org.pircbotx.hooks.types.GenericMessageEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps track of every network the bot is connected to, and finds the one an event came from.  It also joins and
+ * leaves channels by their keys, for the cluster.
+ */
+public final class NetworkManager implements ChannelMembership {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+
+    /**
+     * The networks, the first one from the Server section first.
+     */
+    private final List<BotNetwork> networks;
+
+    /**
+     * Creates a manager for some networks.
+     * @param networks The networks, the first one from the Server section first.
+     */
+    public NetworkManager(final List<BotNetwork> networks) {
+        if (networks.isEmpty()) {
+            throw new IllegalArgumentException("The bot needs at least one network");
+        }
+        this.networks = Collections.unmodifiableList(new ArrayList<>(networks));
+    }
+
+    /**
+     * Connects to every network.  Each network connects on a thread of its own, so this returns straight away.
+     * @param butt The IRCbutt instance, for the rest of the bot's configuration.
+     */
+    public void start(final IRCbutt butt) {
+        for (BotNetwork network : networks) {
+            network.start(butt);
+        }
+    }
+
+    /**
+     * Swaps in each network's settings from a reloaded config, matching networks by name.  Networks can only be
+     * added or removed, or moved to another server, by restarting the bot.
+     * @param configs The networks from the reloaded config.
+     * @param joinChannels Whether to join added channels, which the cluster does itself when it is enabled.
+     */
+    public void reconfigure(final List<NetworkConfig> configs, final boolean joinChannels) {
+        if (configs.size() != networks.size()) {
+            log.warn("Networks were added or removed; restart the bot to connect to them");
+        }
+        for (NetworkConfig config : configs) {
+            BotNetwork network = getNetwork(config.getName());
+            if (network == null) {
+                continue;
+            }
+            network.reconfigure(config, joinChannels);
+        }
+    }
+
+    /**
+     * Returns a network by name.
+     * @param name The name of the network, in any case.
+     * @return The network, or null if there isn't one by that name.
+     */
+    public BotNetwork getNetwork(final String name) {
+        for (BotNetwork network : networks) {
+            if (network.getConfig().getName().equalsIgnoreCase(name)) {
+                return network;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the network a connection belongs to.
+     * @param bot The connection (may be null).
+     * @return The network, or the first network if the connection isn't known.
+     */
+    public BotNetwork getNetwork(final PircBotX bot) {
+        for (BotNetwork network : networks) {
+            if (bot != null && network.getPircBotX() == bot) {
+                return network;
+            }
+        }
+        return networks.get(0);
+    }
+
+    /**
+     * Returns the network an event came from.
+     * @param event The event from PircBotX.
+     * @return The network, or the first network if the event didn't come from a known connection.
+     */
+    public BotNetwork getNetwork(final GenericMessageEvent event) {
+        return getNetwork(event.<PircBotX>getBot());
+    }
+
+    /**
+     * Returns the key used to keep per-channel state apart, for the channel an event happened in.
+     * @param event The event from PircBotX.
+     * @return The channel key, or null if the event didn't happen in a channel (such as a private message).
+     */
+    public String getChannelKey(final GenericMessageEvent event) {
+        return getNetwork(event).getChannelKey(event);
+    }
+
+    /**
+     * Returns the keys of the channels every network joins.
+     * @return The channel keys.
+     */
+    public List<String> getChannelKeys() {
+        List<String> keys = new ArrayList<>();
+        for (BotNetwork network : networks) {
+            keys.addAll(network.getChannelKeys());
+        }
+        return keys;
+    }
+
+    @Override
+    public boolean isJoined(final String channel) {
+        for (BotNetwork network : networks) {
+            String name = network.getChannelName(channel);
+            PircBotX bot = network.getPircBotX();
+            if (name != null && bot != null && bot.isConnected()) {
+                return bot.getUserChannelDao().containsChannel(name);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void join(final String channel) {
+        for (BotNetwork network : networks) {
+            String name = network.getChannelName(channel);
+            PircBotX bot = network.getPircBotX();
+            if (name != null && bot != null && bot.isConnected()) {
+                bot.sendIRC().joinChannel(name);
+            }
+        }
+    }
+
+    @Override
+    public void part(final String channel) {
+        for (BotNetwork network : networks) {
+            String name = network.getChannelName(channel);
+            PircBotX bot = network.getPircBotX();
+            if (name != null && bot != null && bot.isConnected() && bot.getUserChannelDao().containsChannel(name)) {
+                bot.getUserChannelDao().getChannel(name).send().part();
+            }
+        }
+    }
+
+    /**
+     * Returns the networks.
+     * @return The networks, the first one from the Server section first.
+     */
+    public List<BotNetwork> getNetworks() {
+        return networks;
+    }
+
+    /**
+     * Returns a summary of each network and its outbound pipeline, for the stats command.
+     * @return The summaries.
+     */
+    public List<String> getStats() {
+        List<String> stats = new ArrayList<>();
+        for (BotNetwork network : networks) {
+            stats.add(network.getStats());
+            stats.add(network.getConfig().getName() + " " + network.getOutboundPipeline().getStats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,362 @@
+package net.alureon.ircbutt.outbound;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits messages so that every line fits in the 512 bytes an IRC line may have, counted in UTF-8 as the server
+ * sees it.  The budget leaves room for the prefix the server adds when it relays the line (":nick!login@host "),
+ * the command and target, and any text the sender wraps around the message.
+ * <p>
+ * Lines are broken at the last space that fits, or between code points if a word is too long to fit on a line of
+ * its own, and never inside a color code.  Colors and formatting that are on at a break are turned on again at the
+ * start of the next line, so a split line looks the same as it would have whole.
+ */
+public final class LineSplitter {
+
+    /**
+     * The most bytes an IRC line may have, including the CR LF at the end.
+     */
+    public static final int MAX_LINE_BYTES = 512;
+    /**
+     * The bytes of the CR LF that ends every line.
+     */
+    private static final int CRLF_BYTES = 2;
+    /**
+     * The longest hostname the server may show for the bot, which isn't known until the server says so.
+     */
+    private static final int MAX_HOST_BYTES = 63;
+    /**
+     * The bytes of the ':', '!', '@' and ' ' around the nick, login and host in the server's prefix.
+     */
+    private static final int PREFIX_PUNCTUATION_BYTES = 4;
+    /**
+     * Starts a color code, followed by up to two digits of foreground, and optionally a comma and up to two digits
+     * of background.  On its own it turns colors off.
+     */
+    static final char COLOR = '\u0003';
+    /**
+     * Turns every color and format off.
+     */
+    static final char RESET = '\u000F';
+    /**
+     * The format codes that each toggle a format on or off: bold, italics, underline, strikethrough, monospace and
+     * reverse.
+     */
+    private static final String TOGGLES = "\u0002\u001D\u001F\u001E\u0011\u0016";
+    /**
+     * The most digits in each half of a color code.
+     */
+    private static final int COLOR_DIGITS = 2;
+    /**
+     * The first color number written with two digits without padding.
+     */
+    private static final int TWO_DIGIT_COLOR = 10;
+    /**
+     * The first char that takes two bytes in UTF-8.
+     */
+    private static final char TWO_BYTE_START = '\u0080';
+    /**
+     * The first char that takes three bytes in UTF-8.
+     */
+    private static final char THREE_BYTE_START = '\u0800';
+    /**
+     * The bytes a char from U+0800 up takes in UTF-8.
+     */
+    private static final int THREE_BYTES = 3;
+    /**
+     * The bytes a surrogate pair takes in UTF-8.
+     */
+    private static final int FOUR_BYTES = 4;
+    /**
+     * The bytes the server's prefix may take.
+     */
+    private final int sourceBytes;
+
+    /**
+     * Creates a splitter for a bot with the given nick and login.
+     * @param nick The bot's nick.
+     * @param login The bot's login.
+     */
+    public LineSplitter(final String nick, final String login) {
+        this.sourceBytes = byteLength(nick) + byteLength(login) + MAX_HOST_BYTES + PREFIX_PUNCTUATION_BYTES;
+    }
+
+    /**
+     * Returns the most bytes a message may have when sent to a target.
+     * @param target The target.
+     * @return The budget for the message alone.
+     */
+    public int getBudget(final OutboundTarget target) {
+        return MAX_LINE_BYTES - CRLF_BYTES - sourceBytes - target.getFramingBytes();
+    }
+
+    /**
+     * Splits a message into lines that each fit the budget.
+     * @param message The message.
+     * @param budget The most bytes each line may have.
+     * @return The lines, which is just the message if it already fits.
+     */
+    public static List<String> split(final String message, final int budget) {
+        return split(message, byteLength(message), budget);
+    }
+
+    /**
+     * Splits a message into lines that each fit the budget.
+     * @param message The message.
+     * @param messageBytes The UTF-8 length of the message, if already known.
+     * @param budget The most bytes each line may have.
+     * @return The lines, which is just the message if it already fits.
+     */
+    static List<String> split(final String message, final int messageBytes, final int budget) {
+        if (messageBytes <= budget) {
+            return Collections.singletonList(message);
+        }
+        List<String> lines = new ArrayList<>();
+        Format format = new Format();
+        StringBuilder line = new StringBuilder(budget);
+        int lineBytes = 0;
+        // whether the line has anything but format codes on it
+        boolean hasContent = false;
+        // the last space on the line, where it is in the message, and the formatting in effect there
+        int space = -1;
+        int spaceIndex = -1;
+        Format spaceFormat = null;
+        int i = 0;
+        while (i < message.length()) {
+            int end = atomEnd(message, i);
+            int atomBytes = byteLength(message, i, end);
+            if (lineBytes + atomBytes > budget && hasContent) {
+                if (space >= 0) {
+                    lines.add(line.substring(0, space));
+                    // go back to just after the space, so the rest is measured again behind the carried codes
+                    format = spaceFormat;
+                    i = spaceIndex + 1;
+                } else {
+                    lines.add(line.toString());
+                }
+                line.setLength(0);
+                line.append(format.codes());
+                hasContent = false;
+                lineBytes = byteLength(line, 0, line.length());
+                space = -1;
+                continue;
+            }
+            if (message.charAt(i) == ' ' && hasContent) {
+                space = line.length();
+                spaceIndex = i;
+                spaceFormat = new Format(format);
+            }
+            boolean code = format.apply(message, i, end);
+            if (!hasContent && lineBytes + atomBytes > budget) {
+                // a line of nothing but codes has grown too long, so keep only the formatting they add up to,
+                // which already takes in this piece if it is a code too
+                line.setLength(0);
+                line.append(format.codes());
+                lineBytes = byteLength(line, 0, line.length());
+                if (!code) {
+                    line.append(message, i, end);
+                    lineBytes += atomBytes;
+                }
+            } else {
+                line.append(message, i, end);
+                lineBytes += atomBytes;
+            }
+            hasContent |= !code;
+            i = end;
+        }
+        if (hasContent) {
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the end of the smallest piece of a message that can't be split: a whole color code, or one code
+     * point.
+     * @param message The message.
+     * @param start The start of the piece.
+     * @return The index just past the piece.
+     */
+    private static int atomEnd(final CharSequence message, final int start) {
+        char c = message.charAt(start);
+        if (c == COLOR) {
+            int end = digitsEnd(message, start + 1);
+            if (end > start + 1 && end + 1 < message.length() && message.charAt(end) == ','
+                    && isDigit(message.charAt(end + 1))) {
+                end = digitsEnd(message, end + 1);
+            }
+            return end;
+        }
+        if (Character.isHighSurrogate(c) && start + 1 < message.length()
+                && Character.isLowSurrogate(message.charAt(start + 1))) {
+            return start + 2;
+        }
+        return start + 1;
+    }
+
+    /**
+     * Returns the end of the digits of one half of a color code.
+     * @param message The message.
+     * @param start Where the digits would start.
+     * @return The index just past the digits.
+     */
+    private static int digitsEnd(final CharSequence message, final int start) {
+        int end = start;
+        while (end < message.length() && end - start < COLOR_DIGITS && isDigit(message.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Returns whether a char is one of the ASCII digits color codes are written with.
+     * @param c The char.
+     * @return True for 0 to 9.
+     */
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Returns the number of bytes text takes in UTF-8, without encoding it.
+     * @param text The text.
+     * @return The UTF-8 length.
+     */
+    public static int byteLength(final CharSequence text) {
+        return byteLength(text, 0, text.length());
+    }
+
+    /**
+     * Returns the number of bytes part of some text takes in UTF-8, without encoding it.  A lone surrogate counts
+     * as the single '?' it is sent as.
+     * @param text The text.
+     * @param start The start of the part.
+     * @param end The end of the part (exclusive).
+     * @return The UTF-8 length.
+     */
+    static int byteLength(final CharSequence text, final int start, final int end) {
+        int bytes = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < TWO_BYTE_START) {
+                bytes++;
+            } else if (c < THREE_BYTE_START) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += FOUR_BYTES;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += THREE_BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * The colors and formats in effect at some point in a message.
+     */
+    private static final class Format {
+
+        /**
+         * Which of the toggled formats are on, one bit per entry of TOGGLES.
+         */
+        private int toggles;
+        /**
+         * The foreground color, or -1 for none.
+         */
+        private int foreground = -1;
+        /**
+         * The background color, or -1 for none.
+         */
+        private int background = -1;
+
+        /**
+         * Creates formatting with nothing on.
+         */
+        Format() {
+        }
+
+        /**
+         * Creates a copy of some formatting.
+         * @param other The formatting to copy.
+         */
+        Format(final Format other) {
+            this.toggles = other.toggles;
+            this.foreground = other.foreground;
+            this.background = other.background;
+        }
+
+        /**
+         * Updates the formatting for one piece of a message.
+         * @param message The message.
+         * @param start The start of the piece.
+         * @param end The end of the piece.
+         * @return True if the piece was a format code, false if it is text.
+         */
+        boolean apply(final String message, final int start, final int end) {
+            char c = message.charAt(start);
+            int toggle = TOGGLES.indexOf(c);
+            if (toggle >= 0) {
+                toggles ^= 1 << toggle;
+            } else if (c == RESET) {
+                toggles = 0;
+                foreground = -1;
+                background = -1;
+            } else if (c == COLOR) {
+                int comma = message.indexOf(',', start);
+                if (end == start + 1) {
+                    foreground = -1;
+                    background = -1;
+                } else if (comma < 0 || comma >= end) {
+                    foreground = Integer.parseInt(message.substring(start + 1, end));
+                } else {
+                    foreground = Integer.parseInt(message.substring(start + 1, comma));
+                    background = Integer.parseInt(message.substring(comma + 1, end));
+                }
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the codes that turn the formatting on at the start of a line.  Colors are always written with
+         * two digits, so a digit that follows isn't read as part of the color.
+         * @return The codes, or an empty string if nothing is on.
+         */
+        String codes() {
+            if (toggles == 0 && foreground < 0) {
+                return "";
+            }
+            StringBuilder codes = new StringBuilder();
+            for (int i = 0; i < TOGGLES.length(); i++) {
+                if ((toggles & (1 << i)) != 0) {
+                    codes.append(TOGGLES.charAt(i));
+                }
+            }
+            if (foreground >= 0) {
+                codes.append(COLOR).append(twoDigits(foreground));
+                if (background >= 0) {
+                    codes.append(',').append(twoDigits(background));
+                }
+            }
+            return codes.toString();
+        }
+
+        /**
+         * Formats a color number with two digits.
+         * @param color The color number.
+         * @return The digits.
+         */
+        private static String twoDigits(final int color) {
+            if (color < TWO_DIGIT_COLOR) {
+                return "0" + color;
+            }
+            return String.valueOf(color);
+        }
+    }
+}
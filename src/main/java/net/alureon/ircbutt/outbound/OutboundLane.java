@@ -0,0 +1,16 @@
+package net.alureon.ircbutt.outbound;
+
+/**
+ * The lanes outbound messages wait in.  A line is only sent from a lane when every lane above it is empty, so
+ * replies to users never wait behind long bulk output.
+ */
+public enum OutboundLane {
+    /**
+     * Replies to something a user just did, such as a command.
+     */
+    INTERACTIVE,
+    /**
+     * Long output that can wait, such as the !top table.
+     */
+    BULK
+}
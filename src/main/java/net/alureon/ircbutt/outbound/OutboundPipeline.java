@@ -0,0 +1,739 @@
+package net.alureon.ircbutt.outbound;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Sends everything the bot says, one line at a time, from a single thread.  Each response waits in a lane, and a
+ * line is only taken from a lane when no lane above it has a line ready, so a reply to a command can jump ahead of
+ * the rest of a long !top table.  Responses can be lazy sequences of lines, which aren't generated until they are
+ * about to be sent.  Short lines of the same response are packed together into one message, up to the pack
+ * length, so a response of many short lines costs fewer messages, and lines too long for IRC are split by the
+ * {@link LineSplitter} rather than cut off by the server.
+ * <p>
+ * Lines are paced by token buckets instead of a fixed delay: one for each target (channel or nick), and one for
+ * everything, sized to what the server allows before it disconnects the bot for flooding.  A short burst goes out
+ * at once, and within a lane the targets take turns, so a busy channel can't hold up replies in a quiet one.
+ * <p>
+ * Each target may only have so many responses waiting in each lane; a response beyond that is dropped and
+ * counted, so a flood of replies to a throttled target can't use up the bot's memory.
+ * <p>
+ * The time from a response being queued to its first line being sent, and to its last line being sent, is
+ * measured for each lane, and the time each line waited is measured for each target.
+ */
+public final class OutboundPipeline {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * Separates lines packed into one message.
+     */
+    static final String PACK_SEPARATOR = " | ";
+    /**
+     * The number of targets kept before targets that have been idle a while are forgotten.
+     */
+    private static final int MAX_TRACKED_TARGETS = 256;
+    /**
+     * How long a target must be idle before it can be forgotten.
+     */
+    private static final long TARGET_IDLE_NANOS = TimeUnit.HOURS.toNanos(1);
+    /**
+     * The most responses one target may have waiting in one lane.
+     */
+    static final int MAX_QUEUED_PER_TARGET = 64;
+    /**
+     * The most targets listed in the stats.
+     */
+    private static final int MAX_TARGETS_IN_STATS = 5;
+    /**
+     * The lanes, each holding the queued responses of each target in the order the targets take turns.  Guarded
+     * by itself, which also guards the buckets.
+     */
+    private final Map<OutboundLane, LinkedHashMap<String, ArrayDeque<Outbound>>> lanes =
+            new EnumMap<>(OutboundLane.class);
+    /**
+     * The bucket and timings of each target, by target key.  Guarded by the lanes.
+     */
+    private final Map<String, TargetState> targets = new HashMap<>();
+    /**
+     * The timings of each lane.
+     */
+    private final Map<OutboundLane, LaneStats> stats = new EnumMap<>(OutboundLane.class);
+    /**
+     * Paces every line, whatever its target.  Guarded by the lanes.
+     */
+    private TokenBucket global;
+    /**
+     * The most lines that may go out to one target at once.  Guarded by the lanes.
+     */
+    private int targetBurst;
+    /**
+     * How often one more line may go out to a target once its burst is used up, in milliseconds.  Guarded by the
+     * lanes.
+     */
+    private int targetMillisPerLine;
+    /**
+     * The longest message short lines are packed into, in characters, or 0 to never pack lines.
+     */
+    private volatile int packLength;
+    /**
+     * Works out how long a message may be, and splits the ones that are too long.
+     */
+    private final LineSplitter splitter;
+    /**
+     * The clock, in nanoseconds.
+     */
+    private final LongSupplier clock;
+    /**
+     * The number of responses queued in every lane.  Guarded by the lanes.
+     */
+    private int queued;
+    /**
+     * The number of responses dropped because their target already had too many waiting.  Guarded by the lanes.
+     */
+    private long dropped;
+    /**
+     * The thread that sends the lines, once started.
+     */
+    private Thread sender;
+
+    /**
+     * Creates a new OutboundPipeline.  Nothing is sent until it is started.
+     * @param packLength The longest message short lines are packed into, in characters, or 0 to never pack lines.
+     * @param splitter Works out how long a message may be, and splits the ones that are too long.
+     * @param globalBurst The most lines that may go out at once.
+     * @param globalMillisPerLine How often one more line may go out once the burst is used up, in milliseconds.
+     * @param targetBurst The most lines that may go out to one target at once.
+     * @param targetMillisPerLine How often one more line may go out to a target once its burst is used up.
+     */
+    public OutboundPipeline(final int packLength, final LineSplitter splitter, final int globalBurst,
+                            final int globalMillisPerLine, final int targetBurst, final int targetMillisPerLine) {
+        this(packLength, splitter, globalBurst, globalMillisPerLine, targetBurst, targetMillisPerLine,
+                System::nanoTime);
+    }
+
+    /**
+     * Creates a new OutboundPipeline with its own clock, for tests.
+     * @param packLength The longest message short lines are packed into, in characters, or 0 to never pack lines.
+     * @param splitter Works out how long a message may be, and splits the ones that are too long.
+     * @param globalBurst The most lines that may go out at once.
+     * @param globalMillisPerLine How often one more line may go out once the burst is used up, in milliseconds.
+     * @param targetBurst The most lines that may go out to one target at once.
+     * @param targetMillisPerLine How often one more line may go out to a target once its burst is used up.
+     * @param clock The clock, in nanoseconds.
+     */
+    OutboundPipeline(final int packLength, final LineSplitter splitter, final int globalBurst,
+                     final int globalMillisPerLine, final int targetBurst, final int targetMillisPerLine,
+                     final LongSupplier clock) {
+        this.packLength = packLength;
+        this.splitter = splitter;
+        this.targetBurst = targetBurst;
+        this.targetMillisPerLine = targetMillisPerLine;
+        this.clock = clock;
+        this.global = new TokenBucket(globalBurst, globalMillisPerLine, clock.getAsLong());
+        for (OutboundLane lane : OutboundLane.values()) {
+            lanes.put(lane, new LinkedHashMap<>());
+            stats.put(lane, new LaneStats());
+        }
+    }
+
+    /**
+     * Starts the thread that sends queued lines.
+     * @param group The group to start the thread in.
+     * @param threadName The name of the thread.
+     */
+    public synchronized void start(final ThreadGroup group, final String threadName) {
+        if (sender != null) {
+            return;
+        }
+        sender = new Thread(group, this::run, threadName);
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Stops the sending thread.  Anything still queued is dropped.
+     */
+    public synchronized void stop() {
+        if (sender != null) {
+            sender.interrupt();
+            sender = null;
+        }
+    }
+
+    /**
+     * Queues a response to be sent, unless its target already has MAX_QUEUED_PER_TARGET responses waiting in the
+     * lane, in which case it is dropped.
+     * @param lane The lane the response waits in.
+     * @param target Where the response is going.
+     * @param lines The lines of the response, which are pulled one at a time as they are sent.
+     * @param pack Whether short lines may be packed together, which should be false if the lines are laid out
+     *             as a table.
+     */
+    public void enqueue(final OutboundLane lane, final OutboundTarget target, final Iterator<String> lines,
+                        final boolean pack) {
+        long now = clock.getAsLong();
+        Outbound outbound = new Outbound(lane, target, lines, pack && packLength > 0, now);
+        synchronized (lanes) {
+            targetState(outbound.key, now);
+            ArrayDeque<Outbound> queue = lanes.get(lane).computeIfAbsent(outbound.key, key -> new ArrayDeque<>());
+            if (queue.size() >= MAX_QUEUED_PER_TARGET) {
+                dropped++;
+                log.debug("Dropping a response to " + outbound.key + ", it already has " + queue.size() + " waiting");
+                return;
+            }
+            queue.addLast(outbound);
+            queued++;
+            lanes.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the state of a target, creating it if needed.  The caller must hold the lanes' lock.
+     * @param key The target key.
+     * @param now The current time, from the clock.
+     * @return The target's state.
+     */
+    private TargetState targetState(final String key, final long now) {
+        TargetState state = targets.get(key);
+        if (state == null) {
+            if (targets.size() >= MAX_TRACKED_TARGETS) {
+                targets.entrySet().removeIf(idle -> idle.getValue().isForgettable(now) && !isQueued(idle.getKey()));
+            }
+            state = new TargetState(new TokenBucket(targetBurst, targetMillisPerLine, now));
+            targets.put(key, state);
+        }
+        return state;
+    }
+
+    /**
+     * Returns whether a target has a response waiting in any lane.  The caller must hold the lanes' lock.
+     * @param key The target key.
+     * @return True if it has.
+     */
+    private boolean isQueued(final String key) {
+        for (LinkedHashMap<String, ArrayDeque<Outbound>> lane : lanes.values()) {
+            if (lane.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends queued lines until the thread is interrupted.  A response that fails to send is dropped, so one bad
+     * response can't stop everything else going out.
+     */
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Outbound next = awaitNext();
+                try {
+                    sendNext(next);
+                } catch (RuntimeException ex) {
+                    log.error("Failed to send an outbound response, dropping it: ", ex);
+                    drop(next);
+                }
+            }
+        } catch (InterruptedException ex) {
+            log.debug("Outbound pipeline stopped");
+        }
+    }
+
+    /**
+     * Removes a response from its lane, without sending the rest of it.
+     * @param outbound The response.
+     */
+    private void drop(final Outbound outbound) {
+        synchronized (lanes) {
+            LinkedHashMap<String, ArrayDeque<Outbound>> lane = lanes.get(outbound.lane);
+            ArrayDeque<Outbound> queue = lane.get(outbound.key);
+            if (queue != null && queue.remove(outbound)) {
+                queued--;
+                if (queue.isEmpty()) {
+                    lane.remove(outbound.key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until a queued response has a line that may be sent.
+     * @return The response.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    private Outbound awaitNext() throws InterruptedException {
+        synchronized (lanes) {
+            while (true) {
+                long now = clock.getAsLong();
+                Outbound next = peekNext(now);
+                if (next != null) {
+                    return next;
+                }
+                if (queued == 0) {
+                    lanes.wait();
+                } else {
+                    TimeUnit.NANOSECONDS.timedWait(lanes, Math.max(1, nanosUntilReady(now)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the response whose turn it is to send a line: the first target in the highest lane whose bucket
+     * has a token, as long as the global bucket has one too.  The caller must hold the lanes' lock.
+     * @param now The current time, from the clock.
+     * @return The response, or null if nothing may be sent yet.
+     */
+    private Outbound peekNext(final long now) {
+        if (global.nanosUntilAvailable(now) > 0) {
+            return null;
+        }
+        for (LinkedHashMap<String, ArrayDeque<Outbound>> lane : lanes.values()) {
+            for (Map.Entry<String, ArrayDeque<Outbound>> entry : lane.entrySet()) {
+                if (targets.get(entry.getKey()).bucket.nanosUntilAvailable(now) == 0) {
+                    return entry.getValue().peekFirst();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns how long until a queued response may send a line.  The caller must hold the lanes' lock.
+     * @param now The current time, from the clock.
+     * @return The wait in nanoseconds.
+     */
+    private long nanosUntilReady(final long now) {
+        long wait = Long.MAX_VALUE;
+        for (LinkedHashMap<String, ArrayDeque<Outbound>> lane : lanes.values()) {
+            for (String key : lane.keySet()) {
+                wait = Math.min(wait, targets.get(key).bucket.nanosUntilAvailable(now));
+            }
+        }
+        return Math.max(wait, global.nanosUntilAvailable(now));
+    }
+
+    /**
+     * Sends the next line whose turn it is, without waiting.  The sending thread does this in a loop; tests can
+     * call it directly instead of starting the thread.
+     * @return True if a response had a line that could be sent.
+     */
+    boolean sendNext() {
+        Outbound next;
+        synchronized (lanes) {
+            next = peekNext(clock.getAsLong());
+        }
+        if (next == null) {
+            return false;
+        }
+        sendNext(next);
+        return true;
+    }
+
+    /**
+     * Sends the next message of a response, then sends its target to the back of its lane's turns, and removes
+     * the response once it has no more.
+     * @param outbound The response.
+     */
+    private void sendNext(final Outbound outbound) {
+        String message = null;
+        boolean more = false;
+        try {
+            message = outbound.nextMessage(packLength, splitter.getBudget(outbound.target));
+            more = outbound.hasMore();
+        } catch (RuntimeException ex) {
+            log.error("Failed to generate outbound lines, dropping the rest: " + ex.getMessage());
+        }
+        if (message != null) {
+            long now = clock.getAsLong();
+            synchronized (lanes) {
+                global.take(now);
+                targets.get(outbound.key).take(now, now - outbound.enqueued);
+            }
+            try {
+                outbound.target.send(message);
+            } catch (RuntimeException ex) {
+                log.error("Failed to send outbound message: " + ex.getMessage());
+            }
+            if (!outbound.sentFirst) {
+                outbound.sentFirst = true;
+                stats.get(outbound.lane).recordFirst(now - outbound.enqueued);
+            }
+        }
+        synchronized (lanes) {
+            LinkedHashMap<String, ArrayDeque<Outbound>> lane = lanes.get(outbound.lane);
+            ArrayDeque<Outbound> queue = lane.remove(outbound.key);
+            if (!more) {
+                queue.remove(outbound);
+                queued--;
+            }
+            if (!queue.isEmpty()) {
+                lane.put(outbound.key, queue);
+            }
+        }
+        if (!more && outbound.sentFirst) {
+            stats.get(outbound.lane).recordDrained(clock.getAsLong() - outbound.enqueued);
+        }
+    }
+
+    /**
+     * Changes how lines are packed and paced, when the config is reloaded.  Every bucket starts again full, and
+     * anything already queued goes out at the new rates.
+     * @param newPackLength The longest message short lines are packed into, in characters, or 0 to never pack.
+     * @param globalBurst The most lines that may go out at once, whatever their target.
+     * @param globalMillisPerLine How often one more line may go out once the global burst is used up.
+     * @param newTargetBurst The most lines that may go out to one target at once.
+     * @param newTargetMillisPerLine How often one more line may go out to a target once its burst is used up.
+     */
+    public void reconfigure(final int newPackLength, final int globalBurst, final int globalMillisPerLine,
+                            final int newTargetBurst, final int newTargetMillisPerLine) {
+        long now = clock.getAsLong();
+        synchronized (lanes) {
+            packLength = newPackLength;
+            global = new TokenBucket(globalBurst, globalMillisPerLine, now);
+            targetBurst = newTargetBurst;
+            targetMillisPerLine = newTargetMillisPerLine;
+            for (TargetState state : targets.values()) {
+                state.bucket = new TokenBucket(targetBurst, targetMillisPerLine, now);
+            }
+            lanes.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the number of responses waiting to be sent.
+     * @return The number of responses queued in every lane.
+     */
+    public int getQueued() {
+        synchronized (lanes) {
+            return queued;
+        }
+    }
+
+    /**
+     * Returns a short summary of each lane's timings, the queue and the busiest targets, for the stats command.
+     * @return The summary.
+     */
+    public String getStats() {
+        StringBuilder sb = new StringBuilder("outbound:");
+        for (Map.Entry<OutboundLane, LaneStats> entry : stats.entrySet()) {
+            sb.append(' ').append(entry.getKey().name().toLowerCase(Locale.ROOT)).append(' ')
+                    .append(entry.getValue()).append(',');
+        }
+        synchronized (lanes) {
+            sb.append(' ').append(queued).append(" queued");
+            if (dropped > 0) {
+                sb.append(", ").append(dropped).append(" dropped");
+            }
+            targets.entrySet().stream()
+                    .filter(entry -> entry.getValue().lines > 0)
+                    .sorted((a, b) -> Long.compare(b.getValue().lines, a.getValue().lines))
+                    .limit(MAX_TARGETS_IN_STATS)
+                    .forEach(entry -> sb.append(", ").append(entry.getKey()).append(' ').append(entry.getValue()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A response waiting to be sent, and how far through it the pipeline is.
+     */
+    private static final class Outbound {
+
+        /**
+         * The lane the response waits in.
+         */
+        private final OutboundLane lane;
+        /**
+         * Where the response is going.
+         */
+        private final OutboundTarget target;
+        /**
+         * The key of the target, which paces the response.
+         */
+        private final String key;
+        /**
+         * The lines not yet pulled.
+         */
+        private final Iterator<String> lines;
+        /**
+         * Whether short lines may be packed together.
+         */
+        private final boolean pack;
+        /**
+         * When the response was queued, from the clock.
+         */
+        private final long enqueued;
+        /**
+         * The rest of a message that was too long for one line and had to be split.
+         */
+        private final ArrayDeque<String> pieces = new ArrayDeque<>();
+        /**
+         * A line pulled to see whether it fits in the last message but which didn't, or null.
+         */
+        private String pending;
+        /**
+         * The UTF-8 length of the pending line.
+         */
+        private int pendingBytes;
+        /**
+         * The UTF-8 length of the line last pulled.
+         */
+        private int pulledBytes;
+        /**
+         * Whether the first message has been sent.
+         */
+        private boolean sentFirst;
+
+        /**
+         * Creates a queued response.
+         * @param lane The lane the response waits in.
+         * @param target Where the response is going.
+         * @param lines The lines of the response.
+         * @param pack Whether short lines may be packed together.
+         * @param enqueued When the response was queued, from the clock.
+         */
+        Outbound(final OutboundLane lane, final OutboundTarget target, final Iterator<String> lines,
+                 final boolean pack, final long enqueued) {
+            this.lane = lane;
+            this.target = target;
+            this.key = target.getKey();
+            this.lines = lines;
+            this.pack = pack;
+            this.enqueued = enqueued;
+        }
+
+        /**
+         * Pulls the next line that has something in it, and sets pulledBytes to its length.
+         * @return The line, or null if there are no more.
+         */
+        private String pull() {
+            if (pending != null) {
+                String line = pending;
+                pulledBytes = pendingBytes;
+                pending = null;
+                return line;
+            }
+            while (lines.hasNext()) {
+                String line = lines.next();
+                if (line != null && !line.isEmpty()) {
+                    pulledBytes = LineSplitter.byteLength(line);
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Builds the next message, packing in as many following lines as fit, or splitting a line that is too long.
+         * @param packLength The longest message lines are packed into, in characters.
+         * @param budget The most bytes a message may have.
+         * @return The message, or null if there are no more lines.
+         */
+        String nextMessage(final int packLength, final int budget) {
+            if (!pieces.isEmpty()) {
+                return pieces.pollFirst();
+            }
+            String first = pull();
+            if (first == null) {
+                return null;
+            }
+            int bytes = pulledBytes;
+            if (!pack || first.length() + PACK_SEPARATOR.length() >= packLength
+                    || bytes + PACK_SEPARATOR.length() >= budget) {
+                return split(first, bytes, budget);
+            }
+            StringBuilder message = new StringBuilder(packLength).append(first);
+            String line = pull();
+            while (line != null && message.length() + PACK_SEPARATOR.length() + line.length() <= packLength
+                    && bytes + PACK_SEPARATOR.length() + pulledBytes <= budget) {
+                message.append(PACK_SEPARATOR).append(line);
+                bytes += PACK_SEPARATOR.length() + pulledBytes;
+                line = pull();
+            }
+            pending = line;
+            pendingBytes = pulledBytes;
+            return message.toString();
+        }
+
+        /**
+         * Splits a message that is too long for one line, keeping the rest for later.
+         * @param message The message.
+         * @param bytes The UTF-8 length of the message.
+         * @param budget The most bytes a line may have.
+         * @return The first line.
+         */
+        private String split(final String message, final int bytes, final int budget) {
+            if (bytes <= budget) {
+                return message;
+            }
+            List<String> split = LineSplitter.split(message, bytes, budget);
+            pieces.addAll(split.subList(1, split.size()));
+            return split.get(0);
+        }
+
+        /**
+         * Returns whether there may be more lines to send.
+         * @return True unless every line has been sent.
+         */
+        boolean hasMore() {
+            return !pieces.isEmpty() || pending != null || lines.hasNext();
+        }
+    }
+
+    /**
+     * The bucket that paces one target, and how long its lines waited.
+     */
+    private static final class TargetState {
+
+        /**
+         * Paces the target's lines.
+         */
+        private TokenBucket bucket;
+        /**
+         * The number of lines sent.
+         */
+        private long lines;
+        /**
+         * The total time lines waited from their response being queued to being sent, in nanoseconds.
+         */
+        private long latencyTotal;
+        /**
+         * The longest time a line waited, in nanoseconds.
+         */
+        private long latencyMax;
+        /**
+         * When a line was last sent, from the clock.
+         */
+        private long lastSent;
+
+        /**
+         * Creates the state of a target.
+         * @param bucket Paces the target's lines.
+         */
+        TargetState(final TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+
+        /**
+         * Takes a token for a line, and records how long it waited.
+         * @param now The current time, from the clock.
+         * @param latency The time from its response being queued.
+         */
+        void take(final long now, final long latency) {
+            bucket.take(now);
+            lines++;
+            latencyTotal += latency;
+            latencyMax = Math.max(latencyMax, latency);
+            lastSent = now;
+        }
+
+        /**
+         * Returns whether the target's bucket and timings can be forgotten, because nothing has gone to it for a
+         * while and its bucket is full.  This says nothing about its queue: a response can have been queued for it
+         * since, and be waiting on the global bucket, so the caller has to check that too.
+         * @param now The current time, from the clock.
+         * @return True if it can be forgotten.
+         */
+        boolean isForgettable(final long now) {
+            return lines > 0 && now - lastSent > TARGET_IDLE_NANOS && bucket.isFull(now);
+        }
+
+        /**
+         * Returns a short summary of the target's timings, in milliseconds.
+         * @return The summary.
+         */
+        @Override
+        public String toString() {
+            return lines + " lines, waited " + TimeUnit.NANOSECONDS.toMillis(latencyTotal / Math.max(1, lines))
+                    + "/" + TimeUnit.NANOSECONDS.toMillis(latencyMax) + "ms avg/max";
+        }
+    }
+
+    /**
+     * The timings of one lane.
+     */
+    private static final class LaneStats {
+
+        /**
+         * The number of responses that sent their first message.
+         */
+        private long responses;
+        /**
+         * The total time from queuing to first message, in nanoseconds.
+         */
+        private long firstTotal;
+        /**
+         * The longest time from queuing to first message, in nanoseconds.
+         */
+        private long firstMax;
+        /**
+         * The number of responses that sent their last message.
+         */
+        private long drained;
+        /**
+         * The total time from queuing to last message, in nanoseconds.
+         */
+        private long drainTotal;
+        /**
+         * The longest time from queuing to last message, in nanoseconds.
+         */
+        private long drainMax;
+
+        /**
+         * Records the time a response took to send its first message.
+         * @param nanos The time from queuing.
+         */
+        synchronized void recordFirst(final long nanos) {
+            responses++;
+            firstTotal += nanos;
+            firstMax = Math.max(firstMax, nanos);
+        }
+
+        /**
+         * Records the time a response took to send its last message.
+         * @param nanos The time from queuing.
+         */
+        synchronized void recordDrained(final long nanos) {
+            drained++;
+            drainTotal += nanos;
+            drainMax = Math.max(drainMax, nanos);
+        }
+
+        /**
+         * Returns a short summary of the timings, in milliseconds.
+         * @return The summary.
+         */
+        @Override
+        public synchronized String toString() {
+            if (responses == 0) {
+                return "idle";
+            }
+            return responses + " sent, first line " + millis(firstTotal / responses) + "/" + millis(firstMax)
+                    + "ms avg/max, drained " + millis(drainTotal / Math.max(1, drained)) + "/" + millis(drainMax)
+                    + "ms";
+        }
+
+        /**
+         * Converts nanoseconds to whole milliseconds.
+         * @param nanos The time.
+         * @return The time in milliseconds.
+         */
+        private static long millis(final long nanos) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package net.alureon.ircbutt.outbound;
+
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Where an outbound message goes: the channel or nick it is paced by, the sender that sends it, and the fixed text
+ * the sender wraps around it on the wire (such as "PRIVMSG #channel :nick: ").  The length of that text is worked
+ * out once, so each message only has its own length counted when it is split to fit a line.
+ */
+public final class OutboundTarget {
+
+    /**
+     * The text /me actions are wrapped in.
+     */
+    private static final String ACTION_START = "\u0001ACTION ";
+    /**
+     * The text that ends a /me action.
+     */
+    private static final String ACTION_END = "\u0001";
+    /**
+     * The channel or nick, lower cased, which messages to it are paced by.
+     */
+    private final String key;
+    /**
+     * Sends one message.
+     */
+    private final Consumer<String> sink;
+    /**
+     * The UTF-8 length of the text the sender wraps around each message.
+     */
+    private final int framingBytes;
+
+    /**
+     * Creates a target.
+     * @param name The channel or nick.
+     * @param framing All the text the sender adds to each message, not counting the server's prefix or the line
+     *                ending.
+     * @param sink Sends one message.
+     */
+    public OutboundTarget(final String name, final String framing, final Consumer<String> sink) {
+        this.key = name.toLowerCase(Locale.ROOT);
+        this.sink = sink;
+        this.framingBytes = LineSplitter.byteLength(framing);
+    }
+
+    /**
+     * Creates a target for PRIVMSGs to a channel or user.
+     * @param target The channel or nick.
+     * @param prefix The text the sender puts before each message, such as "nick: " (may be empty).
+     * @param sink Sends one message.
+     * @return The target.
+     */
+    public static OutboundTarget message(final String target, final String prefix, final Consumer<String> sink) {
+        return new OutboundTarget(target, "PRIVMSG " + target + " :" + prefix, sink);
+    }
+
+    /**
+     * Creates a target for /me actions in a channel or to a user.
+     * @param target The channel or nick.
+     * @param sink Sends one action.
+     * @return The target.
+     */
+    public static OutboundTarget action(final String target, final Consumer<String> sink) {
+        return new OutboundTarget(target, "PRIVMSG " + target + " :" + ACTION_START + ACTION_END, sink);
+    }
+
+    /**
+     * Sends one message.
+     * @param message The message, which must fit on a line.
+     */
+    void send(final String message) {
+        sink.accept(message);
+    }
+
+    /**
+     * Returns the key messages to the target are paced by: the channel or nick, lower cased.
+     * @return The key.
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the UTF-8 length of the text the sender wraps around each message.
+     * @return The length in bytes.
+     */
+    int getFramingBytes() {
+        return framingBytes;
+    }
+}
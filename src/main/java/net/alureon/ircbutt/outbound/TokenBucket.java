@@ -0,0 +1,64 @@
+package net.alureon.ircbutt.outbound;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces lines with a token bucket: up to a burst of lines may go out at once, after which one more line is
+ * allowed every interval.  Rather than counting tokens, the bucket keeps the time at which it will be full again,
+ * so taking a token and checking when the next one is due are both a little arithmetic on one long.
+ * <p>
+ * Not thread safe; the OutboundPipeline only uses its buckets while holding its lock.
+ */
+final class TokenBucket {
+
+    /**
+     * The most lines that may go out at once.
+     */
+    private final int burst;
+    /**
+     * The time it takes for one token to come back, in nanoseconds.
+     */
+    private final long interval;
+    /**
+     * When the bucket will be full again, from the clock.
+     */
+    private long fullAt;
+
+    /**
+     * Creates a full bucket.
+     * @param burst The most lines that may go out at once, at least 1.
+     * @param millisPerLine How often one more line is allowed once the burst is used up, in milliseconds.
+     * @param now The current time, from the clock.
+     */
+    TokenBucket(final int burst, final int millisPerLine, final long now) {
+        this.burst = Math.max(1, burst);
+        this.interval = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millisPerLine));
+        this.fullAt = now;
+    }
+
+    /**
+     * Returns how long until a token is available.
+     * @param now The current time, from the clock.
+     * @return The wait in nanoseconds, or 0 if a token is available now.
+     */
+    long nanosUntilAvailable(final long now) {
+        return Math.max(0, fullAt - now - (burst - 1) * interval);
+    }
+
+    /**
+     * Takes a token.  Check that one is available first.
+     * @param now The current time, from the clock.
+     */
+    void take(final long now) {
+        fullAt = Math.max(fullAt, now) + interval;
+    }
+
+    /**
+     * Returns whether the bucket is full, so forgetting it would change nothing.
+     * @param now The current time, from the clock.
+     * @return True if it is full.
+     */
+    boolean isFull(final long now) {
+        return fullAt <= now;
+    }
+}
@@ -0,0 +1,57 @@
+package net.alureon.ircbutt.regex;
+
+/**
+ * Wraps the text a regex is run against, and counts every character the matcher reads.  A matcher that keeps
+ * backtracking keeps reading characters, so this is where a runaway regex is stopped: every few thousand reads
+ * the budget is checked, and a {@link RegexAbortedException} is thrown if the budget is spent, its deadline has
+ * passed, or the matching thread has been interrupted.
+ */
+final class BudgetedCharSequence implements CharSequence {
+
+    /**
+     * The text being matched.
+     */
+    private final CharSequence text;
+    /**
+     * The budget the reads are counted against.
+     */
+    private final RegexBudget budget;
+
+    /**
+     * Wraps some text.
+     * @param text The text being matched.
+     * @param budget The budget the reads are counted against.
+     */
+    BudgetedCharSequence(final CharSequence text, final RegexBudget budget) {
+        this.text = text;
+        this.budget = budget;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        budget.step();
+        return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    /**
+     * Returns part of the unwrapped text.  The matcher only asks for this to copy out groups and the text
+     * between matches, which is cheap, so it isn't counted.
+     * @param start The index of the first character.
+     * @param end The index after the last character.
+     * @return The characters.
+     */
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,21 @@
+package net.alureon.ircbutt.regex;
+
+/**
+ * Thrown when a regex is stopped for running past its budget, or isn't run at all because the user has used up
+ * their quota.  The message is meant to be shown to users as is.
+ */
+public final class RegexAbortedException extends RuntimeException {
+
+    /**
+     * The version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new exception.
+     * @param message Why the regex was stopped, for the user.
+     */
+    public RegexAbortedException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,126 @@
+package net.alureon.ircbutt.regex;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The time and steps one user's regex is allowed, from {@link RegexService#begin(String)}.  Every match run
+ * through the budget shares it, so a command that runs a regex against many lines is limited as a whole.
+ * Closing the budget charges the time spent to the user's quota.
+ */
+public final class RegexBudget implements AutoCloseable {
+
+    /**
+     * How many characters are read between checks of the deadline, so the clock isn't read on every character.
+     */
+    private static final int CHECK_INTERVAL = 4096;
+    /**
+     * The service the budget came from.
+     */
+    private final RegexService service;
+    /**
+     * The user being charged, or null if nobody is.
+     */
+    private final String user;
+    /**
+     * When the budget was started, from System.nanoTime().
+     */
+    private final long started;
+    /**
+     * When the budget runs out, from System.nanoTime().
+     */
+    private final long deadline;
+    /**
+     * The most characters that may be read.
+     */
+    private final long maxSteps;
+    /**
+     * The characters read so far.
+     */
+    private long steps;
+    /**
+     * True once the time spent has been charged.
+     */
+    private boolean closed;
+
+    /**
+     * Starts a budget.
+     * @param service The service the budget came from.
+     * @param user The user being charged, or null if nobody is.
+     * @param budgetNanos How long the regexes may run for in total.
+     * @param maxSteps The most characters that may be read.
+     */
+    RegexBudget(final RegexService service, final String user, final long budgetNanos, final long maxSteps) {
+        this.service = service;
+        this.user = user;
+        this.started = System.nanoTime();
+        this.deadline = started + budgetNanos;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Counts a character read by the matcher, and stops the match if the budget is spent.
+     */
+    void step() {
+        steps++;
+        if (steps % CHECK_INTERVAL == 0) {
+            if (steps >= maxSteps || System.nanoTime() - deadline > 0) {
+                service.recordAborted(user, steps);
+                throw new RegexAbortedException("that regex took too long, butt gave up on it");
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RegexAbortedException("that regex got interrupted");
+            }
+        }
+    }
+
+    /**
+     * Returns a matcher for some text that counts against this budget.
+     * @param pattern The regex.
+     * @param text The text to match.
+     * @return The matcher.
+     */
+    public Matcher matcher(final Pattern pattern, final CharSequence text) {
+        return pattern.matcher(new BudgetedCharSequence(text, this));
+    }
+
+    /**
+     * Returns whether a regex matches part of some text.
+     * @param pattern The regex.
+     * @param text The text.
+     * @return True if there is a match.
+     * @throws RegexAbortedException If the budget runs out.
+     */
+    public boolean find(final Pattern pattern, final CharSequence text) {
+        return matcher(pattern, text).find();
+    }
+
+    /**
+     * Replaces the first match of a regex, or every match, like String.replaceFirst() and String.replaceAll().
+     * @param pattern The regex.
+     * @param replacement The replacement, which may refer to groups with $.
+     * @param text The text.
+     * @param all True to replace every match, false to replace only the first.
+     * @return The text with the replacements made.
+     * @throws RegexAbortedException If the budget runs out.
+     * @throws IllegalArgumentException If the replacement refers to a group that doesn't exist.
+     */
+    public String replace(final Pattern pattern, final String replacement, final String text, final boolean all) {
+        Matcher matcher = matcher(pattern, text);
+        if (all) {
+            return matcher.replaceAll(replacement);
+        }
+        return matcher.replaceFirst(replacement);
+    }
+
+    /**
+     * Charges the time spent to the user's quota.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            service.charge(user, System.nanoTime() - started);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package net.alureon.ircbutt.regex;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Runs regexes that users type in, such as s/// corrections, regex game guesses and !grep searches.  Compiled
+ * patterns are kept in a small least-recently-used cache, since the same few regexes tend to be typed over and
+ * over.  Every run gets a {@link RegexBudget} that stops the matcher once it has spent too long (a regex like
+ * (.*a){12}b can otherwise backtrack for hours), and the time each user spends is added up over a minute so one
+ * user can't keep the bot busy with a stream of slow regexes.
+ */
+public final class RegexService {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * The default number of compiled patterns to keep.
+     */
+    private static final int DEFAULT_CACHE_SIZE = 256;
+    /**
+     * The default time a single command's regexes may run for, in milliseconds.
+     */
+    private static final int DEFAULT_BUDGET_MILLIS = 250;
+    /**
+     * The default time each user's regexes may run for in a minute, in milliseconds.
+     */
+    private static final int DEFAULT_QUOTA_MILLIS = 2000;
+    /**
+     * The longest regex that will be compiled.
+     */
+    private static final int MAX_REGEX_LENGTH = 512;
+    /**
+     * The most characters a single command's regexes may read, however fast the machine is.
+     */
+    private static final long MAX_STEPS = 50_000_000L;
+    /**
+     * The period each user's quota covers.
+     */
+    private static final long QUOTA_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    /**
+     * The number of users whose quota is tracked before users whose window has ended are forgotten.
+     */
+    private static final int MAX_TRACKED_USERS = 1024;
+    /**
+     * The initial capacity of the pattern cache.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * The load factor of the pattern cache.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * The compiled patterns, in least-recently-used order.
+     */
+    private final LinkedHashMap<String, Pattern> patterns = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR,
+            true);
+    /**
+     * The time spent by each user (in lower case) in their current window.
+     */
+    private final ConcurrentMap<String, Quota> quotas = new ConcurrentHashMap<>();
+    /**
+     * The most compiled patterns to keep.
+     */
+    private volatile int cacheSize;
+    /**
+     * How long a single command's regexes may run for, in nanoseconds.
+     */
+    private volatile long budgetNanos;
+    /**
+     * How long each user's regexes may run for in a minute, in nanoseconds.
+     */
+    private volatile long quotaNanos;
+    /**
+     * The number of compiles answered from the cache.
+     */
+    private long hits;
+    /**
+     * The number of compiles that had to compile the pattern.
+     */
+    private long misses;
+    /**
+     * The number of regexes stopped for running too long.
+     */
+    private final AtomicLong aborted = new AtomicLong();
+    /**
+     * The number of regexes not run because the user was out of quota.
+     */
+    private final AtomicLong refused = new AtomicLong();
+
+    /**
+     * Creates a new RegexService with the default limits.
+     */
+    public RegexService() {
+        this(DEFAULT_CACHE_SIZE, DEFAULT_BUDGET_MILLIS, DEFAULT_QUOTA_MILLIS);
+    }
+
+    /**
+     * Creates a new RegexService.
+     * @param cacheSize The most compiled patterns to keep.
+     * @param budgetMillis How long a single command's regexes may run for, in milliseconds.
+     * @param quotaMillis How long each user's regexes may run for in a minute, in milliseconds.
+     */
+    public RegexService(final int cacheSize, final int budgetMillis, final int quotaMillis) {
+        this.cacheSize = Math.max(1, cacheSize);
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.quotaNanos = TimeUnit.MILLISECONDS.toNanos(quotaMillis);
+    }
+
+    /**
+     * Changes the limits, when the config is reloaded, dropping the least recently used patterns if the cache is
+     * now too big.
+     * @param newCacheSize The most compiled patterns to keep.
+     * @param budgetMillis How long a single command's regexes may run for, in milliseconds.
+     * @param quotaMillis How long each user's regexes may run for in a minute, in milliseconds.
+     */
+    public void reconfigure(final int newCacheSize, final int budgetMillis, final int quotaMillis) {
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.quotaNanos = TimeUnit.MILLISECONDS.toNanos(quotaMillis);
+        synchronized (patterns) {
+            this.cacheSize = Math.max(1, newCacheSize);
+            trim();
+        }
+    }
+
+    /**
+     * Drops the least recently used patterns until the cache fits.  The caller must hold the patterns' lock.
+     */
+    private void trim() {
+        Iterator<Pattern> iterator = patterns.values().iterator();
+        while (patterns.size() > cacheSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Compiles a regex, or returns it from the cache if it was compiled recently.
+     * @param regex The regex.
+     * @return The compiled pattern.
+     * @throws PatternSyntaxException If the regex is invalid or too long.
+     */
+    public Pattern compile(final String regex) {
+        synchronized (patterns) {
+            Pattern pattern = patterns.get(regex);
+            if (pattern != null) {
+                hits++;
+                return pattern;
+            }
+            misses++;
+        }
+        if (regex.length() > MAX_REGEX_LENGTH) {
+            throw new PatternSyntaxException("Regex is longer than " + MAX_REGEX_LENGTH + " characters", regex, -1);
+        }
+        Pattern pattern = Pattern.compile(regex);
+        synchronized (patterns) {
+            patterns.put(regex, pattern);
+            trim();
+        }
+        return pattern;
+    }
+
+    /**
+     * Starts a budget for running a user's regexes.  Close it when done, to charge the time to the user.
+     * @param user The nick of the user, or null to not charge anyone (the budget still applies).
+     * @return The budget.
+     * @throws RegexAbortedException If the user has used up their quota.
+     */
+    public RegexBudget begin(final String user) {
+        long budget = budgetNanos;
+        if (user != null) {
+            long remaining = quotaFor(user).remaining(System.nanoTime());
+            if (remaining <= 0) {
+                refused.incrementAndGet();
+                throw new RegexAbortedException("slow down " + user + ", butt's tired of running your regexes");
+            }
+            budget = Math.min(budget, remaining);
+        }
+        return new RegexBudget(this, user, budget, MAX_STEPS);
+    }
+
+    /**
+     * Returns the quota of a user, creating it if needed.
+     * @param user The nick of the user.
+     * @return The user's quota.
+     */
+    private Quota quotaFor(final String user) {
+        if (quotas.size() > MAX_TRACKED_USERS) {
+            long now = System.nanoTime();
+            quotas.values().removeIf(quota -> quota.isExpired(now));
+        }
+        return quotas.computeIfAbsent(user.toLowerCase(Locale.ROOT), u -> new Quota());
+    }
+
+    /**
+     * Charges time spent running regexes to a user.  Called when a budget is closed.
+     * @param user The nick of the user, or null if nobody is charged.
+     * @param nanos The time spent.
+     */
+    void charge(final String user, final long nanos) {
+        if (user != null) {
+            quotaFor(user).charge(System.nanoTime(), nanos);
+        }
+    }
+
+    /**
+     * Records that a regex was stopped for running too long.  Called by the budget that stopped it.
+     * @param user The nick of the user, or null.
+     * @param steps The characters the regex had read.
+     */
+    void recordAborted(final String user, final long steps) {
+        aborted.incrementAndGet();
+        log.warn("Stopped a runaway regex from " + user + " after " + steps + " steps");
+    }
+
+    /**
+     * Returns a short summary of the cache and quotas, for the stats command.
+     * @return The summary.
+     */
+    public String getStats() {
+        int size;
+        long hitCount;
+        long missCount;
+        synchronized (patterns) {
+            size = patterns.size();
+            hitCount = hits;
+            missCount = misses;
+        }
+        return "regex: " + size + "/" + cacheSize + " patterns, " + hitCount + " hits, " + missCount + " misses, "
+                + aborted.get() + " aborted, " + refused.get() + " refused";
+    }
+
+    /**
+     * The time one user has spent running regexes in the current window.
+     */
+    private final class Quota {
+
+        /**
+         * When the current window started, from System.nanoTime().
+         */
+        private long windowStart = System.nanoTime();
+        /**
+         * The time spent in the current window.
+         */
+        private long used;
+
+        /**
+         * Starts a new window if the current one has ended.  The caller must hold the lock.
+         * @param now The current time, from System.nanoTime().
+         */
+        private void roll(final long now) {
+            if (now - windowStart >= QUOTA_WINDOW_NANOS) {
+                windowStart = now;
+                used = 0;
+            }
+        }
+
+        /**
+         * Returns how much time the user has left in the current window.
+         * @param now The current time, from System.nanoTime().
+         * @return The time left (may be negative if the user ran over).
+         */
+        synchronized long remaining(final long now) {
+            roll(now);
+            return quotaNanos - used;
+        }
+
+        /**
+         * Adds time spent to the current window.
+         * @param now The current time, from System.nanoTime().
+         * @param nanos The time spent.
+         */
+        synchronized void charge(final long now, final long nanos) {
+            roll(now);
+            used += nanos;
+        }
+
+        /**
+         * Returns whether the current window has ended, so the quota can be forgotten.
+         * @param now The current time, from System.nanoTime().
+         * @return True if the window has ended.
+         */
+        synchronized boolean isExpired(final long now) {
+            return now - windowStart >= QUOTA_WINDOW_NANOS;
+        }
+    }
+}
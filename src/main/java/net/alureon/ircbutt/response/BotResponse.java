@@ -1,7 +1,12 @@
 package net.alureon.ircbutt.response;
 
+import net.alureon.ircbutt.outbound.OutboundLane;
 import org.pircbotx.User;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
 /**
  * This class encompasses a bot's response.  The message, the intention,
  * the user the message is directed to, and the event object.
@@ -25,6 +30,18 @@ public final class BotResponse {
      * The bot's intention (chat, private message, etc).
      */
     private BotIntention intention;
+    /**
+     * The lines of a response that is a sequence of lines, generated as they are sent, or null.
+     */
+    private Iterator<String> lines;
+    /**
+     * The lane the response waits in to be sent.
+     */
+    private OutboundLane lane = OutboundLane.INTERACTIVE;
+    /**
+     * Whether short lines of the response may be packed into one message.
+     */
+    private boolean packable = true;
 
     /**
      * Constructor for a BotResponse object.
@@ -53,6 +70,25 @@ public final class BotResponse {
         this.intention = intention;
     }
 
+    /**
+     * Creates a response that is a sequence of lines.  The lines aren't generated until they are about to be
+     * sent, so a long response can start going out before the rest of it exists.
+     * @param intention The intention of the bot.
+     * @param recipient The intended recipient (may be null).
+     * @param lane The lane the response waits in to be sent.
+     * @param packable Whether short lines may be packed into one message, which should be false for a table.
+     * @param lines The lines.
+     * @return The response.
+     */
+    public static BotResponse ofLines(final BotIntention intention, final User recipient, final OutboundLane lane,
+                                      final boolean packable, final Iterator<String> lines) {
+        BotResponse response = new BotResponse(intention, recipient, null);
+        response.lines = lines;
+        response.lane = lane;
+        response.packable = packable;
+        return response;
+    }
+
     /**
      * Get the message the bot wishes to reply with.
      * @return String - the message the bot wishes to relay.
@@ -85,4 +121,38 @@ public final class BotResponse {
         return this.additionalMessage;
     }
 
+    /**
+     * Returns the lines the bot wishes to send: the sequence of lines, or else the message and the additional
+     * message if there is one (nothing if there is no message).
+     * @return The lines, which may only be iterated once.
+     */
+    public Iterator<String> getLines() {
+        if (this.lines != null) {
+            return this.lines;
+        }
+        if (this.message == null) {
+            return Collections.emptyIterator();
+        }
+        if (this.additionalMessage == null) {
+            return Collections.singletonList(this.message).iterator();
+        }
+        return Arrays.asList(this.message, this.additionalMessage).iterator();
+    }
+
+    /**
+     * Returns the lane the response waits in to be sent.
+     * @return The lane.
+     */
+    public OutboundLane getLane() {
+        return this.lane;
+    }
+
+    /**
+     * Returns whether short lines of the response may be packed into one message.
+     * @return True if they may be packed.
+     */
+    public boolean isPackable() {
+        return this.packable;
+    }
+
 }
@@ -0,0 +1,402 @@
+package net.alureon.ircbutt.scrollback;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * The scrollback of a single channel: a directory of segments, oldest first, and the one thread that writes
+ * to them.  Lines are handed to the writer through a bounded queue so the chat listener never waits on the
+ * disk; if the queue is full the line is dropped from the scrollback (it is still in the ChatStorage).
+ * <p>
+ * A new segment is started when the current one is full, or when it has covered its share of the retention
+ * period, and segments older than the retention period are deleted.
+ */
+final class ChannelLog {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * The number of lines that can wait for the writer before new lines are dropped.
+     */
+    private static final int QUEUE_SIZE = 4096;
+    /**
+     * The number of segments the retention period is split into, so old lines are deleted a segment at a time.
+     */
+    private static final int SEGMENTS_PER_RETENTION = 7;
+    /**
+     * The longest a search will wait for the channel's segments to be loaded, in seconds.
+     */
+    private static final long LOAD_WAIT_SECONDS = 5;
+    /**
+     * The channel this is the scrollback of.
+     */
+    private final String channel;
+    /**
+     * The directory the channel's segments are in.
+     */
+    private final Path directory;
+    /**
+     * How long lines are kept, in milliseconds.
+     */
+    private final long retentionMillis;
+    /**
+     * The size of each segment file.
+     */
+    private final int segmentBytes;
+    /**
+     * The segments, oldest first.
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    /**
+     * Guards the list of segments and their indexes.  Only the writer thread takes the write lock.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * The thread that loads and appends to the segments.
+     */
+    private final ExecutorService writer;
+    /**
+     * The number of lines dropped because the writer had fallen behind or the disk failed.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+    /**
+     * Released once the segments already on disk have been loaded.
+     */
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    /**
+     * Creates the scrollback for a channel and starts loading its existing segments in the background.
+     * @param channel The channel key.
+     * @param directory The directory the channel's segments are in.
+     * @param retentionMillis How long lines are kept, in milliseconds.
+     * @param segmentBytes The size of each segment file.
+     */
+    ChannelLog(final String channel, final Path directory, final long retentionMillis, final int segmentBytes) {
+        this.channel = channel;
+        this.directory = directory;
+        this.retentionMillis = retentionMillis;
+        this.segmentBytes = segmentBytes;
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "scrollback-" + channel);
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, executor) -> {
+                    dropped.incrementAndGet();
+                    if (runnable instanceof Future) {
+                        ((Future<?>) runnable).cancel(false);
+                    }
+                });
+        writer.execute(this::load);
+    }
+
+    /**
+     * Maps and indexes the segments already on disk.  Runs on the writer thread.
+     */
+    private void load() {
+        List<Segment> found = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + Segment.EXTENSION)) {
+                for (Path file : files) {
+                    try {
+                        found.add(Segment.open(file));
+                    } catch (IOException | NumberFormatException ex) {
+                        log.warn("Skipping unreadable scrollback segment " + file + ": " + ex.getMessage());
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            log.error("Unable to load the scrollback of " + channel + ": " + ex.getMessage());
+        }
+        found.sort(Comparator.comparingLong(Segment::getFirstTime));
+        lock.writeLock().lock();
+        try {
+            segments.addAll(0, found);
+        } finally {
+            lock.writeLock().unlock();
+            loaded.countDown();
+        }
+        log.info("Loaded " + found.size() + " scrollback segments for " + channel);
+    }
+
+    /**
+     * Waits for the segments already on disk to be loaded, so a search straight after startup sees them.
+     */
+    private void awaitLoaded() {
+        try {
+            if (!loaded.await(LOAD_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Searching the scrollback of " + channel + " before it has finished loading");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a line to be written.  Never blocks.
+     * @param time When the line was said.
+     * @param nick The nick that said the line.
+     * @param message The line.
+     */
+    void append(final long time, final String nick, final String message) {
+        writer.execute(() -> write(time, nick, message));
+    }
+
+    /**
+     * Writes a line, starting a new segment and deleting expired ones if needed.  Runs on the writer thread.
+     * @param time When the line was said.
+     * @param nick The nick that said the line.
+     * @param message The line.
+     */
+    private void write(final long time, final String nick, final String message) {
+        lock.writeLock().lock();
+        try {
+            Segment current = null;
+            if (!segments.isEmpty()) {
+                current = segments.get(segments.size() - 1);
+            }
+            if (current == null || time - current.getFirstTime() >= retentionMillis / SEGMENTS_PER_RETENTION
+                    || !current.append(time, nick, message)) {
+                if (current != null) {
+                    current.force();
+                }
+                current = Segment.create(directory, Math.max(time, nextSegmentTime()), segmentBytes);
+                segments.add(current);
+                if (!current.append(time, nick, message)) {
+                    dropped.incrementAndGet();
+                }
+            }
+            expire(time);
+        } catch (IOException ex) {
+            dropped.incrementAndGet();
+            log.error("Unable to write to the scrollback of " + channel + ": " + ex.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the earliest name the next segment can have without clashing with the current one.
+     * @return The time in epoch millis.
+     */
+    private long nextSegmentTime() {
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        return segments.get(segments.size() - 1).getFirstTime() + 1;
+    }
+
+    /**
+     * Deletes every segment whose lines are all older than the retention period.  The caller must hold the
+     * write lock.
+     * @param now The current time in epoch millis.
+     */
+    private void expire(final long now) {
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segments.size() == 1 || now - segment.getLastTime() < retentionMillis) {
+                return;
+            }
+            iterator.remove();
+            try {
+                segment.delete();
+            } catch (IOException ex) {
+                log.warn("Unable to delete expired scrollback segment: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Searches the scrollback, newest lines first.
+     * @param matches Returns true for lines that contain a match for the regex.
+     * @param required The trigrams every match must contain, from Trigrams.required().
+     * @param nick The nick that must have said the line, or null for anyone.
+     * @param limit The most lines to return.
+     * @return The matching lines, newest first.
+     */
+    List<ScrollbackRecord> grep(final Predicate<String> matches, final Set<Integer> required, final String nick,
+                                final int limit) {
+        List<ScrollbackRecord> found = new ArrayList<>();
+        String nickKey = null;
+        if (nick != null) {
+            nickKey = nick.toLowerCase(Locale.ROOT);
+        }
+        awaitLoaded();
+        lock.readLock().lock();
+        try {
+            for (int s = segments.size() - 1; s >= 0 && found.size() < limit; s--) {
+                Segment segment = segments.get(s);
+                int[] offsets = segment.candidates(required, nickKey);
+                if (offsets == null) {
+                    offsets = segment.allOffsets();
+                }
+                for (int i = offsets.length - 1; i >= 0 && found.size() < limit; i--) {
+                    ScrollbackRecord record = segment.read(offsets[i]);
+                    if (matches.test(record.getMessage())) {
+                        found.add(record);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return found;
+    }
+
+    /**
+     * Returns a line said by a nick.
+     * @param nick The nick.
+     * @param back How many of the nick's lines back to go, 0 being the most recent.
+     * @return The line, or null if the scrollback doesn't go back that far.
+     */
+    ScrollbackRecord quoteFrom(final String nick, final int back) {
+        String nickKey = nick.toLowerCase(Locale.ROOT);
+        int remaining = back;
+        awaitLoaded();
+        lock.readLock().lock();
+        try {
+            for (int s = segments.size() - 1; s >= 0; s--) {
+                int[] offsets = segments.get(s).candidates(Collections.<Integer>emptySet(), nickKey);
+                if (remaining < offsets.length) {
+                    return segments.get(s).read(offsets[offsets.length - 1 - remaining]);
+                }
+                remaining -= offsets.length;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return null;
+    }
+
+    /**
+     * Waits for every queued line to be written.  For tests and shutdown.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    void flush() throws InterruptedException {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (ExecutionException | CancellationException ex) {
+            log.warn("Couldn't wait for the scrollback writer for " + channel + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes everything to disk and stops the writer.
+     */
+    void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of segments.
+     * @return The number of segments.
+     */
+    int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of lines in the scrollback.
+     * @return The number of lines.
+     */
+    long getRecordCount() {
+        lock.readLock().lock();
+        try {
+            long records = 0;
+            for (Segment segment : segments) {
+                records += segment.getRecords();
+            }
+            return records;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the size of the segment files.
+     * @return The size in bytes.
+     */
+    long getFileBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Segment segment : segments) {
+                bytes += segment.getFileBytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the approximate heap used by the index.
+     * @return The size in bytes.
+     */
+    long getIndexBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Segment segment : segments) {
+                bytes += segment.getIndexBytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of lines that were never written.
+     * @return The number of dropped lines.
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+}
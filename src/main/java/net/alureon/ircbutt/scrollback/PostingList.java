@@ -0,0 +1,85 @@
+package net.alureon.ircbutt.scrollback;
+
+import java.util.Arrays;
+
+/**
+ * A growable, ascending list of record offsets within a segment, one per trigram or nick in the index.
+ */
+final class PostingList {
+
+    /**
+     * The initial capacity of a list.  Most trigrams only appear a few times.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+    /**
+     * The offsets, in ascending order.
+     */
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    /**
+     * The number of offsets in the list.
+     */
+    private int size;
+
+    /**
+     * Adds an offset, which must not be lower than the last one added.  Adding the last offset again does
+     * nothing, so a trigram that appears twice in one line is only listed once.
+     * @param offset The record offset.
+     */
+    void add(final int offset) {
+        if (size > 0 && offsets[size - 1] == offset) {
+            return;
+        }
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size++] = offset;
+    }
+
+    /**
+     * Returns the number of offsets in the list.
+     * @return The size.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of the offsets.
+     * @return The offsets, in ascending order.
+     */
+    int[] toArray() {
+        return Arrays.copyOf(offsets, size);
+    }
+
+    /**
+     * Returns the offsets that are both in this list and in a sorted array.
+     * @param sorted The other offsets, in ascending order.
+     * @return The offsets in both, in ascending order.
+     */
+    int[] intersect(final int[] sorted) {
+        int[] result = new int[Math.min(size, sorted.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < sorted.length) {
+            if (offsets[i] < sorted[j]) {
+                i++;
+            } else if (offsets[i] > sorted[j]) {
+                j++;
+            } else {
+                result[count++] = offsets[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the approximate heap used by the list, for reporting.
+     * @return The size in bytes.
+     */
+    long getEstimatedBytes() {
+        return (long) offsets.length * Integer.BYTES;
+    }
+}
@@ -0,0 +1,220 @@
+package net.alureon.ircbutt.scrollback;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps every channel's chatter on disk, so it survives a restart and can be searched with !grep.  Each channel
+ * has its own directory of memory-mapped segment files, written by its own thread, and an in-memory trigram
+ * index of each segment so that a search only reads the lines that could match.  Channels are loaded from disk
+ * when they are opened, or the first time they are used.
+ */
+public final class ScrollbackManager {
+
+    /**
+     * The smallest segment file, so that any IRC line fits in an empty segment.
+     */
+    private static final int MIN_SEGMENT_BYTES = 65536;
+    /**
+     * The number of bytes in a kibibyte, for reporting.
+     */
+    private static final int KIBIBYTE = 1024;
+    /**
+     * The directory holding a subdirectory for each channel.
+     */
+    private final Path directory;
+    /**
+     * How long lines are kept, in milliseconds.
+     */
+    private final long retentionMillis;
+    /**
+     * The size of each segment file.
+     */
+    private final int segmentBytes;
+    /**
+     * False if the scrollback is turned off, in which case nothing is written and searches find nothing.
+     */
+    private final boolean enabled;
+    /**
+     * The scrollback of each channel, by channel key.
+     */
+    private final ConcurrentMap<String, ChannelLog> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new ScrollbackManager.
+     * @param enabled False to turn the scrollback off.
+     * @param directory The directory holding a subdirectory for each channel.
+     * @param retentionMillis How long lines are kept, in milliseconds.
+     * @param segmentBytes The size of each segment file.
+     */
+    public ScrollbackManager(final boolean enabled, final Path directory, final long retentionMillis,
+                             final int segmentBytes) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.retentionMillis = retentionMillis;
+        this.segmentBytes = Math.max(segmentBytes, MIN_SEGMENT_BYTES);
+    }
+
+    /**
+     * Turns a channel key into a directory name that is safe on any filesystem.
+     * @param channel The channel key.
+     * @return The directory name.
+     */
+    static String directoryName(final String channel) {
+        return channel.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * Returns the scrollback of a channel, loading it if this is the first time it has been used.
+     * @param channel The channel key.
+     * @return The channel's scrollback.
+     */
+    private ChannelLog channel(final String channel) {
+        return channels.computeIfAbsent(channel, c -> new ChannelLog(c, directory.resolve(directoryName(c)),
+                retentionMillis, segmentBytes));
+    }
+
+    /**
+     * Starts loading the scrollback of some channels in the background, so it is ready before anyone asks.
+     * @param channelKeys The channel keys, from NetworkManager.getChannelKey().
+     */
+    public void open(final Collection<String> channelKeys) {
+        if (enabled) {
+            for (String channel : channelKeys) {
+                channel(channel);
+            }
+        }
+    }
+
+    /**
+     * Queues a line of chatter to be written to its channel's scrollback.  Never blocks.
+     * @param channel The channel key, from NetworkManager.getChannelKey() (may be null, in which case nothing is kept).
+     * @param nick The nick that said the line.
+     * @param message The line.
+     */
+    public void append(final String channel, final String nick, final String message) {
+        append(channel, nick, message, System.currentTimeMillis());
+    }
+
+    /**
+     * Queues a line of chatter, said at the given time.
+     * @param channel The channel key (may be null, in which case nothing is kept).
+     * @param nick The nick that said the line.
+     * @param message The line.
+     * @param time When the line was said, in epoch millis.
+     */
+    void append(final String channel, final String nick, final String message, final long time) {
+        if (enabled && channel != null) {
+            channel(channel).append(time, nick, message);
+        }
+    }
+
+    /**
+     * Searches a channel's scrollback, newest lines first.
+     * @param channel The channel key (may be null, in which case nothing is found).
+     * @param pattern The regex lines must contain a match for.
+     * @param nick The nick that must have said the line, or null for anyone.
+     * @param limit The most lines to return.
+     * @return The matching lines, newest first (may be empty).
+     */
+    public List<ScrollbackRecord> grep(final String channel, final Pattern pattern, final String nick,
+                                       final int limit) {
+        return grep(channel, pattern, nick, limit, line -> pattern.matcher(line).find());
+    }
+
+    /**
+     * Searches a channel's scrollback, newest lines first, checking each candidate line with the given matcher.
+     * Lets the search run the regex on a user's budget.
+     * @param channel The channel key (may be null, in which case nothing is found).
+     * @param pattern The regex lines must contain a match for, used to pick the candidate lines from the index.
+     * @param nick The nick that must have said the line, or null for anyone.
+     * @param limit The most lines to return.
+     * @param matches Returns true for lines that contain a match for the regex.
+     * @return The matching lines, newest first (may be empty).
+     */
+    public List<ScrollbackRecord> grep(final String channel, final Pattern pattern, final String nick,
+                                       final int limit, final Predicate<String> matches) {
+        if (!enabled || channel == null) {
+            return Collections.emptyList();
+        }
+        Set<Integer> required = Trigrams.required(pattern.pattern());
+        return channel(channel).grep(matches, required, nick, limit);
+    }
+
+    /**
+     * Returns a line said by a nick, for grabbing lines the ChatStorage no longer has (such as after a restart).
+     * @param channel The channel key (may be null, in which case nothing is found).
+     * @param nick The nick.
+     * @param back How many of the nick's lines back to go, 0 being the most recent.
+     * @return The line, or null if the scrollback doesn't go back that far.
+     */
+    public String getQuoteFrom(final String channel, final String nick, final int back) {
+        if (!enabled || channel == null || nick == null || back < 0) {
+            return null;
+        }
+        ScrollbackRecord record = channel(channel).quoteFrom(nick, back);
+        if (record == null) {
+            return null;
+        }
+        return record.getMessage();
+    }
+
+    /**
+     * Returns whether or not the scrollback is turned on.
+     * @return True if lines are being kept.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Waits for every queued line to be written.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    void flush() throws InterruptedException {
+        for (ChannelLog log : channels.values()) {
+            log.flush();
+        }
+    }
+
+    /**
+     * Writes everything to disk and stops the writers.
+     */
+    public void close() {
+        for (ChannelLog log : channels.values()) {
+            log.close();
+        }
+    }
+
+    /**
+     * Returns a short summary of the scrollback, for the stats command.
+     * @return The summary.
+     */
+    public String getStats() {
+        if (!enabled) {
+            return "scrollback: off";
+        }
+        long segments = 0;
+        long lines = 0;
+        long fileBytes = 0;
+        long indexBytes = 0;
+        long dropped = 0;
+        for (ChannelLog log : channels.values()) {
+            segments += log.getSegmentCount();
+            lines += log.getRecordCount();
+            fileBytes += log.getFileBytes();
+            indexBytes += log.getIndexBytes();
+            dropped += log.getDropped();
+        }
+        return "scrollback: " + channels.size() + " channels, " + lines + " lines in " + segments + " segments, "
+                + fileBytes / KIBIBYTE + " KiB on disk, " + indexBytes / KIBIBYTE + " KiB of index, " + dropped
+                + " dropped";
+    }
+}
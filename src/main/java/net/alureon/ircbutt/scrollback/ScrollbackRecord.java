@@ -0,0 +1,61 @@
+package net.alureon.ircbutt.scrollback;
+
+/**
+ * A single line of channel scrollback: when it was said, who said it, and what they said.
+ */
+public final class ScrollbackRecord {
+
+    /**
+     * The time (in epoch millis) the line was said.
+     */
+    private final long time;
+    /**
+     * The nick that said the line.
+     */
+    private final String nick;
+    /**
+     * The line itself.
+     */
+    private final String message;
+
+    /**
+     * Creates a new record.
+     * @param time The time (in epoch millis) the line was said.
+     * @param nick The nick that said the line.
+     * @param message The line itself.
+     */
+    public ScrollbackRecord(final long time, final String nick, final String message) {
+        this.time = time;
+        this.nick = nick;
+        this.message = message;
+    }
+
+    /**
+     * Returns the time the line was said.
+     * @return The time in epoch millis.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the nick that said the line.
+     * @return The nick.
+     */
+    public String getNick() {
+        return nick;
+    }
+
+    /**
+     * Returns the line itself.
+     * @return The message.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "<" + nick + "> " + message;
+    }
+}
@@ -0,0 +1,318 @@
+package net.alureon.ircbutt.scrollback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One append-only, memory-mapped file of a channel's scrollback.  The file is created at its full size (and so
+ * filled with zeros), and each record is written as:
+ * <pre>
+ *     int length    the number of bytes after this field
+ *     long time     when the line was said, in epoch millis
+ *     byte nickLen  the length of the nick
+ *     byte[] nick   the nick, UTF-8
+ *     byte[] text   the line, UTF-8
+ * </pre>
+ * The length is written last, so a record is either all there or (after a crash) reads as the zero that marks
+ * the end of the segment.
+ * <p>
+ * Only the channel's writer thread appends.  Readers only look at records below {@link #getEnd()}, and take the
+ * channel's read lock to use the index.
+ */
+final class Segment {
+
+    /**
+     * The file name extension of segments.
+     */
+    static final String EXTENSION = ".log";
+    /**
+     * The size of a record's header: the length, the time, and the nick length.
+     */
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + 1;
+    /**
+     * The longest nick that can be stored, in bytes.
+     */
+    private static final int MAX_NICK_BYTES = 255;
+    /**
+     * The mask that reads a byte as unsigned.
+     */
+    private static final int UNSIGNED_BYTE = 0xFF;
+    /**
+     * The approximate heap used by each entry of the index maps, for reporting.
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 48;
+    /**
+     * The segment file.
+     */
+    private final Path path;
+    /**
+     * The mapped contents of the file.
+     */
+    private final MappedByteBuffer buffer;
+    /**
+     * The offset the next record will be written at.  Everything below it is a complete record.
+     */
+    private volatile int end;
+    /**
+     * The time (in epoch millis) of the first record, which is also the segment's name.
+     */
+    private final long firstTime;
+    /**
+     * The time (in epoch millis) of the last record.
+     */
+    private volatile long lastTime;
+    /**
+     * The number of records in the segment.
+     */
+    private int records;
+    /**
+     * The offsets of the records containing each trigram.
+     */
+    private final Map<Integer, PostingList> trigrams = new HashMap<>();
+    /**
+     * The offsets of the records said by each nick (in lower case).
+     */
+    private final Map<String, PostingList> nicks = new HashMap<>();
+
+    /**
+     * Maps a segment file.  Existing records are read back and indexed.
+     * @param path The segment file.
+     * @param firstTime The time of the segment's first record.
+     * @param size The size of the file to create, if it doesn't exist.
+     * @throws IOException If the file couldn't be created or mapped.
+     */
+    private Segment(final Path path, final long firstTime, final int size) throws IOException {
+        this.path = path;
+        this.firstTime = firstTime;
+        this.lastTime = firstTime;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long length = Math.max(channel.size(), size);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+        int offset = 0;
+        while (offset + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + Integer.BYTES + length > buffer.capacity()) {
+                break;
+            }
+            ScrollbackRecord record = read(offset);
+            index(offset, record.getNick(), record.getMessage());
+            lastTime = record.getTime();
+            offset += Integer.BYTES + length;
+        }
+        this.end = offset;
+    }
+
+    /**
+     * Creates a new, empty, segment.
+     * @param directory The channel's directory.
+     * @param firstTime The time of the segment's first record.
+     * @param size The size of the segment file.
+     * @return The segment.
+     * @throws IOException If the file couldn't be created.
+     */
+    static Segment create(final Path directory, final long firstTime, final int size) throws IOException {
+        return new Segment(directory.resolve(firstTime + EXTENSION), firstTime, size);
+    }
+
+    /**
+     * Opens an existing segment and indexes its records.
+     * @param path The segment file, named after the time of its first record.
+     * @return The segment.
+     * @throws IOException If the file couldn't be mapped.
+     * @throws NumberFormatException If the file isn't named like a segment.
+     */
+    static Segment open(final Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long firstTime = Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+        return new Segment(path, firstTime, 0);
+    }
+
+    /**
+     * Appends a line, if there's room for it.
+     * @param time When the line was said.
+     * @param nick The nick that said the line.
+     * @param message The line.
+     * @return True if the line was appended, false if the segment is full.
+     */
+    boolean append(final long time, final String nick, final String message) {
+        byte[] nickBytes = nick.getBytes(StandardCharsets.UTF_8);
+        int nickLength = Math.min(nickBytes.length, MAX_NICK_BYTES);
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        int length = Long.BYTES + 1 + nickLength + text.length;
+        int offset = end;
+        if (offset + Integer.BYTES + length > buffer.capacity()) {
+            return false;
+        }
+        ByteBuffer out = buffer.duplicate();
+        out.position(offset + Integer.BYTES);
+        out.putLong(time);
+        out.put((byte) nickLength);
+        out.put(nickBytes, 0, nickLength);
+        out.put(text);
+        buffer.putInt(offset, length);
+        index(offset, new String(nickBytes, 0, nickLength, StandardCharsets.UTF_8), message);
+        lastTime = time;
+        end = offset + Integer.BYTES + length;
+        return true;
+    }
+
+    /**
+     * Adds a record to the index.  The caller must hold the channel's write lock, unless the segment is still
+     * being opened.
+     * @param offset The offset of the record.
+     * @param nick The nick that said the line.
+     * @param message The line.
+     */
+    private void index(final int offset, final String nick, final String message) {
+        for (int trigram : Trigrams.of(message)) {
+            trigrams.computeIfAbsent(trigram, t -> new PostingList()).add(offset);
+        }
+        nicks.computeIfAbsent(nick.toLowerCase(Locale.ROOT), n -> new PostingList()).add(offset);
+        records++;
+    }
+
+    /**
+     * Reads the record at an offset.
+     * @param offset The offset of the record, which must be below {@link #getEnd()}.
+     * @return The record.
+     */
+    ScrollbackRecord read(final int offset) {
+        ByteBuffer in = buffer.duplicate();
+        int length = in.getInt(offset);
+        in.position(offset + Integer.BYTES);
+        long time = in.getLong();
+        int nickLength = in.get() & UNSIGNED_BYTE;
+        byte[] nick = new byte[nickLength];
+        in.get(nick);
+        byte[] text = new byte[length - Long.BYTES - 1 - nickLength];
+        in.get(text);
+        return new ScrollbackRecord(time, new String(nick, StandardCharsets.UTF_8),
+                new String(text, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the offsets of the records that may match a search.  The caller must hold the channel's read lock.
+     * @param required The trigrams every match must contain (may be empty).
+     * @param nick The nick that must have said the line, in lower case, or null for anyone.
+     * @return The candidate offsets in ascending order, or null if every record is a candidate.
+     */
+    int[] candidates(final Set<Integer> required, final String nick) {
+        int[] result = null;
+        if (nick != null) {
+            PostingList list = nicks.get(nick);
+            if (list == null) {
+                return new int[0];
+            }
+            result = list.toArray();
+        }
+        for (int trigram : required) {
+            PostingList list = trigrams.get(trigram);
+            if (list == null) {
+                return new int[0];
+            }
+            if (result == null) {
+                result = list.toArray();
+            } else {
+                result = list.intersect(result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the offsets of every record in the segment.
+     * @return The offsets in ascending order.
+     */
+    int[] allOffsets() {
+        int[] offsets = new int[records];
+        int offset = 0;
+        int limit = end;
+        for (int i = 0; i < offsets.length && offset < limit; i++) {
+            offsets[i] = offset;
+            offset += Integer.BYTES + buffer.getInt(offset);
+        }
+        return offsets;
+    }
+
+    /**
+     * Returns the offset the next record will be written at.
+     * @return The end of the segment's records.
+     */
+    int getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the time of the segment's first record.
+     * @return The time in epoch millis.
+     */
+    long getFirstTime() {
+        return firstTime;
+    }
+
+    /**
+     * Returns the time of the segment's last record.
+     * @return The time in epoch millis.
+     */
+    long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * Returns the number of records in the segment.
+     * @return The number of records.
+     */
+    int getRecords() {
+        return records;
+    }
+
+    /**
+     * Returns the size of the segment file.
+     * @return The size in bytes.
+     */
+    int getFileBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns the approximate heap used by the segment's index, for reporting.
+     * @return The size in bytes.
+     */
+    long getIndexBytes() {
+        long bytes = (long) (trigrams.size() + nicks.size()) * ENTRY_OVERHEAD_BYTES;
+        for (PostingList list : trigrams.values()) {
+            bytes += list.getEstimatedBytes();
+        }
+        for (PostingList list : nicks.values()) {
+            bytes += list.getEstimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the segment's contents to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Deletes the segment file.  The mapping is released when the segment is garbage collected.
+     * @throws IOException If the file couldn't be deleted.
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,189 @@
+package net.alureon.ircbutt.scrollback;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for the trigram index.  A line is indexed under every three-character run of its lower case text, and
+ * a regex is looked up by the trigrams of the literal text every match must contain.  Trigrams are hashed to an
+ * int; two trigrams sharing a hash only means a few extra lines are checked against the regex.
+ */
+final class Trigrams {
+
+    /**
+     * The length of a trigram.
+     */
+    static final int LENGTH = 3;
+    /**
+     * The multiplier used when hashing a trigram.
+     */
+    private static final int HASH_MULTIPLIER = 31;
+    /**
+     * Characters that have a special meaning in a regex.
+     */
+    private static final String META = ".[]{}()*+?^$|\\";
+    /**
+     * Constructs whose text isn't what it looks like, such as alternation, inline flags, quoting, and escapes
+     * written as code points.  A regex containing any of them isn't looked up in the index.
+     */
+    private static final Pattern UNINDEXABLE = Pattern.compile("\\||\\(\\?|\\\\[QuxcpPNk0-9]");
+
+    /**
+     * Prevent instantiation.
+     */
+    private Trigrams() {
+
+    }
+
+    /**
+     * Hashes the trigram starting at an index.
+     * @param text The text.
+     * @param start The index of the trigram's first character.
+     * @return The hash.
+     */
+    private static int hash(final String text, final int start) {
+        return (text.charAt(start) * HASH_MULTIPLIER + text.charAt(start + 1)) * HASH_MULTIPLIER
+                + text.charAt(start + 2);
+    }
+
+    /**
+     * Returns the distinct trigrams of some text, ignoring case.
+     * @param text The text.
+     * @return The trigram hashes, in the order they first appear.
+     */
+    static Set<Integer> of(final String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        Set<Integer> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + LENGTH <= lower.length(); i++) {
+            trigrams.add(hash(lower, i));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Returns the trigrams that every line matching a regex must contain.  Only literal text outside of groups
+     * and character classes is used, and a regex with alternation or inline flags gives no trigrams at all, so
+     * the result may be empty but is never wrong.
+     * @param regex The regex.
+     * @return The trigram hashes (may be empty, meaning every line must be checked).
+     */
+    static Set<Integer> required(final String regex) {
+        Set<Integer> trigrams = new LinkedHashSet<>();
+        if (UNINDEXABLE.matcher(regex).find()) {
+            return trigrams;
+        }
+        for (String literal : literals(regex)) {
+            trigrams.addAll(of(literal));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Splits a regex into the runs of literal text it requires.
+     * @param regex The regex, without alternation or inline flags.
+     * @return The literal runs.
+     */
+    private static List<String> literals(final String regex) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            char next = 0;
+            if (i + 1 < regex.length()) {
+                next = regex.charAt(i + 1);
+            }
+            if (c == '\\' && depth > 0) {
+                i++;
+            } else if (c == '(' || c == '[') {
+                depth++;
+                flush(run, literals);
+                if (c == '[') {
+                    i = skipClass(regex, i);
+                    depth--;
+                }
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+                flush(run, literals);
+            } else if (depth > 0) {
+                continue;
+            } else if (c == '\\' && next != 0 && !Character.isLetterOrDigit(next)) {
+                i++;
+                appendLiteral(run, literals, next, regex, i);
+            } else if (META.indexOf(c) >= 0 || c == '\\') {
+                flush(run, literals);
+                if (c == '\\') {
+                    i++;
+                }
+            } else {
+                appendLiteral(run, literals, c, regex, i);
+            }
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    /**
+     * Adds a literal character to the current run, unless the quantifier after it makes it optional.
+     * @param run The current run.
+     * @param literals The finished runs.
+     * @param c The character.
+     * @param regex The regex.
+     * @param index The index of the character in the regex.
+     */
+    private static void appendLiteral(final StringBuilder run, final List<String> literals, final char c,
+                                      final String regex, final int index) {
+        if (index + 1 < regex.length() && "?*{".indexOf(regex.charAt(index + 1)) >= 0) {
+            flush(run, literals);
+            return;
+        }
+        run.append(c);
+        if (index + 1 < regex.length() && regex.charAt(index + 1) == '+') {
+            flush(run, literals);
+        }
+    }
+
+    /**
+     * Returns the index of the end of a character class.
+     * @param regex The regex.
+     * @param start The index of the opening bracket.
+     * @return The index of the closing bracket, or the end of the regex.
+     */
+    private static int skipClass(final String regex, final int start) {
+        int first = start + 1;
+        if (first < regex.length() && regex.charAt(first) == '^') {
+            first++;
+        }
+        int nested = 0;
+        for (int i = first; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                nested++;
+            } else if (c == ']' && i > first) {
+                if (nested == 0) {
+                    return i;
+                }
+                nested--;
+            }
+        }
+        return regex.length();
+    }
+
+    /**
+     * Ends the current run of literal text.
+     * @param run The current run, which is cleared.
+     * @param literals The finished runs, which the run is added to if it is long enough to have a trigram.
+     */
+    private static void flush(final StringBuilder run, final List<String> literals) {
+        if (run.length() >= LENGTH) {
+            literals.add(run.toString());
+        }
+        run.setLength(0);
+    }
+}
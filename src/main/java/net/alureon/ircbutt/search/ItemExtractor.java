@@ -0,0 +1,17 @@
+package net.alureon.ircbutt.search;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * Turns an element matched by a ScraperSource's item selector into a search result.
+ */
+@FunctionalInterface
+public interface ItemExtractor {
+
+    /**
+     * Extracts a single result from an element.
+     * @param element The element that matched the item selector.
+     * @return The result, or null if the element doesn't hold one (an ad, or markup the source doesn't expect).
+     */
+    SearchResult.Item extract(Element element);
+}
@@ -0,0 +1,187 @@
+package net.alureon.ircbutt.search;
+
+import net.alureon.ircbutt.http.HttpManager;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches pages through the HttpManager and pulls results out of them, as declared by a ScraperSource.  Only
+ * the top of each page is downloaded, and the page is walked once in document order until enough results have
+ * been found.  Markup the source doesn't expect just results in fewer (or no) results rather than an exception.
+ * <p>
+ * The time spent parsing each source is recorded for the stats command.
+ */
+public final class Scraper {
+
+    /**
+     * How long to wait for a site before giving up, in milliseconds.
+     */
+    private static final int REQUEST_TIMEOUT = 12000;
+    /**
+     * The referrer sent with every request.
+     */
+    private static final String REFERRER = "http://www.google.com";
+    /**
+     * The number of nanoseconds in a microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1000;
+    /**
+     * The number of microseconds in a millisecond.
+     */
+    private static final double MICROS_PER_MILLI = 1000;
+    /**
+     * The HttpManager requests are made through.
+     */
+    private final HttpManager http;
+    /**
+     * The parse timings, by source name.
+     */
+    private final Map<String, SourceStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new Scraper.
+     * @param http The HttpManager to make requests through.
+     */
+    public Scraper(final HttpManager http) {
+        this.http = http;
+    }
+
+    /**
+     * Fetches a page and extracts its results.
+     * @param source The source the page belongs to.
+     * @param url The URL of the page.
+     * @param link A link to show after the results (may be null).
+     * @return The results.
+     * @throws IOException If the page couldn't be fetched.
+     */
+    public SearchResult scrape(final ScraperSource source, final String url, final String link) throws IOException {
+        Connection.Response response = http.execute(url, true, u -> Jsoup.connect(u)
+                .userAgent(source.getUserAgent())
+                .referrer(REFERRER)
+                .timeout(REQUEST_TIMEOUT)
+                .maxBodySize(source.getMaxBodyBytes())
+                .ignoreContentType(true)
+                .followRedirects(true)
+                .execute()
+                .bufferUp());
+        long start = System.nanoTime();
+        SearchResult result = extract(source, response.parse(), link);
+        stats.computeIfAbsent(source.getName(), name -> new SourceStats()).record(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Extracts the results from a page that has already been parsed.  The page is walked once, elements inside
+     * a result aren't looked at again, and the walk stops as soon as the source's limit is reached.
+     * @param source The source the page belongs to.
+     * @param doc The page.
+     * @param link A link to show after the results (may be null).
+     * @return The results.
+     */
+    public static SearchResult extract(final ScraperSource source, final Document doc, final String link) {
+        List<SearchResult.Item> items = new ArrayList<>();
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(final Node node, final int depth) {
+                if (!(node instanceof Element) || !source.getItemSelector().matches(doc, (Element) node)) {
+                    return FilterResult.CONTINUE;
+                }
+                SearchResult.Item item = source.getExtractor().extract((Element) node);
+                if (item != null) {
+                    items.add(item);
+                }
+                if (items.size() >= source.getMaxResults()) {
+                    return FilterResult.STOP;
+                }
+                return FilterResult.SKIP_CHILDREN;
+            }
+
+            @Override
+            public FilterResult tail(final Node node, final int depth) {
+                return FilterResult.CONTINUE;
+            }
+        }, doc);
+        return new SearchResult(items, link);
+    }
+
+    /**
+     * Decodes a URL encoded string, for extractors.
+     * @param text The encoded text.
+     * @return The decoded text, or the text as it was if it couldn't be decoded.
+     */
+    public static String urlDecode(final String text) {
+        try {
+            return URLDecoder.decode(text, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException ex) {
+            return text;
+        }
+    }
+
+    /**
+     * Returns a short summary of the parse timings of each source.
+     * @return The summary.
+     */
+    public String getStats() {
+        if (stats.isEmpty()) {
+            return "parse: nothing scraped yet";
+        }
+        StringBuilder sb = new StringBuilder("parse:");
+        for (Map.Entry<String, SourceStats> entry : stats.entrySet()) {
+            sb.append(' ').append(entry.getKey()).append(' ').append(entry.getValue()).append(',');
+        }
+        sb.setLength(sb.length() - 1);
+        return sb.toString();
+    }
+
+    /**
+     * The parse timings of a single source.
+     */
+    private static final class SourceStats {
+
+        /**
+         * The number of pages parsed.
+         */
+        private final AtomicLong count = new AtomicLong();
+        /**
+         * The total time spent parsing, in nanoseconds.
+         */
+        private final AtomicLong totalNanos = new AtomicLong();
+        /**
+         * The longest time spent parsing a single page, in nanoseconds.
+         */
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Records the time spent parsing a page.
+         * @param nanos The time in nanoseconds.
+         */
+        void record(final long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        @Override
+        public String toString() {
+            long n = count.get();
+            double avgMillis = totalNanos.get() / (double) Math.max(n, 1) / NANOS_PER_MICRO / MICROS_PER_MILLI;
+            return n + "x avg " + String.format("%.1f", avgMillis) + "ms max "
+                    + TimeUnit.NANOSECONDS.toMillis(maxNanos.get()) + "ms";
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package net.alureon.ircbutt.search;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+/**
+ * Declares a website the Scraper can pull results out of.  The item selector is compiled once when the source
+ * is declared, rather than on every search.
+ */
+public final class ScraperSource {
+
+    /**
+     * The number of bytes in a kibibyte.
+     */
+    private static final int KIBIBYTE = 1024;
+    /**
+     * The short name of the source, used for caching and stats.
+     */
+    private final String name;
+    /**
+     * The user agent to send.  Some sites change their markup depending on the browser.
+     */
+    private final String userAgent;
+    /**
+     * The compiled selector matching each result.
+     */
+    private final Evaluator itemSelector;
+    /**
+     * The most results to extract.  The page isn't looked at any further once this many are found.
+     */
+    private final int maxResults;
+    /**
+     * The most of the page to download, in bytes.  Results are near the top, so there's no need to download
+     * and parse all of it.
+     */
+    private final int maxBodyBytes;
+    /**
+     * Turns each matched element into a result.
+     */
+    private final ItemExtractor extractor;
+
+    /**
+     * Declares a new source.
+     * @param name The short name of the source, used for caching and stats.
+     * @param userAgent The user agent to send.
+     * @param itemSelector The CSS selector matching each result.
+     * @param maxResults The most results to extract.
+     * @param maxBodyKilobytes The most of the page to download, in kibibytes.
+     * @param extractor Turns each matched element into a result.
+     */
+    public ScraperSource(final String name, final String userAgent, final String itemSelector, final int maxResults,
+                         final int maxBodyKilobytes, final ItemExtractor extractor) {
+        this.name = name;
+        this.userAgent = userAgent;
+        this.itemSelector = QueryParser.parse(itemSelector);
+        this.maxResults = maxResults;
+        this.maxBodyBytes = maxBodyKilobytes * KIBIBYTE;
+        this.extractor = extractor;
+    }
+
+    /**
+     * Compiles a CSS selector, for use with {@link #first(Element, Evaluator)} in extractors.
+     * @param selector The CSS selector.
+     * @return The compiled selector.
+     */
+    public static Evaluator compile(final String selector) {
+        return QueryParser.parse(selector);
+    }
+
+    /**
+     * Returns the first element under (or including) an element that matches a compiled selector.
+     * @param element The element to search.
+     * @param selector The compiled selector.
+     * @return The first match, or null if nothing matched.
+     */
+    public static Element first(final Element element, final Evaluator selector) {
+        return Collector.findFirst(selector, element);
+    }
+
+    /**
+     * Returns the short name of the source.
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the user agent to send.
+     * @return The user agent.
+     */
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    /**
+     * Returns the compiled selector matching each result.
+     * @return The item selector.
+     */
+    public Evaluator getItemSelector() {
+        return itemSelector;
+    }
+
+    /**
+     * Returns the most results to extract.
+     * @return The result limit.
+     */
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * Returns the most of the page to download.
+     * @return The limit in bytes.
+     */
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    /**
+     * Returns the extractor that turns each matched element into a result.
+     * @return The extractor.
+     */
+    public ItemExtractor getExtractor() {
+        return extractor;
+    }
+}
@@ -0,0 +1,172 @@
+package net.alureon.ircbutt.search;
+
+import net.alureon.ircbutt.command.ListCursor;
+import net.alureon.ircbutt.command.MoreCursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The full, ranked list of results from a web search.  Results are immutable once built so they can be
+ * shared between the cache and any number of requests.
+ */
+public final class SearchResult {
+
+    /**
+     * A rough per-object overhead in bytes, used when estimating how much memory a result holds.
+     */
+    private static final int OBJECT_OVERHEAD_BYTES = 48;
+    /**
+     * The ranked items of the result, best first.
+     */
+    private final List<Item> items;
+    /**
+     * A link to the full results on the site itself (may be null).  This is shown after all of the items.
+     */
+    private final String link;
+    /**
+     * The estimated size of this result on the heap, in bytes.
+     */
+    private final long estimatedBytes;
+
+    /**
+     * Creates a new search result.
+     * @param items The ranked items, best first.
+     * @param link A link to the full results, or null.
+     */
+    public SearchResult(final List<Item> items, final String link) {
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.link = link;
+        long bytes = OBJECT_OVERHEAD_BYTES + estimateBytes(link);
+        for (Item item : this.items) {
+            bytes += OBJECT_OVERHEAD_BYTES + estimateBytes(item.getText()) + estimateBytes(item.getUrl());
+        }
+        this.estimatedBytes = bytes;
+    }
+
+    /**
+     * Estimates the heap size of a String.
+     * @param string The String (may be null).
+     * @return The estimated size in bytes.
+     */
+    private static long estimateBytes(final String string) {
+        if (string == null) {
+            return 0;
+        }
+        return OBJECT_OVERHEAD_BYTES + 2L * string.length();
+    }
+
+    /**
+     * Returns whether or not the search found anything.
+     * @return True if there are no items.
+     */
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * Returns the number of items in the result.
+     * @return The number of items.
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Returns the top ranked item.
+     * @return The first item.
+     */
+    public Item getFirst() {
+        return items.get(0);
+    }
+
+    /**
+     * Returns every item in ranked order.
+     * @return An unmodifiable list of items.
+     */
+    public List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the link to the full results on the site, if there is one.
+     * @return The link, or null.
+     */
+    public String getLink() {
+        return link;
+    }
+
+    /**
+     * Returns the estimated heap size of this result.
+     * @return The estimated size in bytes.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Returns a cursor over everything after the first item (and the link, if any), for !more.  Items are only
+     * formatted when they are asked for.
+     * @return The cursor.
+     */
+    public MoreCursor moreCursor() {
+        List<Item> rest = new ArrayList<>(items.subList(Math.min(1, items.size()), items.size()));
+        if (link != null) {
+            rest.add(new Item(link, null));
+        }
+        return new ListCursor<>(rest, Item::toLine);
+    }
+
+    /**
+     * A single search result: some text, and the URL it points to (if any).
+     */
+    public static final class Item {
+
+        /**
+         * The text of the result, such as a title or definition.
+         */
+        private final String text;
+        /**
+         * The URL of the result (may be null).
+         */
+        private final String url;
+
+        /**
+         * Creates a new item.
+         * @param text The text of the result.
+         * @param url The URL of the result, or null.
+         */
+        public Item(final String text, final String url) {
+            this.text = text;
+            this.url = url;
+        }
+
+        /**
+         * Returns the text of the result.
+         * @return The text.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the URL of the result.
+         * @return The URL, or null.
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Returns the item as a single line of chat.
+         * @return The text followed by the URL, if there is one.
+         */
+        public String toLine() {
+            if (url == null) {
+                return text;
+            }
+            return text + " " + url;
+        }
+    }
+}
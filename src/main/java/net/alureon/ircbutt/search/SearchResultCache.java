@@ -0,0 +1,245 @@
+package net.alureon.ircbutt.search;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of web searches, keyed by the command that ran the search and the normalized query.
+ * Every entry carries the time-to-live of the source it came from.  The cache is bounded both by the number
+ * of entries and by the estimated number of bytes held, and evicts the least recently used entries first.
+ */
+public final class SearchResultCache {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * Separates the source from the query in cache keys.  Queries can't contain this, IRC won't send it.
+     */
+    private static final char KEY_SEPARATOR = '\u0000';
+    /**
+     * The initial capacity of the backing map.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * The load factor of the backing map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+    /**
+     * The number of bytes in a kibibyte, for reporting.
+     */
+    private static final int KIBIBYTE = 1024;
+    /**
+     * The entries, in least-recently-used order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    /**
+     * The maximum number of entries to keep.
+     */
+    private int maxEntries;
+    /**
+     * The maximum number of bytes to keep.
+     */
+    private long maxBytes;
+    /**
+     * The estimated number of bytes currently held.
+     */
+    private long bytes;
+    /**
+     * The number of lookups that found a fresh entry.
+     */
+    private long hits;
+    /**
+     * The number of lookups that found nothing (or only an expired entry).
+     */
+    private long misses;
+    /**
+     * The number of entries evicted to stay under the bounds.
+     */
+    private long evictions;
+
+    /**
+     * Creates a new cache with the given bounds.
+     * @param maxEntries The maximum number of entries to keep.
+     * @param maxBytes The maximum estimated number of bytes to keep.
+     */
+    public SearchResultCache(final int maxEntries, final long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Normalizes a query so that trivially different queries share an entry.  Case and extra whitespace
+     * are ignored.
+     * @param query The query the user typed.
+     * @return The normalized query.
+     */
+    static String normalize(final String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Builds the key for the given source and query.
+     * @param source The command the search came from.
+     * @param query The query the user typed.
+     * @return The cache key.
+     */
+    private static String key(final String source, final String query) {
+        return source + KEY_SEPARATOR + normalize(query);
+    }
+
+    /**
+     * Returns the cached result of a search, if there is one that hasn't expired.
+     * @param source The command the search came from.
+     * @param query The query the user typed.
+     * @return The cached result, or null if there isn't a fresh one.
+     */
+    public synchronized SearchResult get(final String source, final String query) {
+        String key = key(source, query);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        log.debug("Search cache hit for " + source + ": " + query);
+        return entry.result;
+    }
+
+    /**
+     * Caches the result of a search.
+     * @param source The command the search came from.
+     * @param query The query the user typed.
+     * @param result The full result of the search.
+     * @param ttl How long the result stays fresh.
+     * @param unit The unit of the time-to-live.
+     */
+    public synchronized void put(final String source, final String query, final SearchResult result,
+                                 final long ttl, final TimeUnit unit) {
+        if (result.getEstimatedBytes() > maxBytes) {
+            return;
+        }
+        String key = key(source, query);
+        remove(key);
+        entries.put(key, new Entry(result, System.currentTimeMillis() + unit.toMillis(ttl)));
+        bytes += result.getEstimatedBytes();
+        evict();
+    }
+
+    /**
+     * Removes an entry and accounts for its size.
+     * @param key The key of the entry to remove.
+     */
+    private void remove(final String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.result.getEstimatedBytes();
+        }
+    }
+
+    /**
+     * Evicts expired entries, then the least recently used entries, until the cache is within its bounds.
+     */
+    private void evict() {
+        if (entries.size() <= maxEntries && bytes <= maxBytes) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && (entries.size() > maxEntries || bytes > maxBytes)) {
+            Entry entry = iterator.next().getValue();
+            if (entry.isExpired(now)) {
+                bytes -= entry.result.getEstimatedBytes();
+                iterator.remove();
+            }
+        }
+        iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && (entries.size() > maxEntries || bytes > maxBytes)) {
+            bytes -= iterator.next().getValue().result.getEstimatedBytes();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Changes the bounds of the cache, evicting entries if it is now over them.
+     * @param newMaxEntries The maximum number of entries to keep.
+     * @param newMaxBytes The maximum estimated number of bytes to keep.
+     */
+    public synchronized void resize(final int newMaxEntries, final long newMaxBytes) {
+        this.maxEntries = newMaxEntries;
+        this.maxBytes = newMaxBytes;
+        evict();
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated number of bytes held by the cache.
+     * @return The estimated size in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns a short summary of the cache's size and effectiveness.
+     * @return The summary.
+     */
+    public synchronized String getStats() {
+        return "search cache: " + entries.size() + "/" + maxEntries + " entries, " + bytes / KIBIBYTE + "/"
+                + maxBytes / KIBIBYTE + " KiB, " + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+
+    /**
+     * A cached result and the time it expires.
+     */
+    private static final class Entry {
+
+        /**
+         * The cached result.
+         */
+        private final SearchResult result;
+        /**
+         * The time (in epoch millis) at which the result is no longer fresh.
+         */
+        private final long expiresAt;
+
+        /**
+         * Creates a new entry.
+         * @param result The cached result.
+         * @param expiresAt The time (in epoch millis) at which the result is no longer fresh.
+         */
+        Entry(final SearchResult result, final long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Returns whether or not the entry has expired.
+         * @param now The current time in epoch millis.
+         * @return True if the entry is no longer fresh.
+         */
+        boolean isExpired(final long now) {
+            return now >= expiresAt;
+        }
+    }
+}
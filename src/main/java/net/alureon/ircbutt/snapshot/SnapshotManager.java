@@ -0,0 +1,340 @@
+package net.alureon.ircbutt.snapshot;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Carries in-memory state over a restart, so the bot comes back with its chat history, games and caches warm
+ * rather than empty.  Components register under a name; every so often, and when the bot shuts down cleanly, each
+ * one writes its state into one section of a small binary file.  On startup the file is memory-mapped and each
+ * section handed back to the component that wrote it.
+ * <p>
+ * The file is written to a temporary file first and moved into place, so a crash part way through leaves the last
+ * good snapshot alone.  A snapshot older than the max age is ignored, as is any section no component claims, and a
+ * section that can't be read costs that component its state but nothing else.
+ * <p>
+ * The file is a header (magic, version, when it was saved), then for each section its name, its length in bytes,
+ * and the bytes.
+ */
+public final class SnapshotManager {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * The first four bytes of a snapshot file: "BUTT".
+     */
+    private static final int MAGIC = 0x42555454;
+    /**
+     * The version of the file layout.  A snapshot with any other version is ignored.
+     */
+    private static final int VERSION = 2;
+    /**
+     * The longest section name we'll believe.
+     */
+    private static final int MAX_NAME_LENGTH = 256;
+    /**
+     * The size of buffer to write the file through.
+     */
+    private static final int WRITE_BUFFER_SIZE = 65536;
+    /**
+     * Whether snapshots are written and read at all.
+     */
+    private final boolean enabled;
+    /**
+     * The snapshot file.
+     */
+    private final Path path;
+    /**
+     * How often to write a snapshot, in milliseconds.  Zero or less to write one only at shutdown.
+     */
+    private final long intervalMillis;
+    /**
+     * How old a snapshot can be and still be restored, in milliseconds.
+     */
+    private final long maxAgeMillis;
+    /**
+     * The clock, in epoch millis.
+     */
+    private final LongSupplier clock;
+    /**
+     * The components, by section name, in the order they were registered.
+     */
+    private final Map<String, Snapshottable> components = new LinkedHashMap<>();
+    /**
+     * The number of snapshots written.
+     */
+    private final AtomicLong saves = new AtomicLong();
+    /**
+     * The number of snapshots that failed to write.
+     */
+    private final AtomicLong failures = new AtomicLong();
+    /**
+     * How long the last snapshot took to write, in milliseconds.
+     */
+    private volatile long lastSaveMillis;
+    /**
+     * The size of the last snapshot written or restored, in bytes.
+     */
+    private volatile long lastSize;
+    /**
+     * What happened to the snapshot at startup, for the stats.
+     */
+    private volatile String restored = "not restored";
+    /**
+     * Writes the snapshot every interval, once started.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a snapshot manager.  Nothing is read or written until it is restored or started.
+     * @param enabled Whether snapshots are written and read at all.
+     * @param path The snapshot file.
+     * @param intervalMillis How often to write a snapshot, in milliseconds.  Zero or less for only at shutdown.
+     * @param maxAgeMillis How old a snapshot can be and still be restored, in milliseconds.
+     */
+    public SnapshotManager(final boolean enabled, final Path path, final long intervalMillis,
+                           final long maxAgeMillis) {
+        this(enabled, path, intervalMillis, maxAgeMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a snapshot manager with its own clock, for tests.
+     * @param enabled Whether snapshots are written and read at all.
+     * @param path The snapshot file.
+     * @param intervalMillis How often to write a snapshot, in milliseconds.  Zero or less for only at shutdown.
+     * @param maxAgeMillis How old a snapshot can be and still be restored, in milliseconds.
+     * @param clock The clock, in epoch millis.
+     */
+    SnapshotManager(final boolean enabled, final Path path, final long intervalMillis, final long maxAgeMillis,
+                    final LongSupplier clock) {
+        this.enabled = enabled;
+        this.path = path;
+        this.intervalMillis = intervalMillis;
+        this.maxAgeMillis = maxAgeMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Registers a component, whose state is written in its own section of the file.
+     * @param name The section name, which must not change between versions of the bot.
+     * @param component The component.
+     */
+    public synchronized void register(final String name, final Snapshottable component) {
+        if (components.containsKey(name)) {
+            throw new IllegalArgumentException("A snapshot section called " + name + " is already registered");
+        }
+        components.put(name, component);
+    }
+
+    /**
+     * Reads the snapshot file, if there is a fresh one, and hands each section to the component that wrote it.
+     * Call this once, before the components are used.
+     */
+    public void restore() {
+        if (!enabled) {
+            restored = "disabled";
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            lastSize = channel.size();
+            restored = restore(buffer);
+        } catch (NoSuchFileException ex) {
+            restored = "no snapshot";
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Couldn't read the snapshot, so starting cold: " + ex.getMessage());
+            restored = "unreadable";
+        }
+        log.info("Snapshot: " + restored);
+    }
+
+    /**
+     * Checks the header and hands each section to its component.
+     * @param buffer The whole file.
+     * @return What happened, for the stats.
+     */
+    private String restore(final ByteBuffer buffer) {
+        if (buffer.getInt() != MAGIC) {
+            return "not a snapshot file";
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            return "version " + version + " ignored";
+        }
+        long savedAt = buffer.getLong();
+        long age = clock.getAsLong() - savedAt;
+        if (age > maxAgeMillis) {
+            return "stale (" + TimeUnit.MILLISECONDS.toMinutes(age) + " minutes old)";
+        }
+        Map<String, Snapshottable> registered;
+        synchronized (this) {
+            registered = new LinkedHashMap<>(components);
+        }
+        int sections = 0;
+        while (buffer.hasRemaining()) {
+            String name = readName(buffer);
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Bad length " + length + " for section " + name);
+            }
+            ByteBuffer section = buffer.duplicate();
+            section.limit(buffer.position() + length);
+            buffer.position(buffer.position() + length);
+            Snapshottable component = registered.get(name);
+            if (component == null) {
+                log.debug("Skipping snapshot section " + name + ", which nothing claims");
+                continue;
+            }
+            try {
+                component.readSnapshot(new SnapshotReader(section), savedAt);
+                sections++;
+            } catch (BufferUnderflowException | IllegalArgumentException ex) {
+                log.warn("Couldn't restore " + name + " from the snapshot: " + ex);
+            } catch (RuntimeException ex) {
+                log.error("Couldn't restore " + name + " from the snapshot: ", ex);
+            }
+        }
+        return sections + " sections restored, " + TimeUnit.MILLISECONDS.toSeconds(age) + "s old";
+    }
+
+    /**
+     * Reads a section name.
+     * @param buffer The file, positioned at the name.
+     * @return The name.
+     */
+    private static String readName(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Bad section name length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a snapshot of every component, replacing the last one.  A component that fails is left out; the
+     * others are still written.
+     * @return True if the file was written.
+     */
+    public synchronized boolean save() {
+        if (!enabled) {
+            return false;
+        }
+        long start = System.nanoTime();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                    WRITE_BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(clock.getAsLong());
+                for (Map.Entry<String, Snapshottable> entry : components.entrySet()) {
+                    writeSection(out, entry.getKey(), entry.getValue());
+                }
+            }
+            lastSize = Files.size(temp);
+            move(temp);
+        } catch (IOException ex) {
+            failures.incrementAndGet();
+            log.warn("Couldn't write the snapshot: " + ex.getMessage());
+            return false;
+        }
+        lastSaveMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        saves.incrementAndGet();
+        log.debug("Wrote snapshot of " + lastSize + " bytes in " + lastSaveMillis + "ms");
+        return true;
+    }
+
+    /**
+     * Writes one component's section.  The section is built in memory first, so its length can go before it, and
+     * so a component that fails part way through doesn't leave half a section in the file.
+     * @param out The file.
+     * @param name The section name.
+     * @param component The component.
+     * @throws IOException If the file can't be written.
+     */
+    private static void writeSection(final DataOutputStream out, final String name, final Snapshottable component)
+            throws IOException {
+        ByteArrayOutputStream section = new ByteArrayOutputStream();
+        try {
+            component.writeSnapshot(new SnapshotWriter(section));
+        } catch (IOException | RuntimeException ex) {
+            log.error("Couldn't snapshot " + name + ": ", ex);
+            return;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt(section.size());
+        section.writeTo(out);
+    }
+
+    /**
+     * Moves the freshly written snapshot into place.
+     * @param temp The freshly written snapshot.
+     * @throws IOException If it can't be moved.
+     */
+    private void move(final Path temp) throws IOException {
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Starts writing a snapshot every interval, and at shutdown.
+     */
+    public synchronized void start() {
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::save, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::save, "snapshot-shutdown"));
+    }
+
+    /**
+     * Returns a short summary of the snapshots, for the stats command.
+     * @return The summary.
+     */
+    public String getStats() {
+        if (!enabled) {
+            return "snapshot: disabled";
+        }
+        return "snapshot: " + restored + ", " + saves.get() + " saves (" + failures.get() + " failed), last "
+                + lastSize + " bytes in " + lastSaveMillis + "ms";
+    }
+}
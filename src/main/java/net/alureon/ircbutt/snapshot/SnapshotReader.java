@@ -0,0 +1,75 @@
+package net.alureon.ircbutt.snapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads one component's part of the snapshot file, straight out of the memory-mapped file.  A component can't
+ * read past the end of its own part; trying to throws an exception, which drops that component's state and
+ * nothing else.
+ */
+public final class SnapshotReader {
+
+    /**
+     * The component's part of the file.
+     */
+    private final ByteBuffer in;
+
+    /**
+     * Creates a reader.
+     * @param in The component's part of the file, from its position to its limit.
+     */
+    SnapshotReader(final ByteBuffer in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads an int.
+     * @return The int.
+     * @throws java.nio.BufferUnderflowException If the component's part has run out.
+     */
+    public int readInt() {
+        return in.getInt();
+    }
+
+    /**
+     * Reads a long.
+     * @return The long.
+     * @throws java.nio.BufferUnderflowException If the component's part has run out.
+     */
+    public long readLong() {
+        return in.getLong();
+    }
+
+    /**
+     * Reads a string.
+     * @return The string, which may be null.
+     * @throws java.nio.BufferUnderflowException If the component's part has run out.
+     * @throws IllegalArgumentException If the string's length is nonsense.
+     */
+    public String readString() {
+        int length = in.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Bad string length " + length + " in snapshot");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a count of the entries that follow, checking it is at least plausible.
+     * @return The count.
+     * @throws IllegalArgumentException If the count is negative or bigger than what is left could hold.
+     */
+    public int readCount() {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new IllegalArgumentException("Bad count " + count + " in snapshot");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,58 @@
+package net.alureon.ircbutt.snapshot;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes one component's part of the snapshot file, as big-endian numbers and length-prefixed UTF-8 strings.
+ */
+public final class SnapshotWriter {
+
+    /**
+     * Where the values go.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Creates a writer.
+     * @param out Where the values go.
+     */
+    SnapshotWriter(final OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * Writes an int.
+     * @param value The int.
+     * @throws IOException If it can't be written.
+     */
+    public void writeInt(final int value) throws IOException {
+        out.writeInt(value);
+    }
+
+    /**
+     * Writes a long.
+     * @param value The long.
+     * @throws IOException If it can't be written.
+     */
+    public void writeLong(final long value) throws IOException {
+        out.writeLong(value);
+    }
+
+    /**
+     * Writes a string, which may be null.
+     * @param value The string.
+     * @throws IOException If it can't be written.
+     */
+    public void writeString(final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,25 @@
+package net.alureon.ircbutt.snapshot;
+
+import java.io.IOException;
+
+/**
+ * Something that keeps state in memory which is worth carrying over a restart.  Register it with the
+ * SnapshotManager, which writes it into the snapshot file now and then, and reads it back when the bot starts.
+ */
+public interface Snapshottable {
+
+    /**
+     * Writes the state.  Called from the snapshot thread, so this takes whatever locks the state needs.
+     * @param out Where to write it.
+     * @throws IOException If the state can't be written.
+     */
+    void writeSnapshot(SnapshotWriter out) throws IOException;
+
+    /**
+     * Reads back the state written by {@link #writeSnapshot}, dropping anything that has gone stale since.  Called
+     * once, while the bot is starting.
+     * @param in Where to read it from.
+     * @param savedAt When the snapshot was written, in epoch millis.
+     */
+    void readSnapshot(SnapshotReader in, long savedAt);
+}
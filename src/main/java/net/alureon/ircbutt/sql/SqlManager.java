@@ -5,6 +5,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * SqlManager contains methods for working with the SQL database on
@@ -24,7 +28,11 @@ public final class SqlManager {
     /**
      * The Connection object representing a connection to our database.
      */
-    private Connection connection;
+    private volatile Connection connection;
+    /**
+     * Completed once the database and tables exist, so queries can run.
+     */
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
     /**
      * The IRCbutt instance, for getting configuration file values.
      */
@@ -57,6 +65,10 @@ public final class SqlManager {
      * The SQL timeout value, in seconds, in which, if exceeded a connection is no longer considered valid.
      */
     private static final int SQL_WAIT_TIME = 10;
+    /**
+     * The longest a query waits for the database to be ready while the bot is starting, in seconds.
+     */
+    private static final int READY_WAIT_TIME = 30;
 
     /**
      * Constructor for the SqlManager class.
@@ -91,6 +103,7 @@ public final class SqlManager {
      * Creates the database if it doesn't exist with UTF-8 character set.
      */
     public void createDatabaseIfNotExists() {
+        checkConnection();
         boolean result = sqlUpdate("CREATE DATABASE IF NOT EXISTS ircbutt CHARACTER SET utf8;");
         if (!result) {
             log.fatal("Failed to create database! Shutting down...");
@@ -103,6 +116,7 @@ public final class SqlManager {
      * IRCbutt object to get custom table prefixes.
      */
     public void createTablesIfNotExists() {
+        checkConnection();
         boolean table1Status = sqlUpdate("CREATE TABLE IF NOT EXISTS `"
                 + butt.getYamlConfigurationFile().getSqlTablePrefix() + "_quotes` "
                 + "(`id` SMALLINT PRIMARY KEY NOT NULL AUTO_INCREMENT, `user` VARCHAR(16) NOT NULL,"
@@ -117,22 +131,70 @@ public final class SqlManager {
                 + butt.getYamlConfigurationFile().getSqlTablePrefix() + "_karma` "
                 + "(`id` SMALLINT PRIMARY KEY NOT NULL AUTO_INCREMENT, `item` VARCHAR(32) NOT NULL,"
                 + "`karma` SMALLINT NOT NULL) ENGINE=MyISAM DEFAULT CHARSET=utf8");
-        if (!table1Status || !table2Status || !table3Status) {
+        boolean clusterStatus = true;
+        if (butt.getYamlConfigurationFile().getClusterEnabled()) {
+            clusterStatus = sqlUpdate("CREATE TABLE IF NOT EXISTS `"
+                    + butt.getYamlConfigurationFile().getSqlTablePrefix() + "_nodes` "
+                    + "(`node` VARCHAR(64) PRIMARY KEY NOT NULL, `expires` DATETIME(3) NOT NULL) "
+                    + "ENGINE=MyISAM DEFAULT CHARSET=utf8")
+                    && sqlUpdate("CREATE TABLE IF NOT EXISTS `"
+                    + butt.getYamlConfigurationFile().getSqlTablePrefix() + "_leases` "
+                    + "(`channel` VARCHAR(128) PRIMARY KEY NOT NULL, `owner` VARCHAR(64) NOT NULL,"
+                    + "`expires` DATETIME(3) NOT NULL) ENGINE=MyISAM DEFAULT CHARSET=utf8");
+        }
+        if (!table1Status || !table2Status || !table3Status || !clusterStatus) {
             log.fatal("Failed to create table in database! Shutting down...");
             System.exit(1);
         }
     }
 
     /**
-     * TODO result of this function is ignored above.
-     * Tests for SQL database connection and then executes the passed update
-     * statement.
+     * Marks the database as ready, letting through the queries that have been waiting for it.
+     */
+    public void setReady() {
+        ready.complete(null);
+        log.info("[SQL backend ready]");
+    }
+
+    /**
+     * Returns whether the database and tables have been created, so queries can run.
+     * @return True if the database is ready.
+     */
+    public boolean isReady() {
+        return ready.isDone();
+    }
+
+    /**
+     * Waits for the database to be ready, for queries made while the bot is still starting.
+     * @return True if it is ready, false if it didn't get ready in time.
+     */
+    private boolean awaitReady() {
+        if (ready.isDone()) {
+            return true;
+        }
+        try {
+            ready.get(READY_WAIT_TIME, TimeUnit.SECONDS);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ex) {
+            log.warn("The SQL backend isn't ready yet");
+        }
+        return false;
+    }
+
+    /**
+     * Executes the passed update statement.  The caller checks the connection first, once for all its updates.
      * @param sql The sql string to execute (not user supplied!).
      * @return True if the update succeeded, false if exception was thrown.
      */
     private boolean sqlUpdate(final String sql) {
-        checkConnection();
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        Connection current = this.connection;
+        if (current == null) {
+            log.error("Not connected to the SQL database.  Unable to update it.");
+            return false;
+        }
+        try (PreparedStatement ps = current.prepareStatement(sql)) {
             ps.executeUpdate();
             return true;
         } catch (SQLException ex) {
@@ -150,11 +212,15 @@ public final class SqlManager {
     }
 
     /**
-     * Returns a PreparedStatement object from the passed String.
+     * Returns a PreparedStatement object from the passed String.  While the bot is starting this waits for the
+     * database to be ready.
      * @param query The query to create into a PreparedStatement.
-     * @return The PreparedStatement object.
+     * @return The PreparedStatement object, or null if the database isn't ready or the statement can't be prepared.
      */
     public PreparedStatement getPreparedStatement(final String query) {
+        if (!awaitReady()) {
+            return null;
+        }
         checkConnection();
         try {
             return connection.prepareStatement(query);
@@ -208,8 +274,12 @@ public final class SqlManager {
      * @return True if connected, false if not.
      */
     private boolean isConnected() {
+        Connection current = this.connection;
+        if (current == null) {
+            return false;
+        }
         try {
-            return this.connection.isValid(SQL_WAIT_TIME);
+            return current.isValid(SQL_WAIT_TIME);
         } catch (SQLException ex) {
             log.warn("Exception checking connection validity: ", ex.getMessage());
             return false;
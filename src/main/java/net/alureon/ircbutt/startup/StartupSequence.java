@@ -0,0 +1,175 @@
+package net.alureon.ircbutt.startup;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs the bot's startup as a graph of tasks.  Each task starts as soon as the tasks it depends on have finished,
+ * so tasks that don't depend on each other (such as connecting to IRC and warming up the database) run at the same
+ * time.  How long each task took, and when it started, is kept for a report logged once startup is done.
+ */
+public final class StartupSequence {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * Runs the tasks.
+     */
+    private final ExecutorService executor;
+    /**
+     * The clock, in nanoseconds.
+     */
+    private final LongSupplier clock;
+    /**
+     * When startup began, from the clock.
+     */
+    private final long began;
+    /**
+     * The tasks that have finished.
+     */
+    private final Queue<Phase> phases = new ConcurrentLinkedQueue<>();
+    /**
+     * Every task added, to wait for at the end.
+     */
+    private final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+
+    /**
+     * One finished task, and how long it took.
+     */
+    private static final class Phase {
+
+        /**
+         * The name of the task.
+         */
+        private final String name;
+        /**
+         * When the task started, from when startup began, in nanoseconds.
+         */
+        private final long offset;
+        /**
+         * How long the task took, in nanoseconds.
+         */
+        private final long duration;
+
+        /**
+         * Creates a finished task.
+         * @param name The name of the task.
+         * @param offset When the task started, from when startup began, in nanoseconds.
+         * @param duration How long the task took, in nanoseconds.
+         */
+        Phase(final String name, final long offset, final long duration) {
+            this.name = name;
+            this.offset = offset;
+            this.duration = duration;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + TimeUnit.NANOSECONDS.toMillis(duration) + "ms at +"
+                    + TimeUnit.NANOSECONDS.toMillis(offset) + "ms";
+        }
+    }
+
+    /**
+     * Creates a startup sequence, which begins timing straight away.
+     * @param threads The most tasks to run at once.
+     */
+    public StartupSequence(final int threads) {
+        this(threads, System::nanoTime);
+    }
+
+    /**
+     * Creates a startup sequence with its own clock, for tests.
+     * @param threads The most tasks to run at once.
+     * @param clock The clock, in nanoseconds.
+     */
+    StartupSequence(final int threads, final LongSupplier clock) {
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "startup-" + count.incrementAndGet()));
+        this.clock = clock;
+        this.began = clock.getAsLong();
+    }
+
+    /**
+     * Runs a task on the calling thread straight away, timing it.  For the tasks everything else needs.
+     * @param name The name of the task, for the report.
+     * @param work The task.
+     */
+    public void run(final String name, final Runnable work) {
+        long start = clock.getAsLong();
+        work.run();
+        phases.add(new Phase(name, start - began, clock.getAsLong() - start));
+    }
+
+    /**
+     * Adds a task that starts once the tasks it depends on have finished.  If one of them fails, this task is
+     * skipped and counts as failed too.
+     * @param name The name of the task, for the report.
+     * @param work The task.
+     * @param after The tasks it depends on.
+     * @return The task, for other tasks to depend on.
+     */
+    public CompletableFuture<Void> add(final String name, final Runnable work, final CompletableFuture<?>... after) {
+        CompletableFuture<Void> task = CompletableFuture.allOf(after).thenRunAsync(() -> run(name, work), executor);
+        synchronized (tasks) {
+            tasks.add(task);
+        }
+        return task;
+    }
+
+    /**
+     * Waits for every task to finish, then logs the report and stops the startup threads.
+     * @return True if every task succeeded.
+     */
+    public boolean await() {
+        CompletableFuture<?>[] all;
+        synchronized (tasks) {
+            all = tasks.toArray(new CompletableFuture<?>[0]);
+        }
+        boolean succeeded = true;
+        try {
+            CompletableFuture.allOf(all).join();
+        } catch (CompletionException ex) {
+            log.error("Startup failed: ", ex.getCause());
+            succeeded = false;
+        }
+        executor.shutdown();
+        log.info(getReport());
+        return succeeded;
+    }
+
+    /**
+     * Returns how long startup took, and each task in the order they started.
+     * @return The report.
+     */
+    public String getReport() {
+        List<Phase> sorted = new ArrayList<>(phases);
+        sorted.sort(Comparator.comparingLong(phase -> phase.offset));
+        long end = began;
+        for (Phase phase : sorted) {
+            end = Math.max(end, began + phase.offset + phase.duration);
+        }
+        StringBuilder sb = new StringBuilder("startup: ").append(TimeUnit.NANOSECONDS.toMillis(end - began))
+                .append("ms");
+        for (Phase phase : sorted) {
+            sb.append(", ").append(phase);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,198 @@
+package net.alureon.ircbutt.trigger;
+
+import net.alureon.ircbutt.util.RandomService;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a random chat feature (such as buttifying a message) should fire, about once every so many
+ * messages in each channel.  Rather than rolling a die for every message, each channel draws the number of
+ * messages until its next trigger from a geometric distribution and counts down to it, so an ordinary message
+ * only costs an atomic decrement.  The triggers land exactly as often, and as unpredictably, as rolling a
+ * one-in-(frequency + 1) die for every message would.
+ * <p>
+ * Each feature should have its own scheduler.  A frequency of 0 fires on every message, and a frequency below 0
+ * turns the feature off.
+ */
+public final class TriggerScheduler {
+
+    /**
+     * The key used for messages that aren't in a channel.
+     */
+    private static final String NO_CHANNEL = "";
+    /**
+     * The gap used when a feature is turned off, which is never reached.
+     */
+    private static final long NEVER = Long.MAX_VALUE / 2;
+    /**
+     * The frequency of channels that don't have their own.
+     */
+    private volatile int defaultFrequency;
+    /**
+     * The frequency of each channel that has its own, by channel key.
+     */
+    private final Map<String, Integer> channelFrequencies = new ConcurrentHashMap<>();
+    /**
+     * The countdown to the next trigger in each channel, by channel key.
+     */
+    private final ConcurrentMap<String, Countdown> countdowns = new ConcurrentHashMap<>();
+    /**
+     * Draws the gaps.
+     */
+    private final RandomService random;
+
+    /**
+     * The number of messages left until a channel's next trigger.
+     */
+    private static final class Countdown {
+
+        /**
+         * The chance that any one message triggers the feature.
+         */
+        private final double probability;
+        /**
+         * The number of messages left, including the one that triggers.
+         */
+        private final AtomicLong remaining = new AtomicLong();
+
+        /**
+         * Creates a countdown.
+         * @param probability The chance that any one message triggers the feature.
+         * @param first The number of messages until the first trigger.
+         */
+        Countdown(final double probability, final long first) {
+            this.probability = probability;
+            this.remaining.set(first);
+        }
+    }
+
+    /**
+     * Creates a scheduler.  Give it a seeded RandomService for the same messages to always trigger.
+     * @param defaultFrequency The frequency of channels that don't have their own.
+     * @param channelFrequencies The frequency of channels that have their own, by channel name (may be empty).
+     * @param random Draws the gaps.
+     */
+    public TriggerScheduler(final int defaultFrequency, final Map<String, Integer> channelFrequencies,
+                            final RandomService random) {
+        this.defaultFrequency = defaultFrequency;
+        this.random = random;
+        for (Map.Entry<String, Integer> entry : channelFrequencies.entrySet()) {
+            this.channelFrequencies.put(key(entry.getKey()), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the key a channel is kept under.
+     * @param channel The channel name or key (may be null for messages that aren't in a channel).
+     * @return The key.
+     */
+    private static String key(final String channel) {
+        if (channel == null) {
+            return NO_CHANNEL;
+        }
+        return channel.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the chance that any one message triggers the feature, for a frequency.
+     * @param frequency The frequency.
+     * @return The probability, or 0 if the feature is turned off.
+     */
+    static double probability(final int frequency) {
+        if (frequency < 0) {
+            return 0;
+        }
+        return 1.0 / (frequency + 1.0);
+    }
+
+    /**
+     * Turns a uniform random number into the number of messages up to and including the next trigger, which
+     * follows a geometric distribution.
+     * @param probability The chance that any one message triggers the feature.
+     * @param uniform A random number in [0, 1).
+     * @return The gap, at least 1.
+     */
+    static long gap(final double probability, final double uniform) {
+        if (probability <= 0) {
+            return NEVER;
+        }
+        if (probability >= 1) {
+            return 1;
+        }
+        double gap = Math.floor(Math.log(1 - uniform) / Math.log(1 - probability)) + 1;
+        return (long) Math.min(gap, NEVER);
+    }
+
+    /**
+     * Starts a channel's countdown.
+     * @param channel The channel key.
+     * @return The countdown.
+     */
+    private Countdown newCountdown(final String channel) {
+        double probability = probability(getFrequency(channel));
+        return new Countdown(probability, gap(probability, random.nextDouble()));
+    }
+
+    /**
+     * Counts a message, and returns whether it should trigger the feature.
+     * @param channel The channel key (may be null for messages that aren't in a channel).
+     * @return True if the feature should fire for this message.
+     */
+    public boolean shouldTrigger(final String channel) {
+        String key = key(channel);
+        Countdown countdown = countdowns.get(key);
+        if (countdown == null) {
+            countdown = countdowns.computeIfAbsent(key, this::newCountdown);
+        }
+        if (countdown.remaining.decrementAndGet() != 0) {
+            return false;
+        }
+        countdown.remaining.addAndGet(gap(countdown.probability, random.nextDouble()));
+        return true;
+    }
+
+    /**
+     * Changes how often the feature fires in a channel, starting a new countdown.
+     * @param channel The channel name or key.
+     * @param frequency The new frequency.
+     */
+    public void setFrequency(final String channel, final int frequency) {
+        String key = key(channel);
+        channelFrequencies.put(key, frequency);
+        countdowns.remove(key);
+    }
+
+    /**
+     * Changes how often the feature fires everywhere, when the config is reloaded.  Every channel starts a new
+     * countdown.
+     * @param newDefaultFrequency The frequency of channels that don't have their own.
+     * @param newChannelFrequencies The frequency of channels that have their own, by channel name (may be empty).
+     */
+    public void setFrequencies(final int newDefaultFrequency, final Map<String, Integer> newChannelFrequencies) {
+        this.defaultFrequency = newDefaultFrequency;
+        Map<String, Integer> keyed = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : newChannelFrequencies.entrySet()) {
+            keyed.put(key(entry.getKey()), entry.getValue());
+        }
+        channelFrequencies.putAll(keyed);
+        channelFrequencies.keySet().retainAll(keyed.keySet());
+        countdowns.clear();
+    }
+
+    /**
+     * Returns how often the feature fires in a channel.
+     * @param channel The channel name or key (may be null for messages that aren't in a channel).
+     * @return The frequency: about one in this many plus one messages triggers the feature.
+     */
+    public int getFrequency(final String channel) {
+        Integer frequency = channelFrequencies.get(key(channel));
+        if (frequency == null) {
+            return defaultFrequency;
+        }
+        return frequency;
+    }
+}
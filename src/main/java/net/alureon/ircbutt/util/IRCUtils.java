@@ -3,10 +3,13 @@ package net.alureon.ircbutt.util;
 import com.google.common.collect.ImmutableSortedSet;
 import net.alureon.ircbutt.IRCbutt;
 import org.pircbotx.Channel;
+import org.pircbotx.PircBotX;
 import org.pircbotx.User;
 import org.pircbotx.hooks.events.MessageEvent;
 import org.pircbotx.hooks.types.GenericMessageEvent;
 
+import java.util.Locale;
+
 /**
  * Contains static helper functions for working with IRC.
  */
@@ -22,14 +25,14 @@ public final class IRCUtils {
     /**
      * Determines if the user specified is a channel operator.  It looks like
      * the way this is written, the user can be an operator in any channel that
-     * is defined in the configuration file.  That may not be the current channel.
+     * is defined in the configuration file for the user's network.  That may not be the current channel.
      * TODO this needs looked at.
-     * @param butt The IRCbutt object for access to the YAMLConfigurationFile
+     * @param butt The IRCbutt object for access to the network's configuration
      * @param user The user to check
      * @return True if the user is a channel operator, otherwise false.
      */
     public static boolean isOpInBotChannel(final IRCbutt butt, final User user) {
-        for (String x : butt.getYamlConfigurationFile().getChannelList()) {
+        for (String x : butt.getNetworkManager().getNetwork(user.<PircBotX>getBot()).getConfig().getChannels()) {
             for (Channel y : user.getChannelsOpIn()) {
                 if (y.getName().equalsIgnoreCase(x)) {
                     return true;
@@ -71,15 +74,6 @@ public final class IRCUtils {
         return null;
     }
 
-    /**
-     * Sends the supplied String message to the supplied Channel.
-     * @param channel The channel to send the message to.
-     * @param message The message to send.
-     */
-    public static void sendChannelMessage(final Channel channel, final String message) {
-        channel.send().message(message);
-    }
-
     /**
      * Returns the actual case-sensitive nickname of a user.  This allows users to perform
      * commands on users without regard to case, because we will correct it for them.
@@ -98,4 +92,15 @@ public final class IRCUtils {
         }
         return null;
     }
+
+    /**
+     * Returns the key used to keep per-channel state (such as chat history) apart, for a channel name.  Channel
+     * names aren't case sensitive, so the key is the lower case name of the channel.  Channels on networks other
+     * than the first have the network added to this, by BotNetwork.getChannelKey().
+     * @param channelName The name of the channel, in any case.
+     * @return The channel key.
+     */
+    public static String getChannelKey(final String channelName) {
+        return channelName.toLowerCase(Locale.ROOT);
+    }
 }
@@ -0,0 +1,128 @@
+package net.alureon.ircbutt.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Provides random numbers to the whole bot.  Each thread draws from its own SplittableRandom stream, split off a
+ * root generator the first time the thread asks, so draws never contend and never allocate.
+ * <p>
+ * A service created with a seed gives every thread the same streams in the order the threads first ask, so the
+ * draws made on one thread (as in a test or a benchmark) replay exactly.
+ */
+public final class RandomService {
+
+    /**
+     * The generator every thread's stream is split off.  Guarded by itself.
+     */
+    private final SplittableRandom root;
+    /**
+     * Each thread's stream.
+     */
+    private final ThreadLocal<SplittableRandom> streams = ThreadLocal.withInitial(this::split);
+
+    /**
+     * Creates a service with an unpredictable seed.
+     */
+    public RandomService() {
+        this.root = new SplittableRandom();
+    }
+
+    /**
+     * Creates a service whose draws can be replayed.
+     * @param seed The seed.
+     */
+    public RandomService(final long seed) {
+        this.root = new SplittableRandom(seed);
+    }
+
+    /**
+     * Splits a new stream off the root generator.
+     * @return The stream.
+     */
+    private SplittableRandom split() {
+        synchronized (root) {
+            return root.split();
+        }
+    }
+
+    /**
+     * Returns a random int.
+     * @return Any int, each equally likely.
+     */
+    public int nextInt() {
+        return streams.get().nextInt();
+    }
+
+    /**
+     * Returns a random int below a bound.
+     * @param bound The bound, which must be positive.
+     * @return A number from 0 (inclusive) to the bound (exclusive).
+     */
+    public int nextInt(final int bound) {
+        return streams.get().nextInt(bound);
+    }
+
+    /**
+     * Returns a random int in a range.
+     * @param min The lowest number that can be returned.
+     * @param max The highest number that can be returned, which must not be below min.
+     * @return A number from min to max, both inclusive.
+     */
+    public int nextInt(final int min, final int max) {
+        return (int) streams.get().nextLong(min, (long) max + 1);
+    }
+
+    /**
+     * Returns a random double.
+     * @return A number from 0 (inclusive) to 1 (exclusive).
+     */
+    public double nextDouble() {
+        return streams.get().nextDouble();
+    }
+
+    /**
+     * Chooses an outcome, each as likely as its weight.
+     * @param weights The weights of the outcomes.
+     * @return The index of the chosen outcome.
+     */
+    public int choose(final Weights weights) {
+        return weights.indexOf(streams.get().nextInt(weights.getTotal()));
+    }
+
+    /**
+     * Picks an item from a list, each equally likely.
+     * @param items The items, which must not be empty.
+     * @param <T> The type of the items.
+     * @return The chosen item.
+     */
+    public <T> T pick(final List<T> items) {
+        return items.get(streams.get().nextInt(items.size()));
+    }
+
+    /**
+     * Shuffles a list in place, every order equally likely.
+     * @param items The list to shuffle.
+     */
+    public void shuffle(final List<?> items) {
+        SplittableRandom stream = streams.get();
+        for (int i = items.size() - 1; i > 0; i--) {
+            Collections.swap(items, i, stream.nextInt(i + 1));
+        }
+    }
+
+    /**
+     * Shuffles an array in place, every order equally likely.
+     * @param values The array to shuffle.
+     */
+    public void shuffle(final int[] values) {
+        SplittableRandom stream = streams.get();
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = stream.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+}
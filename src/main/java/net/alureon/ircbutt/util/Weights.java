@@ -0,0 +1,82 @@
+package net.alureon.ircbutt.util;
+
+/**
+ * The relative weights of some outcomes, added up once so that RandomService can choose between them with one
+ * draw and a binary search.
+ */
+public final class Weights {
+
+    /**
+     * The running total of the weights: entry i is the sum of the weights of outcomes 0 to i.
+     */
+    private final int[] cumulative;
+
+    /**
+     * Creates the weights.
+     * @param cumulative The running total of the weights.
+     */
+    private Weights(final int[] cumulative) {
+        this.cumulative = cumulative;
+    }
+
+    /**
+     * Creates the weights of some outcomes.
+     * @param weights The weight of each outcome, in order.  Outcome i is chosen with a chance of its weight over
+     *                the total.
+     * @return The weights.
+     * @throws IllegalArgumentException If a weight is negative, or they add up to nothing.
+     */
+    public static Weights of(final int... weights) {
+        int[] cumulative = new int[weights.length];
+        long total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] < 0) {
+                throw new IllegalArgumentException("Weights can't be negative");
+            }
+            total += weights[i];
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Weights add up to too much");
+            }
+            cumulative[i] = (int) total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Weights add up to nothing");
+        }
+        return new Weights(cumulative);
+    }
+
+    /**
+     * Returns the sum of the weights.
+     * @return The total.
+     */
+    int getTotal() {
+        return cumulative[cumulative.length - 1];
+    }
+
+    /**
+     * Returns the outcome a roll lands on.
+     * @param roll A number from 0 (inclusive) to the total (exclusive).
+     * @return The index of the outcome.
+     */
+    int indexOf(final int roll) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (roll < cumulative[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the number of outcomes.
+     * @return The number of outcomes.
+     */
+    public int size() {
+        return cumulative.length;
+    }
+}
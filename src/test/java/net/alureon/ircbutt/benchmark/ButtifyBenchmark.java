@@ -0,0 +1,169 @@
+package net.alureon.ircbutt.benchmark;
+
+import net.alureon.ircbutt.file.YAMLConfigurationFile;
+import net.alureon.ircbutt.handler.ButtReplaceHandler;
+import net.alureon.ircbutt.util.RandomService;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares buttify against the way it used to work: split with a regex, debug logging built whether or not it
+ * was enabled, a new Random for every replacement, a chain of equalsIgnoreCase stopword checks, and the result
+ * rebuilt with String.join.  Run with {@code -prof gc} to see the bytes allocated per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ButtifyBenchmark {
+
+    /**
+     * The logger the old code logged to, with debug off as it is in production.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * The number of words in the message.
+     */
+    @Param({"8", "40"})
+    private int words;
+    /**
+     * The message to buttify.
+     */
+    private String message;
+    /**
+     * The handler being measured.
+     */
+    private ButtReplaceHandler handler;
+
+    /**
+     * Builds a message of ordinary chatter, with a stopword every few words, and turns debug logging off.
+     */
+    @Setup
+    public void setUp() {
+        Configurator.setLevel("net.alureon.ircbutt", Level.INFO);
+        String[] vocabulary = {"Honestly", "the", "build", "server", "is", "on", "FIRE", "again,", "lol", "who",
+                "broke", "it?"};
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        message = sb.toString();
+        handler = new ButtReplaceHandler(null, YAMLConfigurationFile.DEFAULT_BUTTIFY_STOPWORDS, new RandomService());
+    }
+
+    /**
+     * Buttifies the message with the index-based tokenizer.
+     * @return The buttified message.
+     */
+    @Benchmark
+    public String current() {
+        return handler.buttifyMessage(message);
+    }
+
+    /**
+     * Buttifies the message the old way.
+     * @return The buttified message.
+     */
+    @Benchmark
+    public String legacy() {
+        return legacyButtify(message);
+    }
+
+    /**
+     * The old buttifyMessage.
+     * @param message The message to buttify.
+     * @return The buttified message.
+     */
+    private static String legacyButtify(final String message) {
+        log.debug("Butting sentence: " + message);
+        String[] split = message.split(" ");
+        int timesToButt = (int) Math.ceil(split.length / 8.0);
+        log.debug("Butting " + timesToButt + " times");
+        for (int i = 0; i < timesToButt; i++) {
+            int replaceIndex = (int) (Math.random() * split.length);
+            if (split[replaceIndex].isEmpty()) {
+                replaceIndex = (int) (Math.random() * split.length);
+            }
+            log.debug("Replacing " + split[replaceIndex] + " with butt.");
+            split[replaceIndex] = legacyReplacement(split[replaceIndex]);
+        }
+        return String.join(" ", split).trim();
+    }
+
+    /**
+     * The old getReplacementWord.
+     * @param word The word to replace.
+     * @return The replacement.
+     */
+    private static String legacyReplacement(final String word) {
+        if (legacyIsStopword(word)) {
+            return word;
+        }
+        StringBuilder sb = new StringBuilder("butts");
+        if (new Random().nextInt(101) < 80) {
+            sb.setLength(4);
+        }
+        char suffix = word.charAt(word.length() - 1);
+        if (!(Character.isAlphabetic(suffix) || Character.isDigit(suffix))) {
+            sb.append(suffix);
+        }
+        char prefix = word.charAt(0);
+        boolean upper = true;
+        for (Character c : word.toCharArray()) {
+            if (Character.isLowerCase(c)) {
+                upper = false;
+                break;
+            }
+        }
+        if (upper) {
+            return sb.toString().toUpperCase();
+        } else if (!(Character.isAlphabetic(prefix) || Character.isDigit(prefix))) {
+            sb.insert(0, prefix);
+        } else if (Character.isUpperCase(prefix)) {
+            sb.replace(0, 1, "B");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The old isAWordWeDontReplace.
+     * @param replace The word to check.
+     * @return True if the word is a stopword.
+     */
+    private static boolean legacyIsStopword(final String replace) {
+        return replace.equalsIgnoreCase("is") || replace.equalsIgnoreCase("a")
+                || replace.equalsIgnoreCase("the") || replace.equalsIgnoreCase("i")
+                || replace.equalsIgnoreCase("my") || replace.equalsIgnoreCase("to")
+                || replace.equalsIgnoreCase("in") || replace.equalsIgnoreCase("of")
+                || replace.equalsIgnoreCase("butt") || replace.equalsIgnoreCase("and")
+                || replace.equalsIgnoreCase("or") || replace.equalsIgnoreCase("your")
+                || replace.equalsIgnoreCase("her") || replace.equalsIgnoreCase("his")
+                || replace.equalsIgnoreCase("was") || replace.equalsIgnoreCase("lol")
+                || replace.equalsIgnoreCase("wtf") || replace.equalsIgnoreCase("tbh")
+                || replace.equalsIgnoreCase("haha") || replace.equalsIgnoreCase("it's")
+                || replace.equalsIgnoreCase("for") || replace.equalsIgnoreCase("has")
+                || replace.equalsIgnoreCase("if") || replace.equalsIgnoreCase("are");
+    }
+}
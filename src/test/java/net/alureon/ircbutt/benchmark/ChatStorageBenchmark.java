@@ -0,0 +1,125 @@
+package net.alureon.ircbutt.benchmark;
+
+import net.alureon.ircbutt.handler.ChatStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many lines the ChatStorage can store and look up per second, with one stripe (which behaves like
+ * a single global lock) and with the default number of stripes.  Run it with -t 1, -t 2, -t 4 and so on to see
+ * how throughput scales with the number of listener threads; the mixed group runs three chatting threads
+ * against one thread running s/// and !grab.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatStorageBenchmark {
+
+    /**
+     * The number of nicks chatting in each channel.
+     */
+    private static final int NICKS = 200;
+    /**
+     * The number of channels.
+     */
+    private static final int CHANNELS = 4;
+    /**
+     * A typical line of chatter.
+     */
+    private static final String LINE = "did anybody else see that thing about the butt on the news last night";
+    /**
+     * The most stripes the storage may use.
+     */
+    @Param({"1", "16"})
+    private int stripes;
+    /**
+     * The storage being measured.
+     */
+    private ChatStorage storage;
+    /**
+     * The channel keys.
+     */
+    private final String[] channels = new String[CHANNELS];
+    /**
+     * The nicks.
+     */
+    private final String[] nicks = new String[NICKS];
+
+    /**
+     * Creates the storage and fills it with a line from every nick.
+     */
+    @Setup
+    public void setUp() {
+        storage = new ChatStorage(10, 4 * 1024 * 1024, Long.MAX_VALUE, stripes);
+        for (int i = 0; i < CHANNELS; i++) {
+            channels[i] = "#channel" + i;
+        }
+        for (int i = 0; i < NICKS; i++) {
+            nicks[i] = "nick" + i;
+        }
+        for (String channel : channels) {
+            for (String nick : nicks) {
+                storage.storeMessage(channel, nick, LINE);
+            }
+        }
+    }
+
+    /**
+     * Stores a line from a random nick.
+     */
+    @Benchmark
+    public void store() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        storage.storeMessage(channels[random.nextInt(CHANNELS)], nicks[random.nextInt(NICKS)], LINE);
+    }
+
+    /**
+     * Looks up the last line of a random nick.
+     * @return The line.
+     */
+    @Benchmark
+    public String lookup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return storage.getLastQuoteFrom(channels[random.nextInt(CHANNELS)], nicks[random.nextInt(NICKS)]);
+    }
+
+    /**
+     * Stores a line from a random nick, alongside the lookups in the mixed group.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public void mixedStore() {
+        store();
+    }
+
+    /**
+     * Looks up every line of a random nick, as s/// does, alongside the stores in the mixed group.
+     * @return The lines.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public List<String> mixedLookup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return storage.getQuotesFrom(channels[random.nextInt(CHANNELS)], nicks[random.nextInt(NICKS)]);
+    }
+}
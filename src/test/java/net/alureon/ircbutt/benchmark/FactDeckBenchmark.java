@@ -0,0 +1,179 @@
+package net.alureon.ircbutt.benchmark;
+
+import net.alureon.ircbutt.game.FactCard;
+import net.alureon.ircbutt.game.FactDeck;
+import net.alureon.ircbutt.game.FactSource;
+import net.alureon.ircbutt.util.RandomService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures how long the guessing game takes to move on to the next round once a fact is guessed.  The old path
+ * picked a fact with ORDER BY RAND(), which sorts the whole table, and then looked up its hint, both while the
+ * player waited; the deck deals a round it looked up in the background while the players were guessing.  The
+ * database is simulated: each query costs a round trip, and ORDER BY RAND() also sorts a random key per fact.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactDeckBenchmark {
+
+    /**
+     * The time a query spends on the network and in the database, in microseconds.
+     */
+    private static final long ROUND_TRIP_MICROS = 500;
+    /**
+     * How long the players spend guessing before each round ends, in microseconds.
+     */
+    private static final long GUESSING_MICROS = 2000;
+    /**
+     * The number of facts the bot knows.
+     */
+    @Param({"1000", "20000"})
+    private int facts;
+    /**
+     * The simulated fact table.
+     */
+    private SimulatedFactTable table;
+    /**
+     * Looks up upcoming rounds for the deck.
+     */
+    private ExecutorService executor;
+    /**
+     * The deck being measured.
+     */
+    private FactDeck deck;
+
+    /**
+     * A fact table that costs about as much to query as a real one.
+     */
+    private static final class SimulatedFactTable implements FactSource {
+
+        /**
+         * The number of facts.
+         */
+        private final int facts;
+
+        /**
+         * Creates the table.
+         * @param facts The number of facts.
+         */
+        SimulatedFactTable(final int facts) {
+            this.facts = facts;
+        }
+
+        /**
+         * Waits for a query to come back.
+         */
+        private static void roundTrip() {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(ROUND_TRIP_MICROS));
+        }
+
+        /**
+         * Picks a random fact the way ORDER BY RAND() LIMIT 1 does, by sorting every fact on a random key.
+         * @return The name of the fact.
+         */
+        String getRandomFactName() {
+            double[] keys = new double[facts];
+            for (int i = 0; i < facts; i++) {
+                keys[i] = ThreadLocalRandom.current().nextDouble();
+            }
+            Arrays.sort(keys);
+            roundTrip();
+            return "fact" + (int) (keys[0] * facts);
+        }
+
+        /**
+         * Looks up the data of a fact by name.
+         * @param name The name of the fact.
+         * @return The data.
+         */
+        String queryKnowledge(final String name) {
+            roundTrip();
+            return "hint for " + name;
+        }
+
+        @Override
+        public List<Integer> getFactIds() {
+            List<Integer> ids = new ArrayList<>(facts);
+            for (int i = 0; i < facts; i++) {
+                ids.add(i);
+            }
+            roundTrip();
+            return ids;
+        }
+
+        @Override
+        public FactCard getFact(final int id) {
+            roundTrip();
+            return new FactCard("fact" + id, "hint for fact" + id);
+        }
+    }
+
+    /**
+     * Creates the table and deals a deck from it.
+     */
+    @Setup
+    public void setUp() {
+        table = new SimulatedFactTable(facts);
+        executor = Executors.newFixedThreadPool(2);
+        deck = new FactDeck(table, executor, 3, new RandomService());
+    }
+
+    /**
+     * Stops the deck's lookups.
+     */
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Lets the players guess for a while before each round ends, which is when the deck looks ahead.
+     */
+    @Setup(Level.Invocation)
+    public void guess() {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(GUESSING_MICROS));
+    }
+
+    /**
+     * Moves to the next round the old way.
+     * @return The hint of the next round.
+     */
+    @Benchmark
+    public String orderByRand() {
+        return table.queryKnowledge(table.getRandomFactName());
+    }
+
+    /**
+     * Moves to the next round by dealing from the deck.
+     * @return The hint of the next round.
+     */
+    @Benchmark
+    public String deck() {
+        return deck.next().getHint();
+    }
+}
@@ -0,0 +1,58 @@
+package net.alureon.ircbutt.benchmark;
+
+import net.alureon.ircbutt.util.RandomService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a draw from the RandomService against the old MathUtils.getRandom, which created a new Random for
+ * every draw, with several threads drawing at once as the command threads do.  Run with {@code -prof gc} to see
+ * the bytes allocated per draw.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RandomServiceBenchmark {
+
+    /**
+     * The highest number drawn.
+     */
+    private static final int MAX = 100;
+    /**
+     * The service being measured.
+     */
+    private final RandomService service = new RandomService();
+
+    /**
+     * Draws a number from the service.
+     * @return The number.
+     */
+    @Benchmark
+    public int service() {
+        return service.nextInt(0, MAX);
+    }
+
+    /**
+     * Draws a number the old way.
+     * @return The number.
+     */
+    @Benchmark
+    public int newRandomPerDraw() {
+        return new Random().nextInt(MAX + 1);
+    }
+}
@@ -0,0 +1,144 @@
+package net.alureon.ircbutt.benchmark;
+
+import net.alureon.ircbutt.command.commands.AmazonSearchCommand;
+import net.alureon.ircbutt.command.commands.DefineCommand;
+import net.alureon.ircbutt.command.commands.UrbanDictionaryCommand;
+import net.alureon.ircbutt.command.commands.YouTubeCommand;
+import net.alureon.ircbutt.command.commands.cryptocurrency.CryptocurrencyCommand;
+import net.alureon.ircbutt.command.commands.cryptocurrency.TickerTable;
+import net.alureon.ircbutt.command.commands.google.GoogleSearchCommand;
+import net.alureon.ircbutt.http.FixtureServer;
+import net.alureon.ircbutt.http.HttpManager;
+import net.alureon.ircbutt.search.Scraper;
+import net.alureon.ircbutt.search.SearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each scraping command end to end (request, download, parse) against the fixture server, with and
+ * without injected latency.  Throughput shows how many lookups the bot can serve at once; the sampled times
+ * give the latency percentiles a user would see.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ScraperLatencyBenchmark {
+
+    /**
+     * The latency the fixture server adds to every response, in milliseconds.
+     */
+    @Param({"0", "25"})
+    private long latencyMillis;
+    /**
+     * The server replaying the fixtures.
+     */
+    private FixtureServer server;
+    /**
+     * The HttpManager pointed at the fixture server.
+     */
+    private HttpManager http;
+    /**
+     * The Scraper making its requests through the HttpManager.
+     */
+    private Scraper scraper;
+
+    /**
+     * Starts the fixture server.
+     * @throws IOException If the server couldn't be started.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        server = new FixtureServer(FixtureServer.FIXTURES);
+        server.setLatencyMillis(latencyMillis);
+        http = new HttpManager(false, Long.MAX_VALUE, 100, 0);
+        server.attach(http);
+        scraper = new Scraper(http);
+    }
+
+    /**
+     * Stops the fixture server.
+     */
+    @TearDown
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Runs a Google search.
+     * @return The results.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Benchmark
+    public SearchResult google() throws IOException {
+        return GoogleSearchCommand.search(scraper, "cheap butts");
+    }
+
+    /**
+     * Runs a YouTube search.
+     * @return The results.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Benchmark
+    public SearchResult youTube() throws IOException {
+        return YouTubeCommand.search(scraper, "cheap butts");
+    }
+
+    /**
+     * Looks up a word on UrbanDictionary.
+     * @return The definitions.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Benchmark
+    public SearchResult urbanDictionary() throws IOException {
+        return UrbanDictionaryCommand.search(scraper, "butt");
+    }
+
+    /**
+     * Looks up a word on Merriam-Webster.
+     * @return The definitions.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Benchmark
+    public SearchResult define() throws IOException {
+        return DefineCommand.search(scraper, "butt");
+    }
+
+    /**
+     * Runs an Amazon search.
+     * @return The results.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Benchmark
+    public SearchResult amazon() throws IOException {
+        return AmazonSearchCommand.search(scraper, "cheap butts");
+    }
+
+    /**
+     * Fetches the CoinMarketCap ticker.
+     * @return The ticker table.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Benchmark
+    public TickerTable ticker() throws IOException {
+        return http.execute("https://api.coinmarketcap.com/v1/ticker/bitcoin/", true,
+                CryptocurrencyCommand::fetchTicker);
+    }
+}
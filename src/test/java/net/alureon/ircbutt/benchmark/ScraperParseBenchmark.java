@@ -0,0 +1,146 @@
+package net.alureon.ircbutt.benchmark;
+
+import net.alureon.ircbutt.command.commands.AmazonSearchCommand;
+import net.alureon.ircbutt.command.commands.DefineCommand;
+import net.alureon.ircbutt.command.commands.UrbanDictionaryCommand;
+import net.alureon.ircbutt.command.commands.YouTubeCommand;
+import net.alureon.ircbutt.command.commands.cryptocurrency.TickerTable;
+import net.alureon.ircbutt.command.commands.google.GoogleSearchCommand;
+import net.alureon.ircbutt.http.FixtureServer;
+import net.alureon.ircbutt.search.SearchResult;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long each scraper takes to parse a page it has already downloaded, from the raw response to
+ * a SearchResult.  The pages are the recorded fixtures, so this needs no network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScraperParseBenchmark {
+
+    /**
+     * The recorded Google results page.
+     */
+    private String google;
+    /**
+     * The recorded YouTube results page.
+     */
+    private String youTube;
+    /**
+     * The recorded UrbanDictionary page.
+     */
+    private String urbanDictionary;
+    /**
+     * The recorded Merriam-Webster page.
+     */
+    private String define;
+    /**
+     * The recorded Amazon results page.
+     */
+    private String amazon;
+    /**
+     * The recorded CoinMarketCap ticker.
+     */
+    private String ticker;
+
+    /**
+     * Reads a fixture into memory.
+     * @param host The host the fixture was recorded from.
+     * @param name The name of the fixture.
+     * @return The fixture.
+     * @throws IOException If the fixture couldn't be read.
+     */
+    private static String read(final String host, final String name) throws IOException {
+        return new String(Files.readAllBytes(FixtureServer.FIXTURES.resolve(host).resolve(name)),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Loads the fixtures.
+     * @throws IOException If a fixture couldn't be read.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        google = read("www.google.com", "search_q_cheap_butts");
+        youTube = read("www.youtube.com", "results_search_query_cheap_butts");
+        urbanDictionary = read("www.urbandictionary.com", "define.php_term_butt");
+        define = read("www.merriam-webster.com", "dictionary_butt");
+        amazon = read("www.amazon.com", "s_ref_nb_sb_noss_2_url_search-alias_3Daps_field-keywords_cheap_butts");
+        ticker = read("api.coinmarketcap.com", "v1_ticker_bitcoin");
+    }
+
+    /**
+     * Parses a Google results page.
+     * @return The results.
+     */
+    @Benchmark
+    public SearchResult google() {
+        return GoogleSearchCommand.parse(Jsoup.parse(google, "http://www.google.com/"));
+    }
+
+    /**
+     * Parses a YouTube results page.
+     * @return The results.
+     */
+    @Benchmark
+    public SearchResult youTube() {
+        return YouTubeCommand.parse(Jsoup.parse(youTube, "http://www.youtube.com/"));
+    }
+
+    /**
+     * Parses an UrbanDictionary page.
+     * @return The definitions.
+     */
+    @Benchmark
+    public SearchResult urbanDictionary() {
+        return UrbanDictionaryCommand.parse(Jsoup.parse(urbanDictionary, "http://www.urbandictionary.com/"), null);
+    }
+
+    /**
+     * Parses a Merriam-Webster page.
+     * @return The definitions.
+     */
+    @Benchmark
+    public SearchResult define() {
+        return DefineCommand.parse(Jsoup.parse(define, "http://www.merriam-webster.com/"), null);
+    }
+
+    /**
+     * Parses an Amazon results page.
+     * @return The results.
+     */
+    @Benchmark
+    public SearchResult amazon() {
+        return AmazonSearchCommand.parse(Jsoup.parse(amazon, "http://www.amazon.com/"));
+    }
+
+    /**
+     * Decodes a CoinMarketCap ticker.
+     * @return The ticker table.
+     * @throws IOException Never, the JSON is in memory.
+     */
+    @Benchmark
+    public TickerTable ticker() throws IOException {
+        return TickerTable.decode(new StringReader(ticker));
+    }
+}
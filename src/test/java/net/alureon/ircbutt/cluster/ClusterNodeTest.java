@@ -0,0 +1,213 @@
+package net.alureon.ircbutt.cluster;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests several ClusterNodes sharing one in-memory lease store.
+ */
+public final class ClusterNodeTest {
+
+    /**
+     * The channels the cluster shares.
+     */
+    private static final List<String> CHANNELS = Arrays.asList("#a", "#b", "#c", "#d");
+    /**
+     * How long leases last.
+     */
+    private static final long LEASE_MILLIS = 30_000;
+    /**
+     * How often the nodes heartbeat.
+     */
+    private static final long HEARTBEAT_MILLIS = 10_000;
+
+    /**
+     * Keeps track of the channels a node has joined.
+     */
+    private static final class FakeMembership implements ChannelMembership {
+
+        /**
+         * The joined channels.
+         */
+        private final Set<String> joined = new HashSet<>();
+
+        @Override
+        public boolean isJoined(final String channel) {
+            return joined.contains(channel);
+        }
+
+        @Override
+        public void join(final String channel) {
+            joined.add(channel);
+        }
+
+        @Override
+        public void part(final String channel) {
+            joined.remove(channel);
+        }
+    }
+
+    /**
+     * An in-memory lease store that can be made unreachable.
+     */
+    private static final class FlakyStore implements LeaseStore {
+
+        /**
+         * The store that answers while this one is reachable.
+         */
+        private final MemoryLeaseStore delegate;
+        /**
+         * Whether the store is unreachable.
+         */
+        private boolean down;
+
+        /**
+         * Creates a reachable store.
+         * @param delegate The store that answers while this one is reachable.
+         */
+        FlakyStore(final MemoryLeaseStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean heartbeat(final String node, final long ttlMillis) {
+            return !down && delegate.heartbeat(node, ttlMillis);
+        }
+
+        @Override
+        public Set<String> getLiveNodes() {
+            if (down) {
+                return Collections.emptySet();
+            }
+            return delegate.getLiveNodes();
+        }
+
+        @Override
+        public LeaseResult acquire(final String channel, final String node, final long ttlMillis) {
+            if (down) {
+                return LeaseResult.UNAVAILABLE;
+            }
+            return delegate.acquire(channel, node, ttlMillis);
+        }
+
+        @Override
+        public void release(final String channel, final String node) {
+            if (!down) {
+                delegate.release(channel, node);
+            }
+        }
+
+        @Override
+        public Map<String, String> getOwners() {
+            if (down) {
+                return Collections.emptyMap();
+            }
+            return delegate.getOwners();
+        }
+    }
+
+    /**
+     * Asserts that no channel is answered by both nodes.
+     * @param a One node.
+     * @param b The other node.
+     */
+    private static void assertNoDoubleReplies(final ClusterNode a, final ClusterNode b) {
+        for (String channel : CHANNELS) {
+            Assert.assertFalse(channel + " is answered twice", a.owns(channel) && b.owns(channel));
+        }
+    }
+
+    /**
+     * Tests that a second node gets half the channels, and takes them all over when the first stops heartbeating.
+     */
+    @Test
+    public void testBalanceAndFailover() {
+        AtomicLong now = new AtomicLong();
+        MemoryLeaseStore store = new MemoryLeaseStore(now::get);
+        FakeMembership joinedA = new FakeMembership();
+        FakeMembership joinedB = new FakeMembership();
+        ClusterNode a = new ClusterNode(true, "a", store, CHANNELS, joinedA, LEASE_MILLIS, HEARTBEAT_MILLIS,
+                now::get);
+        ClusterNode b = new ClusterNode(true, "b", store, CHANNELS, joinedB, LEASE_MILLIS, HEARTBEAT_MILLIS,
+                now::get);
+
+        a.tick();
+        Assert.assertEquals(new HashSet<>(CHANNELS), joinedA.joined);
+        b.tick();
+        assertNoDoubleReplies(a, b);
+        Assert.assertTrue(joinedB.joined.isEmpty());
+        for (int i = 0; i < 2; i++) {
+            now.addAndGet(HEARTBEAT_MILLIS);
+            a.tick();
+            assertNoDoubleReplies(a, b);
+            b.tick();
+            assertNoDoubleReplies(a, b);
+        }
+        Assert.assertEquals(2, joinedA.joined.size());
+        Assert.assertEquals(2, joinedB.joined.size());
+        Assert.assertTrue(b.getStats().contains("owns 2/4 channels, 2 live nodes"));
+
+        // a hangs: it stops answering once its leases might have run out, and b takes over after they have
+        now.addAndGet(LEASE_MILLIS);
+        for (String channel : CHANNELS) {
+            Assert.assertFalse(a.owns(channel));
+        }
+        b.tick();
+        for (String channel : CHANNELS) {
+            Assert.assertTrue(b.owns(channel));
+        }
+        Assert.assertEquals(new HashSet<>(CHANNELS), joinedB.joined);
+    }
+
+    /**
+     * Tests that a node keeps its channels through a short store outage, and only leaves them once its leases have
+     * run out.
+     */
+    @Test
+    public void testStoreOutage() {
+        AtomicLong now = new AtomicLong();
+        FlakyStore store = new FlakyStore(new MemoryLeaseStore(now::get));
+        FakeMembership joined = new FakeMembership();
+        ClusterNode node = new ClusterNode(true, "a", store, CHANNELS, joined, LEASE_MILLIS, HEARTBEAT_MILLIS,
+                now::get);
+        node.tick();
+        Assert.assertEquals(new HashSet<>(CHANNELS), joined.joined);
+
+        store.down = true;
+        now.addAndGet(HEARTBEAT_MILLIS);
+        node.tick();
+        Assert.assertEquals(new HashSet<>(CHANNELS), joined.joined);
+        Assert.assertTrue(node.owns("#a"));
+        Assert.assertTrue(node.getStats().endsWith("0 lost"));
+
+        now.addAndGet(LEASE_MILLIS);
+        node.tick();
+        Assert.assertTrue(joined.joined.isEmpty());
+        Assert.assertFalse(node.owns("#a"));
+
+        store.down = false;
+        now.addAndGet(HEARTBEAT_MILLIS);
+        node.tick();
+        Assert.assertEquals(new HashSet<>(CHANNELS), joined.joined);
+    }
+
+    /**
+     * Tests that a node outside a cluster answers everywhere.
+     */
+    @Test
+    public void testDisabled() {
+        ClusterNode node = new ClusterNode(false, "a", new MemoryLeaseStore(), CHANNELS, new FakeMembership(),
+                LEASE_MILLIS, HEARTBEAT_MILLIS);
+        Assert.assertTrue(node.owns("#a"));
+        Assert.assertTrue(node.owns(null));
+        Assert.assertEquals("cluster: off", node.getStats());
+    }
+}
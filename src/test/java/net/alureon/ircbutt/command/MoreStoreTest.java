@@ -0,0 +1,117 @@
+package net.alureon.ircbutt.command;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the MoreStore.
+ */
+public final class MoreStoreTest {
+
+    /**
+     * Tests that each conversation gets its own results, and that they run out.
+     */
+    @Test
+    public void testConversationsAreSeparate() {
+        MoreStore store = new MoreStore();
+        store.put("#butts bob", ListCursor.of(Arrays.asList("b1", "b2")), 0);
+        store.put("#butts alice", ListCursor.of(Arrays.asList("a1")), 0);
+        Assert.assertEquals(2, store.remaining("#butts bob"));
+        Assert.assertEquals("b1", store.next("#butts bob", 0));
+        Assert.assertEquals("a1", store.next("#butts alice", 0));
+        Assert.assertNull(store.next("#butts alice", 0));
+        Assert.assertEquals("b2", store.next("#butts bob", 0));
+        Assert.assertNull(store.next("#butts bob", 0));
+        Assert.assertEquals(0, store.size());
+        store.put("#butts bob", ListCursor.of(new ArrayList<>()), 0);
+        Assert.assertEquals(0, store.size());
+    }
+
+    /**
+     * Tests that results are only formatted when they are asked for, and that no more than the most lines a
+     * conversation gives out are taken from a cursor.
+     */
+    @Test
+    public void testLazyAndBounded() {
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < MoreStore.MAX_LINES * 2; i++) {
+            numbers.add(i);
+        }
+        AtomicInteger formatted = new AtomicInteger();
+        MoreStore store = new MoreStore();
+        store.put("#butts bob", new ListCursor<>(numbers, n -> {
+            formatted.incrementAndGet();
+            return "line " + n;
+        }), 0);
+        Assert.assertEquals(0, formatted.get());
+        Assert.assertEquals(MoreStore.MAX_LINES, store.remaining("#butts bob"));
+        Assert.assertEquals("line 0", store.next("#butts bob", 0));
+        Assert.assertEquals(1, formatted.get());
+        for (int i = 1; i < MoreStore.MAX_LINES; i++) {
+            Assert.assertNotNull(store.next("#butts bob", 0));
+        }
+        Assert.assertNull(store.next("#butts bob", 0));
+        Assert.assertEquals(MoreStore.MAX_LINES, formatted.get());
+    }
+
+    /**
+     * Tests that a conversation whose cursor is slow to make its next line, such as one fetching a page from the
+     * database, doesn't hold up the other conversations.
+     * @throws Exception If the slow line can't be waited for.
+     */
+    @Test(timeout = 10000)
+    public void testSlowCursorDoesNotBlockOthers() throws Exception {
+        MoreStore store = new MoreStore();
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        store.put("#butts bob", new ListCursor<>(Arrays.asList("b1", "b2"), line -> {
+            fetching.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return line;
+        }), 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(() -> store.next("#butts bob", 0));
+            fetching.await();
+            store.put("#butts alice", ListCursor.of(Arrays.asList("a1", "a2")), 0);
+            Assert.assertEquals(2, store.remaining("#butts alice"));
+            Assert.assertEquals("a1", store.next("#butts alice", 0));
+            release.countDown();
+            Assert.assertEquals("b1", slow.get());
+            Assert.assertEquals(1, store.remaining("#butts bob"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that idle conversations are dropped, and that only the most recently used conversations are kept.
+     */
+    @Test
+    public void testExpiry() {
+        MoreStore store = new MoreStore();
+        store.put("#butts bob", ListCursor.of(Arrays.asList("b1", "b2")), MoreStore.IDLE_MILLIS);
+        store.put("#butts alice", ListCursor.of(Arrays.asList("a1", "a2")), MoreStore.IDLE_MILLIS * 2);
+        Assert.assertNull(store.next("#butts bob", MoreStore.IDLE_MILLIS * 2));
+        Assert.assertEquals("a1", store.next("#butts alice", MoreStore.IDLE_MILLIS * 2));
+
+        for (int i = 0; i <= MoreStore.MAX_CONVERSATIONS; i++) {
+            store.put("#butts nick" + i, ListCursor.of(Arrays.asList("x")), MoreStore.IDLE_MILLIS * 2);
+        }
+        Assert.assertEquals(MoreStore.MAX_CONVERSATIONS, store.size());
+        Assert.assertNull(store.next("#butts alice", MoreStore.IDLE_MILLIS * 2));
+    }
+}
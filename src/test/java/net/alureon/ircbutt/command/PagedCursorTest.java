@@ -0,0 +1,48 @@
+package net.alureon.ircbutt.command;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the PagedCursor.
+ */
+public final class PagedCursorTest {
+
+    /**
+     * Tests that results are fetched a page at a time, only when asked for, and that missing results are skipped.
+     * The snapshot only gets the lines of the page already fetched.
+     */
+    @Test
+    public void testFetchesPagesOnDemand() {
+        List<List<Integer>> fetched = new ArrayList<>();
+        PagedCursor<Integer> cursor = new PagedCursor<>(Arrays.asList(1, 2, 3, 4, 5), 2, ids -> {
+            fetched.add(ids);
+            List<String> lines = new ArrayList<>();
+            for (Integer id : ids) {
+                if (id != 3) {  // deleted since the search
+                    lines.add("fact " + id);
+                }
+            }
+            return lines;
+        });
+        Assert.assertEquals(5, cursor.remaining());
+        Assert.assertTrue(cursor.getBufferedLines(5).isEmpty());
+        Assert.assertTrue(fetched.isEmpty());
+        Assert.assertEquals("fact 1", cursor.next());
+        Assert.assertEquals(1, fetched.size());
+        Assert.assertEquals(Arrays.asList("fact 2"), cursor.getBufferedLines(5));
+        Assert.assertEquals(1, fetched.size());
+        Assert.assertEquals("fact 2", cursor.next());
+        Assert.assertEquals(1, fetched.size());
+        Assert.assertEquals(3, cursor.remaining());
+        Assert.assertEquals("fact 4", cursor.next());
+        Assert.assertEquals("fact 5", cursor.next());
+        Assert.assertNull(cursor.next());
+        Assert.assertEquals(0, cursor.remaining());
+        Assert.assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5)), fetched);
+    }
+}
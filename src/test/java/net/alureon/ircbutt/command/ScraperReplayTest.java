@@ -0,0 +1,130 @@
+package net.alureon.ircbutt.command;
+
+import net.alureon.ircbutt.command.commands.AmazonSearchCommand;
+import net.alureon.ircbutt.command.commands.DefineCommand;
+import net.alureon.ircbutt.command.commands.UrbanDictionaryCommand;
+import net.alureon.ircbutt.command.commands.YouTubeCommand;
+import net.alureon.ircbutt.command.commands.cryptocurrency.CryptocurrencyCommand;
+import net.alureon.ircbutt.command.commands.cryptocurrency.TickerTable;
+import net.alureon.ircbutt.command.commands.google.GoogleSearchCommand;
+import net.alureon.ircbutt.http.FixtureServer;
+import net.alureon.ircbutt.http.HttpManager;
+import net.alureon.ircbutt.search.Scraper;
+import net.alureon.ircbutt.search.SearchResult;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Regression tests for the scraping commands, replayed from recorded responses.
+ */
+public final class ScraperReplayTest {
+
+    /**
+     * The server replaying the fixtures.
+     */
+    private static FixtureServer server;
+    /**
+     * The HttpManager pointed at the fixture server.
+     */
+    private static HttpManager http;
+    /**
+     * The Scraper making its requests through the HttpManager.
+     */
+    private static Scraper scraper;
+
+    /**
+     * Starts the fixture server.
+     * @throws IOException If the server couldn't be started.
+     */
+    @BeforeClass
+    public static void setUp() throws IOException {
+        server = new FixtureServer(FixtureServer.FIXTURES);
+        http = new HttpManager(false, Long.MAX_VALUE, 100, 0);
+        server.attach(http);
+        scraper = new Scraper(http);
+    }
+
+    /**
+     * Stops the fixture server.
+     */
+    @AfterClass
+    public static void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Tests that Google results are unwrapped, and that news links are skipped.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Test
+    public void testGoogle() throws IOException {
+        SearchResult result = GoogleSearchCommand.search(scraper, "cheap butts");
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals("Title: Butts R Us - Discount Butts and Butt Accessories", result.getFirst().getText());
+        Assert.assertEquals("http://www.buttsrus.example/", result.getFirst().getUrl());
+        Assert.assertEquals("https://en.wikipedia.org/wiki/Buttocks", result.getItems().get(1).getUrl());
+    }
+
+    /**
+     * Tests YouTube search results.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Test
+    public void testYouTube() throws IOException {
+        SearchResult result = YouTubeCommand.search(scraper, "cheap butts");
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals("http://youtube.com/watch?v=Nlm-zuOx6Kk", result.getFirst().getUrl());
+        Assert.assertEquals("Cheap Butts (Official Video)", result.getItems().get(1).getText());
+    }
+
+    /**
+     * Tests UrbanDictionary definitions, and that the link points at the real site.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Test
+    public void testUrbanDictionary() throws IOException {
+        SearchResult result = UrbanDictionaryCommand.search(scraper, "butt");
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals("A cigarette that has been smoked down to the filter.", result.getItems().get(1).getText());
+        Assert.assertEquals("http://www.urbandictionary.com/define.php?term=butt", result.getLink());
+    }
+
+    /**
+     * Tests Merriam-Webster definitions.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Test
+    public void testDefine() throws IOException {
+        SearchResult result = DefineCommand.search(scraper, "butt");
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(": the buttocks of a person", result.getItems().get(1).getText());
+    }
+
+    /**
+     * Tests Amazon results, and that ads are cleaned up and cards without products are skipped.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Test
+    public void testAmazon() throws IOException {
+        SearchResult result = AmazonSearchCommand.search(scraper, "cheap butts");
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals("Inflatable Butt Cushion, Pack of 2", result.getFirst().getText());
+        Assert.assertEquals("http://amazon.com/dp/B01BUTT003", result.getItems().get(2).getUrl());
+    }
+
+    /**
+     * Tests the CoinMarketCap ticker.
+     * @throws IOException If the fixture couldn't be fetched.
+     */
+    @Test
+    public void testTicker() throws IOException {
+        TickerTable table = http.execute("https://api.coinmarketcap.com/v1/ticker/bitcoin/", true,
+                CryptocurrencyCommand::fetchTicker);
+        Assert.assertEquals(1, table.size());
+        Assert.assertEquals(11421.2, table.getPriceUsd(0), 0);
+    }
+}
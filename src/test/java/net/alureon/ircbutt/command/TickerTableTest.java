@@ -0,0 +1,55 @@
+package net.alureon.ircbutt.command;
+
+import net.alureon.ircbutt.command.commands.cryptocurrency.TickerTable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Tests decoding CoinMarketCap ticker responses into a TickerTable.
+ */
+public final class TickerTableTest {
+
+    /**
+     * A trimmed down response in the same shape the ticker endpoint returns.
+     */
+    private static final String TICKER_JSON = "[{\"id\": \"bitcoin\", \"name\": \"Bitcoin\", \"symbol\": \"BTC\","
+            + " \"rank\": \"1\", \"price_usd\": \"6543.21\", \"price_btc\": \"1.0\", \"market_cap_usd\": \"112345678901.0\","
+            + " \"percent_change_1h\": \"0.12\", \"percent_change_24h\": \"-1.5\", \"percent_change_7d\": \"7.25\","
+            + " \"last_updated\": \"1517004567\"},"
+            + " {\"id\": \"fuelcoin\", \"name\": \"FuelCoin\", \"rank\": \"2\", \"price_usd\": \"0.01\","
+            + " \"market_cap_usd\": null, \"percent_change_1h\": null, \"percent_change_24h\": \"12.0\","
+            + " \"percent_change_7d\": \"?\"}]";
+
+    /**
+     * Tests that every column is decoded, and that missing values become NaN.
+     * @throws IOException never, the JSON is in memory.
+     */
+    @Test
+    public void testDecode() throws IOException {
+        TickerTable table = TickerTable.decode(new StringReader(TICKER_JSON));
+        Assert.assertEquals(2, table.size());
+        Assert.assertEquals("Bitcoin", table.getName(0));
+        Assert.assertEquals(1, table.getRank(0));
+        Assert.assertEquals(6543.21, table.getPriceUsd(0), 0);
+        Assert.assertEquals(112345678901.0, table.getMarketCapUsd(0), 0);
+        Assert.assertEquals(-1.5, table.getPercentChange24h(0), 0);
+        Assert.assertEquals(7.25, table.getPercentChange7d(0), 0);
+        Assert.assertEquals("FuelCoin", table.getName(1));
+        Assert.assertTrue(Double.isNaN(table.getMarketCapUsd(1)));
+        Assert.assertTrue(Double.isNaN(table.getPercentChange1h(1)));
+        Assert.assertTrue(Double.isNaN(table.getPercentChange7d(1)));
+    }
+
+    /**
+     * The API answers unknown coins with an error object, which should decode to an empty table.
+     * @throws IOException never, the JSON is in memory.
+     */
+    @Test
+    public void testDecodeError() throws IOException {
+        TickerTable table = TickerTable.decode(new StringReader("{\"error\": \"id not found\"}"));
+        Assert.assertEquals(0, table.size());
+    }
+}
@@ -4,6 +4,7 @@ import net.alureon.ircbutt.command.commands.VimSearchReplaceCommand;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,4 +49,16 @@ public final class VimSearchReplaceCommandTest {
         Matcher m5 = p.matcher(command5);
         Assert.assertTrue(m5.find());
     }
+
+    /**
+     * Tests that the most recent line with a match is the one that gets corrected.
+     */
+    @Test
+    public void testSearchAndReplaceOlderLine() {
+        VimSearchReplaceCommand vim = new VimSearchReplaceCommand();
+        Assert.assertEquals("i like butts", vim.searchAndReplace("s/buts/butts/",
+                Arrays.asList("no really", "i like buts", "i like buts a lot")));
+        Assert.assertEquals("no really", vim.searchAndReplace("s/nothing/something/",
+                Arrays.asList("no really", "i like buts")));
+    }
 }
@@ -0,0 +1,42 @@
+package net.alureon.ircbutt.command.commands.fact;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the HotFacts cache.
+ */
+public final class HotFactsTest {
+
+    /**
+     * Tests that a read which was under way when its fact was changed isn't kept, and reads of other facts are.
+     */
+    @Test
+    public void testReadRacingAChangeIsNotKept() {
+        HotFacts facts = new HotFacts();
+        long before = facts.generation();
+        facts.invalidate("Butt");
+        facts.put("butt", "old", 0, before);
+        Assert.assertNull(facts.get("butt", 0));
+        facts.put("other", "fine", 0, before);
+        Assert.assertEquals("fine", facts.get("other", 0));
+        facts.put("butt", "new", 0, facts.generation());
+        Assert.assertEquals("new", facts.get("butt", 0));
+    }
+
+    /**
+     * Tests that a read begun before changes that have since been forgotten isn't kept, as it may have missed one.
+     */
+    @Test
+    public void testReadOlderThanRememberedChangesIsNotKept() {
+        HotFacts facts = new HotFacts();
+        long before = facts.generation();
+        for (int i = 0; i <= HotFacts.MAX_INVALIDATIONS; i++) {
+            facts.invalidate("fact" + i);
+        }
+        facts.put("butt", "old", 0, before);
+        Assert.assertNull(facts.get("butt", 0));
+        facts.put("butt", "new", 0, facts.generation());
+        Assert.assertEquals("new", facts.get("butt", 0));
+    }
+}
@@ -0,0 +1,45 @@
+package net.alureon.ircbutt.command.commands.karma;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests the leaderboard and rank replies of the KarmaCommand.
+ */
+public final class KarmaCommandTest {
+
+    /**
+     * Tests that the leaderboard numbers items by their rank, so tied items share a number with !karma rank.
+     */
+    @Test
+    public void testLeaderboardShowsRanks() {
+        KarmaLeaderboard board = new KarmaLeaderboard();
+        board.put("butts", 5);
+        board.put("coffee", 5);
+        board.put("Tea", 1);
+        board.put("java", -3);
+        Assert.assertEquals(Collections.singletonList("top karma: 1. butts (5), 1. coffee (5), 3. Tea (1), "
+                + "4. java (-3)"), KarmaCommand.leaderboardLines(board, "top karma: ", board::top));
+        Assert.assertEquals(Arrays.asList("bottom karma: 4. java (-3), 3. Tea (1), 1. butts (5), 1. coffee (5)"),
+                KarmaCommand.leaderboardLines(board, "bottom karma: ", board::bottom));
+        Assert.assertTrue(KarmaCommand.describeRank(board, "coffee").startsWith("coffee is ranked 1 of 4"));
+        KarmaLeaderboard empty = new KarmaLeaderboard();
+        Assert.assertTrue(KarmaCommand.leaderboardLines(empty, "top karma: ", empty::top).isEmpty());
+    }
+
+    /**
+     * Tests that an item called top, which !karma top can't look up, can still be looked up with !karma rank.
+     */
+    @Test
+    public void testItemCalledTop() {
+        KarmaLeaderboard board = new KarmaLeaderboard();
+        board.put("top", 3);
+        board.put("bottom", -2);
+        Assert.assertEquals("top is ranked 1 of 2 with a karma level of 3", KarmaCommand.describeRank(board, "top"));
+        Assert.assertEquals("bottom is ranked 2 of 2 with a karma level of -2",
+                KarmaCommand.describeRank(board, "bottom"));
+    }
+}
@@ -0,0 +1,64 @@
+package net.alureon.ircbutt.command.commands.karma;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Tests the KarmaLeaderboard.
+ */
+public final class KarmaLeaderboardTest {
+
+    /**
+     * Tests that the top and bottom lists and ranks follow increments and decrements, ignoring case.
+     */
+    @Test
+    public void testTopBottomAndRank() {
+        KarmaLeaderboard leaderboard = new KarmaLeaderboard();
+        leaderboard.put("butts", 5);
+        leaderboard.put("java", -3);
+        leaderboard.put("coffee", 5);
+        leaderboard.adjust("Tea", 1);
+        Assert.assertEquals("[butts=5, coffee=5, Tea=1]", leaderboard.top(3).toString());
+        Assert.assertEquals("[java=-3, Tea=1]", leaderboard.bottom(2).toString());
+        Assert.assertEquals(1, leaderboard.rank("coffee"));
+        Assert.assertEquals(1, leaderboard.rank("BUTTS"));
+        Assert.assertEquals(3, leaderboard.rank("tea"));
+        Assert.assertEquals(4, leaderboard.rank("java"));
+        Assert.assertEquals(0, leaderboard.rank("nothing"));
+
+        leaderboard.adjust("coffee", 1);
+        leaderboard.adjust("JAVA", -1);
+        Assert.assertEquals("[coffee=6, butts=5]", leaderboard.top(2).toString());
+        Assert.assertEquals(2, leaderboard.rank("butts"));
+        Assert.assertEquals(Integer.valueOf(-4), leaderboard.getKarma("java"));
+        Assert.assertEquals(4, leaderboard.size());
+        Assert.assertEquals(4, leaderboard.top(100).size());
+    }
+
+    /**
+     * Tests that ranks match counting every item by hand after many random changes.
+     */
+    @Test
+    public void testRanksMatchNaiveCount() {
+        KarmaLeaderboard leaderboard = new KarmaLeaderboard();
+        int[] karma = new int[50];
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            int item = random.nextInt(karma.length);
+            int delta = random.nextInt(3) - 1;
+            karma[item] += delta;
+            leaderboard.adjust("item" + item, delta);
+        }
+        for (int item = 0; item < karma.length; item++) {
+            int above = 0;
+            for (int other : karma) {
+                if (other > karma[item]) {
+                    above++;
+                }
+            }
+            Assert.assertEquals(above + 1, leaderboard.rank("item" + item));
+        }
+    }
+}
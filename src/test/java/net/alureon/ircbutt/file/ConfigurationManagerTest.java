@@ -0,0 +1,114 @@
+package net.alureon.ircbutt.file;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Tests loading and reloading the config.yml.
+ */
+public final class ConfigurationManagerTest {
+
+    /**
+     * A scratch directory for the config.yml.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Returns the config.yml that ships in the jar.
+     * @return Its contents.
+     */
+    private static String defaultConfig() {
+        try (InputStream stream = ConfigurationManagerTest.class.getResourceAsStream("/config.yml");
+             Scanner scanner = new Scanner(stream, StandardCharsets.UTF_8.name())) {
+            return scanner.useDelimiter("\\A").next();
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * Tests that a good reload is swapped in and passed to the listeners, and a bad one is turned away.
+     * @throws IOException If the config.yml can't be written.
+     */
+    @Test
+    public void testReload() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("config.yml");
+        String config = defaultConfig();
+        Files.write(path, config.getBytes(StandardCharsets.UTF_8));
+        ConfigurationManager manager = new ConfigurationManager(path);
+        manager.load();
+        YAMLConfigurationFile first = manager.get();
+        Assert.assertEquals(100, first.getRandomResponseFrequency());
+        Assert.assertEquals(2, first.getChannelList().size());
+        List<YAMLConfigurationFile> changes = new ArrayList<>();
+        manager.addListener((old, current) -> {
+            Assert.assertSame(first, old);
+            changes.add(current);
+        });
+
+        Files.write(path, config.replaceFirst("Port: 6667", "Port: 0").getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(manager.reload().startsWith("config.yml not reloaded"));
+        Files.write(path, config.replace("Outbound:", "Outbound: []").getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(manager.reload().startsWith("config.yml not reloaded"));
+        Files.write(path, config.replace("Table-Prefix: ircbutt", "Table-Prefix: other")
+                .getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(manager.reload().startsWith("config.yml not reloaded"));
+        Assert.assertSame(first, manager.get());
+        Assert.assertTrue(changes.isEmpty());
+
+        Files.write(path, config.replace("Random-Response-Frequency: 100", "Random-Response-Frequency: 5")
+                .replace("Pack-Length: 400", "Pack-Length: 0").replace("    - '##anotherchannel'\n", "")
+                .getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("config.yml reloaded", manager.reload());
+        Assert.assertEquals(1, changes.size());
+        Assert.assertSame(changes.get(0), manager.get());
+        Assert.assertEquals(5, manager.get().getRandomResponseFrequency());
+        Assert.assertEquals(1, manager.get().getNetworks().get(0).getChannels().size());
+        Assert.assertEquals(0, manager.get().getOutboundPackLength());
+        Assert.assertEquals(100, first.getRandomResponseFrequency());
+        Assert.assertEquals("config: 1 reloads, 3 rejected", manager.getStats());
+    }
+
+    /**
+     * Tests that settings which only change on a restart keep the values the bot started with, while the rest of
+     * the reload is swapped in.
+     * @throws IOException If the config.yml can't be written.
+     */
+    @Test
+    public void testRestartOnlySettingsAreKept() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("config.yml");
+        String config = defaultConfig();
+        Files.write(path, config.getBytes(StandardCharsets.UTF_8));
+        ConfigurationManager manager = new ConfigurationManager(path);
+        manager.load();
+
+        Files.write(path, config.replace("Password: secret", "Password: other").replace("IP: 127.0.0.1", "IP: db")
+                .replace("Hostname: 'chat.freenode.net'", "Hostname: 'irc.libera.chat'")
+                .replace("Lines-Per-Nick: 10", "Lines-Per-Nick: 20").replace("    - '##anotherchannel'\n", "")
+                .replace("Random-Response-Frequency: 100", "Random-Response-Frequency: 5")
+                .getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("config.yml reloaded, restart the bot for the Server, SQL, Chat-History settings",
+                manager.reload());
+        YAMLConfigurationFile current = manager.get();
+        Assert.assertEquals("secret", current.getSqlPassword());
+        Assert.assertEquals("127.0.0.1", current.getSqlIp());
+        Assert.assertEquals("chat.freenode.net", current.getServerHostname());
+        Assert.assertEquals("chat.freenode.net", current.getNetworks().get(0).getHostname());
+        Assert.assertEquals(10, current.getChatLinesPerNick());
+        Assert.assertEquals(5, current.getRandomResponseFrequency());
+        Assert.assertEquals(1, current.getNetworks().get(0).getChannels().size());
+        Assert.assertEquals(1, current.getChannelList().size());
+    }
+}
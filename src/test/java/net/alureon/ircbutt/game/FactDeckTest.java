@@ -0,0 +1,110 @@
+package net.alureon.ircbutt.game;
+
+import org.junit.Assert;
+import org.junit.Test;
+import net.alureon.ircbutt.util.RandomService;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests the FactDeck.
+ */
+public final class FactDeckTest {
+
+    /**
+     * A FactSource holding a few facts in memory, one of which has been deleted.
+     */
+    private static final class MemoryFactSource implements FactSource {
+
+        /**
+         * The number of facts.
+         */
+        private final int facts;
+        /**
+         * The id of the fact that has been deleted.
+         */
+        private final int deleted;
+
+        /**
+         * Creates the source.
+         * @param facts The number of facts.
+         * @param deleted The id of the fact that has been deleted.
+         */
+        MemoryFactSource(final int facts, final int deleted) {
+            this.facts = facts;
+            this.deleted = deleted;
+        }
+
+        @Override
+        public List<Integer> getFactIds() {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < facts; i++) {
+                ids.add(i);
+            }
+            return ids;
+        }
+
+        @Override
+        public FactCard getFact(final int id) {
+            if (id == deleted) {
+                return null;
+            }
+            return new FactCard("fact" + id, "hint" + id);
+        }
+    }
+
+    /**
+     * Tests that every fact is dealt once before any is dealt again, and deleted facts are skipped.
+     */
+    @Test
+    public void testNoRepeats() {
+        FactDeck deck = new FactDeck(new MemoryFactSource(20, 7), Runnable::run, 3, new RandomService(1));
+        Set<String> dealt = new HashSet<>();
+        for (int i = 0; i < 19; i++) {
+            FactCard card = deck.next();
+            Assert.assertNotNull(card);
+            Assert.assertTrue(dealt.add(card.getName()));
+            Assert.assertEquals(card.getName().replace("fact", "hint"), card.getHint());
+        }
+        Assert.assertFalse(dealt.contains("fact7"));
+        Assert.assertEquals(0, deck.remaining());
+        Assert.assertNotNull(deck.next());
+    }
+
+    /**
+     * Tests that a deck rebuilt from what another had left, as a guessing game is after a restart, deals no fact
+     * the first deck already dealt.
+     */
+    @Test
+    public void testNoRepeatsAcrossRestore() {
+        FactSource source = new MemoryFactSource(20, 7);
+        FactDeck deck = new FactDeck(source, Runnable::run, 3, new RandomService(1));
+        Set<String> dealt = new HashSet<>();
+        for (int i = 0; i < 8; i++) {
+            Assert.assertTrue(dealt.add(deck.next().getName()));
+        }
+        FactDeck restored = new FactDeck(source, Runnable::run, 3, new RandomService(2), deck.getRemainingIds());
+        Assert.assertEquals(deck.remaining(), restored.remaining());
+        for (int i = 0; i < 11; i++) {
+            FactCard card = restored.next();
+            Assert.assertNotNull(card);
+            Assert.assertTrue(card.getName(), dealt.add(card.getName()));
+        }
+        Assert.assertEquals(19, dealt.size());
+        Assert.assertEquals(0, restored.remaining());
+    }
+
+    /**
+     * Tests that a deck with no facts deals nothing.
+     */
+    @Test
+    public void testEmpty() {
+        FactDeck deck = new FactDeck(new MemoryFactSource(0, -1), Runnable::run, 3, new RandomService(1));
+        Assert.assertNull(deck.next());
+        FactDeck allDeleted = new FactDeck(new MemoryFactSource(1, 0), Runnable::run, 3, new RandomService(1));
+        Assert.assertNull(allDeleted.next());
+    }
+}
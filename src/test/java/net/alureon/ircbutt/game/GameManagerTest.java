@@ -0,0 +1,82 @@
+package net.alureon.ircbutt.game;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the GameManager.
+ */
+public final class GameManagerTest {
+
+    /**
+     * Tests that each channel has its own game, and that a channel can only have one at a time.
+     */
+    @Test
+    public void testOneGamePerChannel() {
+        GameManager manager = new GameManager();
+        Assert.assertNull(manager.getSession("#butts"));
+        GameSession butts = manager.start("#butts", new RegexGame("a", "b"));
+        Assert.assertNotNull(butts);
+        Assert.assertNull(manager.start("#butts", new RegexGame("c", "d")));
+        Assert.assertNotNull(manager.start("#other", new RegexGame("c", "d")));
+        Assert.assertSame(butts, manager.getSession("#butts"));
+        Assert.assertNull(manager.getSession(null));
+        Assert.assertEquals(2, manager.getSessionCount());
+
+        Assert.assertTrue(manager.end(butts));
+        Assert.assertFalse(manager.end(butts));
+        Assert.assertEquals(GameState.FINISHED, butts.getState());
+        Assert.assertNull(manager.getSession("#butts"));
+        Assert.assertNotNull(manager.start("#butts", new RegexGame("c", "d")));
+    }
+
+    /**
+     * Tests that a game nobody plays is timed out and forgotten.
+     */
+    @Test
+    public void testIdleTimeout() {
+        GameManager manager = new GameManager(0);
+        GameSession session = manager.start("#butts", new RegexGame("a", "b"));
+        Assert.assertNull(manager.getSession("#butts"));
+        Assert.assertEquals(GameState.EXPIRED, session.getState());
+        Assert.assertFalse(manager.end(session));
+        Assert.assertEquals(0, manager.getSessionCount());
+        Assert.assertNotNull(manager.start("#butts", new RegexGame("a", "b")));
+
+        GameManager sweeping = new GameManager(TimeUnit.HOURS.toMillis(1));
+        sweeping.start("#butts", new RegexGame("a", "b"));
+        sweeping.sweep(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(2));
+        Assert.assertEquals(0, sweeping.getSessionCount());
+    }
+
+    /**
+     * Tests that when many players win at once, exactly one of them ends the game.
+     * @throws Exception If a player's thread fails.
+     */
+    @Test
+    public void testOnlyOneWinner() throws Exception {
+        GameManager manager = new GameManager();
+        GameSession session = manager.start("#butts", new RegexGame("a", "b"));
+        ExecutorService players = Executors.newFixedThreadPool(8);
+        List<Callable<Boolean>> wins = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            wins.add(() -> manager.end(session));
+        }
+        int winners = 0;
+        for (Future<Boolean> win : players.invokeAll(wins)) {
+            if (win.get()) {
+                winners++;
+            }
+        }
+        players.shutdown();
+        Assert.assertEquals(1, winners);
+    }
+}
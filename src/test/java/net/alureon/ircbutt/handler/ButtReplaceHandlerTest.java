@@ -1,6 +1,10 @@
 package net.alureon.ircbutt.handler;
 
+import org.junit.Assert;
 import org.junit.Test;
+import net.alureon.ircbutt.util.RandomService;
+
+import java.util.Arrays;
 
 /**
  * Tests the butt replace handler.
@@ -21,4 +25,54 @@ public final class ButtReplaceHandlerTest {
         System.out.println(butted2);
     }
 
+    /**
+     * Tests that replacements mimic the case and punctuation of the word they replace, and that everything else
+     * in the message is left as it was.
+     */
+    @Test
+    public void testReplacementsKeepShape() {
+        ButtReplaceHandler replaceHandler = new ButtReplaceHandler(null);
+        for (int i = 0; i < 200; i++) {
+            String butted = replaceHandler.buttifyMessage("Hello WORLD (again), friend.");
+            String[] words = butted.split(" ");
+            Assert.assertEquals(4, words.length);
+            Assert.assertTrue(butted, words[0].matches("Hello|Butts?"));
+            Assert.assertTrue(butted, words[1].matches("WORLD|BUTTS?"));
+            Assert.assertTrue(butted, words[2].matches("\\(again\\),|\\(butts?,"));
+            Assert.assertTrue(butted, words[3].matches("friend\\.|butts?\\."));
+        }
+    }
+
+    /**
+     * Tests that handlers with the same seed buttify the same way.
+     */
+    @Test
+    public void testSeededIsDeterministic() {
+        ButtReplaceHandler first = new ButtReplaceHandler(null, Arrays.asList("is", "a"), new RandomService(9));
+        ButtReplaceHandler second = new ButtReplaceHandler(null, Arrays.asList("is", "a"), new RandomService(9));
+        for (int i = 0; i < 100; i++) {
+            String message = "this is a rather long message that should get butted more than once, honestly";
+            Assert.assertEquals(first.buttifyMessage(message), second.buttifyMessage(message));
+        }
+    }
+
+    /**
+     * Tests that stopwords are never replaced, whatever their case, and that blank messages are left alone.
+     */
+    @Test
+    public void testStopwordsAndBlanks() {
+        ButtReplaceHandler replaceHandler = new ButtReplaceHandler(null, Arrays.asList("Is", "the", " "),
+                new RandomService(3));
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals("IS the", replaceHandler.buttifyMessage("IS the"));
+            Assert.assertEquals("", replaceHandler.buttifyMessage(""));
+            Assert.assertEquals("", replaceHandler.buttifyMessage("   "));
+            Assert.assertEquals("is  THE", replaceHandler.buttifyMessage(" is  THE "));
+        }
+        Stopwords stopwords = new Stopwords(Arrays.asList("it's", "LOL"));
+        Assert.assertTrue(stopwords.contains("haha IT'S lol", 5, 9));
+        Assert.assertTrue(stopwords.contains("haha IT'S lol", 10, 13));
+        Assert.assertFalse(stopwords.contains("haha IT'S lol", 0, 4));
+        Assert.assertFalse(stopwords.contains("haha IT'S lol", 0, 13));
+    }
 }
@@ -0,0 +1,131 @@
+package net.alureon.ircbutt.handler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests the ChatStorage.
+ */
+public final class ChatStorageTest {
+
+    /**
+     * Tests that each nick keeps its last few lines, separately in each channel, regardless of case.
+     */
+    @Test
+    public void testHistory() {
+        ChatStorage storage = new ChatStorage(2, 1024, Long.MAX_VALUE);
+        storage.storeMessage("#butts", "Bob", "one", 0);
+        storage.storeMessage("#butts", "bob", "two", 0);
+        storage.storeMessage("#butts", "bob", "three ☃", 0);
+        storage.storeMessage("#other", "bob", "elsewhere", 0);
+        Assert.assertEquals("three ☃", storage.getLastQuoteFrom("#butts", "BOB"));
+        Assert.assertEquals("two", storage.getQuoteFrom("#butts", "bob", 1));
+        Assert.assertNull(storage.getQuoteFrom("#butts", "bob", 2));
+        Assert.assertEquals(Arrays.asList("three ☃", "two"), storage.getQuotesFrom("#butts", "bob"));
+        Assert.assertEquals("elsewhere", storage.getLastQuoteFrom("#other", "bob"));
+        Assert.assertFalse(storage.hasQuoteFrom(null, "bob"));
+        Assert.assertFalse(storage.hasQuoteFrom("#butts", "alice"));
+    }
+
+    /**
+     * Tests that once the arena is full the oldest lines are forgotten, even if they wrapped around its end.
+     */
+    @Test
+    public void testArenaWraps() {
+        ChatStorage storage = new ChatStorage(10, 10, Long.MAX_VALUE);
+        storage.storeMessage("#butts", "bob", "abcd", 0);
+        storage.storeMessage("#butts", "alice", "efgh", 0);
+        storage.storeMessage("#butts", "bob", "ijklmn", 0);
+        Assert.assertEquals("ijklmn", storage.getLastQuoteFrom("#butts", "bob"));
+        Assert.assertNull(storage.getQuoteFrom("#butts", "bob", 1));
+        Assert.assertEquals("efgh", storage.getLastQuoteFrom("#butts", "alice"));
+        storage.storeMessage("#butts", "bob", "o", 0);
+        Assert.assertFalse(storage.hasQuoteFrom("#butts", "alice"));
+    }
+
+    /**
+     * Tests that a line too long for the arena is cut between characters, not in the middle of one.
+     */
+    @Test
+    public void testLongLineCutBetweenCharacters() {
+        ChatStorage storage = new ChatStorage(10, 10, Long.MAX_VALUE);
+        storage.storeMessage("#butts", "bob", "abcdefghi\u00e9\u00e9", 0);
+        Assert.assertEquals("abcdefghi", storage.getLastQuoteFrom("#butts", "bob"));
+        storage.storeMessage("#butts", "bob", "\u20ac\u20ac\u20ac\u20ac", 0);
+        Assert.assertEquals("\u20ac\u20ac\u20ac", storage.getLastQuoteFrom("#butts", "bob"));
+    }
+
+    /**
+     * Tests that nicks that have gone quiet are forgotten.
+     */
+    @Test
+    public void testIdleEviction() {
+        ChatStorage storage = new ChatStorage(10, 1024, 1000);
+        storage.storeMessage("#butts", "bob", "old", 0);
+        storage.storeMessage("#butts", "alice", "new", 900);
+        storage.evictIdle(1500);
+        Assert.assertFalse(storage.hasQuoteFrom("#butts", "bob"));
+        Assert.assertTrue(storage.hasQuoteFrom("#butts", "alice"));
+        Assert.assertTrue(storage.getStats().contains("1 nicks"));
+    }
+
+    /**
+     * Stores and reads chatter from several threads at once, and checks that nothing is lost, torn, or out of
+     * order.
+     * @throws Exception If a thread failed.
+     */
+    @Test
+    public void testConcurrentChatter() throws Exception {
+        final int threads = 8;
+        final int linesPerThread = 5000;
+        final int nicksPerThread = 50;
+        final int channels = 3;
+        ChatStorage storage = new ChatStorage(5, 4 * 1024 * 1024, Long.MAX_VALUE, 16);
+        Assert.assertEquals(16, storage.getStripeCount());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < linesPerThread; i++) {
+                    String channel = "#c" + (i % channels);
+                    String nick = "t" + thread + "n" + (i % nicksPerThread);
+                    storage.storeMessage(channel, nick, nick + ":" + i, 0);
+                    String readNick = "t" + ((thread + 1) % threads) + "n" + (i % nicksPerThread);
+                    int previous = Integer.MAX_VALUE;
+                    for (String line : storage.getQuotesFrom(channel, readNick)) {
+                        Assert.assertTrue(line, line.startsWith(readNick + ":"));
+                        int number = Integer.parseInt(line.substring(readNick.length() + 1));
+                        Assert.assertTrue(number < previous);
+                        previous = number;
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        for (int t = 0; t < threads; t++) {
+            for (int i = linesPerThread - nicksPerThread * channels; i < linesPerThread; i++) {
+                String nick = "t" + t + "n" + (i % nicksPerThread);
+                List<String> lines = storage.getQuotesFrom("#c" + (i % channels), nick);
+                Assert.assertTrue(lines.contains(nick + ":" + i));
+            }
+        }
+        Assert.assertTrue(storage.getStats(), storage.getStats().startsWith("chat history: "
+                + threads * nicksPerThread * channels + " nicks"));
+    }
+}
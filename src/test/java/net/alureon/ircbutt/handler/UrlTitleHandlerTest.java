@@ -1,20 +1,70 @@
 package net.alureon.ircbutt.handler;
 
+import net.alureon.ircbutt.http.FixtureServer;
+import net.alureon.ircbutt.http.HttpManager;
+import org.junit.AfterClass;
 import org.junit.Assert;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.IOException;
+
 /**
- * A quick and dirty test for URL titles.
+ * Tests getting URL titles, replayed from fixtures so it doesn't need the internet.
  */
 public final class UrlTitleHandlerTest {
 
     /**
-     * This does nothing actually.
+     * The server replaying the fixtures.
+     */
+    private static FixtureServer server;
+    /**
+     * The HttpManager pointed at the fixture server.
+     */
+    private static HttpManager http;
+
+    /**
+     * Starts the fixture server.
+     * @throws IOException If the server couldn't be started.
+     */
+    @BeforeClass
+    public static void setUp() throws IOException {
+        server = new FixtureServer(FixtureServer.FIXTURES);
+        http = new HttpManager(false, Long.MAX_VALUE, 100, 0);
+        server.attach(http);
+    }
+
+    /**
+     * Stops the fixture server.
+     */
+    @AfterClass
+    public static void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Tests that YouTube titles are pulled out of the page's player config.
      */
     @Test
     public void testGetYouTubeUrl() {
         String url = "https://www.youtube.com/watch?v=Nlm-zuOx6Kk";
-        String title = UrlTitleHandler.getTitle(url);
+        String title = UrlTitleHandler.getTitle(http, url);
         Assert.assertEquals("[590] LoboJack HS-21 Padlock Opened With Slide Hammer", title);
     }
+
+    /**
+     * Tests that other titles come from the title tag.
+     */
+    @Test
+    public void testGetTitle() {
+        Assert.assertEquals("Example Domain", UrlTitleHandler.getTitle(http, "http://example.com/"));
+    }
+
+    /**
+     * Tests that a page that can't be fetched has no title.
+     */
+    @Test
+    public void testMissingPage() {
+        Assert.assertNull(UrlTitleHandler.getTitle(http, "http://example.com/nope"));
+    }
 }
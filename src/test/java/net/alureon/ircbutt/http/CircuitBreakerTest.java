@@ -0,0 +1,122 @@
+package net.alureon.ircbutt.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the CircuitBreaker and hedged requests in the HttpManager.
+ */
+public final class CircuitBreakerTest {
+
+    /**
+     * Requests slower than this count as failures in these tests.
+     */
+    private static final long SLOW_MILLIS = 1000;
+    /**
+     * How long breakers stay open in these tests.
+     */
+    private static final long OPEN_MILLIS = 30000;
+
+    /**
+     * Tests that the breaker opens once enough of the window fails, rejects requests while open, and lets a
+     * single probe through once it has rested.
+     */
+    @Test
+    public void testOpenAndRecover() {
+        CircuitBreaker breaker = new CircuitBreaker("example.com", SLOW_MILLIS, 50, OPEN_MILLIS);
+        long permit = CircuitBreaker.NO_PERMIT;
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS - 1; i++) {
+            permit = breaker.tryAcquire(0);
+            Assert.assertNotEquals(CircuitBreaker.NO_PERMIT, permit);
+            breaker.onFailure(permit, 0);
+        }
+        Assert.assertEquals(BreakerState.CLOSED, breaker.getState());
+        breaker.onSuccess(permit, SLOW_MILLIS, 0);  // too slow, so this counts as a failure as well
+        Assert.assertEquals(BreakerState.OPEN, breaker.getState());
+        Assert.assertEquals(CircuitBreaker.NO_PERMIT, breaker.tryAcquire(OPEN_MILLIS - 1));
+
+        long probe = breaker.tryAcquire(OPEN_MILLIS);
+        Assert.assertNotEquals(CircuitBreaker.NO_PERMIT, probe);
+        Assert.assertEquals(BreakerState.HALF_OPEN, breaker.getState());
+        Assert.assertEquals(CircuitBreaker.NO_PERMIT, breaker.tryAcquire(OPEN_MILLIS));
+        breaker.onFailure(probe, OPEN_MILLIS);
+        Assert.assertEquals(BreakerState.OPEN, breaker.getState());
+
+        probe = breaker.tryAcquire(OPEN_MILLIS * 2);
+        breaker.onSuccess(probe, 1, OPEN_MILLIS * 2);
+        Assert.assertEquals(BreakerState.CLOSED, breaker.getState());
+    }
+
+    /**
+     * Tests that only the probe's outcome decides a half-open breaker, and that a probe which never reports back
+     * still gives its place to the next request.
+     */
+    @Test
+    public void testStaleOutcomesAndLostProbe() {
+        CircuitBreaker breaker = new CircuitBreaker("example.com", SLOW_MILLIS, 50, OPEN_MILLIS);
+        long slow = breaker.tryAcquire(0);
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            breaker.onFailure(breaker.tryAcquire(0), 0);
+        }
+        Assert.assertEquals(BreakerState.OPEN, breaker.getState());
+
+        long probe = breaker.tryAcquire(OPEN_MILLIS);
+        breaker.onSuccess(slow, 1, OPEN_MILLIS);  // started before the breaker opened
+        breaker.release(slow);
+        Assert.assertEquals(BreakerState.HALF_OPEN, breaker.getState());
+        Assert.assertEquals(CircuitBreaker.NO_PERMIT, breaker.tryAcquire(OPEN_MILLIS));
+
+        breaker.release(probe);  // the probe died without an outcome
+        long next = breaker.tryAcquire(OPEN_MILLIS);
+        Assert.assertNotEquals(CircuitBreaker.NO_PERMIT, next);
+        breaker.onSuccess(probe, 1, OPEN_MILLIS);
+        Assert.assertEquals(BreakerState.HALF_OPEN, breaker.getState());
+        breaker.onSuccess(next, 1, OPEN_MILLIS);
+        Assert.assertEquals(BreakerState.CLOSED, breaker.getState());
+    }
+
+    /**
+     * Tests the p95 of recent latencies.
+     */
+    @Test
+    public void testP95() {
+        CircuitBreaker breaker = new CircuitBreaker("example.com", SLOW_MILLIS, 50, OPEN_MILLIS);
+        Assert.assertEquals(-1, breaker.getP95Millis());
+        for (int i = 1; i <= 20; i++) {
+            breaker.onSuccess(breaker.tryAcquire(0), i * 10, 0);
+        }
+        Assert.assertEquals(190, breaker.getP95Millis());
+    }
+
+    /**
+     * Tests that a request stuck past the host's p95 is hedged, and the hedge's answer is used.
+     * @throws Exception If the request fails.
+     */
+    @Test
+    public void testHedgedRequest() throws Exception {
+        HttpManager http = new HttpManager(true, SLOW_MILLIS, 50, OPEN_MILLIS);
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            http.execute("http://example.com/", false, url -> "warm");
+        }
+        CountDownLatch stuck = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+        String result = http.execute("http://www.example.com/slow", true, url -> {
+            if (attempts.incrementAndGet() == 1) {
+                try {
+                    stuck.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException("cancelled");
+                }
+                return "first";
+            }
+            return "hedge";
+        });
+        Assert.assertEquals("hedge", result);
+        Assert.assertEquals(2, attempts.get());
+        Assert.assertEquals(BreakerState.CLOSED, http.getBreaker("example.com").getState());
+    }
+}
@@ -0,0 +1,246 @@
+package net.alureon.ircbutt.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP server that replays recorded responses, so the scrapers can be tested and benchmarked without
+ * the internet.  Point an HttpManager at it with {@link #attach(HttpManager)} and every request is sent here
+ * instead, as http://127.0.0.1:port/scheme/host/path?query.
+ * <p>
+ * Fixtures are plain files named after the host and path of the original request, such as
+ * fixtures/www.merriam-webster.com/dictionary_butt.  In replay mode a request with no fixture gets a 404.  In
+ * record mode (run with -Dircbutt.fixtures=record) every request is forwarded to the real site and the
+ * response is saved as its fixture, so the fixtures can be refreshed by running the tests once online.
+ */
+public final class FixtureServer implements AutoCloseable {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger log = LogManager.getLogger();
+    /**
+     * The directory fixtures are kept in, relative to the project root.
+     */
+    public static final Path FIXTURES = Paths.get("src", "test", "resources", "fixtures");
+    /**
+     * The system property that switches every FixtureServer to record mode.
+     */
+    private static final String MODE_PROPERTY = "ircbutt.fixtures";
+    /**
+     * The longest fixture file name before it is cut short.
+     */
+    private static final int MAX_NAME_LENGTH = 120;
+    /**
+     * The size of the buffer used when copying response bodies.
+     */
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * The HTTP status for a response that was found.
+     */
+    private static final int OK = 200;
+    /**
+     * The HTTP status for a missing fixture.
+     */
+    private static final int NOT_FOUND = 404;
+    /**
+     * The directory fixtures are read from and recorded to.
+     */
+    private final Path directory;
+    /**
+     * True if requests should be forwarded to the real site and recorded.
+     */
+    private final boolean recording;
+    /**
+     * The embedded server.
+     */
+    private final HttpServer server;
+    /**
+     * The threads that handle requests, so that injected latency doesn't hold up other requests.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fixture-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * How long to wait before answering each request, to simulate a real site.
+     */
+    private volatile long latencyMillis;
+
+    /**
+     * Starts a fixture server on a free local port.  The mode is taken from the ircbutt.fixtures system property.
+     * @param directory The directory fixtures are read from and recorded to.
+     * @throws IOException If the server couldn't be started.
+     */
+    public FixtureServer(final Path directory) throws IOException {
+        this(directory, "record".equals(System.getProperty(MODE_PROPERTY)));
+    }
+
+    /**
+     * Starts a fixture server on a free local port.
+     * @param directory The directory fixtures are read from and recorded to.
+     * @param recording True to forward requests to the real site and record them, false to replay.
+     * @throws IOException If the server couldn't be started.
+     */
+    public FixtureServer(final Path directory, final boolean recording) throws IOException {
+        this.directory = directory;
+        this.recording = recording;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Sets how long to wait before answering each request.
+     * @param millis The injected latency in milliseconds.
+     */
+    public void setLatencyMillis(final long millis) {
+        this.latencyMillis = millis;
+    }
+
+    /**
+     * Sends all of an HttpManager's requests to this server.
+     * @param http The HttpManager.
+     */
+    public void attach(final HttpManager http) {
+        http.setUrlRewriter(this::rewrite);
+    }
+
+    /**
+     * Rewrites a URL so that it is requested from this server.
+     * @param url The original URL.
+     * @return The URL on this server.
+     */
+    public String rewrite(final String url) {
+        int schemeEnd = url.indexOf("://");
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + url.substring(0, schemeEnd) + "/"
+                + url.substring(schemeEnd + "://".length());
+    }
+
+    /**
+     * Returns the fixture file for a request.
+     * @param host The host the request was for.
+     * @param pathAndQuery The path and query of the request, without the leading slash.
+     * @return The fixture file.
+     */
+    Path fixtureFor(final String host, final String pathAndQuery) {
+        String name = pathAndQuery.replaceAll("[^A-Za-z0-9.\\-]+", "_").replaceAll("^_+|_+$", "");
+        if (name.isEmpty()) {
+            name = "index";
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(0, MAX_NAME_LENGTH) + "_" + Integer.toHexString(pathAndQuery.hashCode());
+        }
+        return directory.resolve(host.toLowerCase(Locale.ROOT)).resolve(name);
+    }
+
+    /**
+     * Handles a single request.
+     * @param exchange The request and its response.
+     * @throws IOException If the response couldn't be sent.
+     */
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            String[] parts = exchange.getRequestURI().getRawPath().substring(1).split("/", 3);
+            String pathAndQuery = "";
+            if (parts.length > 2) {
+                pathAndQuery = parts[2];
+            }
+            if (exchange.getRequestURI().getRawQuery() != null) {
+                pathAndQuery += "?" + exchange.getRequestURI().getRawQuery();
+            }
+            Path fixture = fixtureFor(parts[1], pathAndQuery);
+            if (recording) {
+                record(parts[0] + "://" + parts[1] + "/" + pathAndQuery,
+                        exchange.getRequestHeaders().getFirst("User-Agent"), fixture);
+            }
+            Thread.sleep(latencyMillis);
+            if (!Files.exists(fixture)) {
+                log.warn("No fixture for " + parts[1] + "/" + pathAndQuery + " (looked for " + fixture + ")");
+                exchange.sendResponseHeaders(NOT_FOUND, -1);
+                return;
+            }
+            byte[] body = Files.readAllBytes(fixture);
+            exchange.getResponseHeaders().set("Content-Type", contentType(body));
+            exchange.sendResponseHeaders(OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Fetches a URL from the real site and saves the response as a fixture.
+     * @param url The original URL.
+     * @param userAgent The user agent the scraper sent, which some sites change their markup for.
+     * @param fixture The fixture file to save to.
+     * @throws IOException If the site couldn't be reached or the fixture couldn't be written.
+     */
+    private static void record(final String url, final String userAgent, final Path fixture) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (userAgent != null) {
+            connection.setRequestProperty("User-Agent", userAgent);
+        }
+        if (connection.getResponseCode() != OK) {
+            log.warn("Not recording " + url + ", got HTTP " + connection.getResponseCode());
+            return;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        Files.createDirectories(fixture.getParent());
+        Files.write(fixture, body.toByteArray());
+        log.info("Recorded " + url + " to " + fixture);
+    }
+
+    /**
+     * Guesses the content type of a fixture from its first character, JSON or HTML being all the bot fetches.
+     * @param body The fixture.
+     * @return The content type.
+     */
+    private static String contentType(final byte[] body) {
+        for (byte b : body) {
+            if (!Character.isWhitespace(b)) {
+                if (b == '[' || b == '{') {
+                    return "application/json; charset=utf-8";
+                }
+                break;
+            }
+        }
+        return "text/html; charset=utf-8";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
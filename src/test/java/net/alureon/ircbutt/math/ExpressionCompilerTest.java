@@ -0,0 +1,120 @@
+package net.alureon.ircbutt.math;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the ExpressionCompiler and the expressions it compiles.
+ */
+public final class ExpressionCompilerTest {
+
+    /**
+     * The allowed rounding error.
+     */
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Tests operator precedence and grouping.
+     */
+    @Test
+    public void testPrecedence() {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        Assert.assertEquals(7, compiler.evaluate("1 + 2 * 3"), DELTA);
+        Assert.assertEquals(9, compiler.evaluate("(1 + 2) * 3"), DELTA);
+        Assert.assertEquals(2, compiler.evaluate("10 - 5 - 3"), DELTA);
+        Assert.assertEquals(512, compiler.evaluate("2^3^2"), DELTA);
+        Assert.assertEquals(512, compiler.evaluate("2 ** 3 ** 2"), DELTA);
+        Assert.assertEquals(-4, compiler.evaluate("-2^2"), DELTA);
+        Assert.assertEquals(0.25, compiler.evaluate("2^-2"), DELTA);
+        Assert.assertEquals(1, compiler.evaluate("7 % 3"), DELTA);
+        Assert.assertEquals(6.02e23, compiler.evaluate("6.02e23"), 1e10);
+        Assert.assertEquals(0.5, compiler.evaluate(".5"), DELTA);
+    }
+
+    /**
+     * Tests constants and functions, including names that contain the letter e.
+     */
+    @Test
+    public void testConstantsAndFunctions() {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        Assert.assertEquals(Math.E * 2, compiler.evaluate("e * 2"), DELTA);
+        Assert.assertEquals(1, compiler.evaluate("sin(pi / 2)"), DELTA);
+        compiler.defineUnary("sec", x -> 1 / Math.cos(x));
+        Assert.assertEquals(1, compiler.evaluate("sec(0)"), DELTA);
+        Assert.assertEquals(3, compiler.evaluate("max(2, 3)"), DELTA);
+        Assert.assertEquals(2, compiler.evaluate("log10(100)"), DELTA);
+        Assert.assertEquals(Math.exp(1), compiler.evaluate("exp(1)"), DELTA);
+    }
+
+    /**
+     * Tests that variables are passed in order and shadow constants.
+     */
+    @Test
+    public void testVariables() {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        CompiledExpression expression = compiler.compile("x^2 + y - e", "x", "y", "e");
+        Assert.assertEquals(10, expression.evaluate(3, 2, 1), DELTA);
+        Assert.assertEquals(4, expression.evaluate(2, 1, 1), DELTA);
+        try {
+            expression.evaluate(1);
+            Assert.fail("Evaluated with too few values");
+        } catch (ExpressionException expected) {
+            Assert.assertTrue(expected.getMessage().contains("expected 3 values"));
+        }
+    }
+
+    /**
+     * Tests that malformed expressions are rejected with a message.
+     */
+    @Test
+    public void testErrors() {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        for (String bad : new String[] {"", "1 +", "(1", "1 2", "foo", "foo(1)", "sin(1, 2)", "2e", "1.2.3", "$"}) {
+            try {
+                compiler.compile(bad);
+                Assert.fail("Compiled '" + bad + "'");
+            } catch (ExpressionException expected) {
+                Assert.assertNotNull(expected.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Tests the node and nesting caps.
+     */
+    @Test
+    public void testLimits() {
+        ExpressionCompiler compiler = new ExpressionCompiler(16, 8);
+        Assert.assertEquals(4, compiler.evaluate("1 + 1 + 1 + 1"), DELTA);
+        try {
+            compiler.compile("1 + 1 + 1 + 1 + 1");
+            Assert.fail("Compiled an expression with too many nodes");
+        } catch (ExpressionException expected) {
+            Assert.assertTrue(expected.getMessage().contains("too big"));
+        }
+        StringBuilder nested = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            nested.append('(');
+        }
+        try {
+            new ExpressionCompiler().compile(nested.append('1').toString());
+            Assert.fail("Compiled an expression nested too deeply");
+        } catch (ExpressionException expected) {
+            Assert.assertTrue(expected.getMessage().contains("nested"));
+        }
+    }
+
+    /**
+     * Tests that compiled expressions are cached, and the cache is cleared when a name is defined.
+     */
+    @Test
+    public void testCache() {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        CompiledExpression first = compiler.compile("x + 1", "x");
+        Assert.assertSame(first, compiler.compile("x + 1", "x"));
+        Assert.assertNotSame(first, compiler.compile("x + 1", "y", "x"));
+        compiler.defineConstant("answer", 42);
+        Assert.assertNotSame(first, compiler.compile("x + 1", "x"));
+        Assert.assertEquals(43, compiler.evaluate("answer + 1"), DELTA);
+    }
+}
@@ -0,0 +1,71 @@
+package net.alureon.ircbutt.network;
+
+import net.alureon.ircbutt.file.NetworkConfig;
+import net.alureon.ircbutt.outbound.LineSplitter;
+import net.alureon.ircbutt.outbound.OutboundPipeline;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pircbotx.PircBotX;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests that the NetworkManager keeps the channels of each network apart.
+ */
+public final class NetworkManagerTest {
+
+    /**
+     * Creates a network that is never started.
+     * @param name The name of the network.
+     * @param primary Whether it is the first network.
+     * @param channels The channels it joins.
+     * @return The network.
+     */
+    private static BotNetwork network(final String name, final boolean primary, final String... channels) {
+        NetworkConfig config = new NetworkConfig(name, name + ".example", 6667, false, true, "buttbutt", "buttbutt",
+                "butt", null, Arrays.asList(channels));
+        return new BotNetwork(config, primary, Collections.emptyList(),
+                new OutboundPipeline(0, new LineSplitter("buttbutt", "buttbutt"), 1, 0, 1, 0));
+    }
+
+    /**
+     * Tests that the first network's channel keys are just the channel, and the others have the network in front.
+     */
+    @Test
+    public void testChannelKeys() {
+        BotNetwork main = network("main", true, "#AfterLunch");
+        BotNetwork libera = network("Libera", false, "#afterlunch", "#butt");
+        NetworkManager manager = new NetworkManager(Arrays.asList(main, libera));
+        Assert.assertEquals(Arrays.asList("#afterlunch", "libera/#afterlunch", "libera/#butt"),
+                manager.getChannelKeys());
+        Assert.assertSame(main, manager.getNetwork((PircBotX) null));
+        Assert.assertTrue(manager.getStats().get(0).startsWith("network main: not started, 0/1 channels"));
+        Assert.assertTrue(manager.getStats().get(3).startsWith("Libera outbound:"));
+    }
+
+    /**
+     * Tests that a network doesn't count the threads of another network whose name starts with its own.
+     * @throws InterruptedException If interrupted while stopping the other thread.
+     */
+    @Test
+    public void testThreadsOfOtherNetworksArentCounted() throws InterruptedException {
+        BotNetwork irc = network("irc", true, "#butt");
+        CountDownLatch done = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            try {
+                done.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, "irc-foo-input");
+        other.start();
+        try {
+            Assert.assertTrue(irc.getStats(), irc.getStats().contains(", 0 threads,"));
+        } finally {
+            done.countDown();
+            other.join();
+        }
+    }
+}
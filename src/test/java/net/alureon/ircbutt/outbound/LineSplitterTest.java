@@ -0,0 +1,75 @@
+package net.alureon.ircbutt.outbound;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the LineSplitter.
+ */
+public final class LineSplitterTest {
+
+    /**
+     * Tests that byte lengths match what UTF-8 encoding gives.
+     */
+    @Test
+    public void testByteLength() {
+        for (String text : new String[] {"", "butt", "café", "€5", "🍑 peach", "lone \ud83c"}) {
+            Assert.assertEquals(text, text.getBytes(StandardCharsets.UTF_8).length, LineSplitter.byteLength(text));
+        }
+    }
+
+    /**
+     * Tests that lines break at spaces, and long words break between code points, within the budget in bytes.
+     */
+    @Test
+    public void testSplit() {
+        Assert.assertEquals(Arrays.asList("short"), LineSplitter.split("short", 10));
+        Assert.assertEquals(Arrays.asList("one two", "three four"), LineSplitter.split("one two three four", 10));
+        Assert.assertEquals(Arrays.asList("abcdefghij", "klm"), LineSplitter.split("abcdefghijklm", 10));
+        Assert.assertEquals(Arrays.asList("🍑🍑", "🍑🍑", "🍑"), LineSplitter.split("🍑🍑🍑🍑🍑", 9));
+        for (String line : LineSplitter.split("été café crème brûlée", 8)) {
+            Assert.assertTrue(line, line.getBytes(StandardCharsets.UTF_8).length <= 8);
+        }
+    }
+
+    /**
+     * Tests that colors and formats carry over to the next line, and color codes are never split.
+     */
+    @Test
+    public void testFormatCarriesOver() {
+        List<String> lines = LineSplitter.split("\u0002\u00034,1red text\u000F plain words", 14);
+        Assert.assertEquals(Arrays.asList("\u0002\u00034,1red", "\u0002\u000304,01text\u000F", "plain words"),
+                lines);
+        lines = LineSplitter.split("abc\u000312,05def", 5);
+        Assert.assertEquals(Arrays.asList("abc", "\u000312,05d", "\u000312,05e", "\u000312,05f"), lines);
+    }
+
+    /**
+     * Tests that a line carried over after a space still fits once its color codes, padded to two digits, are put
+     * in front of it.
+     */
+    @Test
+    public void testCarriedCodesStillFit() {
+        List<String> lines = LineSplitter.split("red \u00034green b \u00034\u00035\u00035\u00034\u00035\u00035b", 14);
+        for (String line : lines) {
+            Assert.assertTrue(line, LineSplitter.byteLength(line) <= 14);
+        }
+        Assert.assertEquals(Arrays.asList("red \u00034green b", "\u000305b"), lines);
+    }
+
+    /**
+     * Tests that the budget leaves room for the server's prefix and the target.
+     */
+    @Test
+    public void testBudget() {
+        LineSplitter splitter = new LineSplitter("butt", "buttbutt");
+        OutboundTarget target = OutboundTarget.message("#butt", "nick: ", line -> { });
+        int budget = splitter.getBudget(target);
+        int overhead = ":butt!buttbutt@ ".length() + 63 + "PRIVMSG #butt :nick: ".length() + 2;
+        Assert.assertEquals(LineSplitter.MAX_LINE_BYTES - overhead, budget);
+    }
+}
@@ -0,0 +1,205 @@
+package net.alureon.ircbutt.outbound;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Tests the OutboundPipeline, sending by hand rather than from its thread.
+ */
+public final class OutboundPipelineTest {
+
+    /**
+     * The splitter for a bot named butt.
+     */
+    private static final LineSplitter SPLITTER = new LineSplitter("butt", "buttbutt");
+
+    /**
+     * Creates a pipeline that never holds lines back.
+     * @param packLength The longest message short lines are packed into.
+     * @return The pipeline.
+     */
+    private static OutboundPipeline pipeline(final int packLength) {
+        return new OutboundPipeline(packLength, SPLITTER, 1, 0, 1, 0, () -> 0L);
+    }
+
+    /**
+     * Creates a target that collects what is sent to it.
+     * @param sent The list to collect into.
+     * @return The target.
+     */
+    private static OutboundTarget target(final List<String> sent) {
+        return OutboundTarget.message("#butt", "", sent::add);
+    }
+
+    /**
+     * Creates a target in a given channel that collects what is sent to it.
+     * @param channel The channel.
+     * @param sent The list to collect into.
+     * @return The target.
+     */
+    private static OutboundTarget target(final String channel, final List<String> sent) {
+        return OutboundTarget.message(channel, "", line -> sent.add(channel + " " + line));
+    }
+
+    /**
+     * Sends everything queued.
+     * @param pipeline The pipeline.
+     */
+    private static void drain(final OutboundPipeline pipeline) {
+        while (pipeline.sendNext()) {
+            continue;
+        }
+    }
+
+    /**
+     * Tests that a throttled target can only have so many responses waiting, and that other targets still get
+     * theirs in.
+     */
+    @Test
+    public void testQueuePerTargetIsCapped() {
+        OutboundPipeline pipeline = new OutboundPipeline(0, SPLITTER, 1000, 0, 1, 60000, () -> 0L);
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < OutboundPipeline.MAX_QUEUED_PER_TARGET + 10; i++) {
+            pipeline.enqueue(OutboundLane.INTERACTIVE, target("#flood", sent),
+                    Arrays.asList("line " + i).iterator(), false);
+        }
+        Assert.assertEquals(OutboundPipeline.MAX_QUEUED_PER_TARGET, pipeline.getQueued());
+        pipeline.enqueue(OutboundLane.INTERACTIVE, target("#quiet", sent), Arrays.asList("hi").iterator(), false);
+        Assert.assertEquals(OutboundPipeline.MAX_QUEUED_PER_TARGET + 1, pipeline.getQueued());
+        drain(pipeline);
+        Assert.assertEquals(Arrays.asList("#flood line 0", "#quiet hi"), sent);
+        Assert.assertTrue(pipeline.getStats().contains(", 10 dropped"));
+    }
+
+    /**
+     * Tests that an idle target isn't forgotten, to make room for new ones, while it has a response queued.
+     */
+    @Test
+    public void testQueuedTargetNotForgotten() {
+        AtomicLong now = new AtomicLong();
+        OutboundPipeline pipeline = new OutboundPipeline(0, SPLITTER, 1, 0, 1, 0, now::get);
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            pipeline.enqueue(OutboundLane.INTERACTIVE, target("#c" + i, sent), Arrays.asList("hi").iterator(),
+                    false);
+            drain(pipeline);
+        }
+        now.addAndGet(TimeUnit.HOURS.toNanos(2));
+        sent.clear();
+        pipeline.enqueue(OutboundLane.INTERACTIVE, target("#c0", sent), Arrays.asList("still here").iterator(),
+                false);
+        pipeline.enqueue(OutboundLane.INTERACTIVE, target("#new", sent), Arrays.asList("hello").iterator(), false);
+        drain(pipeline);
+        Assert.assertEquals(Arrays.asList("#c0 still here", "#new hello"), sent);
+        Assert.assertEquals(0, pipeline.getQueued());
+    }
+
+    /**
+     * Tests that short lines are packed up to the pack length, and tables are left alone.
+     */
+    @Test
+    public void testPacking() {
+        OutboundPipeline pipeline = pipeline(20);
+        List<String> sent = new ArrayList<>();
+        pipeline.enqueue(OutboundLane.INTERACTIVE, target(sent),
+                Arrays.asList("one", "two", "", null, "three", "a much longer line", "four").iterator(), true);
+        drain(pipeline);
+        Assert.assertEquals(Arrays.asList("one | two | three", "a much longer line", "four"), sent);
+        sent.clear();
+        pipeline.enqueue(OutboundLane.INTERACTIVE, target(sent), Arrays.asList("one", "two").iterator(), false);
+        drain(pipeline);
+        Assert.assertEquals(Arrays.asList("one", "two"), sent);
+        Assert.assertEquals(0, pipeline.getQueued());
+    }
+
+    /**
+     * Tests that a line too long for IRC is split, and the pieces go out in order before the next line.
+     */
+    @Test
+    public void testSplitting() {
+        OutboundPipeline pipeline = pipeline(0);
+        List<String> sent = new ArrayList<>();
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longLine.append("word").append(i).append(' ');
+        }
+        pipeline.enqueue(OutboundLane.INTERACTIVE, target(sent), Arrays.asList(longLine.toString().trim(),
+                "after").iterator(), false);
+        drain(pipeline);
+        Assert.assertEquals(3, sent.size());
+        Assert.assertEquals(longLine.toString().trim(), sent.get(0) + " " + sent.get(1));
+        Assert.assertEquals("after", sent.get(2));
+    }
+
+    /**
+     * Tests that interactive replies jump ahead of bulk output that has already started.
+     */
+    @Test
+    public void testLanes() {
+        OutboundPipeline pipeline = pipeline(0);
+        List<String> sent = new ArrayList<>();
+        pipeline.enqueue(OutboundLane.BULK, target(sent), Arrays.asList("top 1", "top 2", "top 3").iterator(), true);
+        Assert.assertTrue(pipeline.sendNext());
+        pipeline.enqueue(OutboundLane.INTERACTIVE, target(sent), Arrays.asList("reply").iterator(), true);
+        drain(pipeline);
+        Assert.assertEquals(Arrays.asList("top 1", "reply", "top 2", "top 3"), sent);
+        Assert.assertTrue(pipeline.getStats().contains("interactive 1 sent"));
+        Assert.assertTrue(pipeline.getStats().contains("bulk 1 sent"));
+    }
+
+    /**
+     * Tests that lines aren't generated until they are about to be sent, and a failing generator is dropped.
+     */
+    @Test
+    public void testLazyLines() {
+        OutboundPipeline pipeline = pipeline(0);
+        List<String> sent = new ArrayList<>();
+        AtomicInteger generated = new AtomicInteger();
+        Iterator<String> lines = IntStream.range(0, 3).mapToObj(i -> {
+            generated.incrementAndGet();
+            if (i == 2) {
+                throw new IllegalStateException("out of lines");
+            }
+            return "line " + i;
+        }).iterator();
+        pipeline.enqueue(OutboundLane.BULK, target(sent), lines, false);
+        Assert.assertEquals(0, generated.get());
+        Assert.assertTrue(pipeline.sendNext());
+        Assert.assertEquals(Arrays.asList("line 0"), sent);
+        drain(pipeline);
+        Assert.assertEquals(Arrays.asList("line 0", "line 1"), sent);
+        Assert.assertEquals(0, pipeline.getQueued());
+    }
+
+    /**
+     * Tests that a burst goes out at once, targets take turns, and each target and the bot as a whole are then
+     * held to their rates.
+     */
+    @Test
+    public void testPacing() {
+        AtomicLong now = new AtomicLong();
+        OutboundPipeline pipeline = new OutboundPipeline(0, SPLITTER, 3, 100, 2, 1000, now::get);
+        List<String> sent = new ArrayList<>();
+        pipeline.enqueue(OutboundLane.INTERACTIVE, target("#busy", sent), Arrays.asList("1", "2", "3").iterator(),
+                false);
+        pipeline.enqueue(OutboundLane.INTERACTIVE, target("#quiet", sent), Arrays.asList("hi").iterator(), false);
+        drain(pipeline);
+        Assert.assertEquals(Arrays.asList("#busy 1", "#quiet hi", "#busy 2"), sent);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertFalse(pipeline.sendNext());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(900));
+        Assert.assertTrue(pipeline.sendNext());
+        Assert.assertEquals("#busy 3", sent.get(3));
+        Assert.assertEquals(0, pipeline.getQueued());
+        Assert.assertTrue(pipeline.getStats().contains("#busy 3 lines"));
+    }
+}
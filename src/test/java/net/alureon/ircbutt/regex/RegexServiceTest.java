@@ -0,0 +1,94 @@
+package net.alureon.ircbutt.regex;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Tests the RegexService.
+ */
+public final class RegexServiceTest {
+
+    /**
+     * A regex that backtracks for seconds on a run of a's with no b after it.
+     */
+    private static final String RUNAWAY = "(.*a){12}b";
+    /**
+     * Text that makes the runaway regex backtrack for a very long time.
+     */
+    private static final String RUNAWAY_TEXT = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!";
+
+    /**
+     * Tests that compiled patterns are reused, and the least recently used ones are dropped.
+     */
+    @Test
+    public void testCache() {
+        RegexService service = new RegexService(2, 100, 1000);
+        Pattern butt = service.compile("butt");
+        Assert.assertSame(butt, service.compile("butt"));
+        service.compile("foo");
+        service.compile("butt");
+        service.compile("bar");
+        Assert.assertSame(butt, service.compile("butt"));
+        Assert.assertNotSame(service.compile("foo"), service.compile("bar"));
+        Assert.assertTrue(service.getStats().startsWith("regex: 2/2 patterns, 3 hits"));
+    }
+
+    /**
+     * Tests that ordinary matching and replacing work like they do on a String.
+     */
+    @Test
+    public void testMatchAndReplace() {
+        RegexService service = new RegexService();
+        Pattern has = service.compile("h(a)s");
+        try (RegexBudget budget = service.begin("bob")) {
+            Assert.assertTrue(budget.find(has, "i has a butt"));
+            Assert.assertFalse(budget.find(has, "i have a butt"));
+            Assert.assertEquals("i hAs hAs", budget.replace(has, "h$1$1s", "i has has", true).replace("aa", "A"));
+            Assert.assertEquals("i hAs has", budget.replace(has, "hAs", "i has has", false));
+        }
+    }
+
+    /**
+     * Tests that a runaway regex is stopped within its budget.
+     */
+    @Test
+    public void testRunawayIsAborted() {
+        RegexService service = new RegexService(1, 50, 1000);
+        Pattern runaway = service.compile(RUNAWAY);
+        long start = System.nanoTime();
+        try (RegexBudget budget = service.begin("bob")) {
+            budget.find(runaway, RUNAWAY_TEXT);
+            Assert.fail("The runaway regex should have been stopped");
+        } catch (RegexAbortedException ex) {
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+        Assert.assertTrue(service.getStats().endsWith("1 aborted, 0 refused"));
+    }
+
+    /**
+     * Tests that a user who has used up their quota is refused until the window ends, while other users aren't.
+     */
+    @Test
+    public void testQuota() {
+        RegexService service = new RegexService(1, 50, 50);
+        Pattern runaway = service.compile(RUNAWAY);
+        try (RegexBudget budget = service.begin("bob")) {
+            budget.find(runaway, RUNAWAY_TEXT);
+            Assert.fail("The runaway regex should have been stopped");
+        } catch (RegexAbortedException ex) {
+            Assert.assertTrue(ex.getMessage().contains("too long"));
+        }
+        try {
+            service.begin("BOB").close();
+            Assert.fail("Bob should be out of quota");
+        } catch (RegexAbortedException ex) {
+            Assert.assertTrue(ex.getMessage().contains("slow down"));
+        }
+        try (RegexBudget budget = service.begin("alice")) {
+            Assert.assertTrue(budget.find(runaway, "aaaaaaaaaaaab"));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package net.alureon.ircbutt.scrollback;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Tests the ScrollbackManager and its trigram index.
+ */
+public final class ScrollbackManagerTest {
+
+    /**
+     * A scratch directory for the segment files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Creates a manager that keeps a week of scrollback in the smallest segments.
+     * @param directory The directory to keep the scrollback in.
+     * @return The manager.
+     */
+    private static ScrollbackManager manager(final Path directory) {
+        return new ScrollbackManager(true, directory, TimeUnit.DAYS.toMillis(7), 0);
+    }
+
+    /**
+     * Returns the text of some lines.
+     * @param records The lines.
+     * @return The text of each line, in the same order.
+     */
+    private static List<String> messages(final List<ScrollbackRecord> records) {
+        List<String> messages = new ArrayList<>();
+        for (ScrollbackRecord record : records) {
+            messages.add(record.getMessage());
+        }
+        return messages;
+    }
+
+    /**
+     * Tests that searches find every matching line, newest first, whether or not the regex can use the index.
+     * @throws Exception If the scrollback couldn't be written.
+     */
+    @Test
+    public void testGrep() throws Exception {
+        ScrollbackManager manager = manager(folder.getRoot().toPath());
+        manager.append("#butts", "bob", "the butt is on fire", 1);
+        manager.append("#butts", "alice", "BUTTS everywhere", 2);
+        manager.append("#butts", "bob", "nothing to see", 3);
+        manager.append("#other", "bob", "a butt elsewhere", 4);
+        manager.flush();
+        Assert.assertEquals(2, manager.grep("#butts", Pattern.compile("(?i)butt"), null, 10).size());
+        Assert.assertEquals("[the butt is on fire]",
+                messages(manager.grep("#butts", Pattern.compile("butt"), null, 10)).toString());
+        Assert.assertEquals("[BUTTS everywhere]",
+                messages(manager.grep("#butts", Pattern.compile("(?i)butt"), "Alice", 10)).toString());
+        Assert.assertEquals("[nothing to see, BUTTS everywhere, the butt is on fire]",
+                messages(manager.grep("#butts", Pattern.compile("e"), null, 10)).toString());
+        Assert.assertEquals(1, manager.grep("#butts", Pattern.compile("e"), null, 1).size());
+        Assert.assertTrue(manager.grep("#butts", Pattern.compile("fire truck"), null, 10).isEmpty());
+        Assert.assertTrue(manager.grep(null, Pattern.compile("butt"), null, 10).isEmpty());
+        manager.close();
+    }
+
+    /**
+     * Tests that only literal text every match must contain is looked up in the index.
+     */
+    @Test
+    public void testRequiredTrigrams() {
+        Assert.assertEquals(Trigrams.of("butt"), Trigrams.required("butt"));
+        Assert.assertEquals(Trigrams.of("foo"), Trigrams.required("foo[abc]+x?"));
+        Assert.assertEquals(Trigrams.of("a.b"), Trigrams.required("a\\.b"));
+        Assert.assertEquals(Trigrams.of("abc"), Trigrams.required("abcd*"));
+        Assert.assertTrue(Trigrams.required("foo|bar").isEmpty());
+        Assert.assertTrue(Trigrams.required("(?i)butt").isEmpty());
+        Assert.assertTrue(Trigrams.required("(butt)s").isEmpty());
+        Assert.assertTrue(Trigrams.required(".*").isEmpty());
+    }
+
+    /**
+     * Tests that the scrollback is read back from disk by a new manager, so lines can be grabbed after a restart.
+     * @throws Exception If the scrollback couldn't be written.
+     */
+    @Test
+    public void testReopen() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        long now = System.currentTimeMillis();
+        ScrollbackManager manager = manager(directory);
+        manager.append("#butts", "bob", "first", now);
+        manager.append("#butts", "bob", "second", now + 1);
+        manager.flush();
+        manager.close();
+
+        ScrollbackManager reopened = manager(directory);
+        Assert.assertEquals("second", reopened.getQuoteFrom("#butts", "BOB", 0));
+        Assert.assertEquals("first", reopened.getQuoteFrom("#butts", "bob", 1));
+        Assert.assertNull(reopened.getQuoteFrom("#butts", "bob", 2));
+        reopened.append("#butts", "bob", "third", now + 2);
+        reopened.flush();
+        Assert.assertEquals("[third, second, first]",
+                messages(reopened.grep("#butts", Pattern.compile("."), "bob", 10)).toString());
+        reopened.close();
+    }
+
+    /**
+     * Tests that full segments are rolled over, and that segments older than the retention period are deleted.
+     * @throws Exception If the scrollback couldn't be written.
+     */
+    @Test
+    public void testRollAndRetention() throws Exception {
+        ScrollbackManager manager = manager(folder.getRoot().toPath());
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            line.append('x');
+        }
+        for (int i = 0; i < 200; i++) {
+            manager.append("#butts", "bob", line.toString() + i, i);
+        }
+        manager.flush();
+        Assert.assertTrue(manager.getStats().contains("200 lines in 4 segments"));
+        Assert.assertEquals("x199", manager.getQuoteFrom("#butts", "bob", 0).substring(999));
+
+        manager.append("#butts", "bob", "much later", TimeUnit.DAYS.toMillis(30));
+        manager.flush();
+        Assert.assertTrue(manager.getStats().contains("1 lines in 1 segments"));
+        Assert.assertNull(manager.getQuoteFrom("#butts", "bob", 1));
+        manager.close();
+    }
+}
@@ -0,0 +1,60 @@
+package net.alureon.ircbutt.search;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Scraper's extraction.
+ */
+public final class ScraperTest {
+
+    /**
+     * A page with nested results, a result with no link, and more results than anyone wants.
+     */
+    private static final String PAGE = "<div class=r><a href=http://one.example>one</a>"
+            + "<div class=r><a href=http://nested.example>nested</a></div></div>"
+            + "<div class=r>no link</div>"
+            + "<div class=r><a href=http://two.example>two</a></div>"
+            + "<div class=r><a href=http://three.example>three</a></div>";
+
+    /**
+     * Builds a source that keeps linked results only.
+     * @param maxResults The most results to keep.
+     * @return The source.
+     */
+    private static ScraperSource source(final int maxResults) {
+        return new ScraperSource("test", "test", ".r", maxResults, 1, element -> {
+            String href = element.select("a").attr("href");
+            if (href.isEmpty()) {
+                return null;
+            }
+            return new SearchResult.Item(element.text(), href);
+        });
+    }
+
+    /**
+     * Tests that results are found in document order, that results inside a result and results the extractor
+     * skips aren't counted, and that extraction stops at the limit.
+     */
+    @Test
+    public void testExtract() {
+        Document doc = Jsoup.parse(PAGE);
+        SearchResult result = Scraper.extract(source(2), doc, "http://link.example");
+        Assert.assertEquals(2, result.getItems().size());
+        Assert.assertEquals("http://one.example", result.getItems().get(0).getUrl());
+        Assert.assertEquals("http://two.example", result.getItems().get(1).getUrl());
+        Assert.assertEquals("http://link.example", result.getLink());
+        Assert.assertEquals(3, Scraper.extract(source(10), doc, null).getItems().size());
+    }
+
+    /**
+     * Tests that URL decoding leaves text it can't decode alone.
+     */
+    @Test
+    public void testUrlDecode() {
+        Assert.assertEquals("cheap butts", Scraper.urlDecode("cheap%20butts"));
+        Assert.assertEquals("100%", Scraper.urlDecode("100%"));
+    }
+}
@@ -0,0 +1,66 @@
+package net.alureon.ircbutt.search;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the SearchResultCache.
+ */
+public final class SearchResultCacheTest {
+
+    /**
+     * Builds a result with a single item.
+     * @param text The text of the item.
+     * @return The result.
+     */
+    private static SearchResult result(final String text) {
+        return new SearchResult(Collections.singletonList(new SearchResult.Item(text, "http://example.com")), null);
+    }
+
+    /**
+     * Tests that queries differing only in case and whitespace share an entry, and sources don't.
+     */
+    @Test
+    public void testNormalizedKeys() {
+        Assert.assertEquals("cheap butts", SearchResultCache.normalize("  Cheap   BUTTS "));
+        SearchResultCache cache = new SearchResultCache(10, Long.MAX_VALUE);
+        SearchResult result = result("butts");
+        cache.put("g", "cheap butts", result, 1, TimeUnit.MINUTES);
+        Assert.assertSame(result, cache.get("g", " Cheap  Butts"));
+        Assert.assertNull(cache.get("yt", "cheap butts"));
+    }
+
+    /**
+     * Tests that expired entries are never returned.
+     */
+    @Test
+    public void testExpiry() {
+        SearchResultCache cache = new SearchResultCache(10, Long.MAX_VALUE);
+        cache.put("g", "butts", result("butts"), 0, TimeUnit.MINUTES);
+        Assert.assertNull(cache.get("g", "butts"));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getBytes());
+    }
+
+    /**
+     * Tests that the least recently used entry is evicted first when the cache is full.
+     */
+    @Test
+    public void testLruEviction() {
+        SearchResultCache cache = new SearchResultCache(2, Long.MAX_VALUE);
+        cache.put("g", "one", result("one"), 1, TimeUnit.MINUTES);
+        cache.put("g", "two", result("two"), 1, TimeUnit.MINUTES);
+        Assert.assertNotNull(cache.get("g", "one"));
+        cache.put("g", "three", result("three"), 1, TimeUnit.MINUTES);
+        Assert.assertNotNull(cache.get("g", "one"));
+        Assert.assertNull(cache.get("g", "two"));
+        Assert.assertNotNull(cache.get("g", "three"));
+        long threeEntry = result("three").getEstimatedBytes();
+        cache.resize(2, threeEntry);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNotNull(cache.get("g", "three"));
+    }
+}
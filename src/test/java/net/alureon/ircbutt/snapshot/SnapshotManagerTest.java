@@ -0,0 +1,157 @@
+package net.alureon.ircbutt.snapshot;
+
+import net.alureon.ircbutt.command.ListCursor;
+import net.alureon.ircbutt.command.MoreStore;
+import net.alureon.ircbutt.handler.ChatStorage;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests writing and restoring snapshots.
+ */
+public final class SnapshotManagerTest {
+
+    /**
+     * How old a snapshot can be in these tests.
+     */
+    private static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    /**
+     * A scratch directory for the snapshot file.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A section holding a single count.
+     */
+    private static final class CountSection implements Snapshottable {
+
+        /**
+         * The count written.
+         */
+        private final int count;
+        /**
+         * The count read back.
+         */
+        private int restored = -1;
+
+        /**
+         * Creates a section.
+         * @param count The count written.
+         */
+        CountSection(final int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void writeSnapshot(final SnapshotWriter out) throws IOException {
+            out.writeInt(count);
+        }
+
+        @Override
+        public void readSnapshot(final SnapshotReader in, final long savedAt) {
+            restored = in.readCount();
+        }
+    }
+
+    /**
+     * Tests that chat history and !more results come back after a restart, even with a different number of
+     * stripes.
+     */
+    @Test
+    public void testRoundTrip() {
+        Path path = folder.getRoot().toPath().resolve("snapshot.bin");
+        ChatStorage chat = new ChatStorage(3, 65536, TimeUnit.DAYS.toMillis(1), 4);
+        chat.storeMessage("main/#butts", "Bob", "first");
+        chat.storeMessage("main/#butts", "bob", "second");
+        chat.storeMessage("main/#butts", "alice", "hi");
+        MoreStore more = new MoreStore();
+        long now = System.currentTimeMillis();
+        more.put("main/#butts bob", ListCursor.of(Arrays.asList("m1", "m2", "m3")), now);
+        Assert.assertEquals("m1", more.next("main/#butts bob", now));
+        SnapshotManager saving = new SnapshotManager(true, path, 0, MAX_AGE_MILLIS);
+        saving.register("chat", chat);
+        saving.register("more", more);
+        Assert.assertTrue(saving.save());
+
+        ChatStorage restoredChat = new ChatStorage(3, 65536, TimeUnit.DAYS.toMillis(1), 1);
+        MoreStore restoredMore = new MoreStore();
+        SnapshotManager restoring = new SnapshotManager(true, path, 0, MAX_AGE_MILLIS);
+        restoring.register("chat", restoredChat);
+        restoring.register("more", restoredMore);
+        restoring.restore();
+        Assert.assertEquals(Arrays.asList("second", "first"), restoredChat.getQuotesFrom("main/#butts", "BOB"));
+        Assert.assertEquals("hi", restoredChat.getLastQuoteFrom("main/#butts", "alice"));
+        Assert.assertEquals(2, restoredMore.remaining("main/#butts bob"));
+        Assert.assertEquals("m2", restoredMore.next("main/#butts bob", now));
+        Assert.assertTrue(restoring.getStats().startsWith("snapshot: 2 sections restored"));
+    }
+
+    /**
+     * Tests that a snapshot older than the max age is ignored.
+     */
+    @Test
+    public void testStaleSnapshotIgnored() {
+        Path path = folder.getRoot().toPath().resolve("snapshot.bin");
+        AtomicLong clock = new AtomicLong(TimeUnit.DAYS.toMillis(1));
+        ChatStorage chat = new ChatStorage(3, 65536, Long.MAX_VALUE);
+        chat.storeMessage("main/#butts", "bob", "old news");
+        SnapshotManager saving = new SnapshotManager(true, path, 0, MAX_AGE_MILLIS, clock::get);
+        saving.register("chat", chat);
+        Assert.assertTrue(saving.save());
+
+        clock.addAndGet(MAX_AGE_MILLIS + 1);
+        ChatStorage restored = new ChatStorage(3, 65536, Long.MAX_VALUE);
+        SnapshotManager restoring = new SnapshotManager(true, path, 0, MAX_AGE_MILLIS, clock::get);
+        restoring.register("chat", restored);
+        restoring.restore();
+        Assert.assertFalse(restored.hasQuoteFrom("main/#butts", "bob"));
+        Assert.assertTrue(restoring.getStats().startsWith("snapshot: stale"));
+    }
+
+    /**
+     * Tests that a section that can't be read, or that nothing claims, doesn't stop the others being restored.
+     */
+    @Test
+    public void testBadSectionSkipped() {
+        Path path = folder.getRoot().toPath().resolve("snapshot.bin");
+        ChatStorage chat = new ChatStorage(3, 65536, TimeUnit.DAYS.toMillis(1));
+        chat.storeMessage("main/#butts", "bob", "still here");
+        SnapshotManager saving = new SnapshotManager(true, path, 0, MAX_AGE_MILLIS);
+        saving.register("broken", new CountSection(-2));
+        saving.register("unclaimed", new CountSection(1));
+        saving.register("chat", chat);
+        Assert.assertTrue(saving.save());
+
+        ChatStorage restored = new ChatStorage(3, 65536, TimeUnit.DAYS.toMillis(1));
+        SnapshotManager restoring = new SnapshotManager(true, path, 0, MAX_AGE_MILLIS);
+        CountSection broken = new CountSection(0);
+        restoring.register("broken", broken);
+        restoring.register("chat", restored);
+        restoring.restore();
+        Assert.assertEquals(-1, broken.restored);
+        Assert.assertEquals("still here", restored.getLastQuoteFrom("main/#butts", "bob"));
+    }
+
+    /**
+     * Tests that a file that isn't a snapshot is ignored.
+     * @throws IOException If the file can't be written.
+     */
+    @Test
+    public void testNotASnapshot() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("snapshot.bin");
+        Files.write(path, new byte[] {1, 2});
+        SnapshotManager restoring = new SnapshotManager(true, path, 0, MAX_AGE_MILLIS);
+        restoring.restore();
+        Assert.assertTrue(restoring.getStats().startsWith("snapshot: unreadable"));
+    }
+}
@@ -0,0 +1,42 @@
+package net.alureon.ircbutt.startup;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests the StartupSequence.
+ */
+public final class StartupSequenceTest {
+
+    /**
+     * Tests that tasks wait for the ones they depend on, that a failure skips the tasks after it, and that every
+     * task that ran is in the report.
+     */
+    @Test
+    public void testDependencies() {
+        AtomicLong now = new AtomicLong();
+        StartupSequence startup = new StartupSequence(2, now::get);
+        List<String> ran = new CopyOnWriteArrayList<>();
+        startup.run("config", () -> now.addAndGet(1_000_000));
+        CompletableFuture<Void> first = startup.add("first", () -> ran.add("first"));
+        startup.add("second", () -> ran.add("second"), first);
+        CompletableFuture<Void> broken = startup.add("broken", () -> {
+            throw new IllegalStateException("no database");
+        });
+        startup.add("skipped", () -> ran.add("skipped"), broken, first);
+
+        Assert.assertFalse(startup.await());
+        Assert.assertEquals(2, ran.size());
+        Assert.assertEquals("first", ran.get(0));
+        Assert.assertEquals("second", ran.get(1));
+        String report = startup.getReport();
+        Assert.assertTrue(report, report.startsWith("startup: 1ms, config 1ms at +0ms"));
+        Assert.assertTrue(report, report.contains("second 0ms at +1ms"));
+        Assert.assertFalse(report, report.contains("skipped"));
+    }
+}
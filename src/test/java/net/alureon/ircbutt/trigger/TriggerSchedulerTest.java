@@ -0,0 +1,95 @@
+package net.alureon.ircbutt.trigger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import net.alureon.ircbutt.util.RandomService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the TriggerScheduler.
+ */
+public final class TriggerSchedulerTest {
+
+    /**
+     * Counts how many of some messages trigger the feature in a channel.
+     * @param scheduler The scheduler.
+     * @param channel The channel key.
+     * @param messages The number of messages.
+     * @return The number of triggers.
+     */
+    private static int count(final TriggerScheduler scheduler, final String channel, final int messages) {
+        int triggers = 0;
+        for (int i = 0; i < messages; i++) {
+            if (scheduler.shouldTrigger(channel)) {
+                triggers++;
+            }
+        }
+        return triggers;
+    }
+
+    /**
+     * Tests that each channel fires about as often as its frequency says, including the edge cases.
+     */
+    @Test
+    public void testFrequencies() {
+        Map<String, Integer> channels = new HashMap<>();
+        channels.put("#Rare", 999);
+        channels.put("#always", 0);
+        channels.put("#never", -1);
+        TriggerScheduler scheduler = new TriggerScheduler(9, channels, new RandomService(1));
+        Assert.assertEquals(100000, count(scheduler, "#always", 100000));
+        Assert.assertEquals(0, count(scheduler, "#never", 100000));
+        Assert.assertEquals(10000, count(scheduler, "#butts", 100000), 500);
+        Assert.assertEquals(10000, count(scheduler, null, 100000), 500);
+        Assert.assertEquals(100, count(scheduler, "#rare", 100000), 30);
+        Assert.assertEquals(999, scheduler.getFrequency("#RARE"));
+
+        scheduler.setFrequency("#never", 0);
+        Assert.assertEquals(10, count(scheduler, "#never", 10));
+    }
+
+    /**
+     * Tests that schedulers with the same seed fire on the same messages.
+     */
+    @Test
+    public void testSeededIsDeterministic() {
+        TriggerScheduler first = new TriggerScheduler(20, Collections.emptyMap(), new RandomService(42));
+        TriggerScheduler second = new TriggerScheduler(20, Collections.emptyMap(), new RandomService(42));
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(first.shouldTrigger("#butts"), second.shouldTrigger("#butts"));
+        }
+    }
+
+    /**
+     * Tests that a reloaded config replaces every frequency and restarts the countdowns.
+     */
+    @Test
+    public void testSetFrequencies() {
+        TriggerScheduler scheduler = new TriggerScheduler(-1, Collections.singletonMap("#Old", 0),
+                new RandomService(1));
+        Assert.assertEquals(0, count(scheduler, "#butts", 1000));
+        scheduler.setFrequencies(0, Collections.singletonMap("#New", -1));
+        Assert.assertEquals(10, count(scheduler, "#butts", 10));
+        Assert.assertEquals(10, count(scheduler, "#old", 10));
+        Assert.assertEquals(0, count(scheduler, "#new", 10));
+        Assert.assertEquals(-1, scheduler.getFrequency("#NEW"));
+    }
+
+    /**
+     * Tests that gaps are drawn from the geometric distribution.
+     */
+    @Test
+    public void testGap() {
+        Assert.assertEquals(1, TriggerScheduler.gap(1, 0.99));
+        Assert.assertEquals(1, TriggerScheduler.gap(0.5, 0));
+        Assert.assertEquals(1, TriggerScheduler.gap(0.5, 0.49));
+        Assert.assertEquals(2, TriggerScheduler.gap(0.5, 0.5));
+        Assert.assertEquals(3, TriggerScheduler.gap(0.5, 0.8));
+        Assert.assertTrue(TriggerScheduler.gap(0, 0.5) > Integer.MAX_VALUE);
+        Assert.assertEquals(0.01, TriggerScheduler.probability(99), 1e-12);
+        Assert.assertEquals(0, TriggerScheduler.probability(-1), 0);
+    }
+}
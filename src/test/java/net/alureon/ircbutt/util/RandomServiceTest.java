@@ -0,0 +1,88 @@
+package net.alureon.ircbutt.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the RandomService and Weights.
+ */
+public final class RandomServiceTest {
+
+    /**
+     * Tests that services with the same seed make the same draws.
+     */
+    @Test
+    public void testSeededReplays() {
+        RandomService first = new RandomService(5);
+        RandomService second = new RandomService(5);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(first.nextInt(), second.nextInt());
+            Assert.assertEquals(first.nextInt(-3, 3), second.nextInt(-3, 3));
+            Assert.assertEquals(first.nextDouble(), second.nextDouble(), 0);
+        }
+        List<Integer> a = new ArrayList<>(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8));
+        List<Integer> b = new ArrayList<>(a);
+        first.shuffle(a);
+        second.shuffle(b);
+        Assert.assertEquals(a, b);
+    }
+
+    /**
+     * Tests that ranges include both ends, even at the ends of int.
+     */
+    @Test
+    public void testRanges() {
+        RandomService random = new RandomService(1);
+        boolean[] seen = new boolean[3];
+        for (int i = 0; i < 1000; i++) {
+            int roll = random.nextInt(-1, 1);
+            Assert.assertTrue(roll >= -1 && roll <= 1);
+            seen[roll + 1] = true;
+        }
+        Assert.assertArrayEquals(new boolean[] {true, true, true}, seen);
+        Assert.assertEquals(Integer.MAX_VALUE, random.nextInt(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        Assert.assertEquals(Integer.MIN_VALUE, random.nextInt(Integer.MIN_VALUE, Integer.MIN_VALUE));
+        random.nextInt(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Tests that outcomes are chosen about as often as their weights say, and never when their weight is 0.
+     */
+    @Test
+    public void testWeights() {
+        RandomService random = new RandomService(2);
+        Weights weights = Weights.of(1, 0, 3);
+        int[] counts = new int[weights.size()];
+        for (int i = 0; i < 40000; i++) {
+            counts[random.choose(weights)]++;
+        }
+        Assert.assertEquals(10000, counts[0], 500);
+        Assert.assertEquals(0, counts[1]);
+        Assert.assertEquals(30000, counts[2], 500);
+    }
+
+    /**
+     * Tests that weights that can't be chosen from are refused.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoWeight() {
+        Weights.of(0, 0);
+    }
+
+    /**
+     * Tests that shuffling keeps every element.
+     */
+    @Test
+    public void testShuffle() {
+        int[] values = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        new RandomService(3).shuffle(values);
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        Assert.assertArrayEquals(new int[] {0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, sorted);
+        Assert.assertEquals("b", new RandomService(4).pick(Arrays.asList("b")));
+    }
+}